@@ -0,0 +1,255 @@
+package jpigpio;
+
+import java.util.Arrays;
+
+/**
+ * Collects pigpio commands and executes them together. {@link PigpioSocket} sends all commands of the batch
+ * to pigpiod in a single write and then collects all replies, turning N network round-trips into one.
+ * Other implementations simply execute commands one after another.
+ * <br><br>
+ * Obtain a batch by calling {@link JPigpio#batch()}. Batch can be executed repeatedly and reused for another
+ * set of commands after calling clear().
+ * <pre>{@code
+ * pigpio.batch()
+ *     .gpioWrite(17, true)
+ *     .gpioDelay(10)
+ *     .gpioWrite(17, false)
+ *     .execute();
+ * }</pre>
+ */
+public class CommandBatch {
+
+	// pigpiod socket interface command codes (see PigpioSocket)
+	static final int CMD_MODES = 0;
+	static final int CMD_WRITE = 4;
+	static final int CMD_PWM = 5;
+	static final int CMD_SERVO = 8;
+	static final int CMD_TRIG = 37;
+	static final int CMD_MICS = 46;
+	static final int CMD_I2CWD = 57;
+	static final int CMD_SPIW = 74;
+	static final int CMD_SPIX = 75;
+
+	protected final JPigpio pigpio;
+
+	int count = 0;
+
+	int[] cmd = new int[16];
+	int[] p1 = new int[16];
+	int[] p2 = new int[16];
+	int[] p3 = new int[16];
+	int[] extValue = new int[16];
+	byte[][] ext = new byte[16][];
+	byte[][] rxData = new byte[16][];
+
+	public CommandBatch(JPigpio pigpio) {
+		this.pigpio = pigpio;
+	}
+
+	/**
+	 * Add command to the batch.
+	 */
+	CommandBatch add(int cmd, int p1, int p2, int p3, byte[] ext, int extValue, byte[] rxData) {
+		if (count == this.cmd.length) {
+			int size = count * 2;
+			this.cmd = Arrays.copyOf(this.cmd, size);
+			this.p1 = Arrays.copyOf(this.p1, size);
+			this.p2 = Arrays.copyOf(this.p2, size);
+			this.p3 = Arrays.copyOf(this.p3, size);
+			this.extValue = Arrays.copyOf(this.extValue, size);
+			this.ext = Arrays.copyOf(this.ext, size);
+			this.rxData = Arrays.copyOf(this.rxData, size);
+		}
+		this.cmd[count] = cmd;
+		this.p1[count] = p1;
+		this.p2[count] = p2;
+		this.p3[count] = p3;
+		this.ext[count] = ext;
+		this.extValue[count] = extValue;
+		this.rxData[count] = rxData;
+		count++;
+		return this;
+	}
+
+	/**
+	 * Add gpioSetMode to the batch.
+	 * @param gpio The gpio pin to set
+	 * @param mode The mode of the pin. One of PI_INPUT or PI_OUTPUT
+	 * @return this batch
+	 */
+	public CommandBatch gpioSetMode(int gpio, int mode) {
+		return add(CMD_MODES, gpio, mode, 0, null, 0, null);
+	}
+
+	/**
+	 * Add gpioWrite to the batch.
+	 * @param gpio The gpio pin to set
+	 * @param value The desired value of the new pin state
+	 * @return this batch
+	 */
+	public CommandBatch gpioWrite(int gpio, boolean value) {
+		return add(CMD_WRITE, gpio, value?1:0, 0, null, 0, null);
+	}
+
+	/**
+	 * Add setPWMDutycycle to the batch.
+	 * @param gpio user gpio 0-31
+	 * @param dutycycle 0-range (range defaults to 255)
+	 * @return this batch
+	 */
+	public CommandBatch setPWMDutycycle(int gpio, int dutycycle) {
+		return add(CMD_PWM, gpio, dutycycle, 0, null, 0, null);
+	}
+
+	/**
+	 * Add gpioServo to the batch.
+	 * @param gpio The gpio pin
+	 * @param pulseWidth Pulse width in microseconds (0 to switch servo pulses off)
+	 * @return this batch
+	 */
+	public CommandBatch gpioServo(int gpio, int pulseWidth) {
+		return add(CMD_SERVO, gpio, pulseWidth, 0, null, 0, null);
+	}
+
+	/**
+	 * Add gpioTrigger to the batch.
+	 * @param gpio The GPIO pin to pulse.
+	 * @param pulseLen The duration in microseconds to hold the pulse.
+	 * @param level The level to target the pulse.
+	 * @return this batch
+	 */
+	public CommandBatch gpioTrigger(int gpio, long pulseLen, boolean level) {
+		return add(CMD_TRIG, gpio, (int) pulseLen, 4, null, level?1:0, null);
+	}
+
+	/**
+	 * Add delay to the batch. Delay is performed by pigpio between the surrounding commands.
+	 * @param delay Delay in microseconds
+	 * @return this batch
+	 */
+	public CommandBatch gpioDelay(long delay) {
+		return add(CMD_MICS, (int) delay, 0, 0, null, 0, null);
+	}
+
+	/**
+	 * Add i2cWriteDevice to the batch.
+	 * @param handle The handle of the I2C device
+	 * @param data Data to write
+	 * @return this batch
+	 */
+	public CommandBatch i2cWriteDevice(int handle, byte[] data) {
+		return add(CMD_I2CWD, handle, 0, data.length, data, 0, null);
+	}
+
+	/**
+	 * Add spiWrite to the batch.
+	 * @param handle The handle of the SPI device
+	 * @param data Data to write
+	 * @return this batch
+	 */
+	public CommandBatch spiWrite(int handle, byte[] data) {
+		return add(CMD_SPIW, handle, 0, data.length, data, 0, null);
+	}
+
+	/**
+	 * Add spiXfer to the batch.
+	 * @param handle The handle of the SPI device
+	 * @param txData Data to write
+	 * @param rxData Buffer to store received data to. It is filled when execute() returns.
+	 * @return this batch
+	 */
+	public CommandBatch spiXfer(int handle, byte[] txData, byte[] rxData) {
+		return add(CMD_SPIX, handle, 0, txData.length, txData, 0, rxData);
+	}
+
+	/**
+	 * Returns number of commands in the batch.
+	 * @return number of commands
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Remove all commands from the batch.
+	 * @return this batch
+	 */
+	public CommandBatch clear() {
+		Arrays.fill(ext, 0, count, null);
+		Arrays.fill(rxData, 0, count, null);
+		count = 0;
+		return this;
+	}
+
+	/**
+	 * Execute all commands of the batch.
+	 * @return result codes of all commands, in the order commands were added
+	 * @throws CommandBatchException naming index of the first command which failed
+	 * @throws PigpioException on communication error
+	 */
+	public int[] execute() throws PigpioException {
+		int[] results = new int[count];
+
+		send(results);
+
+		for (int i = 0; i < count; i++)
+			if (results[i] < 0)
+				throw new CommandBatchException(i, results[i]);
+
+		return results;
+	}
+
+	/**
+	 * Execute commands and store their result codes. This implementation executes commands one by one,
+	 * stopping at first failure.
+	 * @param results array to store result codes to
+	 * @throws PigpioException on communication error
+	 */
+	protected void send(int[] results) throws PigpioException {
+		for (int i = 0; i < count; i++) {
+			try {
+				results[i] = sendOne(i);
+			} catch (NotImplementedException e) {
+				throw e;
+			} catch (PigpioException e) {
+				// communication errors carry their cause and are not failures of the command
+				if (e.getCause() != null)
+					throw e;
+				throw new CommandBatchException(i, e.getErrorCode());
+			}
+		}
+	}
+
+	private int sendOne(int i) throws PigpioException {
+		switch (cmd[i]) {
+		case CMD_MODES:
+			pigpio.gpioSetMode(p1[i], p2[i]);
+			return 0;
+		case CMD_WRITE:
+			pigpio.gpioWrite(p1[i], p2[i] != 0);
+			return 0;
+		case CMD_PWM:
+			pigpio.setPWMDutycycle(p1[i], p2[i]);
+			return 0;
+		case CMD_SERVO:
+			pigpio.gpioServo(p1[i], p2[i]);
+			return 0;
+		case CMD_TRIG:
+			pigpio.gpioTrigger(p1[i], p2[i], extValue[i] != 0);
+			return 0;
+		case CMD_MICS:
+			pigpio.gpioDelay(p1[i]);
+			return 0;
+		case CMD_I2CWD:
+			pigpio.i2cWriteDevice(p1[i], ext[i]);
+			return 0;
+		case CMD_SPIW:
+			return pigpio.spiWrite(p1[i], ext[i]);
+		case CMD_SPIX:
+			return pigpio.spiXfer(p1[i], ext[i], rxData[i]);
+		default:
+			throw new NotImplementedException();
+		}
+	}
+} // End of class
+// End of file
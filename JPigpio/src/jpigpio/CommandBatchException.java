@@ -0,0 +1,37 @@
+package jpigpio;
+
+/**
+ * An extension of the general PigpioException thrown when a command of {@link CommandBatch} fails.
+ *
+ */
+public class CommandBatchException extends PigpioException {
+
+	/**
+	 * Index of the first command in the batch which failed.
+	 */
+	private int index;
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 3416129458223096527L;
+
+	public CommandBatchException(int index, int rc) {
+		super(rc);
+		this.index = index;
+	} // End of constructor
+
+	/**
+	 * Retrieve index of the first command in the batch which failed.
+	 * @return index of command, in the order commands were added to the batch
+	 */
+	public int getIndex() {
+		return index;
+	} // End of getIndex
+
+	@Override
+	public String getMessage() {
+		return "command " + index + ": " + super.getMessage();
+	}
+} // End of class
+// End of file
@@ -0,0 +1,193 @@
+package jpigpio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer single-consumer ring buffer of GPIO level changes. Every record holds the tick of the change,
+ * levels of GPIOs 0-31 after the change and flags (same meaning as flags of pigpio notifications, e.g. watchdog).
+ * <br><br>
+ * Consumers such as IR/RF decoders or pulse counters poll the buffer with drainTo() and process edges in bulk,
+ * instead of receiving one alert call per edge. Neither offer() nor drainTo() allocate or lock. Only one thread
+ * may call offer() (the thread delivering GPIO changes) and only one thread may call drainTo().
+ * <br><br>
+ * Obtain a buffer filled by pigpio by calling {@link JPigpio#openEdgeBuffer(int, int)}.
+ */
+public class EdgeBuffer implements Alert {
+
+	private final int mask;
+
+	private final long[] ticks;
+	private final int[] levels;
+	private final int[] flags;
+	private final int indexMask;
+
+	// index of the next record to read, written by consumer only
+	private final AtomicLong head = new AtomicLong();
+	// index of the next record to write, written by producer only
+	private final AtomicLong tail = new AtomicLong();
+	// last value of head seen by producer, saves reading the volatile on every offer
+	private long headCache = 0;
+
+	private volatile long overflowCount = 0;
+
+	// levels of monitored GPIOs as reported by alert()
+	private int alertLevels = 0;
+
+	/**
+	 * @param mask bit-map of GPIOs 0-31 to record
+	 * @param capacity maximum number of records, rounded up to power of 2
+	 */
+	public EdgeBuffer(int mask, int capacity) {
+		if (capacity < 1 || capacity > 1 << 30)
+			throw new IllegalArgumentException("capacity out of range");
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+
+		this.mask = mask;
+		this.ticks = new long[size];
+		this.levels = new int[size];
+		this.flags = new int[size];
+		this.indexMask = size - 1;
+	}
+
+	/**
+	 * Constructor for subclasses keeping records elsewhere, e.g. in native memory. Such subclass overrides
+	 * drainTo(long[], int[], int[]), size(), capacity() and getOverflowCount().
+	 * @param mask bit-map of GPIOs 0-31 to record
+	 */
+	protected EdgeBuffer(int mask) {
+		this.mask = mask;
+		this.ticks = new long[0];
+		this.levels = new int[0];
+		this.flags = new int[0];
+		this.indexMask = -1;
+	}
+
+	/**
+	 * Append record to the buffer (producer side).
+	 * @param tick tick of the change
+	 * @param level levels of GPIOs 0-31
+	 * @param flags flags of the change (0 for a level change)
+	 * @return false if the buffer was full and the record was dropped
+	 */
+	public boolean offer(long tick, int level, int flags) {
+		long t = tail.get();
+		if (t - headCache > indexMask) {
+			headCache = head.get();
+			if (t - headCache > indexMask) {
+				overflowCount++;
+				return false;
+			}
+		}
+		int i = (int) t & indexMask;
+		this.ticks[i] = tick;
+		this.levels[i] = level;
+		this.flags[i] = flags;
+		// publish the record
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Record single GPIO alert, e.g. when registered by gpioSetAlertFunc (producer side).
+	 * Level bits of the record hold the last known levels of monitored GPIOs.
+	 */
+	@Override
+	public void alert(int gpio, int level, long tick) {
+		if (level == JPigpio.PI_TIMEOUT) {
+			offer(tick, alertLevels, JPigpio.PI_NTFY_FLAGS_WDOG | gpio);
+			return;
+		}
+		if (level == 0)
+			alertLevels &= ~(1 << gpio);
+		else
+			alertLevels |= 1 << gpio;
+		offer(tick, alertLevels, 0);
+	}
+
+	/**
+	 * Set levels which alert() starts from. Call before registering the buffer as an alert function.
+	 * @param levels levels of GPIOs 0-31
+	 */
+	public void setAlertLevels(int levels) {
+		alertLevels = levels;
+	}
+
+	/**
+	 * Move records from the buffer to the arrays (consumer side).
+	 * @param ticks array to store ticks to
+	 * @param levels array to store levels of GPIOs 0-31 to
+	 * @return number of records moved, limited by length of the arrays
+	 */
+	public int drainTo(long[] ticks, int[] levels) {
+		return drainTo(ticks, levels, null);
+	}
+
+	/**
+	 * Move records from the buffer to the arrays (consumer side).
+	 * @param ticks array to store ticks to
+	 * @param levels array to store levels of GPIOs 0-31 to
+	 * @param flags array to store flags to (PI_NTFY_FLAGS_WDOG | gpio for watchdog timeouts), may be null
+	 * @return number of records moved, limited by length of the arrays
+	 */
+	public int drainTo(long[] ticks, int[] levels, int[] flags) {
+		long h = head.get();
+		int n = (int) Math.min(tail.get() - h, Math.min(ticks.length, levels.length));
+		if (flags != null)
+			n = Math.min(n, flags.length);
+		if (n <= 0)
+			return 0;
+
+		int i = (int) h & indexMask;
+		int first = Math.min(n, this.ticks.length - i);
+		System.arraycopy(this.ticks, i, ticks, 0, first);
+		System.arraycopy(this.levels, i, levels, 0, first);
+		if (flags != null)
+			System.arraycopy(this.flags, i, flags, 0, first);
+		if (first < n) {
+			// wrapped around the end of the buffer
+			System.arraycopy(this.ticks, 0, ticks, first, n - first);
+			System.arraycopy(this.levels, 0, levels, first, n - first);
+			if (flags != null)
+				System.arraycopy(this.flags, 0, flags, first, n - first);
+		}
+
+		// release the slots to producer
+		head.lazySet(h + n);
+		return n;
+	}
+
+	/**
+	 * Returns number of records waiting in the buffer.
+	 * @return number of records
+	 */
+	public int size() {
+		return (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Returns maximum number of records the buffer holds.
+	 * @return capacity
+	 */
+	public int capacity() {
+		return ticks.length;
+	}
+
+	/**
+	 * Returns bit-map of GPIOs recorded by this buffer.
+	 * @return bit-map of GPIOs 0-31
+	 */
+	public int getMask() {
+		return mask;
+	}
+
+	/**
+	 * Returns number of records dropped because the buffer was full.
+	 * @return number of dropped records
+	 */
+	public long getOverflowCount() {
+		return overflowCount;
+	}
+} // End of class
+// End of file
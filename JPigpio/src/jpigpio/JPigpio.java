@@ -1,5 +1,6 @@
 package jpigpio;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -391,6 +392,19 @@ public interface JPigpio {
  	 */
 	public int waveAddGeneric(ArrayList<Pulse> pulses) throws PigpioException;
 
+	/**
+	 * Adds pulses stored as (gpioOn, gpioOff, delay) triples in an int array to the current waveform.
+	 * Same as waveAddGeneric without creating a Pulse object per pulse, see {@link WaveBuilder}.<br>
+	 * pigpiod accepts at most {@link WaveBuilder#MAX_PULSES_PER_COMMAND} pulses per call.
+	 * @param pulses array holding three ints per pulse
+	 * @param offset index of the first pulse to add (pulse index, not array index)
+	 * @param count number of pulses to add
+	 * @return  Returns the new total number of pulses in the current waveform.
+	 * @throws PigpioException  on pigpiod error, PI_BAD_PARAM if the pulses are not within the array,
+	 * PI_TOO_MANY_PULSES if count exceeds {@link WaveBuilder#MAX_PULSES_PER_COMMAND}
+	 */
+	public int waveAddPulses(int[] pulses, int offset, int count) throws PigpioException;
+
 	/**
 	 * Adds a waveform representing serial data to the existing
 	 * waveform (if any).  The serial data starts [*offset*]
@@ -592,6 +606,65 @@ public interface JPigpio {
      */
 	public int waveSendRepeat(int waveId) throws PigpioException;
 
+	/**
+	 * Transmits the waveform with id wave_id using mode.<br>
+	 * <br>
+	 * PI_WAVE_MODE_ONE_SHOT and PI_WAVE_MODE_REPEAT start the waveform immediately, the
+	 * _SYNC variants wait until the current waveform reaches its end, so consecutive
+	 * waveforms follow each other without a gap.<br>
+	 * <br>
+	 * NOTE: Any hardware PWM started by [*hardware_PWM*] will be cancelled.<br>
+	 * <pre>{@code
+	 * ...
+	 * pi.wave_send_using_mode(wid, pigpio.WAVE_MODE_REPEAT_SYNC)
+	 * ...}</pre>
+	 * @param waveId
+	 * 	&gt;=0 (as returned by a prior call to [*wave_create*]).
+	 * @param mode
+	 * 	PI_WAVE_MODE_ONE_SHOT, PI_WAVE_MODE_REPEAT, PI_WAVE_MODE_ONE_SHOT_SYNC or PI_WAVE_MODE_REPEAT_SYNC
+	 * @return
+	 * 	Returns the number of DMA control blocks used in the waveform.
+	 * @throws PigpioException  on pigpiod error
+	 */
+	public int waveSendUsingMode(int waveId, int mode) throws PigpioException;
+
+	/**
+	 * Transmits a chain of waveforms.<br>
+	 * <br>
+	 * The chain is a list of wave ids and commands which pigpio executes on its own, so
+	 * waveforms follow each other without any gap. See {@link WaveChain} for building it.<br>
+	 * <br>
+	 * <pre>{@code
+	 * Loop Start	255 0		Identify start of a wave block
+	 * Loop Repeat	255 1 x y	loop x + y*256 times
+	 * Delay	255 2 x y	delay x + y*256 microseconds
+	 * Loop Forever	255 3		loop forever
+	 * }</pre>
+	 * Loops may be nested 4 deep and the chain may be at most 600 bytes long.<br>
+	 * <br>
+	 * NOTE: Any hardware PWM started by [*hardware_PWM*] will be cancelled.<br>
+	 * <pre>{@code
+	 * ...
+	 * pi.wave_chain([255, 0, wid0, 255, 1, 10, 0, wid1]) # wave 0 ten times, then wave 1
+	 * ...}</pre>
+	 * @param chain wave ids and commands
+	 * @throws PigpioException  on pigpiod error, PI_BAD_PARAM if chain is null
+	 */
+	public void waveChain(byte[] chain) throws PigpioException;
+
+	/**
+	 * Returns the id of the waveform currently being transmitted.<br>
+	 * <pre>{@code
+	 * ...
+	 * wid = pi.wave_tx_at()
+	 * ...}</pre>
+	 * @return
+	 * 	the wave id or PI_NO_TX_WAVE (9999) if no wave is transmitted,
+	 * 	PI_WAVE_NOT_FOUND (9998) if the transmitted wave was deleted
+	 * @throws PigpioException  on pigpiod error
+	 */
+	public int waveTxAt() throws PigpioException;
+
 
 	// ################ I2C
 
@@ -666,6 +739,17 @@ public interface JPigpio {
      */
 	public int i2cReadDevice(int handle, byte data[]) throws PigpioException;
 
+	/**
+	 * Reads bytes from the raw I2C device into the remaining space of the buffer.
+	 * Position of the buffer advances by the number of bytes read.
+	 * Direct buffers are filled without intermediate copies.
+	 * @param handle &gt;=0 (as returned by a prior call to [*i2c_open*]).
+	 * @param data buffer to read into, up to data.remaining() bytes are read.
+	 * @return number of bytes read
+	 * @throws PigpioException  on pigpiod error
+	 */
+	public int i2cReadDevice(int handle, ByteBuffer data) throws PigpioException;
+
 	/**
 	 * Writes the data bytes to the raw device associated with handle.
      * <pre>
@@ -689,6 +773,15 @@ public interface JPigpio {
      */
 	public void i2cWriteDevice(int handle, byte data[]) throws PigpioException;
 
+	/**
+	 * Writes the remaining bytes of the buffer to the raw I2C device. Position of the buffer advances to its limit.
+	 * Direct buffers are written without intermediate copies.
+	 * @param handle &gt;=0 (as returned by a prior call to [*i2c_open*]).
+	 * @param data buffer holding bytes to write
+	 * @throws PigpioException  on pigpiod error
+	 */
+	public void i2cWriteDevice(int handle, ByteBuffer data) throws PigpioException;
+
 	// ################ SPI
 
 	/**
@@ -842,6 +935,16 @@ public interface JPigpio {
 	 */
 	public int spiWrite(int handle, byte data[]) throws PigpioException;
 
+	/**
+	 * Writes the remaining bytes of the buffer to the SPI device. Position of the buffer advances
+	 * by the number of bytes written. Direct buffers are written without intermediate copies.
+	 * @param handle The handle into which to write. &gt;=0 (as returned by a prior call to [*spi_open*]).
+	 * @param data buffer holding bytes to write
+	 * @return The number of bytes actually written
+	 * @throws PigpioException  on pigpiod error
+	 */
+	public int spiWrite(int handle, ByteBuffer data) throws PigpioException;
+
 	/**
 	 * Writes the data bytes to the SPI device associated with handle,
 	 * returning the data bytes read from the device.<br>
@@ -868,6 +971,20 @@ public interface JPigpio {
 	 */
 	public int spiXfer(int handle, byte txData[], byte rxData[]) throws PigpioException;
 
+	/**
+	 * Writes the remaining bytes of txData to the SPI device, storing bytes read from the device to rxData.
+	 * Positions of both buffers advance by the number of bytes transferred.<br>
+	 * Direct buffers are passed to pigpio (JNI) or to the socket (pigpiod) without intermediate copies,
+	 * which matters for bulk transfers such as display frames or flash pages.
+	 * @param handle The handle into which to write. &gt;=0 (as returned by a prior call to [*spi_open*]).
+	 * @param txData buffer holding bytes to write
+	 * @param rxData buffer to store read bytes to, needs at least txData.remaining() bytes of space
+	 * @return The number of bytes actually transferred.
+	 * @throws PigpioException  on pigpiod error
+	 * @throws java.nio.BufferOverflowException if rxData has less space remaining than txData has bytes
+	 */
+	public int spiXfer(int handle, ByteBuffer txData, ByteBuffer rxData) throws PigpioException;
+
 	// ################ SERIAL
 
 	/**
@@ -1147,6 +1264,14 @@ public interface JPigpio {
 	public void gpioSetAlertFunc(int gpio, Alert alert) throws PigpioException;
 	
 	public void setDebug(boolean flag) throws PigpioException;
+
+	/**
+	 * Create a new, empty batch of commands. Commands added to the batch are executed together by calling
+	 * {@link CommandBatch#execute()}. With the socket interface this sends all commands in a single
+	 * network write, which is much faster than issuing them one by one.
+	 * @return new command batch
+	 */
+	public CommandBatch batch();
 	
 	/**
 	 * Pulse a named pin and then wait for a response on a different pin.  The output pin should already
@@ -1155,8 +1280,11 @@ public interface JPigpio {
 	 * default is to pulse the output high and then return low however if the pulseLow flag is set the inverse
 	 * will happen (pulse the output low and then return high).<br>
 	 * <br>
-	 * The return is how long we waited for the pulse measured in microseconds.  If no response is received, we
-	 * return -1 to indicate a timeout.
+	 * The return is the length of the high pulse on the input pin measured in microseconds.  If no response is
+	 * received, we return -1 to indicate a timeout.<br>
+	 * <br>
+	 * The pulse is timed from ticks of its edges (see {@link PulseMeter}), so the result is accurate and nothing
+	 * spins while waiting, using JNI as well as pigpiod over the network.
 	 * @param outGpio The pin on which the output pulse will occur.
 	 * @param inGpio The pin on which the input pulse will be sought.
 	 * @param waitDuration The maximum time to wait in microseconds.
@@ -1213,6 +1341,24 @@ public interface JPigpio {
      */
 	public void removeCallback(GPIOListener listener) throws PigpioException;
 
+	/**
+	 * Start recording level changes of the GPIOs into a new ring buffer. The buffer is filled in the background
+	 * and a single consumer thread drains records from it in bulk using {@link EdgeBuffer#drainTo(long[], int[])}.
+	 * Records not drained in time are dropped once the buffer is full.
+	 * @param gpioMask bit-map of GPIOs 0-31 to record
+	 * @param capacity maximum number of records held in the buffer
+	 * @return new edge buffer
+	 * @throws PigpioException  on pigpiod error
+	 */
+	public EdgeBuffer openEdgeBuffer(int gpioMask, int capacity) throws PigpioException;
+
+	/**
+	 * Stop recording level changes into the buffer. Records remaining in the buffer can still be drained.
+	 * @param buffer buffer returned by openEdgeBuffer
+	 * @throws PigpioException  on pigpiod error
+	 */
+	public void closeEdgeBuffer(EdgeBuffer buffer) throws PigpioException;
+
 	public static final int PI_GPIO2 = 2;
 	public static final int PI_GPIO3 = 3;
 	public static final int PI_GPIO4 = 4;
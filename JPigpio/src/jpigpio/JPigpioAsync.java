@@ -0,0 +1,152 @@
+package jpigpio;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link JPigpio JPigpio interface}. Every method sends its command to pigpiod
+ * right away and returns a future, which is completed once pigpiod replies. Many commands can be in flight
+ * at the same time, so code driving lots of pins can fire commands and join on them later.
+ * <br><br>
+ * Futures complete exceptionally with {@link PigpioException} if pigpiod returns an error code or
+ * the connection fails.<br>
+ * Futures are completed by a single reader thread. Keep dependent actions (thenApply, thenAccept, ...)
+ * short or use their *Async variants, otherwise replies of all other commands get delayed.
+ * <br><br>
+ * See {@link JPigpio JPigpio interface} for full documentation of specific commands.
+ * Obtain an instance by calling {@link PigpioSocket#async()}.
+ */
+public interface JPigpioAsync {
+
+	/**
+	 * Set the mode of the gpio
+	 * @param gpio The gpio pin to set
+	 * @param mode The mode of the pin. One of PI_INPUT or PI_OUTPUT
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> gpioSetModeAsync(int gpio, int mode);
+
+	/**
+	 * Retrieve the mode of the given gpio
+	 * @param gpio The gpio to retrieve the mode
+	 * @return future completed with the mode of the gpio
+	 */
+	public CompletableFuture<Integer> gpioGetModeAsync(int gpio);
+
+	/**
+	 * Set pull up/down of the gpio
+	 * @param gpio The gpio pin to set
+	 * @param pud One of PI_PUD_OFF, PI_PUD_DOWN or PI_PUD_UP
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> gpioSetPullUpDownAsync(int gpio, int pud);
+
+	/**
+	 * Retrieve the state of the gpio
+	 * @param gpio The gpio pin to retrieve
+	 * @return future completed with the state of the gpio
+	 */
+	public CompletableFuture<Boolean> gpioReadAsync(int gpio);
+
+	/**
+	 * Set the state of the gpio
+	 * @param gpio The gpio pin to set
+	 * @param value The desired value of the new pin state
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> gpioWriteAsync(int gpio, boolean value);
+
+	/**
+	 * Send a trigger pulse to the gpio.
+	 * @param gpio The GPIO pin to pulse.
+	 * @param pulseLen The duration in microseconds to hold the pulse.
+	 * @param level The level to target the pulse.
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> gpioTriggerAsync(int gpio, long pulseLen, boolean level);
+
+	/**
+	 * Start servo pulses on the gpio.
+	 * @param gpio The gpio pin
+	 * @param pulseWidth Pulse width in microseconds (0 to switch servo pulses off)
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> gpioServoAsync(int gpio, int pulseWidth);
+
+	/**
+	 * Start PWM on the gpio.
+	 * @param gpio user gpio 0-31
+	 * @param dutycycle 0-range (range defaults to 255)
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> setPWMDutycycleAsync(int gpio, int dutycycle);
+
+	/**
+	 * Retrieve current tick of pigpiod (microseconds since system boot, wraps around every ~72 minutes)
+	 * @return future completed with current tick
+	 */
+	public CompletableFuture<Long> gpioTickAsync();
+
+	/**
+	 * Read data from the I2C device.
+	 * @param handle The handle of the I2C device
+	 * @param data Buffer to store data read from the device. It is filled before the future completes.
+	 * @return future completed with number of bytes read
+	 */
+	public CompletableFuture<Integer> i2cReadDeviceAsync(int handle, byte[] data);
+
+	/**
+	 * Write data to the I2C device.
+	 * @param handle The handle of the I2C device
+	 * @param data Data to write
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> i2cWriteDeviceAsync(int handle, byte[] data);
+
+	/**
+	 * Read data from the SPI device.
+	 * @param handle The handle of the SPI device
+	 * @param data Buffer to store data read from the device. It is filled before the future completes.
+	 * @return future completed with number of bytes read
+	 */
+	public CompletableFuture<Integer> spiReadAsync(int handle, byte[] data);
+
+	/**
+	 * Write data to the SPI device.
+	 * @param handle The handle of the SPI device
+	 * @param data Data to write
+	 * @return future completed with number of bytes written
+	 */
+	public CompletableFuture<Integer> spiWriteAsync(int handle, byte[] data);
+
+	/**
+	 * Transfer data to/from the SPI device.
+	 * @param handle The handle of the SPI device
+	 * @param txData Data to write
+	 * @param rxData Buffer to store data read from the device. It is filled before the future completes.
+	 * @return future completed with number of bytes transferred
+	 */
+	public CompletableFuture<Integer> spiXferAsync(int handle, byte[] txData, byte[] rxData);
+
+	/**
+	 * Write data to the serial device.
+	 * @param handle The handle of the serial device
+	 * @param data Data to write
+	 * @return future completed with pigpiod result code
+	 */
+	public CompletableFuture<Integer> serialWriteAsync(int handle, byte[] data);
+
+	/**
+	 * Transmit the waveform once.
+	 * @param waveId Wave id returned by waveCreate
+	 * @return future completed with number of DMA control blocks in the waveform
+	 */
+	public CompletableFuture<Integer> waveSendOnceAsync(int waveId);
+
+	/**
+	 * Check whether a waveform is being transmitted.
+	 * @return future completed with true if waveform is being transmitted
+	 */
+	public CompletableFuture<Boolean> waveTxBusyAsync();
+
+} // End of interface
+// End of file
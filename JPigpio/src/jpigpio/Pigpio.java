@@ -2,7 +2,11 @@
 
 import jpigpio.impl.CommonPigpio;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Pigpiod wrapper class using native C++ methods. This class can be used only when executing your application directly at Raspberry Pi device.
@@ -20,6 +24,13 @@ public class Pigpio extends CommonPigpio {
 		System.loadLibrary("JPigpioC");
 	}
 
+	// alert functions and listeners of GPIOs 0-31, copied on write so the alert thread reads them without locking
+	private volatile Alert[] alerts = new Alert[32];
+	private volatile GPIOListener[][] listeners = new GPIOListener[32][0];
+	// bit-map of GPIOs the dispatcher is registered for (guarded by this)
+	private int alertMask = 0;
+	private final Alert dispatcher = this::dispatch;
+
 	@Override
 	public native void gpioInitialize() throws PigpioException;
 
@@ -52,127 +63,79 @@ public void reconnect() throws PigpioException{
 
 	// ################ NOTIFICATIONS
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int notifyOpen() throws PigpioException{
-		throw new NotImplementedException();
-	}
+	public native int notifyOpen() throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void notifyBegin(int handle, int bits) throws PigpioException{
-		throw new NotImplementedException();
-	}
+	public native void notifyBegin(int handle, int bits) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void notifyPause(int handle) throws PigpioException{
-		throw new NotImplementedException();
-	}
+	public native void notifyPause(int handle) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void notifyClose(int handle) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void notifyClose(int handle) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void setWatchdog(int userGpio, int timeout) throws PigpioException{
-		throw new NotImplementedException();
-	}
+	public native void setWatchdog(int userGpio, int timeout) throws PigpioException;
 
 	// ##################### WAVEFORMS
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void waveClear() throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void waveClear() throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int waveAddGeneric(ArrayList<Pulse> pulses) throws PigpioException{
-		throw new NotImplementedException();
+	public int waveAddGeneric(ArrayList<Pulse> pulses) throws PigpioException {
+		if (pulses == null || pulses.size() == 0)
+			return 0;
+
+		int[] data = new int[pulses.size() * 3];
+		int i = 0;
+		for (Pulse pulse : pulses) {
+			data[i++] = pulse.gpioOn;
+			data[i++] = pulse.gpioOff;
+			data[i++] = pulse.delay;
+		}
+		return waveAddPulses(data, 0, pulses.size());
 	}
 
 	/**
-	 * Not implemented
+	 * Pulses are read by pigpio straight from the array.
 	 */
 	@Override
-	public int waveAddSerial(int userGpio, int baud, byte[] data, int offset, int bbBits, int bbStop) throws PigpioException{
-		throw new NotImplementedException();
-	}
+	public native int waveAddPulses(int[] pulses, int offset, int count) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void waveAddNew() throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int waveAddSerial(int userGpio, int baud, byte[] data, int offset, int bbBits, int bbStop) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public boolean waveTxBusy() throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void waveAddNew() throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int waveTxStop() throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native boolean waveTxBusy() throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int waveCreate() throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int waveTxStop() throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void waveDelete(int waveId) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int waveCreate() throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int waveSendOnce(int waveId) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void waveDelete(int waveId) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int waveSendRepeat(int waveId) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int waveSendOnce(int waveId) throws PigpioException;
+
+	@Override
+	public native int waveSendRepeat(int waveId) throws PigpioException;
+
+	@Override
+	public native int waveSendUsingMode(int waveId, int mode) throws PigpioException;
+
+	@Override
+	public native void waveChain(byte[] chain) throws PigpioException;
+
+	@Override
+	public native int waveTxAt() throws PigpioException;
 
 
 	// ################ I2C
@@ -189,6 +152,37 @@ public int waveSendRepeat(int waveId) throws PigpioException {
 	@Override
 	public native void i2cWriteDevice(int handle, byte[] data) throws PigpioException;
 
+	/**
+	 * Direct buffers are filled by pigpio in place, other buffers through a temporary array.
+	 */
+	@Override
+	public int i2cReadDevice(int handle, ByteBuffer data) throws PigpioException {
+		if (!data.isDirect())
+			return super.i2cReadDevice(handle, data);
+		if (data.isReadOnly())
+			throw new ReadOnlyBufferException();
+		int rc = i2cReadDirect(handle, data, data.position(), data.remaining());
+		data.position(data.position() + rc);
+		return rc;
+	}
+
+	/**
+	 * Direct buffers are passed to pigpio in place, other buffers through a temporary array.
+	 */
+	@Override
+	public void i2cWriteDevice(int handle, ByteBuffer data) throws PigpioException {
+		if (!data.isDirect()) {
+			super.i2cWriteDevice(handle, data);
+			return;
+		}
+		i2cWriteDirect(handle, data, data.position(), data.remaining());
+		data.position(data.limit());
+	}
+
+	private static native int i2cReadDirect(int handle, ByteBuffer data, int offset, int count) throws PigpioException;
+
+	private static native void i2cWriteDirect(int handle, ByteBuffer data, int offset, int count) throws PigpioException;
+
 	@Override
 	public native void gpioDelay(long delay) throws PigpioException;
 
@@ -209,131 +203,84 @@ public void setServoPulseWidth(int gpio, int pulseWidth) throws PigpioException
 		gpioServo(gpio, pulseWidth);
 	}
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int getServoPulseWidth(int gpio) throws PigpioException{
-		throw new NotImplementedException();
-	}
+	public native int getServoPulseWidth(int gpio) throws PigpioException;
 
 	// ############### PWM
 
 	@Override
-	public void setPWMDutycycle(int gpio, int dutycycle) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void setPWMDutycycle(int gpio, int dutycycle) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int getPWMDutycycle(int gpio) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int getPWMDutycycle(int gpio) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void setPWMRange(int gpio, int range) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void setPWMRange(int gpio, int range) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int getPWMRange(int gpio) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int getPWMRange(int gpio) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int getPWMRealRange(int gpio) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int getPWMRealRange(int gpio) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int setPWMFrequency(int gpio, int frequency) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int setPWMFrequency(int gpio, int frequency) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public int getPWMFrequency(int gpio) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int getPWMFrequency(int gpio) throws PigpioException;
 
 	// ################ SERIAL
-	/**
-	 * Not implemented
-	 */
+
 	@Override
-	public int serialOpen(String tty, int baudRate, int flags) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int serialOpen(String tty, int baudRate, int flags) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void serialClose(int handle) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void serialClose(int handle) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public byte serialReadByte(int handle) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native byte serialReadByte(int handle) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
-	public void serialWriteByte(int handle, byte data) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void serialWriteByte(int handle, byte data) throws PigpioException;
 
-	/**
-	 * Not implemented
-	 */
 	@Override
 	public byte[] serialRead(int handle, int count) throws PigpioException {
-		throw new NotImplementedException();
+		byte[] data = new byte[count];
+		int rc = serialReadInto(handle, data);
+		if (rc == 0)
+			data = new byte[1];
+		else if (rc < count)
+			data = Arrays.copyOf(data, rc);
+		return data;
 	}
 
 	/**
-	 * Not implemented
+	 * Read up to data.length bytes from the serial device into data.
+	 * @return number of bytes read
 	 */
+	private native int serialReadInto(int handle, byte[] data) throws PigpioException;
+
 	@Override
-	public void serialWrite(int handle, byte[] data) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native void serialWrite(int handle, byte[] data) throws PigpioException;
 
-	/**
-	 * Not implemented
-     */
 	@Override
-	public int serialDataAvailable(int handle) throws PigpioException {
-		throw new NotImplementedException();
-	}
+	public native int serialDataAvailable(int handle) throws PigpioException;
 
 	// ###############
 
 
+	/**
+	 * Replaces alert function previously set for the pin, null cancels it.
+	 * Alert functions and listeners added by addCallback() are called from the pigpio alert thread.
+	 */
 	@Override
-	public native void gpioSetAlertFunc(int pin, Alert alert) throws PigpioException;
+	public synchronized void gpioSetAlertFunc(int pin, Alert alert) throws PigpioException {
+		checkGpio(pin);
+		Alert[] table = alerts.clone();
+		table[pin] = alert;
+		alerts = table;
+		updateAlertFunc(pin);
+	}
 
 	@Override
 	public native void gpioTrigger(int gpio, long pulseLen, boolean level) throws PigpioException;
@@ -353,6 +300,40 @@ public int serialDataAvailable(int handle) throws PigpioException {
 	@Override
 	public native int spiXfer(int handle, byte[] txData, byte[] rxData) throws PigpioException;
 
+	/**
+	 * Direct buffers are passed to pigpio in place, other buffers through a temporary array.
+	 */
+	@Override
+	public int spiWrite(int handle, ByteBuffer data) throws PigpioException {
+		if (!data.isDirect())
+			return super.spiWrite(handle, data);
+		int rc = spiWriteDirect(handle, data, data.position(), data.remaining());
+		data.position(data.position() + rc);
+		return rc;
+	}
+
+	/**
+	 * Direct buffers are passed to pigpio in place, so the transfer does not copy any data.
+	 * Other buffers are copied through temporary arrays.
+	 */
+	@Override
+	public int spiXfer(int handle, ByteBuffer txData, ByteBuffer rxData) throws PigpioException {
+		if (!txData.isDirect() || !rxData.isDirect())
+			return super.spiXfer(handle, txData, rxData);
+		if (rxData.isReadOnly())
+			throw new ReadOnlyBufferException();
+		if (rxData.remaining() < txData.remaining())
+			throw new BufferOverflowException();
+		int rc = spiXferDirect(handle, txData, txData.position(), rxData, rxData.position(), txData.remaining());
+		txData.position(txData.position() + rc);
+		rxData.position(rxData.position() + rc);
+		return rc;
+	}
+
+	private static native int spiWriteDirect(int handle, ByteBuffer data, int offset, int count) throws PigpioException;
+
+	private static native int spiXferDirect(int handle, ByteBuffer txData, int txOffset, ByteBuffer rxData, int rxOffset, int count) throws PigpioException;
+
 	@Override
 	/**
 	 * Set whether or not debugging is enabled. True is enabled.
@@ -361,23 +342,160 @@ public int serialDataAvailable(int handle) throws PigpioException {
 
 
 	@Override
-	public native long gpioxPulseAndWait(int outGpio, int inGpio, long waitDuration, long pulseHoldDuration, boolean pulseLow) throws PigpioException;
+	public synchronized void addCallback(GPIOListener gpioListener) throws PigpioException {
+		checkGpio(gpioListener.gpio);
+		GPIOListener[][] table = listeners.clone();
+		GPIOListener[] row = table[gpioListener.gpio];
+		table[gpioListener.gpio] = Arrays.copyOf(row, row.length + 1);
+		table[gpioListener.gpio][row.length] = gpioListener;
+		listeners = table;
+		updateAlertFunc(gpioListener.gpio);
+	}
+
+	@Override
+	public synchronized void removeCallback(GPIOListener gpioListener) throws PigpioException {
+		checkGpio(gpioListener.gpio);
+		GPIOListener[] row = listeners[gpioListener.gpio];
+		for (int i = 0; i < row.length; i++) {
+			if (row[i] != gpioListener)
+				continue;
+			GPIOListener[][] table = listeners.clone();
+			table[gpioListener.gpio] = new GPIOListener[row.length - 1];
+			System.arraycopy(row, 0, table[gpioListener.gpio], 0, i);
+			System.arraycopy(row, i + 1, table[gpioListener.gpio], i, row.length - i - 1);
+			listeners = table;
+			updateAlertFunc(gpioListener.gpio);
+			return;
+		}
+	}
 
 	/**
-	 * Not implemented
-     */
+	 * Alerts are only reported for GPIOs 0-31, as by PigpioSocket.
+	 */
+	private static void checkGpio(int gpio) throws PigpioException {
+		if (gpio < 0 || gpio > 31)
+			throw new PigpioException(PigpioException.PI_BAD_USER_GPIO);
+	}
+
+	/**
+	 * Register the dispatcher natively while the pin has an alert function or listeners, cancel it otherwise.
+	 */
+	private void updateAlertFunc(int gpio) throws PigpioException {
+		boolean needed = alerts[gpio] != null || listeners[gpio].length > 0;
+		boolean registered = (alertMask & (1 << gpio)) != 0;
+		if (needed == registered)
+			return;
+		setAlertFunc(gpio, needed ? dispatcher : null);
+		alertMask ^= 1 << gpio;
+	}
+
+	/**
+	 * Called by the pigpio alert thread, delivers the alert to the alert function and listeners of the pin.
+	 */
+	private void dispatch(int gpio, int level, long tick) {
+		Alert alert = alerts[gpio];
+		if (alert != null)
+			alert.alert(gpio, level, tick);
+		for (GPIOListener cb : listeners[gpio])
+			// watchdog timeouts go to all listeners, level changes only to those interested in the edge
+			if (level == PI_TIMEOUT || (cb.edge ^ level) != 0)
+				cb.alert(gpio, level, tick);
+	}
+
+	private native void setAlertFunc(int gpio, Alert alert) throws PigpioException;
+
+	/**
+	 * Edges are recorded by the native layer into a native ring buffer, without calling into Java for every edge.
+	 * Java drains many edges with a single native call. At most 8 edge buffers can be open at a time.
+	 */
 	@Override
-	public void addCallback(GPIOListener gpioListener) throws PigpioException {
-		throw new NotImplementedException();
+	public EdgeBuffer openEdgeBuffer(int gpioMask, int capacity) throws PigpioException {
+		return new NativeEdgeBuffer(gpioMask, edgeBufferOpen(gpioMask, capacity));
 	}
 
 	/**
-	 * Not implemented
-     */
+	 * Native memory of the buffer is released once it is closed and all remaining records are drained.
+	 * Buffers not opened by openEdgeBuffer are ignored.
+	 */
 	@Override
-	public void removeCallback(GPIOListener cgpioListener) throws PigpioException{
-		throw new NotImplementedException();
+	public void closeEdgeBuffer(EdgeBuffer buffer) throws PigpioException {
+		if (buffer instanceof NativeEdgeBuffer)
+			((NativeEdgeBuffer) buffer).close();
 	}
 
+	/**
+	 * Edge buffer whose records are kept in native memory, filled by the pigpio alert thread.
+	 * Native calls are made holding the lock of the buffer, so its handle cannot be freed and reused
+	 * by another buffer in the middle of a call.
+	 */
+	static class NativeEdgeBuffer extends EdgeBuffer {
+		private final int handle;
+		private final int capacity;
+		// guarded by this
+		private boolean closed = false;
+		private boolean released = false;
+
+		NativeEdgeBuffer(int mask, int handle) {
+			super(mask);
+			this.handle = handle;
+			this.capacity = edgeBufferCapacity(handle);
+		}
+
+		@Override
+		public synchronized int drainTo(long[] ticks, int[] levels, int[] flags) {
+			if (released)
+				return 0;
+			int n = edgeBufferDrain(handle, ticks, levels, flags);
+			if (n == 0 && closed)
+				release();
+			return n;
+		}
+
+		@Override
+		public synchronized int size() {
+			return released ? 0 : edgeBufferSize(handle);
+		}
+
+		@Override
+		public int capacity() {
+			return capacity;
+		}
+
+		@Override
+		public synchronized long getOverflowCount() {
+			return released ? 0 : edgeBufferOverflowCount(handle);
+		}
+
+		synchronized void close() throws PigpioException {
+			if (closed)
+				return;
+			closed = true;
+			edgeBufferClose(handle);
+			if (edgeBufferSize(handle) == 0)
+				release();
+		}
+
+		private synchronized void release() {
+			if (!released) {
+				released = true;
+				edgeBufferFree(handle);
+			}
+		}
+	}
+
+	private static native int edgeBufferOpen(int gpioMask, int capacity) throws PigpioException;
+
+	private static native void edgeBufferClose(int handle) throws PigpioException;
+
+	private static native void edgeBufferFree(int handle);
+
+	private static native int edgeBufferDrain(int handle, long[] ticks, int[] levels, int[] flags);
+
+	private static native int edgeBufferSize(int handle);
+
+	private static native int edgeBufferCapacity(int handle);
+
+	private static native long edgeBufferOverflowCount(int handle);
+
 } // End of class
 // End of file
\ No newline at end of file
@@ -6,7 +6,10 @@
  */
 public class PigpioException extends Exception {
 
-	private int rc = -99999999;
+	// error code of exceptions not reporting a pigpio error, e.g. communication errors
+	private static final int NO_RC = -99999999;
+
+	private int rc = NO_RC;
 	/**
 	 * 
 	 */
@@ -49,6 +52,8 @@ public PigpioException(Throwable arg0) {
 
 	@Override
 	public String getMessage() {
+		if (rc == NO_RC && super.getMessage() != null)
+			return super.getMessage();
 		return String.format("(%d) "+errorText(rc), rc);
 	}
 	
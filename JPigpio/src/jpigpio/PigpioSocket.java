@@ -1,14 +1,17 @@
 package jpigpio;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
 
 import jpigpio.impl.CommonPigpio;
 
-import static jpigpio.Utils.LEint2Long;
-
 /**
  * An implementation of the Pigpio Java interface using sockets to connect to the target pigpio demon
  * socket interface (see http://abyz.co.uk/rpi/pigpio/sif.html)
@@ -20,13 +23,31 @@ public class PigpioSocket extends CommonPigpio {
 
 	String host;
 	int port;
+	boolean pipelined = false;
 
 	SocketLock slCmd; // socket for sending commands to PIGPIO
 
 	NotificationRouter router = null;
 
+	AsyncCommands async = null;
+
+	// listeners registered by gpioSetAlertFunc, by gpio
+	final GPIOListener[] alertListeners = new GPIOListener[32];
+
+	// encoded pulses of waveAddPulses, grown on demand (guarded by waveBufferLock)
+	private ByteBuffer waveBuffer;
+	private final Object waveBufferLock = new Object();
+
+	// when set, callbacks are called from this executor instead of the notification thread
+	Executor callbackExecutor = null;
+	int callbackQueueSize;
+	QueuedGPIOListener.OverflowPolicy callbackOverflowPolicy;
+
 	public final int PIGPIOD_MESSAGE_SIZE = 12;
 
+	// number of notification reports the router can receive in a single read
+	final int NOTIFY_BUFFER_REPORTS = 1024;
+
 	/*
 	 * COMMAND cmd p1 p2 p3 Extension
 	 */
@@ -130,7 +151,7 @@ public class PigpioSocket extends CommonPigpio {
 
 	private final int CMD_GDC = 83;			// 83 gpio 0 0 -
 
-	// CMD_GPW 84 gpio 0 0 -
+	private final int CMD_GPW = 84;			// 84 gpio 0 0 -
 	// CMD_HC 85 gpio frequency 0 -
 	// CMD_HP 86 gpio frequency 4 uint32_t dutycycle
 	// CMD_CF1 87 arg1 arg2 X uint8_t argx[X]
@@ -139,15 +160,15 @@ public class PigpioSocket extends CommonPigpio {
 	// CMD_BI2CO	90	sda	scl	4	uint32_t baud
 	// CMD_BI2CZ	91	sda	0	X	uint8_t data[X]
 	// CMD_I2CZ	92	handle	0	X	uint8_t data[X]
-	// CMD_WVCHA	93	0	0	X	uint8_t data[X]
+	private final int CMD_WVCHA = 93;		// 93 0 0 X uint8_t data[X]
 	// CMD_SLRI	94	gpio	invert	0	-
 	// CMD_CGI	95	0	0	0	-
 	// CMD_CSI	96	config	0	0	-
 	// CMD_FG	97	gpio	steady	0	-
 	// CMD_FN	98	gpio	steady	4	uint32_t active
 	// CMD_NOIB	99	0	0	0	-
-	// CMD_WVTXM	100	wave_id	mode	0	-
-	// CMD_WVTAT	101	-	-	0	-
+	private final int CMD_WVTXM = 100;		// 100 wave_id mode 0 -
+	private final int CMD_WVTAT = 101;		// 101 0 0 0 -
 
 
 
@@ -160,14 +181,24 @@ public class PigpioSocket extends CommonPigpio {
 	 */
 	class NotificationRouter implements Runnable{
 
-		SocketLock slNotify;  // socket for notifications
+		volatile SocketLock slNotify;  // socket for notifications, replaced once the new one is set up
 		SocketLock slPiCmd; // socket for commands
 
 		int handle;
-		boolean go = true;
+		volatile boolean go = true;
 		Thread thread;
 
-		ArrayList<GPIOListener> gpioListeners = new ArrayList<>();
+		// received reports waiting to be decoded
+		final ByteBuffer reports = ByteBuffer.allocateDirect(NOTIFY_BUFFER_REPORTS * PIGPIOD_MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		// levels of GPIOs 0-31 as of the last report
+		int lastLevel;
+
+		// listeners indexed by GPIO 0-31. Table and its rows are never modified once published,
+		// add/removeListener replace them (copy-on-write), so router thread can dispatch without locking.
+		volatile GPIOListener[][] listeners = new GPIOListener[32][0];
+		// edge buffers filled with reports of their GPIOs (copy-on-write as well)
+		volatile EdgeBuffer[] edgeBuffers = new EdgeBuffer[0];
 		int monitor = 0;
 
 		String host;
@@ -190,17 +221,29 @@ public NotificationRouter(SocketLock slCmd, String host, int port) throws Pigpio
 			reconnect();
 		}
 
-		public void reconnect() throws PigpioException{
+		public synchronized void reconnect() throws PigpioException{
 			try {
 
-				// open additional socket used for notifications from Pi
-				if (slNotify != null)
-					slNotify.reconnect();
-				else
-					slNotify = new SocketLock(host,port);
+				// open additional socket used for notifications from Pi and a notification handle on it.
+				// Router thread only gets to see the socket once pigpiod answered, so it can never read
+				// the reply as reports.
+				SocketLock previous = slNotify;
+				SocketLock sl = new SocketLock(host,port);
+				try {
+					handle = sl.sendCmd(CMD_NOIB, 0, 0);
+				} catch (IOException e) {
+					sl.terminate();
+					throw e;
+				}
+				slNotify = sl;
+
+				// closing the old connection wakes up router thread blocked on it, which then continues with the new one
+				if (previous != null)
+					previous.terminate();
 
-				// open notification handle at PIGPIO
-				handle = slNotify.sendCmd(CMD_NOIB, 0, 0);
+				// resubscribe GPIOs monitored before reconnect
+				if (monitor != 0)
+					slPiCmd.sendCmd(CMD_NB, handle, monitor);
 
 			} catch (IOException e) {
 				throw new PigpioException("NotificationRouter", e);
@@ -232,15 +275,51 @@ public void terminate() throws PigpioException {
          * @param gpioListener GPIOListener object to be added to the list
          * @throws PigpioException
          */
-        public void addListener(GPIOListener gpioListener) throws PigpioException{
-			try {
-				gpioListeners.add(gpioListener);
-				monitor = monitor | gpioListener.bit;
-				// send command to start sending notifications for bit-map specified GPIOs
-				slPiCmd.sendCmd(CMD_NB, handle, monitor);
-			} catch (IOException e) {
-				throw new PigpioException("NotificationRouter.addListener", e);
-			}
+        public synchronized void addListener(GPIOListener gpioListener) throws PigpioException{
+			int gpio = checkGpio(gpioListener.gpio);
+			GPIOListener[][] table = listeners.clone();
+
+			// decouple listener from the router thread if callback executor is set
+			if (callbackExecutor != null && !(gpioListener instanceof QueuedGPIOListener))
+				gpioListener = new QueuedGPIOListener(gpioListener, callbackExecutor, callbackQueueSize, callbackOverflowPolicy);
+
+			table[gpio] = Arrays.copyOf(table[gpio], table[gpio].length + 1);
+			table[gpio][table[gpio].length - 1] = gpioListener;
+			listeners = table;
+
+			updateMonitor("NotificationRouter.addListener");
+		}
+
+		/**
+		 * Notifications only report GPIOs 0-31, listeners of other GPIOs would never be called.
+		 * @return the gpio if it is valid
+		 */
+		int checkGpio(int gpio) throws PigpioException {
+			if (gpio < 0 || gpio > 31)
+				throw new PigpioException(PigpioException.PI_BAD_USER_GPIO);
+			return gpio;
+		}
+
+		/**
+		 * Find index of the listener in the table row, either registered directly or wrapped in a queue.
+		 */
+		int indexOf(GPIOListener[] row, GPIOListener gpioListener) {
+			for (int i = 0; i < row.length; i++)
+				if (row[i] == gpioListener
+						|| row[i] instanceof QueuedGPIOListener && ((QueuedGPIOListener) row[i]).getListener() == gpioListener)
+					return i;
+			return -1;
+		}
+
+		/**
+		 * Returns the queue wrapping the listener, null if the listener is called by the router thread directly.
+		 */
+		QueuedGPIOListener getQueue(GPIOListener gpioListener) {
+			if (gpioListener.gpio < 0 || gpioListener.gpio > 31)
+				return null;
+			GPIOListener[] row = listeners[gpioListener.gpio];
+			int i = indexOf(row, gpioListener);
+			return i >= 0 && row[i] instanceof QueuedGPIOListener ? (QueuedGPIOListener) row[i] : null;
 		}
 
         /**
@@ -248,99 +327,160 @@ public void addListener(GPIOListener gpioListener) throws PigpioException{
          * @param gpioListener GPIOListener object to be removed from the list.
          * @throws PigpioException
          */
-        public void removeListener(GPIOListener gpioListener) throws PigpioException{
-			int newMonitor = 0;
+        public synchronized void removeListener(GPIOListener gpioListener) throws PigpioException{
+			int gpio = checkGpio(gpioListener.gpio);
+			GPIOListener[][] table = listeners.clone();
+			GPIOListener[] row = table[gpio];
+			int i = indexOf(row, gpioListener);
+
+			if (i < 0)
+				return;
+
+			table[gpio] = new GPIOListener[row.length - 1];
+			System.arraycopy(row, 0, table[gpio], 0, i);
+			System.arraycopy(row, i + 1, table[gpio], i, row.length - i - 1);
+			listeners = table;
+
+			// stop monitoring GPIO in case no other listener monitors it
+			updateMonitor("NotificationRouter.removeListener");
+		}
 
-			if (gpioListeners.remove(gpioListener)){
+		/**
+		 * Start filling the edge buffer with reports of its GPIOs.
+		 * @param buffer edge buffer
+		 * @throws PigpioException
+		 */
+		public synchronized void addEdgeBuffer(EdgeBuffer buffer) throws PigpioException {
+			EdgeBuffer[] buffers = Arrays.copyOf(edgeBuffers, edgeBuffers.length + 1);
+			buffers[buffers.length - 1] = buffer;
+			edgeBuffers = buffers;
+			updateMonitor("NotificationRouter.addEdgeBuffer");
+		}
 
-				// calculate new bit-map in case no other notificationListener monitors PIGPIO of notificationListener being removed
-				for (GPIOListener c: gpioListeners)
-					newMonitor |= c.bit;
+		/**
+		 * Stop filling the edge buffer.
+		 * @param buffer edge buffer
+		 * @throws PigpioException
+		 */
+		public synchronized void removeEdgeBuffer(EdgeBuffer buffer) throws PigpioException {
+			EdgeBuffer[] buffers = new EdgeBuffer[edgeBuffers.length];
+			int n = 0;
+			for (EdgeBuffer b : edgeBuffers)
+				if (b != buffer)
+					buffers[n++] = b;
+			edgeBuffers = Arrays.copyOf(buffers, n);
+			updateMonitor("NotificationRouter.removeEdgeBuffer");
+		}
 
-				// if new bit-map differs, let PIGPIO know
-				if (newMonitor != monitor) {
-					monitor = newMonitor;
-					try {
-						slPiCmd.sendCmd(CMD_NB, handle, monitor);
-					} catch (IOException e) {
-						throw new PigpioException("NotificationRouter.removeListener", e);
-					}
-				}
+		/**
+		 * Let pigpiod know if bit-map of GPIOs monitored by listeners and edge buffers changed.
+		 */
+		void updateMonitor(String method) throws PigpioException {
+			int newMonitor = 0;
+			GPIOListener[][] table = listeners;
 
+			for (int gpio = 0; gpio < table.length; gpio++)
+				if (table[gpio].length > 0)
+					newMonitor |= 1 << gpio;
+			for (EdgeBuffer buffer : edgeBuffers)
+				newMonitor |= buffer.getMask();
 
+			if (newMonitor != monitor) {
+				monitor = newMonitor;
+				try {
+					// send command to start sending notifications for bit-map specified GPIOs
+					slPiCmd.sendCmd(CMD_NB, handle, monitor);
+				} catch (IOException e) {
+					throw new PigpioException(method, e);
+				}
 			}
 		}
 
 		@Override
 		public void run(){
-			int seq, flags,level;
+			SocketLock sl = null;
+			int flags, level;
 			long tick;
-			int changed;
-			int newLevel = 0;
-			int gpio = 0;
-			byte[] bytes = new byte[4];
 
 			try {
-				// read GPIO status for GPIOs in bank 1 (gpio 0-31)
-				int lastLevel = slPiCmd.sendCmd(CMD_BR1, 0, 0);
-
 				// loop until stop signal is received
 				while (this.go) {
-					// wait until there is whole message waiting in the input buffer
-					while (go && (slNotify.in.available() < PIGPIOD_MESSAGE_SIZE)) {
-                        Thread.sleep(20);
-                    }
-
-					if (!go) // if stopping, then exit loop (to avoid big if)
-						break;
-
-					seq = Integer.reverseBytes(slNotify.in.readUnsignedShort());
-					flags = Integer.reverseBytes(slNotify.in.readUnsignedShort());
-
-					slNotify.in.read(bytes,0,4);  // read tick as plain 4 bytes first
-					// tick is stored as 4 byte unsigned integer using Little Endian byte order
-					// so we need to transform it to long
-					tick = LEint2Long(bytes);
-
-					level = Integer.reverseBytes(slNotify.in.readInt());
-
-					// no special flag, so it's normal notification
-					if (flags == 0) {
-						changed = level ^ lastLevel;
-						lastLevel = level;
-						for (GPIOListener cb : gpioListeners) {
-							// check if changed GPIO is the one listener is waiting for
-							if ((cb.bit & changed) != 0) {
-								// let's assume new gpio level is "low"
-								newLevel = 0;
-								// if the current state/level is "high"?
-								if ((cb.bit & level) != 0)
-									newLevel = 1;
-								//System.out.println("#3 "+changed+" : "+Integer.toBinaryString(cb.bit)+" : "+(cb.bit & changed));
-								if ((cb.edge ^ newLevel) != 0)
-									cb.alert(cb.gpio, newLevel, tick);
-
-							}
-						}
-					} else
-						// is it a watchdog message?
-						if ((flags & PI_NTFY_FLAGS_WDOG) != 0) {
-							gpio = flags & PI_NTFY_FLAGS_WDOG;
-							for (GPIOListener cb : gpioListeners)
-								if (cb.gpio == gpio)
-									cb.alert(cb.gpio, PI_TIMEOUT, tick);
+					if (sl != slNotify) {
+						// first read or the connection was replaced by reconnect(), reports of the old one are gone
+						sl = slNotify;
+						reports.clear();
+						// read GPIO status for GPIOs in bank 1 (gpio 0-31)
+						lastLevel = slPiCmd.sendCmd(CMD_BR1, 0, 0);
 					}
+
+					// block until pigpiod sends something, then take as many reports as have arrived
+					try {
+						sl.readSome(reports, 0);
+					} catch (IOException e) {
+						// exit unless the connection was replaced by reconnect()
+						if (!go || sl == slNotify)
+							throw e;
+						continue;
+					}
+
+					// reports are stored using Little Endian byte order
+					reports.flip();
+					while (reports.remaining() >= PIGPIOD_MESSAGE_SIZE) {
+						reports.getShort();  // sequence number is not used
+						flags = reports.getShort() & 0xFFFF;
+						// tick is 4 byte unsigned integer, as Java has no unsigned int, let's use long
+						tick = reports.getInt() & 0xFFFFFFFFL;
+						level = reports.getInt();
+						dispatch(flags, tick, level);
+					}
+					// keep partially received report for the next read
+					reports.compact();
 				}
 
 			} catch (IOException e) {
 				// TODO: handle exception somehow :-)
 				//throw new PigpioException("NotificationRouter.run",e);
-            } catch (InterruptedException e) {
-                // TODO: handle exception somehow :-)
 			}
 
 		}
 
+		/**
+		 * Route single report to listeners of GPIOs it concerns.
+		 */
+		void dispatch(int flags, long tick, int level) {
+			GPIOListener[][] table = listeners;
+			int changed;
+			int newLevel;
+			int gpio;
+
+			// no special flag, so it's normal notification
+			if (flags == 0) {
+				changed = level ^ lastLevel;
+				lastLevel = level;
+				for (EdgeBuffer buffer : edgeBuffers)
+					if ((buffer.getMask() & changed) != 0)
+						buffer.offer(tick, level, flags);
+				// visit only GPIOs which changed, lowest first
+				while (changed != 0) {
+					gpio = Integer.numberOfTrailingZeros(changed);
+					changed &= changed - 1;
+					newLevel = (level >>> gpio) & 1;
+					for (GPIOListener cb : table[gpio])
+						if ((cb.edge ^ newLevel) != 0)
+							cb.alert(gpio, newLevel, tick);
+				}
+			} else
+				// is it a watchdog message?
+				if ((flags & PI_NTFY_FLAGS_WDOG) != 0) {
+					gpio = flags & PI_NTFY_FLAGS_GPIO;
+					for (EdgeBuffer buffer : edgeBuffers)
+						if ((buffer.getMask() & (1 << gpio)) != 0)
+							buffer.offer(tick, lastLevel, flags);
+					for (GPIOListener cb : table[gpio])
+						cb.alert(gpio, PI_TIMEOUT, tick);
+			}
+		}
+
 		public void start(){
 			if (thread == null)
 			{
@@ -352,6 +492,135 @@ public void start(){
 	}
 
 
+	/**
+	 * Asynchronous commands sharing the (pipelined) command socket with the blocking API.
+	 * Futures are completed by the reader thread of the command socket.
+	 */
+	class AsyncCommands implements JPigpioAsync {
+
+		/**
+		 * Submit command and return future completed with the result converted by function result.
+		 */
+		<T> CompletableFuture<T> command(String name, int cmd, int p1, int p2, int p3, byte[] ext, int extValue,
+										 byte[] rxData, IntFunction<T> result) {
+			CompletableFuture<T> future = new CompletableFuture<>();
+			try {
+				slCmd.submit(cmd, p1, p2, p3, ext, extValue, rxData).whenComplete((rc, ex) -> {
+					if (ex != null)
+						future.completeExceptionally(new PigpioException(name, ex));
+					else if (rc < 0)
+						future.completeExceptionally(new PigpioException(rc));
+					else
+						future.complete(result.apply(rc));
+				});
+			} catch (IOException e) {
+				future.completeExceptionally(new PigpioException(name, e));
+			}
+			return future;
+		}
+
+		CompletableFuture<Integer> command(String name, int cmd, int p1, int p2) {
+			return command(name, cmd, p1, p2, 0, null, 0, null, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> gpioSetModeAsync(int gpio, int mode) {
+			return command("gpioSetModeAsync", CMD_MODES, gpio, mode);
+		}
+
+		@Override
+		public CompletableFuture<Integer> gpioGetModeAsync(int gpio) {
+			return command("gpioGetModeAsync", CMD_MODEG, gpio, 0);
+		}
+
+		@Override
+		public CompletableFuture<Integer> gpioSetPullUpDownAsync(int gpio, int pud) {
+			return command("gpioSetPullUpDownAsync", CMD_PUD, gpio, pud);
+		}
+
+		@Override
+		public CompletableFuture<Boolean> gpioReadAsync(int gpio) {
+			return command("gpioReadAsync", CMD_READ, gpio, 0, 0, null, 0, null, rc -> rc != 0);
+		}
+
+		@Override
+		public CompletableFuture<Integer> gpioWriteAsync(int gpio, boolean value) {
+			return command("gpioWriteAsync", CMD_WRITE, gpio, value?1:0);
+		}
+
+		@Override
+		public CompletableFuture<Integer> gpioTriggerAsync(int gpio, long pulseLen, boolean level) {
+			return command("gpioTriggerAsync", CMD_TRIG, gpio, (int)pulseLen, 4, null, level?1:0, null, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> gpioServoAsync(int gpio, int pulseWidth) {
+			return command("gpioServoAsync", CMD_SERVO, gpio, pulseWidth);
+		}
+
+		@Override
+		public CompletableFuture<Integer> setPWMDutycycleAsync(int gpio, int dutycycle) {
+			return command("setPWMDutycycleAsync", CMD_PWM, gpio, dutycycle);
+		}
+
+		@Override
+		public CompletableFuture<Long> gpioTickAsync() {
+			// tick is unsigned, so it must not be checked for error code
+			CompletableFuture<Long> future = new CompletableFuture<>();
+			try {
+				slCmd.submit(CMD_TICK, 0, 0, 0, null, 0, null).whenComplete((rc, ex) -> {
+					if (ex != null)
+						future.completeExceptionally(new PigpioException("gpioTickAsync", ex));
+					else
+						future.complete(Integer.toUnsignedLong(rc));
+				});
+			} catch (IOException e) {
+				future.completeExceptionally(new PigpioException("gpioTickAsync", e));
+			}
+			return future;
+		}
+
+		@Override
+		public CompletableFuture<Integer> i2cReadDeviceAsync(int handle, byte[] data) {
+			return command("i2cReadDeviceAsync", CMD_I2CRD, handle, data.length, 0, null, 0, data, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> i2cWriteDeviceAsync(int handle, byte[] data) {
+			return command("i2cWriteDeviceAsync", CMD_I2CWD, handle, 0, data.length, data, 0, null, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> spiReadAsync(int handle, byte[] data) {
+			return command("spiReadAsync", CMD_SPIR, handle, data.length, 0, null, 0, data, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> spiWriteAsync(int handle, byte[] data) {
+			return command("spiWriteAsync", CMD_SPIW, handle, 0, data.length, data, 0, null, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> spiXferAsync(int handle, byte[] txData, byte[] rxData) {
+			return command("spiXferAsync", CMD_SPIX, handle, 0, txData.length, txData, 0, rxData, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> serialWriteAsync(int handle, byte[] data) {
+			return command("serialWriteAsync", CMD_SERW, handle, 0, data.length, data, 0, null, rc -> rc);
+		}
+
+		@Override
+		public CompletableFuture<Integer> waveSendOnceAsync(int waveId) {
+			return command("waveSendOnceAsync", CMD_WVTX, waveId, 0);
+		}
+
+		@Override
+		public CompletableFuture<Boolean> waveTxBusyAsync() {
+			return command("waveTxBusyAsync", CMD_WVBSY, 0, 0, 0, null, 0, null, rc -> rc != 0);
+		}
+	}
+
 
 	/**
 	 * The constructor of the class.
@@ -361,8 +630,22 @@ public void start(){
 	 * @throws  PigpioException if not able to initialize/connect to pigpiod
 	 */
 	public PigpioSocket(String host, int port) throws PigpioException {
+		this(host, port, false);
+	}
+
+	/**
+	 * The constructor of the class.
+	 *
+	 * @param host The host name or ip address of the pigpio daemon.
+	 * @param port The port of the pigpio daemon.
+	 * @param pipelined If true, commands issued from multiple threads are written to pigpiod without waiting
+	 *                  for replies of commands already in flight (see {@link SocketLock}).
+	 * @throws  PigpioException if not able to initialize/connect to pigpiod
+	 */
+	public PigpioSocket(String host, int port, boolean pipelined) throws PigpioException {
 		this.host = host;
 		this.port = port;
+		this.pipelined = pipelined;
 		gpioInitialize();
 	}
 
@@ -370,7 +653,7 @@ public PigpioSocket(String host, int port) throws PigpioException {
 	public void gpioInitialize() throws PigpioException {
 		try {
 			if (slCmd == null)
-				slCmd = new SocketLock(host, port);
+				slCmd = new SocketLock(host, port, pipelined);
 			if (router == null) {
 				router = new NotificationRouter(slCmd, host, port);
 				router.start();
@@ -410,6 +693,45 @@ public void gpioTerminate() throws PigpioException {
 		}
 	} // gpioTerminate
 
+	/**
+	 * Returns asynchronous interface sharing connection to pigpiod with this object.
+	 * Available only if this object was created in pipelined mode.
+	 *
+	 * @return asynchronous interface
+	 * @throws PigpioException if this object is not in pipelined mode
+	 */
+	public JPigpioAsync async() throws PigpioException {
+		if (!pipelined)
+			throw new PigpioException("async() requires PigpioSocket created in pipelined mode");
+		if (async == null)
+			async = new AsyncCommands();
+		return async;
+	}
+
+	/**
+	 * Command batch sending all its commands to pigpiod in a single write.
+	 */
+	class SocketCommandBatch extends CommandBatch {
+
+		SocketCommandBatch() {
+			super(PigpioSocket.this);
+		}
+
+		@Override
+		protected void send(int[] results) throws PigpioException {
+			try {
+				slCmd.sendBatch(this, results);
+			} catch (IOException e) {
+				throw new PigpioException("batch", e);
+			}
+		}
+	}
+
+	@Override
+	public CommandBatch batch() {
+		return new SocketCommandBatch();
+	}
+
 	@Override
 	public void gpioSetMode(int pin, int mode) throws PigpioException {
 		try {
@@ -581,6 +903,36 @@ public int waveAddGeneric(ArrayList<Pulse> pulses) throws PigpioException{
 
 	}
 
+	/**
+	 * Pulses are encoded straight from the array into a reusable buffer, written to the socket as they are.
+	 */
+	@Override
+	public int waveAddPulses(int[] pulses, int offset, int count) throws PigpioException {
+		if (count <= 0)
+			return 0;
+		if (offset < 0 || (long) offset + count > pulses.length / 3)
+			throw new PigpioException(PigpioException.PI_BAD_PARAM);
+		if (count > WaveBuilder.MAX_PULSES_PER_COMMAND)
+			throw new PigpioException(PigpioException.PI_TOO_MANY_PULSES);
+
+		synchronized (waveBufferLock) {
+			if (waveBuffer == null || waveBuffer.capacity() < count * 12)
+				waveBuffer = ByteBuffer.allocateDirect(Math.max(count, 1024) * 12).order(ByteOrder.LITTLE_ENDIAN);
+			waveBuffer.clear();
+			waveBuffer.asIntBuffer().put(pulses, offset * 3, count * 3);
+			waveBuffer.limit(count * 12);
+
+			try {
+				int rc = slCmd.sendCmd(CMD_WVAG, 0, 0, waveBuffer, null);
+				if (rc < 0)
+					throw new PigpioException(rc);
+				return rc;
+			} catch (IOException e) {
+				throw new PigpioException("waveAddPulses", e);
+			}
+		}
+	}
+
 	@Override
 	public int waveAddSerial(int userGpio, int baud, byte[] data, int offset, int bbBits, int bbStop) throws PigpioException {
 
@@ -601,7 +953,7 @@ public int waveAddSerial(int userGpio, int baud, byte[] data, int offset, int bb
 			return 0;
 
 		try {
-            bb = ByteBuffer.allocate(12);
+            bb = ByteBuffer.allocate(12 + data.length);
             bb.order(ByteOrder.LITTLE_ENDIAN);
             bb.putInt(bbBits).putInt(bbStop).putInt(offset);
 			bb.put(data);
@@ -670,7 +1022,7 @@ public int waveCreate() throws PigpioException {
 	@Override
 	public void waveDelete(int waveId) throws PigpioException{
 		try {
-			int rc = slCmd.sendCmd(CMD_WVDEL, 0, 0);
+			int rc = slCmd.sendCmd(CMD_WVDEL, waveId, 0);
 			if (rc < 0)
 				throw new PigpioException(rc);
 
@@ -704,6 +1056,43 @@ public int waveSendRepeat(int waveId) throws PigpioException {
 		}
 	}
 
+	@Override
+	public int waveSendUsingMode(int waveId, int mode) throws PigpioException {
+		try {
+			int rc = slCmd.sendCmd(CMD_WVTXM, waveId, mode);
+			if (rc < 0)
+				throw new PigpioException(rc);
+			return rc;
+		} catch (IOException e) {
+			throw new PigpioException("waveSendUsingMode", e);
+		}
+	}
+
+	@Override
+	public void waveChain(byte[] chain) throws PigpioException {
+		if (chain == null)
+			throw new PigpioException(PigpioException.PI_BAD_PARAM);
+		try {
+			int rc = slCmd.sendCmd(CMD_WVCHA, 0, 0, chain.length, chain);
+			if (rc < 0)
+				throw new PigpioException(rc);
+		} catch (IOException e) {
+			throw new PigpioException("waveChain", e);
+		}
+	}
+
+	@Override
+	public int waveTxAt() throws PigpioException {
+		try {
+			int rc = slCmd.sendCmd(CMD_WVTAT, 0, 0);
+			if (rc < 0)
+				throw new PigpioException(rc);
+			return rc;
+		} catch (IOException e) {
+			throw new PigpioException("waveTxAt", e);
+		}
+	}
+
 	//############### I2C
 
 	@Override
@@ -731,11 +1120,10 @@ public void i2cClose(int handle) throws PigpioException {
 	@Override
 	public int i2cReadDevice(int handle, byte[] data) throws PigpioException {
 		try {
-			int rc = slCmd.sendCmd(CMD_I2CRD, handle, data.length);
+			int rc = slCmd.sendCmd(CMD_I2CRD, handle, data.length, 0, null, data);
 			if (rc < 0) {
 				throw new PigpioException(rc);
 			}
-            slCmd.readBytes(data);
 
 			return rc;
 		} catch (IOException e) {
@@ -743,6 +1131,20 @@ public int i2cReadDevice(int handle, byte[] data) throws PigpioException {
 		}
 	} // End of i2cReadDevice
 
+	@Override
+	public int i2cReadDevice(int handle, ByteBuffer data) throws PigpioException {
+		try {
+			int rc = slCmd.sendCmd(CMD_I2CRD, handle, data.remaining(), null, data);
+			if (rc < 0) {
+				throw new PigpioException(rc);
+			}
+			data.position(data.position() + rc);
+			return rc;
+		} catch (IOException e) {
+			throw new PigpioException("i2cReadDevice", e);
+		}
+	} // End of i2cReadDevice
+
 
 	@Override
 	public void i2cWriteDevice(int handle, byte[] data) throws PigpioException {
@@ -756,6 +1158,19 @@ public void i2cWriteDevice(int handle, byte[] data) throws PigpioException {
 		}
 	} // End of i2cWriteDevice
 
+	@Override
+	public void i2cWriteDevice(int handle, ByteBuffer data) throws PigpioException {
+		try {
+			int rc = slCmd.sendCmd(CMD_I2CWD, handle, 0, data, null);
+			if (rc < 0) {
+				throw new PigpioException(rc);
+			}
+			data.position(data.limit());
+		} catch (IOException e) {
+			throw new PigpioException("i2cWriteDevice", e);
+		}
+	} // End of i2cWriteDevice
+
 
 	@Override
 	public void gpioDelay(long delay) throws PigpioException {
@@ -799,22 +1214,38 @@ public void setServoPulseWidth(int gpio, int pulseWidth) throws PigpioException
 		gpioServo(gpio, pulseWidth);
 	}
 
-	/**
-	 * Not implemented
-     */
 	@Override
 	public int getServoPulseWidth(int gpio) throws PigpioException {
-		throw new NotImplementedException();
+		try {
+			int rc = slCmd.sendCmd(CMD_GPW, gpio, 0);
+			if (rc < 0)
+				throw new PigpioException(rc);
+			return rc;
+		} catch (IOException e) {
+			throw new PigpioException("getServoPulseWidth", e);
+		}
 	}
 
+	/**
+	 * Replaces alert function previously set for the pin, null cancels it.
+	 */
 	@Override
 	public void gpioSetAlertFunc(int pin, Alert gpioAlert) throws PigpioException {
-		router.addListener(new GPIOListener(pin, PI_EITHER_EDGE) {
+		router.checkGpio(pin);
+		if (alertListeners[pin] != null) {
+			router.removeListener(alertListeners[pin]);
+			alertListeners[pin] = null;
+		}
+		if (gpioAlert == null)
+			return;
+
+		alertListeners[pin] = new GPIOListener(pin, PI_EITHER_EDGE) {
 			@Override
 			public void alert(int gpio, int level, long tick) {
 				gpioAlert.alert(gpio, level, tick);
 			}
-		});
+		};
+		router.addListener(alertListeners[pin]);
 	} // End of gpioSetAlertFunc
 
 
@@ -822,11 +1253,7 @@ public void alert(int gpio, int level, long tick) {
 	public void gpioTrigger(int gpio, long pulseLen, boolean level) throws PigpioException {
 		try {
 
-			ByteBuffer bb = ByteBuffer.allocate(4);
-			bb.order(ByteOrder.LITTLE_ENDIAN);
-			bb.putInt(level?1:0);
-
-			int rc = slCmd.sendCmd(CMD_TRIG, gpio, (int)pulseLen, 4, bb.array());
+			int rc = slCmd.sendCmdExt(CMD_TRIG, gpio, (int)pulseLen, level?1:0);
 			if (rc < 0) {
 				throw new PigpioException(rc);
 			}
@@ -842,11 +1269,7 @@ public void gpioTrigger(int gpio, long pulseLen, boolean level) throws PigpioExc
 	public int spiOpen(int spiChannel, int spiBaudRate, int flags) throws PigpioException {
 		int rc = 0;
 		try {
-			ByteBuffer bb = ByteBuffer.allocate(4);
-			bb.order(ByteOrder.LITTLE_ENDIAN);
-			bb.putInt(flags);
-
-			rc = slCmd.sendCmd(CMD_SPIO, spiChannel, spiBaudRate, 4, bb.array());
+			rc = slCmd.sendCmdExt(CMD_SPIO, spiChannel, spiBaudRate, flags);
 			if (rc < 0)
 				throw new PigpioException(rc);
 
@@ -873,11 +1296,9 @@ public int spiRead(int handle, byte[] data) throws PigpioException {
 		int rc = 0;
 
 		try {
-			rc = slCmd.sendCmd(CMD_SPIR, handle, data.length);
+			rc = slCmd.sendCmd(CMD_SPIR, handle, data.length, 0, null, data);
 			if (rc < 0)
 				throw new PigpioException(rc);
-			if (rc > 0)
-				slCmd.readBytes(data);
 
 			return rc;
 		} catch (IOException e) {
@@ -900,22 +1321,59 @@ public int spiWrite(int handle, byte[] data) throws PigpioException {
 		return rc;
 	}
 
+	@Override
+	public int spiWrite(int handle, ByteBuffer data) throws PigpioException {
+		int rc = 0;
+		try {
+			rc = slCmd.sendCmd(CMD_SPIW, handle, 0, data, null);
+			if (rc < 0) {
+				throw new PigpioException(rc);
+			}
+		} catch (IOException e) {
+			throw new PigpioException("spiWrite failed",e);
+		}
+
+		data.position(data.position() + rc);
+		return rc;
+	}
+
 
 	@Override
 	public int spiXfer(int handle, byte[] txData, byte[] rxData) throws PigpioException {
 		int rc = 0;
 
 		try {
-			rc = slCmd.sendCmd(CMD_SPIX, handle, 0, txData.length, txData);
-			if (rc > 0)
-				slCmd.readBytes(rxData);
-			else if (rc < 0)
+			rc = slCmd.sendCmd(CMD_SPIX, handle, 0, txData.length, txData, rxData);
+			if (rc < 0)
+				throw new PigpioException(rc);
+
+		} catch (IOException e) {
+			throw new PigpioException("spiXfer failed", e);
+		}
+
+		return rc;
+	}
+
+	/**
+	 * Content of txData is written to the socket and reply data read into rxData without intermediate copies.
+	 */
+	@Override
+	public int spiXfer(int handle, ByteBuffer txData, ByteBuffer rxData) throws PigpioException {
+		int rc = 0;
+
+		if (rxData.remaining() < txData.remaining())
+			throw new BufferOverflowException();
+		try {
+			rc = slCmd.sendCmd(CMD_SPIX, handle, 0, txData, rxData);
+			if (rc < 0)
 				throw new PigpioException(rc);
 
 		} catch (IOException e) {
 			throw new PigpioException("spiXfer failed", e);
 		}
 
+		txData.position(txData.position() + rc);
+		rxData.position(rxData.position() + rc);
 		return rc;
 	}
 
@@ -924,7 +1382,9 @@ else if (rc < 0)
 	@Override
 	public void setPWMDutycycle(int gpio, int dutycycle) throws PigpioException {
 		try {
-			slCmd.sendCmd(CMD_PWM, gpio, dutycycle);
+			int rc = slCmd.sendCmd(CMD_PWM, gpio, dutycycle);
+			if (rc < 0)
+				throw new PigpioException(rc);
 		} catch (IOException e) {
 			throw new PigpioException("setPWMDutycycle failed",e);
 		}
@@ -950,7 +1410,9 @@ public int getPWMDutycycle(int gpio) throws PigpioException {
 	@Override
 	public void setPWMRange(int gpio, int range) throws PigpioException {
 		try {
-			slCmd.sendCmd(CMD_PRS, gpio, range);
+			int rc = slCmd.sendCmd(CMD_PRS, gpio, range);
+			if (rc < 0)
+				throw new PigpioException(rc);
 		} catch (IOException e) {
 			throw new PigpioException("setPWMRange failed",e);
 		}
@@ -1041,7 +1503,9 @@ public int serialOpen(String tty, int baudRate, int flags) throws PigpioExceptio
 	@Override
 	public void serialClose(int handle) throws PigpioException {
 		try {
-			slCmd.sendCmd(CMD_SERC, handle, 0);
+			int rc = slCmd.sendCmd(CMD_SERC, handle, 0);
+			if (rc < 0)
+				throw new PigpioException(rc);
 		} catch (IOException e) {
 			throw new PigpioException("serialClose failed",e);
 		}
@@ -1066,7 +1530,9 @@ public byte serialReadByte(int handle) throws PigpioException {
 	@Override
 	public void serialWriteByte(int handle, byte data) throws PigpioException {
 		try {
-			slCmd.sendCmd(CMD_SERWB, handle, data);
+			int rc = slCmd.sendCmd(CMD_SERWB, handle, data);
+			if (rc < 0)
+				throw new PigpioException(rc);
 		} catch (IOException e) {
 			throw new PigpioException("serialWriteByte failed",e);
 		}
@@ -1074,17 +1540,17 @@ public void serialWriteByte(int handle, byte data) throws PigpioException {
 
 	@Override
 	public byte[] serialRead(int handle, int count) throws PigpioException {
-		byte[] data = new byte[1];
+		byte[] data = new byte[count];
 		int rc = 0;
 
 		try {
-			rc = slCmd.sendCmd(CMD_SERR, handle, count );
+			rc = slCmd.sendCmd(CMD_SERR, handle, count, 0, null, data);
 			if (rc < 0)
 				throw new PigpioException(rc);
-			if (rc > 0) {
-				data = new byte[rc];
-				slCmd.readBytes(data);
-			}
+			if (rc == 0)
+				data = new byte[1];
+			else if (rc < count)
+				data = Arrays.copyOf(data, rc);
 
 		} catch (IOException e) {
 			throw new PigpioException("serialRead failed", e);
@@ -1096,7 +1562,9 @@ public byte[] serialRead(int handle, int count) throws PigpioException {
 	@Override
 	public void serialWrite(int handle, byte[] data) throws PigpioException {
 		try {
-			slCmd.sendCmd(CMD_SERW, handle, 0, data.length, data);
+			int rc = slCmd.sendCmd(CMD_SERW, handle, 0, data.length, data);
+			if (rc < 0)
+				throw new PigpioException(rc);
 		} catch (IOException e) {
 			throw new PigpioException("serialWrite failed",e);
 		}
@@ -1130,15 +1598,6 @@ public void setDebug(boolean flag) throws PigpioException {
 		
 	}
 
-	/**
-	 * Not implemented
-	 */
-	@Override
-	public long gpioxPulseAndWait(int outGpio, int inGpio, long waitDuration, long pulseHoldDuration, boolean pulseLow) throws PigpioException {
-		// TODO Auto-generated method stub
-		throw new NotImplementedException();
-	}
-
 	@Override
 	public void addCallback(GPIOListener gpioListener) throws PigpioException{
 		this.router.addListener(gpioListener);
@@ -1149,6 +1608,45 @@ public void removeCallback(GPIOListener gpioListener) throws PigpioException{
 		this.router.removeListener(gpioListener);
 	}
 
+	/**
+	 * Edge buffer is filled directly by the notification thread from received reports.
+	 */
+	@Override
+	public EdgeBuffer openEdgeBuffer(int gpioMask, int capacity) throws PigpioException {
+		EdgeBuffer buffer = new EdgeBuffer(gpioMask, capacity);
+		router.addEdgeBuffer(buffer);
+		return buffer;
+	}
+
+	@Override
+	public void closeEdgeBuffer(EdgeBuffer buffer) throws PigpioException {
+		router.removeEdgeBuffer(buffer);
+	}
+
+	/**
+	 * Call callbacks added from now on from the executor instead of the notification thread. Every callback
+	 * gets its own bounded queue of alerts (see {@link QueuedGPIOListener}), so a slow callback does not delay
+	 * alerts of other callbacks.
+	 * @param executor executor running callbacks, null to call them from the notification thread again
+	 * @param queueSize maximum number of alerts waiting for each callback
+	 * @param policy what to do with alerts arriving when queue of a callback is full
+	 */
+	public void setCallbackExecutor(Executor executor, int queueSize, QueuedGPIOListener.OverflowPolicy policy) {
+		this.callbackQueueSize = queueSize;
+		this.callbackOverflowPolicy = policy;
+		this.callbackExecutor = executor;
+	}
+
+	/**
+	 * Returns how many times an alert for the callback arrived while its queue was full.
+	 * @param gpioListener callback added by addCallback
+	 * @return number of overflows, 0 if callback is not queued
+	 */
+	public long getCallbackOverflowCount(GPIOListener gpioListener) {
+		QueuedGPIOListener queue = router == null ? null : router.getQueue(gpioListener);
+		return queue == null ? 0 : queue.getOverflowCount();
+	}
+
 
 } // End of class
 // End of file
\ No newline at end of file
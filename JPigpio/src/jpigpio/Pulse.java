@@ -25,4 +25,16 @@ public Pulse(int gpioOn, int gpioOff, int delay){
         this.gpioOff = gpioOff;
         this.delay = delay;
     }
+
+    public int getGpioOn() {
+        return gpioOn;
+    }
+
+    public int getGpioOff() {
+        return gpioOff;
+    }
+
+    public int getDelay() {
+        return delay;
+    }
 }
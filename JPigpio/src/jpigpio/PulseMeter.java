@@ -0,0 +1,143 @@
+package jpigpio;
+
+/**
+ * Sends a trigger pulse and measures the length of the pulse coming back on another GPIO, e.g. the echo
+ * of an ultrasonic distance sensor. The trigger pulse is generated by pigpio (gpioTrigger) and the echo is timed
+ * from ticks of its edges as reported by alerts, so nothing spins while waiting and the result does not depend
+ * on how fast the edges reach Java. Works the same using JNI and using pigpiod over the network.
+ * <br><br>
+ * The echo GPIO is watched from construction until close(), so one meter can be used for many measurements.
+ * Only one measurement runs at a time; concurrent calls of measure() wait for each other.
+ */
+public class PulseMeter {
+
+	private static final long TICK_MASK = 0xFFFFFFFFL;
+
+	// states of a measurement
+	private static final int IDLE = 0;
+	private static final int WAIT_RISE = 1;
+	private static final int WAIT_FALL = 2;
+	private static final int DONE = 3;
+
+	private final JPigpio pigpio;
+	private final int triggerGpio;
+	private final GPIOListener listener;
+
+	// milliseconds an edge may take to reach Java after it happened, on top of the measurement timeout
+	private int deliveryTimeout = 100;
+
+	// held for the whole measurement, so measurements do not overlap
+	private final Object measureLock = new Object();
+
+	// state of the running measurement (guarded by this)
+	private int state = IDLE;
+	private long startTick;
+	private long riseTick;
+	private long fallTick;
+
+	/**
+	 * @param pigpio pigpio to use
+	 * @param triggerGpio GPIO to send the trigger pulse on, must be an output
+	 * @param echoGpio GPIO to measure the pulse on
+	 * @throws PigpioException on pigpiod error
+	 */
+	public PulseMeter(JPigpio pigpio, int triggerGpio, int echoGpio) throws PigpioException {
+		this.pigpio = pigpio;
+		this.triggerGpio = triggerGpio;
+		this.listener = new GPIOListener(echoGpio, JPigpio.PI_EITHER_EDGE) {
+			@Override
+			public void alert(int gpio, int level, long tick) {
+				edge(level, tick);
+			}
+		};
+		pigpio.addCallback(listener);
+	} // End of constructor
+
+	/**
+	 * Stop watching the echo GPIO.
+	 * @throws PigpioException on pigpiod error
+	 */
+	public void close() throws PigpioException {
+		pigpio.removeCallback(listener);
+	} // End of close
+
+	/**
+	 * Set how long to wait for edges which already happened but were not yet delivered (notifications over
+	 * the network arrive later than the edges happened). Default is 100 ms.
+	 * @param deliveryTimeout timeout in milliseconds
+	 */
+	public void setDeliveryTimeout(int deliveryTimeout) {
+		this.deliveryTimeout = deliveryTimeout;
+	}
+
+	/**
+	 * Send a trigger pulse and measure the length of the high pulse following it on the echo GPIO.
+	 * @param pulseLen length of the trigger pulse in microseconds (1-100)
+	 * @param pulseLow true to send a low trigger pulse, false to send a high one
+	 * @param timeout maximum time in microseconds from the trigger to the end of the echo pulse
+	 * @return length of the echo pulse in microseconds or -1 if it did not end within timeout
+	 * @throws PigpioException on pigpiod error
+	 */
+	public long measure(long pulseLen, boolean pulseLow, long timeout) throws PigpioException {
+		synchronized (measureLock) {
+			long tick = pigpio.gpioTick();
+			synchronized (this) {
+				startTick = tick;
+				state = WAIT_RISE;
+			}
+			try {
+				pigpio.gpioTrigger(triggerGpio, pulseLen, !pulseLow);
+				return awaitEcho(timeout);
+			} finally {
+				synchronized (this) {
+					state = IDLE;
+				}
+			}
+		}
+	} // End of measure
+
+	/**
+	 * Wait for the end of the echo pulse and return its length, -1 on timeout.
+	 */
+	private synchronized long awaitEcho(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout / 1000 + deliveryTimeout;
+		long remaining;
+
+		try {
+			while (state != DONE && (remaining = deadline - System.currentTimeMillis()) > 0)
+				wait(remaining);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		}
+
+		if (state != DONE || ((fallTick - startTick) & TICK_MASK) > timeout)
+			return -1;
+		return (fallTick - riseTick) & TICK_MASK;
+	} // End of awaitEcho
+
+	/**
+	 * Called from the thread delivering alerts.
+	 */
+	private synchronized void edge(int level, long tick) {
+		switch (state) {
+		case WAIT_RISE:
+			// ignore edges of an earlier echo delivered late
+			if (level == 1 && ((tick - startTick) & TICK_MASK) < 0x80000000L) {
+				riseTick = tick;
+				state = WAIT_FALL;
+			}
+			break;
+		case WAIT_FALL:
+			if (level == 0) {
+				fallTick = tick;
+				state = DONE;
+				notifyAll();
+			}
+			break;
+		default:
+			break;
+		}
+	} // End of edge
+} // End of class
+// End of file
@@ -0,0 +1,165 @@
+package jpigpio;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * GPIOListener which does not run the wrapped listener on the thread delivering alerts. Alerts are stored
+ * in a bounded queue of this listener and the wrapped listener is called from a task submitted to the executor,
+ * one alert after another in the order they were received. A slow listener then only delays its own alerts.
+ * <br><br>
+ * Any Executor can be used, e.g. a thread pool or (on Java 21+) Executors.newVirtualThreadPerTaskExecutor().
+ * At most one task per listener runs at a time.
+ */
+public class QueuedGPIOListener extends GPIOListener {
+
+	/**
+	 * What to do with an alert arriving when the queue is full.
+	 */
+	public enum OverflowPolicy {
+		/** Discard the oldest queued alert to make room for the new one. */
+		DROP_OLDEST,
+		/** Discard the new alert. */
+		DROP_NEWEST,
+		/**
+		 * Wait until the listener takes an alert from the queue. Delays delivery of alerts of all other listeners.
+		 * If the executor rejected the task delivering alerts, nothing would take one, so the new alert is discarded.
+		 */
+		BLOCK
+	}
+
+	private final GPIOListener listener;
+	private final Executor executor;
+	private final OverflowPolicy policy;
+
+	// circular queue of alerts (guarded by this)
+	private final int[] levels;
+	private final long[] ticks;
+	private int head = 0;
+	private int size = 0;
+	private boolean scheduled = false;
+
+	private long overflowCount = 0;
+
+	private final Runnable drain = this::drain;
+
+	/**
+	 * @param listener listener to call
+	 * @param executor executor running the listener
+	 * @param capacity maximum number of alerts waiting for the listener
+	 * @param policy what to do when the queue is full
+	 */
+	public QueuedGPIOListener(GPIOListener listener, Executor executor, int capacity, OverflowPolicy policy) {
+		super(listener.gpio, listener.edge);
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive");
+		this.listener = listener;
+		this.executor = executor;
+		this.policy = policy;
+		this.levels = new int[capacity];
+		this.ticks = new long[capacity];
+	}
+
+	/**
+	 * Queue the alert for the wrapped listener.
+	 */
+	@Override
+	public void alert(int gpio, int level, long tick) {
+		synchronized (this) {
+			if (size == levels.length) {
+				switch (policy) {
+				case DROP_OLDEST:
+					head = (head + 1) % levels.length;
+					size--;
+					overflowCount++;
+					break;
+				case DROP_NEWEST:
+					overflowCount++;
+					return;
+				case BLOCK:
+					overflowCount++;
+					try {
+						// only a running task makes room
+						while (size == levels.length && scheduled)
+							wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					break;
+				}
+			}
+
+			if (size < levels.length) {
+				int tail = (head + size) % levels.length;
+				levels[tail] = level;
+				ticks[tail] = tick;
+				size++;
+			}
+
+			if (scheduled)
+				return;
+			scheduled = true;
+		}
+
+		try {
+			executor.execute(drain);
+		} catch (RejectedExecutionException e) {
+			// alerts stay queued and are delivered by the next task which gets accepted
+			synchronized (this) {
+				scheduled = false;
+			}
+		}
+	}
+
+	/**
+	 * Deliver queued alerts to the wrapped listener until the queue is empty.
+	 */
+	private void drain() {
+		int level;
+		long tick;
+
+		while (true) {
+			synchronized (this) {
+				if (size == 0) {
+					scheduled = false;
+					return;
+				}
+				level = levels[head];
+				tick = ticks[head];
+				head = (head + 1) % levels.length;
+				size--;
+				// wake up producer waiting for space (BLOCK policy)
+				notifyAll();
+			}
+			listener.alert(gpio, level, tick);
+		}
+	}
+
+	/**
+	 * Returns the wrapped listener.
+	 * @return listener receiving alerts
+	 */
+	public GPIOListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Returns how many times an alert arrived while the queue was full.
+	 * With BLOCK policy this is the number of times delivery had to wait, alerts are only lost while the executor
+	 * rejects tasks.
+	 * @return number of overflows
+	 */
+	public synchronized long getOverflowCount() {
+		return overflowCount;
+	}
+
+	/**
+	 * Returns number of alerts waiting for the listener.
+	 * @return number of queued alerts
+	 */
+	public synchronized int getQueueSize() {
+		return size;
+	}
+} // End of class
+// End of file
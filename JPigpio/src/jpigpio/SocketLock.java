@@ -1,55 +1,353 @@
 package jpigpio;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 /**
  * Created by Jozef on 19.04.2016.
+ * <br><br>
+ * Socket connection to pigpiod. By default every command is sent and its reply awaited while holding the lock,
+ * so only one command can be on the wire at a time.<br>
+ * In pipelined mode commands from many threads can be in flight at once. Pigpiod answers commands in the order
+ * they were received, so a background reader thread matches replies to callers in FIFO order.
+ * <br><br>
+ * Commands are encoded into a preallocated little-endian direct buffer and written through a non-blocking
+ * SocketChannel, so sending a plain command and receiving its reply does not allocate.
  */
 public class SocketLock {
 
     String host;            // pigpiod host
     int port;               // pigpiod port
 
-    Socket socket;
-    DataInputStream in;
-    DataOutputStream out;
+    // replaced under writeLock, so a command is always written to the connection its reply will be read from
+    volatile Connection connection;
 
     int replyTimeout = 10000; //milliseconds to wait for reply from pigpiod
 
+    boolean pipelined = false;
+
+    final Object writeLock = new Object();
+    Thread reader;
+
+    // size of command buffer; extensions not fitting into it are written straight from the caller's array
+    static final int CMD_BUFFER_SIZE = 4096;
+
+    // encoded command being written (guarded by writeLock)
+    final ByteBuffer cmdBuffer = ByteBuffer.allocateDirect(CMD_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    // command header followed by caller's buffer, written by a single gathering write (guarded by writeLock)
+    final ByteBuffer[] gather = new ByteBuffer[2];
+
+    /**
+     * Command waiting for its reply from pigpiod in pipelined mode.
+     */
+    static class PendingReply extends CompletableFuture<Integer> {
+        final int cmd;
+        final byte[] rxData;  // buffer for extended reply data, may be null
+        final ByteBuffer rxBuffer;  // used instead of rxData by ByteBuffer commands, may be null
+
+        PendingReply(int cmd, byte[] rxData){
+            this.cmd = cmd;
+            this.rxData = rxData;
+            this.rxBuffer = null;
+        }
+
+        PendingReply(int cmd, ByteBuffer rxBuffer){
+            this.cmd = cmd;
+            this.rxData = null;
+            this.rxBuffer = rxBuffer;
+        }
+    }
+
+    /**
+     * Channel to pigpiod together with selectors and buffers used to read from it.
+     * Replaced as a whole on reconnect, so a reader of the old connection can never touch the new one.
+     */
+    static class Connection {
+        final SocketChannel channel;
+        final Selector readSelector;
+        final Selector writeSelector;
+
+        final ByteBuffer replyBuffer = ByteBuffer.allocateDirect(16).order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer extBuffer = ByteBuffer.allocateDirect(CMD_BUFFER_SIZE);
+
+        // commands sent but not answered yet (pipelined mode only), in the order they were written
+        final ConcurrentLinkedQueue<PendingReply> pending = new ConcurrentLinkedQueue<>();
+
+        Connection(String host, int port) throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            // commands are small and latency bound, don't let Nagle hold them back
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+
+            readSelector = Selector.open();
+            writeSelector = Selector.open();
+            channel.register(readSelector, SelectionKey.OP_READ);
+            channel.register(writeSelector, SelectionKey.OP_WRITE);
+        }
+
+        void close() throws IOException {
+            // closing selectors wakes up any thread blocked on them
+            readSelector.close();
+            writeSelector.close();
+            channel.close();
+        }
+
+        void failPending(IOException e){
+            PendingReply reply;
+            while ((reply = pending.poll()) != null)
+                reply.completeExceptionally(e);
+        }
+
+        /**
+         * Write whole buffer, waiting for the socket to become writable if needed.
+         */
+        void writeFully(ByteBuffer src) throws IOException {
+            try {
+                while (src.hasRemaining())
+                    if (channel.write(src) == 0)
+                        writeSelector.select();
+            } catch (ClosedSelectorException e) {
+                throw new IOException("Connection to pigpiod was closed.", e);
+            }
+        }
+
+        /**
+         * Write all buffers, waiting for the socket to become writable if needed.
+         */
+        void writeFully(ByteBuffer[] srcs) throws IOException {
+            try {
+                for (ByteBuffer src : srcs)
+                    while (src.hasRemaining())
+                        if (channel.write(srcs) == 0)
+                            writeSelector.select();
+            } catch (ClosedSelectorException e) {
+                throw new IOException("Connection to pigpiod was closed.", e);
+            }
+        }
+
+        /**
+         * Read until the buffer is full.
+         * @param dst buffer to fill
+         * @param timeout milliseconds to wait for data, 0 to wait indefinitely
+         */
+        void readFully(ByteBuffer dst, int timeout) throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            long remaining;
+            int n;
+
+            try {
+                while (dst.hasRemaining()) {
+                    n = channel.read(dst);
+                    if (n < 0)
+                        throw new EOFException("Connection closed by pigpiod.");
+                    if (n > 0)
+                        continue;
+
+                    // Selected key set is deliberately never cleared. Key already present there only gets
+                    // its ready set updated, so selecting does not allocate. Readiness is always rechecked by read().
+                    if (timeout == 0)
+                        readSelector.select();
+                    else {
+                        remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (remaining <= 0)
+                            throw new SocketTimeoutException("Timeout: No response from RPi withing "+ timeout +" ms.");
+                        readSelector.select(remaining);
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                throw new IOException("Connection to pigpiod was closed.", e);
+            }
+        }
+
+        /**
+         * Read whatever is available right now, without waiting.
+         */
+        int readAvailable(ByteBuffer dst) throws IOException {
+            int n = channel.read(dst);
+            if (n < 0)
+                throw new EOFException("Connection closed by pigpiod.");
+            return n;
+        }
+
+        /**
+         * Read whatever is available, waiting until at least one byte arrives.
+         * @param dst buffer to store read bytes to
+         * @param timeout milliseconds to wait for data, 0 to wait indefinitely
+         * @return number of bytes read, zero if timeout expired
+         */
+        int readSome(ByteBuffer dst, int timeout) throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            long remaining;
+            int n;
+
+            try {
+                while ((n = readAvailable(dst)) == 0 && dst.hasRemaining()) {
+                    if (timeout == 0)
+                        readSelector.select();
+                    else {
+                        remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (remaining <= 0)
+                            return 0;
+                        readSelector.select(remaining);
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                throw new IOException("Connection to pigpiod was closed.", e);
+            }
+            return n;
+        }
+
+        /**
+         * Read 16 byte reply and return its result code.
+         */
+        int readReply(int timeout) throws IOException {
+            replyBuffer.clear();
+            readFully(replyBuffer, timeout);
+            return replyBuffer.getInt(12);  // cmd, p1, p2 are ignored, last int contains error or response
+        }
+
+        /**
+         * Read extended reply data of given length, storing as much as fits to rxData and discarding the rest.
+         */
+        void readExtended(int length, byte[] rxData, int timeout) throws IOException {
+            int stored = rxData == null ? 0 : Math.min(length, rxData.length);
+            int offset = 0;
+            int chunk;
+
+            while (offset < length) {
+                chunk = Math.min(length - offset, extBuffer.capacity());
+                extBuffer.clear();
+                extBuffer.limit(chunk);
+                readFully(extBuffer, timeout);
+                extBuffer.flip();
+                if (offset < stored)
+                    extBuffer.get(rxData, offset, Math.min(chunk, stored - offset));
+                offset += chunk;
+            }
+        }
+
+        /**
+         * Read extended reply data of given length straight into remaining space of rxData,
+         * discarding bytes which do not fit. Position of rxData is left unchanged.
+         */
+        void readExtended(int length, ByteBuffer rxData, int timeout) throws IOException {
+            int stored = rxData == null ? 0 : Math.min(length, rxData.remaining());
+
+            if (stored > 0) {
+                int position = rxData.position();
+                int limit = rxData.limit();
+                rxData.limit(position + stored);
+                try {
+                    readFully(rxData, timeout);
+                } finally {
+                    rxData.limit(limit);
+                    rxData.position(position);
+                }
+            }
+            if (length > stored)
+                readExtended(length - stored, (byte[]) null, timeout);
+        }
+    }
+
     public SocketLock(String host, int port) throws IOException {
+        this(host, port, false);
+    }
+
+    /**
+     * @param host pigpiod host
+     * @param port pigpiod port
+     * @param pipelined true to allow multiple commands in flight on this socket (see class description)
+     * @throws IOException in case of network connection error
+     */
+    public SocketLock(String host, int port, boolean pipelined) throws IOException {
         this.host = host;
         this.port = port;
+        this.pipelined = pipelined;
         reconnect();
     }
 
     public void reconnect() throws IOException{
-        socket = new Socket(host, port);
-        out = new DataOutputStream(socket.getOutputStream());
-        in = new DataInputStream(socket.getInputStream());
+        // no command can be submitted in between, or its reply would be handed to the next command
+        synchronized (writeLock) {
+            // reader thread of previous connection exits once its connection is closed
+            if (connection != null) {
+                connection.close();
+                if (pipelined)
+                    connection.failPending(new IOException("Connection to pigpiod was reset."));
+            }
+
+            connection = new Connection(host, port);
+
+            if (pipelined) {
+                reader = new Thread(new ReplyReader(connection));
+                reader.setName("PigpioReplyReader");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        }
     }
 
     public void terminate() throws IOException{
+        synchronized (writeLock) {
+            if (connection == null)
+                return;
+            connection.close();
+            if (pipelined)
+                connection.failPending(new IOException("Connection to pigpiod was closed."));
+            connection = null;
+        }
+    }
 
-        in.close();
-        in = null;
-
-        out.flush();
-        out.close();
-        out = null;
+    /**
+     * Set how long to wait for reply from pigpiod.
+     * @param replyTimeout timeout in milliseconds
+     */
+    public void setReplyTimeout(int replyTimeout) {
+        this.replyTimeout = replyTimeout;
+    }
 
-        socket.close();
-        socket = null;
+    /**
+     * Returns true if this socket allows multiple commands in flight.
+     * @return true if pipelined
+     */
+    public boolean isPipelined(){
+        return pipelined;
+    }
 
+    public int sendCmd(int cmd, int p1, int p2) throws IOException {
+        return sendCmd(cmd, p1, p2, 0, null, null);
     }
 
-    public synchronized int sendCmd(int cmd, int p1, int p2) throws IOException {
-        byte[] b = {};
-        return sendCmd(cmd, p1, p2, 0, b);
+    /**
+     * Send command with a single 4 byte (uint32_t) extension, e.g. flags of spiOpen or level of gpioTrigger.
+     * @param cmd Command to send
+     * @param p1 Command parameter 1
+     * @param p2 Command parameter 2
+     * @param ext Value sent as 4 byte extension
+     * @return Command result code
+     * @throws IOException in case of network connection error
+     */
+    public int sendCmdExt(int cmd, int p1, int p2, int ext) throws IOException {
+        if (pipelined)
+            return await(submit(cmd, p1, p2, 4, null, ext, null));
+
+        synchronized (this) {
+            return exchange(cmd, p1, p2, 4, null, ext, null);
+        }
     }
 
     /**
@@ -62,41 +360,273 @@ public synchronized int sendCmd(int cmd, int p1, int p2) throws IOException {
      * @return Command result code
      * @throws IOException in case of network connection error
      */
-    public synchronized int sendCmd(int cmd, int p1, int p2, int p3, byte[] ext) throws IOException {
-        int resp, a, w;
+    public int sendCmd(int cmd, int p1, int p2, int p3, byte[] ext) throws IOException {
+        return sendCmd(cmd, p1, p2, p3, ext, null);
+    }
+
+    /**
+     * Send extended command to pigpiod and return result code. If the command returns extended data
+     * (e.g. spiXfer, i2cReadDevice), those bytes are stored to rxData as part of the same exchange.
+     * @param cmd Command to send
+     * @param p1 Command parameter 1
+     * @param p2 Command parameter 2
+     * @param p3 Command parameter 3 (usually length of extended data - see paramater ext)
+     * @param ext Array of bytes containing extended data (can be null)
+     * @param rxData Array to store extended reply data to (can be null). Bytes exceeding its length are discarded.
+     * @return Command result code
+     * @throws IOException in case of network connection error
+     */
+    public int sendCmd(int cmd, int p1, int p2, int p3, byte[] ext, byte[] rxData) throws IOException {
+        if (pipelined)
+            return await(submit(cmd, p1, p2, p3, ext, 0, rxData));
+
+        synchronized (this) {
+            return exchange(cmd, p1, p2, p3, ext, 0, rxData);
+        }
+    }
+
+    /**
+     * Send command whose extension is the remaining content of a ByteBuffer, storing extended reply data
+     * straight to another ByteBuffer. Both buffers go to the socket as they are, without copying them
+     * into intermediate arrays. Positions of both buffers are left unchanged.
+     * @param cmd Command to send
+     * @param p1 Command parameter 1
+     * @param p2 Command parameter 2
+     * @param ext Buffer holding extended data, p3 is its remaining length (can be null)
+     * @param rxData Buffer to store extended reply data to (can be null). Bytes exceeding its remaining space are discarded.
+     * @return Command result code
+     * @throws IOException in case of network connection error
+     */
+    public int sendCmd(int cmd, int p1, int p2, ByteBuffer ext, ByteBuffer rxData) throws IOException {
+        if (pipelined) {
+            PendingReply reply = new PendingReply(cmd, rxData);
 
-        ByteBuffer bb = ByteBuffer.allocate(16+ext.length);
+            synchronized (writeLock) {
+                if (connection == null)
+                    throw new IOException("Not connected to pigpiod.");
+                connection.pending.add(reply);
+                try {
+                    writeCmd(cmd, p1, p2, ext);
+                } catch (IOException e) {
+                    connection.pending.remove(reply);
+                    throw e;
+                }
+            }
+            return await(reply);
+        }
 
-        bb.putInt(Integer.reverseBytes(cmd));
-        bb.putInt(Integer.reverseBytes(p1));
-        bb.putInt(Integer.reverseBytes(p2));
-        bb.putInt(Integer.reverseBytes(p3));
+        synchronized (this) {
+            int resp;
 
-        if (ext.length > 0)
-            bb.put(ext);
+            if (connection == null)
+                throw new IOException("Not connected to pigpiod.");
 
-        out.write(bb.array());
-        out.flush();
+            synchronized (writeLock) {
+                writeCmd(cmd, p1, p2, ext);
+            }
 
-        w = replyTimeout;
-        a = in.available();
+            resp = connection.readReply(replyTimeout);
+            if (resp > 0 && hasExtendedReply(cmd))
+                connection.readExtended(resp, rxData, replyTimeout);
+            return resp;
+        }
+    }
 
-        // if by any chance there is no response from pigpiod, then wait up to
-        // specified timeout
-        while (w > 0 && a < 16){
-            w -= 10;
-            try{ Thread.sleep(10); } catch (InterruptedException e) {}
-            a = in.available();
+    /**
+     * Write command to pigpiod without waiting for the reply (pipelined mode only).
+     * Reply is delivered by the reader thread through returned future.
+     * @param cmd Command to send
+     * @param p1 Command parameter 1
+     * @param p2 Command parameter 2
+     * @param p3 Command parameter 3 (usually length of extended data - see paramater ext)
+     * @param ext Array of bytes containing extended data (can be null)
+     * @param extValue 4 byte extension used if ext is null and p3 is 4
+     * @param rxData Array to store extended reply data to (can be null)
+     * @return future completed with command result code
+     * @throws IOException in case of network connection error
+     */
+    PendingReply submit(int cmd, int p1, int p2, int p3, byte[] ext, int extValue, byte[] rxData) throws IOException {
+        PendingReply reply = new PendingReply(cmd, rxData);
+
+        synchronized (writeLock) {
+            if (connection == null)
+                throw new IOException("Not connected to pigpiod.");
+            // enqueue before writing, so the reader can never see reply before its command
+            connection.pending.add(reply);
+            try {
+                writeCmd(cmd, p1, p2, p3, ext, extValue);
+            } catch (IOException e) {
+                connection.pending.remove(reply);
+                throw e;
+            }
         }
+        return reply;
+    }
 
-        // throw exception if response from pigpiod has not arrived yet
-        if (in.available() < 16)
+    /**
+     * Wait for reply of command submitted in pipelined mode.
+     * @param reply reply returned by submit
+     * @return Command result code
+     * @throws IOException in case of timeout or network connection error
+     */
+    int await(PendingReply reply) throws IOException {
+        try {
+            return reply.get(replyTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
             throw new IOException("Timeout: No response from RPi withing "+ replyTimeout +" ms.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response from RPi.", e);
+        }
+    }
+
+    /**
+     * Encode command into command buffer and write it to pigpiod. Caller must hold writeLock.
+     */
+    void writeCmd(int cmd, int p1, int p2, int p3, byte[] ext, int extValue) throws IOException {
+        cmdBuffer.clear();
+        putCmd(cmd, p1, p2, p3, ext, extValue);
+        flushCmds();
+    }
+
+    /**
+     * Write command header together with the buffer holding its extension. Caller must hold writeLock.
+     */
+    void writeCmd(int cmd, int p1, int p2, ByteBuffer ext) throws IOException {
+        cmdBuffer.clear();
+        cmdBuffer.putInt(cmd).putInt(p1).putInt(p2).putInt(ext == null ? 0 : ext.remaining());
+        cmdBuffer.flip();
+
+        if (ext == null) {
+            connection.writeFully(cmdBuffer);
+            return;
+        }
+
+        int position = ext.position();
+        gather[0] = cmdBuffer;
+        gather[1] = ext;
+        try {
+            connection.writeFully(gather);
+        } finally {
+            ext.position(position);
+            gather[1] = null;
+            cmdBuffer.clear();
+        }
+    }
+
+    /**
+     * Append command to command buffer, writing buffer content to pigpiod whenever it gets full.
+     * Caller must hold writeLock.
+     */
+    void putCmd(int cmd, int p1, int p2, int p3, byte[] ext, int extValue) throws IOException {
+        int extLength = ext == null ? (p3 == 4 ? 4 : 0) : ext.length;
+        boolean inline = extLength <= CMD_BUFFER_SIZE - 16;
+
+        if (cmdBuffer.remaining() < 16 + (inline ? extLength : 0))
+            flushCmds();
+
+        cmdBuffer.putInt(cmd).putInt(p1).putInt(p2).putInt(p3);
+
+        if (ext == null) {
+            if (p3 == 4)
+                cmdBuffer.putInt(extValue);
+        } else if (inline)
+            cmdBuffer.put(ext, 0, extLength);
+        else {
+            // large extension (e.g. long SPI transfer or waveform) is written straight from the array
+            flushCmds();
+            connection.writeFully(ByteBuffer.wrap(ext));
+        }
+    }
+
+    /**
+     * Write content of command buffer to pigpiod. Caller must hold writeLock.
+     */
+    void flushCmds() throws IOException {
+        cmdBuffer.flip();
+        connection.writeFully(cmdBuffer);
+        cmdBuffer.clear();
+    }
+
+    /**
+     * Send all commands of the batch in a single write and wait for all their replies.
+     * @param batch commands to send
+     * @param results array to store result codes to (at least batch.size() long)
+     * @throws IOException in case of timeout or network connection error
+     */
+    void sendBatch(CommandBatch batch, int[] results) throws IOException {
+        int count = batch.count;
 
-        resp = Integer.reverseBytes(in.readInt()); // ignore response
-        resp = Integer.reverseBytes(in.readInt()); // ignore response
-        resp = Integer.reverseBytes(in.readInt()); // ignore response
-        resp = Integer.reverseBytes(in.readInt()); // contains error or response
+        if (pipelined) {
+            PendingReply[] replies = new PendingReply[count];
+
+            synchronized (writeLock) {
+                if (connection == null)
+                    throw new IOException("Not connected to pigpiod.");
+                for (int i = 0; i < count; i++) {
+                    replies[i] = new PendingReply(batch.cmd[i], batch.rxData[i]);
+                    connection.pending.add(replies[i]);
+                }
+                try {
+                    writeBatch(batch);
+                } catch (IOException e) {
+                    for (PendingReply reply : replies)
+                        connection.pending.remove(reply);
+                    throw e;
+                }
+            }
+
+            for (int i = 0; i < count; i++)
+                results[i] = await(replies[i]);
+            return;
+        }
+
+        synchronized (this) {
+            if (connection == null)
+                throw new IOException("Not connected to pigpiod.");
+
+            synchronized (writeLock) {
+                writeBatch(batch);
+            }
+
+            for (int i = 0; i < count; i++) {
+                results[i] = connection.readReply(replyTimeout);
+                if (results[i] > 0 && hasExtendedReply(batch.cmd[i]))
+                    connection.readExtended(results[i], batch.rxData[i], replyTimeout);
+            }
+        }
+    }
+
+    /**
+     * Encode all commands of the batch and write them to pigpiod. Caller must hold writeLock.
+     */
+    void writeBatch(CommandBatch batch) throws IOException {
+        cmdBuffer.clear();
+        for (int i = 0; i < batch.count; i++)
+            putCmd(batch.cmd[i], batch.p1[i], batch.p2[i], batch.p3[i], batch.ext[i], batch.extValue[i]);
+        flushCmds();
+    }
+
+    /**
+     * Send command and wait for its reply (non-pipelined mode). Caller must hold lock of this object.
+     */
+    int exchange(int cmd, int p1, int p2, int p3, byte[] ext, int extValue, byte[] rxData) throws IOException {
+        int resp;
+
+        if (connection == null)
+            throw new IOException("Not connected to pigpiod.");
+
+        synchronized (writeLock) {
+            writeCmd(cmd, p1, p2, p3, ext, extValue);
+        }
+
+        resp = connection.readReply(replyTimeout);
+        if (resp > 0 && hasExtendedReply(cmd))
+            connection.readExtended(resp, rxData, replyTimeout);
         return resp;
     }
 
@@ -106,7 +636,102 @@ public synchronized int sendCmd(int cmd, int p1, int p2, int p3, byte[] ext) thr
      * @throws IOException if unbale to read from network
      */
     public void readBytes(byte[] data) throws IOException {
-        in.readFully(data);
+        if (pipelined)
+            throw new IOException("readBytes is not supported in pipelined mode, pass rxData to sendCmd instead.");
+        connection.readExtended(data.length, data, replyTimeout);
+    }
+
+    /**
+     * Read bytes already received from pigpiod without waiting for more (e.g. notification reports).
+     * @param dst buffer to store read bytes to
+     * @return number of bytes read, possibly zero
+     * @throws IOException if unable to read from network
+     */
+    public int readAvailable(ByteBuffer dst) throws IOException {
+        return connection.readAvailable(dst);
+    }
+
+    /**
+     * Read bytes received from pigpiod, blocking until at least one byte is available (e.g. notification reports).
+     * @param dst buffer to store read bytes to
+     * @param timeout milliseconds to wait for data, 0 to wait indefinitely
+     * @return number of bytes read, zero if timeout expired
+     * @throws IOException if unable to read from network or the socket was closed while waiting
+     */
+    public int readSome(ByteBuffer dst, int timeout) throws IOException {
+        Connection c = connection;
+        if (c == null)
+            throw new IOException("Not connected to pigpiod.");
+        return c.readSome(dst, timeout);
+    }
+
+    /**
+     * Returns true if pigpiod follows the reply of this command with extended data
+     * (result code being the count of bytes following).
+     * @param cmd command
+     * @return true if the command returns extended data
+     */
+    static boolean hasExtendedReply(int cmd){
+        switch (cmd){
+            case 43:  // CMD_SLR
+            case 45:  // CMD_PROCP
+            case 56:  // CMD_I2CRD
+            case 65:  // CMD_I2CRK
+            case 67:  // CMD_I2CRI
+            case 70:  // CMD_I2CPK
+            case 73:  // CMD_SPIR
+            case 75:  // CMD_SPIX
+            case 80:  // CMD_SERR
+            case 88:  // CMD_CF2
+            case 91:  // CMD_BI2CZ
+            case 92:  // CMD_I2CZ
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads replies from pigpiod and completes pending commands in the order they were sent.
+     */
+    class ReplyReader implements Runnable {
+
+        final Connection connection;
+
+        ReplyReader(Connection connection){
+            this.connection = connection;
+        }
+
+        @Override
+        public void run(){
+            int resp;
+            PendingReply reply = null;
+
+            try {
+                while (true) {
+                    resp = connection.readReply(0);
+
+                    reply = connection.pending.poll();
+                    if (reply == null)
+                        throw new IOException("Unexpected response from pigpiod.");
+
+                    if (resp > 0 && hasExtendedReply(reply.cmd)) {
+                        if (reply.rxBuffer != null)
+                            connection.readExtended(resp, reply.rxBuffer, 0);
+                        else
+                            connection.readExtended(resp, reply.rxData, 0);
+                    }
+
+                    reply.complete(resp);
+                    reply = null;
+                }
+            } catch (IOException e) {
+                // socket closed or broken, nobody is going to answer commands still waiting on it
+                if (reply != null)
+                    reply.completeExceptionally(e);
+                connection.failPending(e);
+            }
+        }
     }
 
 }
@@ -0,0 +1,197 @@
+package jpigpio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds a waveform out of pulses without creating an object per pulse. Pulses are stored as
+ * (gpioOn, gpioOff, delay) triples in a growable int array and uploaded to pigpio straight from it.
+ * <br><br>
+ * Adjacent pulses are merged where this does not change the waveform:
+ * <ul>
+ * <li>a pulse following a pulse with zero delay is combined with it, both switch their GPIOs at the same time</li>
+ * <li>a pulse which switches no GPIO only extends the delay of the previous pulse</li>
+ * </ul>
+ * Example:
+ * <pre>{@code
+ * int waveId = new WaveBuilder()
+ *     .high(gpio, 500).low(gpio, 500)
+ *     .high(gpio, 100).low(gpio, 900)
+ *     .create(pigpio);
+ * pigpio.waveSendOnce(waveId);
+ * }</pre>
+ */
+public class WaveBuilder {
+
+	/**
+	 * Maximum number of pulses sent by a single waveAddPulses command: pigpiod accepts at most 64 kB of
+	 * command extension and every pulse takes 12 bytes.
+	 */
+	public static final int MAX_PULSES_PER_COMMAND = 65536 / 12;
+
+	// (gpioOn, gpioOff, delay) triples, read in place by WaveCache
+	int[] pulses;
+	int count = 0;
+
+	public WaveBuilder() {
+		this(64);
+	}
+
+	/**
+	 * @param capacity number of pulses to reserve space for
+	 */
+	public WaveBuilder(int capacity) {
+		pulses = new int[Math.max(capacity, 1) * 3];
+	}
+
+	/**
+	 * Add a pulse, merging it with the previous one if possible.
+	 * @param gpioOn bit-map of GPIOs to switch on at the start of the pulse
+	 * @param gpioOff bit-map of GPIOs to switch off at the start of the pulse
+	 * @param delay microseconds before the next pulse
+	 * @return this builder
+	 */
+	public WaveBuilder pulse(int gpioOn, int gpioOff, int delay) {
+		if (count > 0) {
+			int last = (count - 1) * 3;
+			if (gpioOn == 0 && gpioOff == 0) {
+				// nothing switches, the previous pulse just lasts longer
+				pulses[last + 2] += delay;
+				return this;
+			}
+			if (pulses[last + 2] == 0) {
+				// both pulses start at the same time, the later one wins for GPIOs switched by both
+				pulses[last] = (pulses[last] & ~gpioOff) | gpioOn;
+				pulses[last + 1] = (pulses[last + 1] & ~gpioOn) | gpioOff;
+				pulses[last + 2] = delay;
+				return this;
+			}
+		}
+
+		if (count * 3 == pulses.length)
+			pulses = Arrays.copyOf(pulses, pulses.length * 2);
+		int i = count * 3;
+		pulses[i] = gpioOn;
+		pulses[i + 1] = gpioOff;
+		pulses[i + 2] = delay;
+		count++;
+		return this;
+	}
+
+	/**
+	 * Switch GPIO on and keep it on for delay microseconds.
+	 * @param gpio GPIO to switch on
+	 * @param delay microseconds before the next pulse
+	 * @return this builder
+	 */
+	public WaveBuilder high(int gpio, int delay) {
+		return pulse(1 << gpio, 0, delay);
+	}
+
+	/**
+	 * Switch GPIO off and keep it off for delay microseconds.
+	 * @param gpio GPIO to switch off
+	 * @param delay microseconds before the next pulse
+	 * @return this builder
+	 */
+	public WaveBuilder low(int gpio, int delay) {
+		return pulse(0, 1 << gpio, delay);
+	}
+
+	/**
+	 * Wait without switching any GPIO.
+	 * @param delay microseconds before the next pulse
+	 * @return this builder
+	 */
+	public WaveBuilder delay(int delay) {
+		return pulse(0, 0, delay);
+	}
+
+	/**
+	 * Add pulses of the list.
+	 * @param list pulses to add
+	 * @return this builder
+	 */
+	public WaveBuilder add(ArrayList<Pulse> list) {
+		for (Pulse pulse : list)
+			pulse(pulse.gpioOn, pulse.gpioOff, pulse.delay);
+		return this;
+	}
+
+	/**
+	 * Add pulses of another builder.
+	 * @param other builder to copy pulses from
+	 * @return this builder
+	 */
+	public WaveBuilder add(WaveBuilder other) {
+		for (int i = 0; i < other.count * 3; i += 3)
+			pulse(other.pulses[i], other.pulses[i + 1], other.pulses[i + 2]);
+		return this;
+	}
+
+	/**
+	 * Remove all pulses, keeping allocated space.
+	 * @return this builder
+	 */
+	public WaveBuilder clear() {
+		count = 0;
+		return this;
+	}
+
+	/**
+	 * Returns number of pulses.
+	 * @return number of pulses
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns length of the waveform.
+	 * @return sum of delays of all pulses in microseconds
+	 */
+	public long getMicros() {
+		long micros = 0;
+		for (int i = 2; i < count * 3; i += 3)
+			micros += pulses[i] & 0xFFFFFFFFL;
+		return micros;
+	}
+
+	/**
+	 * Add all pulses to the waveform pigpio is building, splitting them into as many waveAddPulses commands
+	 * as needed. Call waveAddNew() first to start a new waveform.
+	 * @param pigpio pigpio to upload to
+	 * @return new total number of pulses in the current waveform
+	 * @throws PigpioException on pigpiod error
+	 */
+	public int upload(JPigpio pigpio) throws PigpioException {
+		int rc = 0;
+		for (int offset = 0; offset < count; offset += MAX_PULSES_PER_COMMAND)
+			rc = pigpio.waveAddPulses(pulses, offset, Math.min(MAX_PULSES_PER_COMMAND, count - offset));
+		return rc;
+	}
+
+	/**
+	 * Start a new waveform, upload the pulses and create the wave.
+	 * @param pigpio pigpio to create the wave with
+	 * @return id of the created wave
+	 * @throws PigpioException on pigpiod error
+	 */
+	public int create(JPigpio pigpio) throws PigpioException {
+		pigpio.waveAddNew();
+		upload(pigpio);
+		return pigpio.waveCreate();
+	}
+
+	/**
+	 * Returns the pulses as Pulse objects, e.g. for waveAddGeneric.
+	 * @return list of pulses
+	 */
+	public ArrayList<Pulse> toPulses() {
+		ArrayList<Pulse> list = new ArrayList<>(count);
+		for (int i = 0; i < count * 3; i += 3)
+			list.add(new Pulse(pulses[i], pulses[i + 1], pulses[i + 2]));
+		return list;
+	}
+} // End of class
+// End of file
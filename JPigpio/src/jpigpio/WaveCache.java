@@ -0,0 +1,248 @@
+package jpigpio;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps waves created by pigpio and reuses them for waveforms with the same pulses, so a waveform which is
+ * sent again and again is uploaded and created only once and every further transmit costs a single waveSendOnce.
+ * <br><br>
+ * Waves are looked up by the content of the WaveBuilder (the pulses), not by the builder object.
+ * When the number of waves or the DMA control blocks (CBs) they take would exceed the limits, the least recently
+ * used waves are deleted. If pigpio still runs out of wave ids or CBs, more waves are deleted and creation retried
+ * until the cache has no waves left, then the error is thrown. Waves not created by the cache are never deleted.
+ * <br><br>
+ * The cache expects to be the only one creating and deleting waves on its JPigpio. A wave being transmitted is
+ * the most recently used one, so it is deleted only when all other waves are gone.
+ * <pre>{@code
+ * WaveCache cache = new WaveCache(pigpio);
+ * for (;;) {
+ *     pigpio.waveSendOnce(cache.getWaveId(buildCommand()));
+ *     ...
+ * }
+ * }</pre>
+ */
+public class WaveCache {
+
+	/**
+	 * Number of waves pigpio can hold (PI_MAX_WAVES).
+	 */
+	public static final int DEFAULT_MAX_WAVES = 250;
+
+	/**
+	 * Control blocks available for waves with the default pigpio buffer configuration,
+	 * see gpioWaveGetMaxCbs for the value of a given pigpio.
+	 */
+	public static final int DEFAULT_MAX_CBS = 25000;
+
+	private final JPigpio pigpio;
+	private final int maxWaves;
+	private final int maxCbs;
+
+	// access ordered: iteration starts at the least recently used wave
+	private final LinkedHashMap<Key, Entry> waves = new LinkedHashMap<>(16, 0.75f, true);
+	private int cbs = 0;
+
+	// reused for lookups so that a cache hit allocates nothing
+	private final Key probe = new Key();
+
+	private int hits = 0;
+	private int misses = 0;
+	private int evictions = 0;
+
+	private static class Key {
+		int[] pulses;
+		int length;
+		int hash;
+
+		Key set(int[] pulses, int length) {
+			this.pulses = pulses;
+			this.length = length;
+			int h = 1;
+			for (int i = 0; i < length; i++)
+				h = 31 * h + pulses[i];
+			this.hash = h;
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			if (other.length != length || other.hash != hash)
+				return false;
+			for (int i = 0; i < length; i++)
+				if (pulses[i] != other.pulses[i])
+					return false;
+			return true;
+		}
+	}
+
+	private static class Entry {
+		final int waveId;
+		final int cbs;
+
+		Entry(int waveId, int cbs) {
+			this.waveId = waveId;
+			this.cbs = cbs;
+		}
+	}
+
+	/**
+	 * Cache with limits of the default pigpio configuration.
+	 * @param pigpio pigpio to create waves with
+	 */
+	public WaveCache(JPigpio pigpio) {
+		this(pigpio, DEFAULT_MAX_WAVES, DEFAULT_MAX_CBS);
+	}
+
+	/**
+	 * @param pigpio pigpio to create waves with
+	 * @param maxWaves maximum number of waves to keep
+	 * @param maxCbs maximum number of DMA control blocks all kept waves may take
+	 */
+	public WaveCache(JPigpio pigpio, int maxWaves, int maxCbs) {
+		this.pigpio = pigpio;
+		this.maxWaves = maxWaves;
+		this.maxCbs = maxCbs;
+	}
+
+	/**
+	 * Returns id of a wave with the pulses of the builder, creating the wave if there is none yet.
+	 * @param wave pulses of the wave
+	 * @return wave id for waveSendOnce and similar
+	 * @throws PigpioException on pigpiod error
+	 */
+	public synchronized int getWaveId(WaveBuilder wave) throws PigpioException {
+		Entry entry = waves.get(probe.set(wave.pulses, wave.count * 3));
+		if (entry != null) {
+			hits++;
+			return entry.waveId;
+		}
+		misses++;
+
+		int needed = estimateCbs(wave);
+		while (!waves.isEmpty() && (waves.size() >= maxWaves || cbs + needed > maxCbs))
+			evictOldest();
+
+		int waveId;
+		for (;;) {
+			pigpio.waveAddNew();
+			wave.upload(pigpio);
+			try {
+				waveId = pigpio.waveCreate();
+				break;
+			} catch (PigpioException e) {
+				int rc = e.getErrorCode();
+				if (rc != PigpioException.PI_TOO_MANY_CBS && rc != PigpioException.PI_TOO_MANY_OOL
+						&& rc != PigpioException.PI_NO_WAVEFORM_ID)
+					throw e;
+				if (waves.isEmpty())
+					throw e;
+				evictOldest();
+			}
+		}
+
+		Key key = new Key().set(Arrays.copyOf(wave.pulses, wave.count * 3), wave.count * 3);
+		waves.put(key, new Entry(waveId, needed));
+		cbs += needed;
+		return waveId;
+	} // End of getWaveId
+
+	/**
+	 * Delete all waves created by the cache.
+	 * @throws PigpioException on pigpiod error
+	 */
+	public synchronized void clear() throws PigpioException {
+		while (!waves.isEmpty())
+			evictOldest();
+	} // End of clear
+
+	/**
+	 * Forget all waves without deleting them, e.g. after waveClear was called.
+	 */
+	public synchronized void invalidate() {
+		waves.clear();
+		cbs = 0;
+	}
+
+	/**
+	 * Returns number of waves kept.
+	 * @return number of waves
+	 */
+	public synchronized int size() {
+		return waves.size();
+	}
+
+	/**
+	 * Returns estimated number of control blocks taken by the kept waves.
+	 * @return number of control blocks
+	 */
+	public synchronized int getCbs() {
+		return cbs;
+	}
+
+	/**
+	 * Returns number of lookups which found an existing wave.
+	 * @return number of hits
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns number of lookups which created a new wave.
+	 * @return number of misses
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns number of waves deleted to make space for new ones.
+	 * @return number of evictions
+	 */
+	public synchronized int getEvictions() {
+		return evictions;
+	}
+
+	private void evictOldest() throws PigpioException {
+		Iterator<Entry> it = waves.values().iterator();
+		Entry oldest = it.next();
+		it.remove();
+		cbs -= oldest.cbs;
+		evictions++;
+		try {
+			pigpio.waveDelete(oldest.waveId);
+		} catch (PigpioException e) {
+			// already gone (e.g. waveClear called by someone else), nothing to free
+			if (e.getErrorCode() != PigpioException.PI_BAD_WAVE_ID)
+				throw e;
+		}
+	} // End of evictOldest
+
+	/**
+	 * Estimate control blocks pigpio needs for a wave: one per pulse switching GPIOs on, one switching GPIOs off
+	 * and one for the delay, plus one to link the wave.
+	 */
+	private static int estimateCbs(WaveBuilder wave) {
+		int cbs = 1;
+		for (int i = 0; i < wave.count * 3; i += 3) {
+			if (wave.pulses[i] != 0)
+				cbs++;
+			if (wave.pulses[i + 1] != 0)
+				cbs++;
+			if (wave.pulses[i + 2] != 0)
+				cbs++;
+		}
+		return cbs;
+	} // End of estimateCbs
+} // End of class
+// End of file
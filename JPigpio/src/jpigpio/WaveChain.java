@@ -0,0 +1,192 @@
+package jpigpio;
+
+import java.util.Arrays;
+
+/**
+ * Builds a chain of waves for waveChain. pigpio transmits the whole chain on its own, with loops and delays
+ * between waves, so there is no gap or jitter caused by Java sending the next wave.
+ * <br><br>
+ * Limits of pigpio are checked while building: loops may be nested 4 deep, loop counts and single delays are
+ * at most 65535 (longer delays are split) and the chain must fit into 600 bytes.
+ * <pre>{@code
+ * // preamble once, then the datagram ten times with 5 ms between repeats
+ * new WaveChain()
+ *     .wave(preamble)
+ *     .loopStart().wave(datagram).delay(5000).loopRepeat(10)
+ *     .send(pigpio);
+ * }</pre>
+ */
+public class WaveChain {
+
+	/**
+	 * Maximum length of a chain in bytes.
+	 */
+	public static final int MAX_LENGTH = 600;
+
+	/**
+	 * Maximum nesting of loops.
+	 */
+	public static final int MAX_NESTING = 4;
+
+	private static final int CMD = 255;
+	private static final int LOOP_START = 0;
+	private static final int LOOP_REPEAT = 1;
+	private static final int DELAY = 2;
+	private static final int LOOP_FOREVER = 3;
+
+	private byte[] chain = new byte[32];
+	private int length = 0;
+	private int openLoops = 0;
+	// chain length after each open loop start, to detect empty loops
+	private int[] loopStarts = new int[MAX_NESTING];
+	private boolean forever = false;
+
+	/**
+	 * Transmit a wave.
+	 * @param waveId id of the wave as returned by waveCreate
+	 * @return this chain
+	 * @throws PigpioException if the chain gets too long
+	 */
+	public WaveChain wave(int waveId) throws PigpioException {
+		if (waveId < 0 || waveId >= CMD)
+			throw new PigpioException(PigpioException.PI_BAD_WAVE_ID);
+		return append(waveId);
+	}
+
+	/**
+	 * Transmit waves one after another.
+	 * @param waveIds ids of the waves
+	 * @return this chain
+	 * @throws PigpioException if the chain gets too long
+	 */
+	public WaveChain waves(int... waveIds) throws PigpioException {
+		for (int waveId : waveIds)
+			wave(waveId);
+		return this;
+	}
+
+	/**
+	 * Wait before transmitting the next wave, without changing any GPIO.
+	 * @param micros delay in microseconds, delays longer than 65535 are split
+	 * @return this chain
+	 * @throws PigpioException if the chain gets too long
+	 */
+	public WaveChain delay(long micros) throws PigpioException {
+		if (micros < 0)
+			throw new PigpioException(PigpioException.PI_BAD_CHAIN_DELAY);
+		while (micros > 0) {
+			int d = (int) Math.min(micros, 0xFFFF);
+			append(CMD, DELAY, d & 0xFF, d >> 8);
+			micros -= d;
+		}
+		return this;
+	}
+
+	/**
+	 * Start a block of waves repeated by loopRepeat or loopForever.
+	 * @return this chain
+	 * @throws PigpioException if loops are nested too deep
+	 */
+	public WaveChain loopStart() throws PigpioException {
+		if (openLoops == MAX_NESTING)
+			throw new PigpioException(PigpioException.PI_CHAIN_NESTING);
+		append(CMD, LOOP_START);
+		loopStarts[openLoops++] = length;
+		return this;
+	}
+
+	/**
+	 * End the block started by loopStart, transmitting it count times.
+	 * @param count number of times to transmit the block (0-65535)
+	 * @return this chain
+	 * @throws PigpioException if there is no loop or count is out of range
+	 */
+	public WaveChain loopRepeat(int count) throws PigpioException {
+		if (count < 0 || count > 0xFFFF)
+			throw new PigpioException(PigpioException.PI_CHAIN_LOOP_CNT);
+		closeLoop();
+		return append(CMD, LOOP_REPEAT, count & 0xFF, count >> 8);
+	}
+
+	/**
+	 * End the block started by loopStart, transmitting it until waveTxStop is called.
+	 * Nothing can follow in the chain.
+	 * @return this chain
+	 * @throws PigpioException if there is no loop
+	 */
+	public WaveChain loopForever() throws PigpioException {
+		closeLoop();
+		append(CMD, LOOP_FOREVER);
+		forever = true;
+		return this;
+	}
+
+	/**
+	 * Transmit a wave count times.
+	 * @param waveId id of the wave as returned by waveCreate
+	 * @param count number of times to transmit the wave
+	 * @return this chain
+	 * @throws PigpioException if the chain gets too long or loops are nested too deep
+	 */
+	public WaveChain repeat(int waveId, int count) throws PigpioException {
+		return loopStart().wave(waveId).loopRepeat(count);
+	}
+
+	/**
+	 * Remove everything from the chain.
+	 * @return this chain
+	 */
+	public WaveChain clear() {
+		length = 0;
+		openLoops = 0;
+		forever = false;
+		return this;
+	}
+
+	/**
+	 * Returns length of the chain.
+	 * @return number of bytes
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the chain as passed to waveChain.
+	 * @return copy of the chain
+	 * @throws PigpioException if a loop is not closed
+	 */
+	public byte[] toBytes() throws PigpioException {
+		if (openLoops != 0)
+			throw new PigpioException(PigpioException.PI_BAD_CHAIN_LOOP);
+		return Arrays.copyOf(chain, length);
+	}
+
+	/**
+	 * Transmit the chain.
+	 * @param pigpio pigpio to transmit with
+	 * @throws PigpioException on pigpiod error or if a loop is not closed
+	 */
+	public void send(JPigpio pigpio) throws PigpioException {
+		pigpio.waveChain(toBytes());
+	}
+
+	private void closeLoop() throws PigpioException {
+		if (openLoops == 0 || loopStarts[openLoops - 1] == length)
+			throw new PigpioException(PigpioException.PI_BAD_CHAIN_LOOP);
+		openLoops--;
+	}
+
+	private WaveChain append(int... bytes) throws PigpioException {
+		if (forever)
+			throw new PigpioException(PigpioException.PI_BAD_CHAIN_CMD);
+		if (length + bytes.length > MAX_LENGTH)
+			throw new PigpioException(PigpioException.PI_CHAIN_TOO_BIG);
+		if (length + bytes.length > chain.length)
+			chain = Arrays.copyOf(chain, MAX_LENGTH);
+		for (int b : bytes)
+			chain[length++] = (byte) b;
+		return this;
+	}
+} // End of class
+// End of file
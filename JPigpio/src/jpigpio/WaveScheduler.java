@@ -0,0 +1,365 @@
+package jpigpio;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transmits queued waveforms one after another without polling waveTxBusy.
+ * <br><br>
+ * While a wave is transmitted, the next one is already handed to pigpio with PI_WAVE_MODE_ONE_SHOT_SYNC, so it starts
+ * right when the current one ends. The end of every wave is predicted from its length and confirmed by a single
+ * waveTxAt once the predicted time has passed; only a wave which ends late (e.g. because it started late) is
+ * checked again. Every submitted wave has a CompletableFuture completed when its transmission is over.
+ * <br><br>
+ * A wave can not be queued behind itself: pigpio would link its end to its own start, transmitting it for ever.
+ * Repeats of a waveform are therefore transmitted as a waveChain loop, and a wave equal to the one being
+ * transmitted (e.g. the same waveform submitted twice) is started once the current one has been confirmed to end.
+ * <br><br>
+ * Waveforms submitted with submitChain(), or repeatedly, are transmitted as one waveChain, which pigpio runs on its
+ * own; its repeats need no check at all. A chain can not be queued behind the wave before it, so it is started once
+ * the wave before has been confirmed to end.
+ * <br><br>
+ * Waves are created using a WaveCache, so waveforms submitted again are not uploaded again.
+ * The scheduler expects to be the only one transmitting waves on its JPigpio. Futures are completed from
+ * the scheduler thread, dependent actions which take long should use the *Async methods.
+ * <pre>{@code
+ * WaveScheduler scheduler = new WaveScheduler(pigpio);
+ * scheduler.submit(preamble);
+ * scheduler.submit(datagram, 3).thenRun(() -> System.out.println("sent"));
+ * }</pre>
+ */
+public class WaveScheduler implements Runnable {
+
+	// how long to wait before checking again a wave which did not end as predicted
+	private static final long RECHECK_NANOS = 1000000;
+	// bytes of a wave repeated in a chain: loop start, wave id, loop repeat
+	private static final int REPEAT_LENGTH = 7;
+	// repeats of a chain loop
+	private static final int MAX_LOOP_COUNT = 0xFFFF;
+
+	private final JPigpio pigpio;
+	private final WaveCache cache;
+	private final LinkedBlockingQueue<Transmit> queue = new LinkedBlockingQueue<>();
+	// transmits submitted and not completed yet
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final Thread thread;
+	// set holding the lock of queue, so nothing is queued once close() has queued STOP
+	private volatile boolean stop = false;
+	// queued by close() to wake up the scheduler thread, which is not interrupted as that would close a socket channel
+	private static final Transmit STOP = new Transmit(null, null);
+
+	// owned by the scheduler thread
+	private Transmit current;
+	private Transmit pending;
+	// chain, or wave equal to the current one, taken from the queue, started when the current wave ends
+	private Transmit held;
+	private final WaveChain chain = new WaveChain();
+	private long currentEnd;
+	private volatile int checks = 0;
+
+	private static class Transmit {
+		final WaveBuilder wave;
+		// waves of a chain, the last one repeated; null for a single wave
+		final WaveBuilder[] waves;
+		final int repeats;
+		final long micros;
+		// completed when this transmit ends, null for all but the last repeat
+		final CompletableFuture<Void> future;
+		// wave transmitted, the last one of a chain
+		int waveId;
+
+		Transmit(WaveBuilder wave, CompletableFuture<Void> future) {
+			this.wave = wave;
+			this.waves = null;
+			this.repeats = 1;
+			this.micros = wave != null ? wave.getMicros() : 0;
+			this.future = future;
+		}
+
+		Transmit(WaveBuilder[] waves, int repeats, CompletableFuture<Void> future) {
+			this.wave = null;
+			this.waves = waves;
+			this.repeats = repeats;
+			long m = 0;
+			for (WaveBuilder w : waves)
+				m += w.getMicros();
+			this.micros = m + waves[waves.length - 1].getMicros() * (repeats - 1);
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Scheduler creating waves using a new WaveCache.
+	 * @param pigpio pigpio to transmit with
+	 */
+	public WaveScheduler(JPigpio pigpio) {
+		this(pigpio, new WaveCache(pigpio));
+	}
+
+	/**
+	 * @param pigpio pigpio to transmit with
+	 * @param cache cache to create waves with
+	 */
+	public WaveScheduler(JPigpio pigpio, WaveCache cache) {
+		this.pigpio = pigpio;
+		this.cache = cache;
+		thread = new Thread(this);
+		thread.setName("WaveScheduler");
+		thread.setDaemon(true);
+		thread.start();
+	} // End of constructor
+
+	/**
+	 * Queue a waveform for transmitting once.
+	 * @param wave pulses to transmit, copied so the builder may be reused
+	 * @return future completed when the waveform has been transmitted
+	 */
+	public CompletableFuture<Void> submit(WaveBuilder wave) {
+		return submit(wave, 1);
+	}
+
+	/**
+	 * Queue a waveform for transmitting repeatedly, with no gap between the repeats.
+	 * @param wave pulses to transmit, copied so the builder may be reused
+	 * @param repeats number of times to transmit the waveform
+	 * @return future completed when the last repeat has been transmitted
+	 */
+	public CompletableFuture<Void> submit(WaveBuilder wave, int repeats) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		if (repeats <= 0) {
+			future.complete(null);
+			return future;
+		}
+		WaveBuilder copy = new WaveBuilder(wave.size()).add(wave);
+		synchronized (queue) {
+			if (stop) {
+				future.cancel(false);
+				return future;
+			}
+			if (repeats == 1) {
+				outstanding.incrementAndGet();
+				queue.add(new Transmit(copy, future));
+				return future;
+			}
+			// repeats as chain loops of at most 65535
+			WaveBuilder[] waves = new WaveBuilder[] { copy };
+			outstanding.addAndGet((repeats + MAX_LOOP_COUNT - 1) / MAX_LOOP_COUNT);
+			for (int left = repeats; left > 0; left -= MAX_LOOP_COUNT)
+				queue.add(new Transmit(waves, Math.min(left, MAX_LOOP_COUNT), left <= MAX_LOOP_COUNT ? future : null));
+		}
+		return future;
+	} // End of submit
+
+	/**
+	 * Queue waveforms for transmitting as one chain: each once, except the last one which is repeated.
+	 * The waveforms are not copied, they must not be changed until the returned future completes.
+	 * @param repeats number of times to transmit the last waveform, at most 65535
+	 * @param waves waveforms to transmit
+	 * @return future completed when the chain has been transmitted, or completed with PigpioException
+	 * (PI_CHAIN_LOOP_CNT or PI_CHAIN_TOO_BIG) if the chain can not be encoded
+	 */
+	public CompletableFuture<Void> submitChain(int repeats, WaveBuilder... waves) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		if (repeats <= 0 || waves.length == 0) {
+			future.complete(null);
+			return future;
+		}
+		// checked here, failing later would fail every queued wave
+		if (repeats > MAX_LOOP_COUNT) {
+			future.completeExceptionally(new PigpioException(PigpioException.PI_CHAIN_LOOP_CNT));
+			return future;
+		}
+		if (waves.length - 1 + (repeats > 1 ? REPEAT_LENGTH : 1) > WaveChain.MAX_LENGTH) {
+			future.completeExceptionally(new PigpioException(PigpioException.PI_CHAIN_TOO_BIG));
+			return future;
+		}
+		synchronized (queue) {
+			if (stop) {
+				future.cancel(false);
+				return future;
+			}
+			outstanding.incrementAndGet();
+			queue.add(new Transmit(waves.clone(), repeats, future));
+		}
+		return future;
+	} // End of submitChain
+
+	/**
+	 * Returns the cache the scheduler creates waves with, to be shared by others creating waves on its JPigpio.
+	 * @return wave cache
+	 */
+	public WaveCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Returns true if nothing is transmitted or waiting to be transmitted.
+	 * @return true if idle
+	 */
+	public boolean isIdle() {
+		return outstanding.get() == 0;
+	}
+
+	/**
+	 * Returns number of waveTxAt checks made so far.
+	 * @return number of checks
+	 */
+	public int getChecks() {
+		return checks;
+	}
+
+	/**
+	 * Stop transmitting and cancel futures of all waves not transmitted yet.
+	 * @throws PigpioException on pigpiod error
+	 */
+	public void close() throws PigpioException {
+		synchronized (queue) {
+			stop = true;
+			queue.add(STOP);
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		pigpio.waveTxStop();
+		failAll(new CancellationException("WaveScheduler closed"));
+	} // End of close
+
+	@Override
+	public void run() {
+		while (!stop) {
+			try {
+				schedule();
+			} catch (InterruptedException e) {
+				return;
+			} catch (PigpioException e) {
+				failAll(e);
+			}
+		}
+	} // End of run
+
+	/**
+	 * One step of the scheduler: start or queue the next wave, or wait for the current one to end.
+	 */
+	private void schedule() throws PigpioException, InterruptedException {
+		if (current == null) {
+			current = held != null ? held : queue.take();
+			held = null;
+			if (current == STOP) {
+				current = null;
+				return;
+			}
+			start(current);
+			currentEnd = System.nanoTime() + current.micros * 1000;
+			return;
+		}
+
+		long remaining = currentEnd - System.nanoTime();
+		if (pending == null && held == null && current.waves == null) {
+			Transmit next = queue.poll(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+			if (next == STOP)
+				return;
+			if (next != null && next.waves != null) {
+				held = next;
+				return;
+			}
+			if (next != null) {
+				next.waveId = cache.getWaveId(next.wave);
+				if (next.waveId == current.waveId) {
+					// synced behind itself the wave would loop for ever, start it once the current one ends
+					held = next;
+					return;
+				}
+				// starts by itself when the current wave ends
+				pigpio.waveSendUsingMode(next.waveId, JPigpio.PI_WAVE_MODE_ONE_SHOT_SYNC);
+				pending = next;
+				return;
+			}
+		} else if (remaining > 0) {
+			LockSupport.parkNanos(remaining);
+			return;
+		}
+		if (currentEnd - System.nanoTime() > 0)
+			return;
+
+		// predicted end passed, confirm it
+		checks++;
+		int at = pigpio.waveTxAt();
+		if (pending != null && at == pending.waveId) {
+			// repeats of the same wave can not be told apart, the prediction is trusted for all but the last
+			complete(current);
+			current = pending;
+			pending = null;
+			currentEnd += current.micros * 1000;
+		} else if (at == current.waveId || (current.waves != null && at != JPigpio.PI_NO_TX_WAVE)) {
+			// started late, still running
+			currentEnd = System.nanoTime() + RECHECK_NANOS;
+		} else {
+			// nothing transmitted any more, a pending wave is over as well
+			complete(current);
+			current = null;
+			if (pending != null) {
+				complete(pending);
+				pending = null;
+			}
+		}
+	} // End of schedule
+
+	/**
+	 * Start transmitting a wave or chain right away.
+	 */
+	private void start(Transmit transmit) throws PigpioException {
+		if (transmit.waves == null) {
+			transmit.waveId = cache.getWaveId(transmit.wave);
+			pigpio.waveSendUsingMode(transmit.waveId, JPigpio.PI_WAVE_MODE_ONE_SHOT);
+			return;
+		}
+		chain.clear();
+		int last = transmit.waves.length - 1;
+		for (int i = 0; i < last; i++)
+			chain.wave(cache.getWaveId(transmit.waves[i]));
+		transmit.waveId = cache.getWaveId(transmit.waves[last]);
+		if (transmit.repeats > 1)
+			chain.repeat(transmit.waveId, transmit.repeats);
+		else
+			chain.wave(transmit.waveId);
+		chain.send(pigpio);
+	} // End of start
+
+	private void complete(Transmit transmit) {
+		outstanding.decrementAndGet();
+		if (transmit.future != null)
+			transmit.future.complete(null);
+	}
+
+	/**
+	 * Fail the current, pending and all queued waves.
+	 */
+	private void failAll(Throwable cause) {
+		ArrayList<Transmit> failed = new ArrayList<>();
+		if (current != null)
+			failed.add(current);
+		if (pending != null)
+			failed.add(pending);
+		if (held != null)
+			failed.add(held);
+		current = null;
+		pending = null;
+		held = null;
+		queue.drainTo(failed);
+		failed.remove(STOP);
+		for (Transmit transmit : failed) {
+			outstanding.decrementAndGet();
+			if (transmit.future != null)
+				transmit.future.completeExceptionally(cause);
+		}
+	} // End of failAll
+} // End of class
+// End of file
@@ -1,5 +1,6 @@
 package jpigpio.devices;
 
+import jpigpio.CommandBatch;
 import jpigpio.JPigpio;
 import jpigpio.NotImplementedException;
 import jpigpio.PigpioException;
@@ -8,6 +9,8 @@
 
 public class LCD {
 	private JPigpio pigpio;
+	// Pin writes of a nibble and the following enable pulse are sent in one batch
+	private CommandBatch batch;
 	private int registerSelectGpio;
 	private int readWriteGpio;
 	private int enableGpio;
@@ -66,6 +69,7 @@ public class LCD {
 
 	public LCD(JPigpio pigpio, int registerSelect, int readWrite, int enable, int db4, int db5, int db6, int db7) throws PigpioException {
 		this.pigpio = pigpio;
+		this.batch = pigpio.batch();
 		this.registerSelectGpio = registerSelect;
 		this.readWriteGpio = readWrite;
 		this.enableGpio = enable;
@@ -219,12 +223,12 @@ private void writeRAM(byte value) throws PigpioException {
 	} // End of writeRAM
 
 	private void write4bits(boolean registerSelect, boolean readWrite, byte value) throws PigpioException {
-		pigpio.gpioWrite(registerSelectGpio, registerSelect);
-		pigpio.gpioWrite(readWriteGpio, readWrite);
-		pigpio.gpioWrite(db7Gpio, Utils.isSet(value, 3));
-		pigpio.gpioWrite(db6Gpio, Utils.isSet(value, 2));
-		pigpio.gpioWrite(db5Gpio, Utils.isSet(value, 1));
-		pigpio.gpioWrite(db4Gpio, Utils.isSet(value, 0));
+		batch.gpioWrite(registerSelectGpio, registerSelect);
+		batch.gpioWrite(readWriteGpio, readWrite);
+		batch.gpioWrite(db7Gpio, Utils.isSet(value, 3));
+		batch.gpioWrite(db6Gpio, Utils.isSet(value, 2));
+		batch.gpioWrite(db5Gpio, Utils.isSet(value, 1));
+		batch.gpioWrite(db4Gpio, Utils.isSet(value, 0));
 		
 		System.out.println("+----+----+----+----+----+----+");
 		System.out.println(String.format("|  %s |  %s |  %s |  %s |  %s |  %s |", //
@@ -290,12 +294,17 @@ public void write(String text) throws PigpioException {
 	 * @throws PigpioException
 	 */
 	private void pulseEnable() throws PigpioException {
-		pigpio.gpioWrite(enableGpio, false);
-		pigpio.gpioDelay(100);
-		pigpio.gpioWrite(enableGpio, true);
-		pigpio.gpioDelay(100);
-		pigpio.gpioWrite(enableGpio, false);
-		pigpio.gpioDelay(100);
+		batch.gpioWrite(enableGpio, false);
+		batch.gpioDelay(100);
+		batch.gpioWrite(enableGpio, true);
+		batch.gpioDelay(100);
+		batch.gpioWrite(enableGpio, false);
+		batch.gpioDelay(100);
+		try {
+			batch.execute();
+		} finally {
+			batch.clear();
+		}
 	} // End of pulseEnable
 	
 	/**
@@ -3,7 +3,15 @@
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.Arrays;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jpigpio.CommandBatch;
+import jpigpio.GPIOListener;
 import jpigpio.JPigpio;
 import jpigpio.PigpioException;
 import jpigpio.WrongModeException;
@@ -30,6 +38,17 @@ public class NRF24L01 {
 	 */
 	private int csnPin;
 
+	/**
+	 * True if CSN is connected to CE0 or CE1 of the SPI peripheral, which then drives it itself.
+	 */
+	private boolean hardwareCsn;
+
+	/**
+	 * GPIOs of CE0 and CE1 of the main SPI.
+	 */
+	public static final int SPI_CE0_GPIO = 8;
+	public static final int SPI_CE1_GPIO = 7;
+
 	private byte channel;
 	private int handle;
 	private boolean transmitMode;
@@ -39,6 +58,26 @@ public class NRF24L01 {
 	private int payloadSize = 32;
 	private final int MAX_PAYLOAD_SIZE		= 32;
 
+	// command byte followed by data of every SPI transaction, reused for each length (guarded by this)
+	private final byte frames[][] = new byte[MAX_PAYLOAD_SIZE + 2][];
+	private CommandBatch batch;
+
+	/**
+	 * Default number of received packets kept in IRQ mode.
+	 */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	// IRQ mode, see enableIrq()
+	private GPIOListener irqListener;
+	private volatile ArrayBlockingQueue<byte[]> packets;
+	private volatile int droppedCount = 0;
+	private final ConcurrentLinkedQueue<CompletableFuture<Integer>> txFutures = new ConcurrentLinkedQueue<>();
+	private boolean listening;
+
+	// streaming transmit mode, see stream()
+	private boolean dynAckEnabled = false;
+	private boolean streaming = false;
+
 
 	public static final int CONFIG_REGISTER		= 0x00;
 	public static final int EN_AA				= 0x01;
@@ -122,6 +161,10 @@ public class NRF24L01 {
 	public static final int EN_ACK_PAY = 1;
 	public static final int EN_DYN_ACK = 0;
 
+	private static final int STATUS_TX_FULL = 0; // TX FIFO full bit of STATUS register
+	private static final int RX_P_NO_MASK = 0b1110; // RX_P_NO is 0b111 when RX FIFO is empty
+	private static final int IRQ_FLAGS = 1<<RX_DR | 1<<TX_DS | 1<<MAX_RT;
+
 
 	/* Instruction Mnemonics */
 	private final int R_REGISTER	= 0x00; // Command to read a register
@@ -131,6 +174,8 @@ public class NRF24L01 {
 	private final int R_RX_PL_WID	= 0x60;
 	private final int R_RX_PAYLOAD	= 0x61;
 	private final int W_TX_PAYLOAD	= 0xA0;
+	private final int W_ACK_PAYLOAD	= 0xA8; // pipe in LSB 3 bits
+	private final int W_TX_PAYLOAD_NOACK = 0xB0;
 	private final int FLUSH_TX		= 0xE1;
 	private final int FLUSH_RX		= 0xE2;
 	private final int REUSE_TX_PL	= 0xE3;
@@ -159,7 +204,10 @@ public NRF24L01(JPigpio pigpio) {
 	}
 
 	/**
-	 * Initialize nRF24 chip and set the defaults
+	 * Initialize nRF24 chip and set the defaults.<br/>
+	 * If CSN is connected to CE0 (GPIO 8) or CE1 (GPIO 7), the SPI peripheral drives it and every register or
+	 * payload access is a single spiXfer. Any other GPIO is driven by gpioWrite, in the same command batch
+	 * as the spiXfer.
 	 * @param cePin gpio pin connected to CE
 	 * @param csnPin gpio pin connected to CSN
 	 * @return true if initialized successfully
@@ -168,20 +216,23 @@ public NRF24L01(JPigpio pigpio) {
 	public boolean init(int cePin, int csnPin) throws PigpioException {
 		this.cePin = cePin;
 		this.csnPin = csnPin;
+		this.hardwareCsn = csnPin == SPI_CE0_GPIO || csnPin == SPI_CE1_GPIO;
 
 		// set specified pins to Output mode
 		pigpio.gpioSetMode(cePin, JPigpio.PI_OUTPUT);
-		pigpio.gpioSetMode(csnPin, JPigpio.PI_OUTPUT);
+		if (!hardwareCsn)
+			pigpio.gpioSetMode(csnPin, JPigpio.PI_OUTPUT);
 
 		if (pigpio.gpioGetMode(cePin) != JPigpio.PI_OUTPUT)
 			throw new WrongModeException(cePin);
 
-		if (pigpio.gpioGetMode(csnPin) != JPigpio.PI_OUTPUT)
+		if (!hardwareCsn && pigpio.gpioGetMode(csnPin) != JPigpio.PI_OUTPUT)
 			throw new WrongModeException(csnPin);
 
 		ceLow(); // Set the device to RX
 		csnHigh(); // Set Slave Select to off
-		handle = pigpio.spiOpen(JPigpio.PI_SPI_CHANNEL0, JPigpio.PI_SPI_BAUD_500KHZ, 0);
+		handle = pigpio.spiOpen(csnPin == SPI_CE1_GPIO ? JPigpio.PI_SPI_CHANNEL1 : JPigpio.PI_SPI_CHANNEL0, JPigpio.PI_SPI_BAUD_500KHZ, 0);
+		batch = pigpio.batch();
 
 		byte setupReg = readByteRegister(RF_SETUP);
 		// if setup is 0 of 0xff then module does not respond
@@ -191,7 +242,9 @@ public boolean init(int cePin, int csnPin) throws PigpioException {
 		//reset();
 
 		// get status of dynamic payload
-		dynPayloadEnabled = ((readByteRegister(FEATURE) & (byte)1<<EN_DPL) == (byte)1<<EN_DPL);
+		byte feature = readByteRegister(FEATURE);
+		dynPayloadEnabled = ((feature & (byte)1<<EN_DPL) == (byte)1<<EN_DPL);
+		dynAckEnabled = (feature & BV(EN_DYN_ACK)) != 0;
 
 		channel = getChannel();
 
@@ -209,13 +262,8 @@ public boolean init(int cePin, int csnPin) throws PigpioException {
 	 * @throws PigpioException
      */
 	public void reset() throws  PigpioException {
-		csnLow();
 		flushTx();
-		csnHigh();
-
-		csnLow();
 		flushRx();
-		csnHigh();
 
 		baseConfig = (byte)1<<EN_CRC;
 
@@ -259,6 +307,8 @@ public void reset() throws  PigpioException {
 		writeByteRegister(DYNPD, (byte) 0);
 
 		writeByteRegister(FEATURE, (byte) 0);
+		dynPayloadEnabled = false;
+		dynAckEnabled = false;
 
 		transmitMode = false;
 		powerDown();
@@ -270,6 +320,7 @@ public void reset() throws  PigpioException {
 	 * @throws PigpioException
      */
 	public void terminate() throws PigpioException {
+		disableIrq();
 		ceLow();
 		powerDown();
 	}
@@ -427,11 +478,67 @@ public int getPayloadSize() {
 		return payloadSize;
 	}
 
-	//public int getDynamicPayloadSize()
+	/**
+	 * Get length of the payload at the top of RX FIFO, as sent by the transmitter. Valid only with dynamic
+	 * payloads enabled.
+	 * @return payload length 1-32, 0 if the length was corrupted and RX FIFO has been flushed
+	 * @throws PigpioException
+	 */
+	public int getDynamicPayloadSize() throws PigpioException {
+		byte data[] = {NOP};
+		nrfSpiWrite(R_RX_PL_WID, data);
+		if (data[0] < 0 || data[0] > MAX_PAYLOAD_SIZE) {
+			// per product spec the packet must be discarded
+			flushRx();
+			return 0;
+		}
+		return data[0];
+	}
+
+	/**
+	 * Enable payloads in acknowledgements, sent by writeAckPayload(). Enables dynamic payloads on pipes 0
+	 * and 1 too, which acknowledgement payloads require. Payloads received with acknowledgements are read as
+	 * any other received packet.
+	 * @throws PigpioException
+	 */
+	public void enableACKPayload() throws PigpioException {
+		setFeatureBits(BV(EN_ACK_PAY) | BV(EN_DPL));
+		setRegisterBits(DYNPD, (byte)(BV(DPL_P0) | BV(DPL_P1)));
+		dynPayloadEnabled = true;
+	}
 
-	//public void enableACKPayload()
+	/**
+	 * Enable dynamic payload length on all pipes. Packets are then sent with their length instead of being
+	 * padded to the payload size. Has to be enabled on both sides.
+	 * @throws PigpioException
+	 */
+	public void enableDynamicPayload() throws PigpioException {
+		setFeatureBits(BV(EN_DPL));
+		writeByteRegister(DYNPD, (byte)(BV(DPL_P5) | BV(DPL_P4) | BV(DPL_P3) | BV(DPL_P2) | BV(DPL_P1) | BV(DPL_P0)));
+		dynPayloadEnabled = true;
+	}
 
-	//public void enableDynamicPayload()
+	/**
+	 * Write payload sent back with the acknowledgement of the next packet received on the pipe.
+	 * Up to 3 payloads can wait in TX FIFO. Requires enableACKPayload().
+	 * @param pipe pipe 0-5
+	 * @param data payload, up to 32 bytes
+	 * @throws PigpioException
+	 */
+	public void writeAckPayload(int pipe, byte data[]) throws PigpioException {
+		nrfSpiTransfer(W_ACK_PAYLOAD | (pipe & 0b111), data, false);
+	}
+
+	/**
+	 * Set bits of FEATURE register. On nRF24L01 (not plus) the register has to be activated first.
+	 */
+	private void setFeatureBits(int bits) throws PigpioException {
+		setRegisterBits(FEATURE, (byte)bits);
+		if ((readByteRegister(FEATURE) & bits) != bits) {
+			nrfSpiWrite(ACTIVATE, new byte[] {0x73});
+			setRegisterBits(FEATURE, (byte)bits);
+		}
+	}
 
 	/**
 	 * Disable CRC
@@ -514,6 +621,9 @@ public void setRetries(int delay, int count) throws PigpioException {
 	 * @throws PigpioException
      */
 	public boolean dataReady() throws PigpioException {
+		if (irqListener != null)
+			return !packets.isEmpty();
+
 		// See note in getData() function - just checking RX_DR isn't good enough
 		byte status = getStatus();
 
@@ -547,6 +657,13 @@ public boolean getData(byte data[])  throws PigpioException {
 		// So if we're going to clear RX_DR here, we need to check the RX FIFO
 		// in the dataReady() function
 
+		if (irqListener != null) {
+			byte packet[] = packets.poll();
+			if (packet != null)
+				System.arraycopy(packet, 0, data, 0, Math.min(packet.length, data.length));
+			return !packets.isEmpty();
+		}
+
 		nrfSpiWrite(R_RX_PAYLOAD, data); // Read payload
 		setRegisterBits(STATUS_REGISTER,(byte)(1<<RX_DR)); // clear RX_DR
 
@@ -554,6 +671,34 @@ public boolean getData(byte data[])  throws PigpioException {
 
 	} // End of getData
 
+	/**
+	 * Read the next received packet. With dynamic payloads it has the length sent by the transmitter,
+	 * otherwise the payload size.
+	 * @return payload or null if there is none
+	 * @throws PigpioException
+	 */
+	public byte[] getPayload() throws PigpioException {
+		if (irqListener != null)
+			return packets.poll();
+
+		if (rxFifoEmpty())
+			return null;
+		byte data[] = readPayload();
+		writeByteRegister(STATUS_REGISTER, (byte)BV(RX_DR)); // clear RX_DR
+		return data;
+	} // End of getPayload
+
+	/**
+	 * Read payload at the top of RX FIFO.
+	 */
+	private byte[] readPayload() throws PigpioException {
+		int size = dynPayloadEnabled ? getDynamicPayloadSize() : payloadSize;
+		byte data[] = new byte[size];
+		if (size > 0)
+			nrfSpiWrite(R_RX_PAYLOAD, data);
+		return data;
+	}
+
 	/**
 	 * (DEPRECATED) Write single byte to specified register.<br/>
 	 * Use method writeByteRegister instead.
@@ -616,12 +761,28 @@ public void writeByteRegister(int reg, byte value) throws PigpioException {
 
 	/**
 	 * Send data packet.
-	 * This is a blocking call, but 60ms max, so no big deal.
+	 * This is a blocking call, but 60ms max, so no big deal. In IRQ mode a timeout flushes TX FIFO, failing
+	 * the futures of packets queued with this one.
 	 * @param value data to send
 	 * @return 0 if OK, 1 if number of retries reached, 2 if timeout occurred
 	 * @throws PigpioException
      */
 	public int write(byte value[]) throws PigpioException {
+		if (irqListener != null) {
+			CompletableFuture<Integer> future = sendAsync(value);
+			try {
+				return future.get(500, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				abortTx(future);
+				return 2;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new PigpioException("write", e);
+			} catch (ExecutionException e) {
+				throw new PigpioException("write", e.getCause());
+			}
+		}
+
 		byte buff[] = value.clone();
 		byte status;
 		int result = 0;
@@ -675,6 +836,11 @@ public int write(byte value[]) throws PigpioException {
 	 * @throws PigpioException
 	 */
 	public void send(byte value[]) throws PigpioException {
+		if (irqListener != null) {
+			sendAsync(value);
+			return;
+		}
+
 		byte buff[] = value.clone();
 
 		// if fixed payload size and value is shorter than payload size
@@ -706,6 +872,9 @@ public void send(byte value[]) throws PigpioException {
 	 * @throws  PigpioException on pigpiod error
 	 */
 	public boolean isSending() throws PigpioException {
+		if (irqListener != null)
+			return !txFutures.isEmpty();
+
 		if(transmitMode){
 			byte status = getStatus();
 		    	
@@ -720,6 +889,350 @@ public boolean isSending() throws PigpioException {
 		return false;
 	} // End of isSending
 
+	/**
+	 * Switch to IRQ mode. Instead of polling STATUS over SPI, wait for the IRQ pin going low. Packets are then read
+	 * from RX FIFO as soon as they arrive and queued (see take() and poll()), and futures returned by sendAsync()
+	 * are completed when the radio reports end of transmission. dataReady(), getData(), isSending(), send()
+	 * and write() work with the queues, so an idle radio causes no SPI traffic at all.
+	 * <br><br>
+	 * The interrupt is handled by the thread delivering alerts, unless callbacks are run by an executor
+	 * (see PigpioSocket.setCallbackExecutor()).
+	 * @param irqPin gpio pin connected to IRQ
+	 * @param capacity maximum number of received packets kept, the oldest are dropped when nobody takes them
+	 * @throws PigpioException
+	 */
+	public synchronized void enableIrq(int irqPin, int capacity) throws PigpioException {
+		disableIrq();
+
+		pigpio.gpioSetMode(irqPin, JPigpio.PI_INPUT);
+		pigpio.gpioSetPullUpDown(irqPin, JPigpio.PI_PUD_UP);
+		packets = new ArrayBlockingQueue<>(capacity);
+
+		// let RX_DR, TX_DS and MAX_RT drive IRQ
+		clearRegisterBits(CONFIG_REGISTER, (byte)(BV(MASK_RX_DR) | BV(MASK_TX_DS) | BV(MASK_MAX_RT)));
+
+		irqListener = new GPIOListener(irqPin, JPigpio.PI_FALLING_EDGE) {
+			@Override
+			public void alert(int gpio, int level, long tick) {
+				irq();
+			}
+		};
+		pigpio.addCallback(irqListener);
+
+		// flags set before the callback was added do not produce an edge any more
+		irq();
+	} // End of enableIrq
+
+	/**
+	 * Return to polling STATUS over SPI. Pending futures of sendAsync() fail, received packets stay queued.
+	 * @throws PigpioException
+	 */
+	public synchronized void disableIrq() throws PigpioException {
+		if (irqListener == null)
+			return;
+		pigpio.removeCallback(irqListener);
+		irqListener = null;
+		failTx(new PigpioException("IRQ mode disabled"));
+	} // End of disableIrq
+
+	/**
+	 * Send data packet in IRQ mode without waiting for the end of transmission. Blocks only while TX FIFO
+	 * is full, so it must not be called by the thread handling the interrupt.
+	 * @param value data to send
+	 * @return future completed with 0 if OK, 1 if number of retries reached
+	 * @throws PigpioException if IRQ mode is not enabled, or TX FIFO does not get free within 500ms; the stuck
+	 * transmissions are then flushed and their futures fail
+	 */
+	public CompletableFuture<Integer> sendAsync(byte value[]) throws PigpioException {
+		if (irqListener == null)
+			throw new PigpioException("sendAsync requires IRQ mode, see enableIrq()");
+		return queueTx(value, W_TX_PAYLOAD);
+	} // End of sendAsync
+
+	/**
+	 * Write payload to TX FIFO in IRQ mode, waiting while it is full.
+	 * @param command W_TX_PAYLOAD or W_TX_PAYLOAD_NOACK
+	 * @throws PigpioException if TX FIFO does not get free within 500ms
+	 */
+	private synchronized CompletableFuture<Integer> queueTx(byte value[], int command) throws PigpioException {
+		byte buff[] = value.clone();
+		if (!dynPayloadEnabled && (buff.length < payloadSize) )
+			buff = Arrays.copyOf(buff,payloadSize);
+
+		// TX FIFO is 3 levels deep
+		waitTx(3, "sendAsync: TX FIFO stays full");
+
+		if (!transmitMode) {
+			ceLow();
+			byte cfgReg = readByteRegister(CONFIG_REGISTER);
+			writeByteRegister(CONFIG_REGISTER, (byte)( (cfgReg | BV(PWR_UP) ) & ~BV(PRIM_RX)) );
+			transmitMode = true;
+			if ((cfgReg & BV(PWR_UP)) == 0)
+				pigpio.gpioDelay(2,JPigpio.PI_MILLISECONDS); // 1.5ms to start if in power-down mode
+		}
+
+		CompletableFuture<Integer> future = new CompletableFuture<>();
+		txFutures.add(future);
+		nrfSpiWrite(command, buff);
+		// CE stays high until TX FIFO is empty
+		ceHigh();
+		return future;
+	} // End of queueTx
+
+	/**
+	 * Send data packet in streaming transmit mode: without requesting acknowledgement, keeping TX FIFO
+	 * filled so that the radio sends packets back to back. Blocks only while TX FIFO is full. Call
+	 * flushStream() after the last packet.<br/><br/>
+	 * Packets are neither acknowledged nor retransmitted, so lost packets are not detected. Sets EN_DYN_ACK
+	 * of FEATURE register on first use.
+	 * @param value data to send
+	 * @throws PigpioException if TX FIFO does not get free within 500ms
+	 */
+	public synchronized void stream(byte value[]) throws PigpioException {
+		if (!dynAckEnabled) {
+			setFeatureBits(BV(EN_DYN_ACK));
+			dynAckEnabled = true;
+		}
+
+		if (irqListener != null) {
+			queueTx(value, W_TX_PAYLOAD_NOACK);
+			return;
+		}
+
+		byte buff[] = value.clone();
+		if (!dynPayloadEnabled && (buff.length < payloadSize) )
+			buff = Arrays.copyOf(buff,payloadSize);
+
+		if (!streaming) {
+			ceLow();
+			byte cfgReg = readByteRegister(CONFIG_REGISTER);
+			writeByteRegister(CONFIG_REGISTER, (byte)( (cfgReg | BV(PWR_UP) ) & ~BV(PRIM_RX)) );
+			transmitMode = true;
+			if ((cfgReg & BV(PWR_UP)) == 0)
+				pigpio.gpioDelay(2,JPigpio.PI_MILLISECONDS); // 1.5ms to start if in power-down mode
+		}
+
+		// every command returns STATUS as it was before the command. A payload written to full TX FIFO
+		// is discarded, so write it again until there was room, instead of polling STATUS before each write.
+		long timeout = System.currentTimeMillis() + 500;
+		while ((nrfSpiTransfer(W_TX_PAYLOAD_NOACK, buff, false) & BV(STATUS_TX_FULL)) != 0)
+			if (System.currentTimeMillis() > timeout)
+				throw new PigpioException("stream: TX FIFO stays full");
+
+		if (!streaming) {
+			// CE stays high until flushStream()
+			ceHigh();
+			streaming = true;
+		}
+	} // End of stream
+
+	/**
+	 * Wait until all packets sent by stream() were transmitted, then return to RX mode if listening,
+	 * or to Standby-I.
+	 * @throws PigpioException if packets were not transmitted within 500ms
+	 */
+	public void flushStream() throws PigpioException {
+		if (irqListener != null) {
+			synchronized (this) {
+				waitTx(1, "flushStream: TX FIFO not empty");
+			}
+			return;
+		}
+
+		synchronized (this) {
+			if (!streaming)
+				return;
+			long timeout = System.currentTimeMillis() + 500;
+			while ((readByteRegister(FIFO_STATUS_REGISTER) & BV(TX_EMPTY)) == 0)
+				if (System.currentTimeMillis() > timeout)
+					throw new PigpioException("flushStream: TX FIFO not empty");
+
+			ceLow();
+			streaming = false;
+			transmitMode = false;
+			writeByteRegister(STATUS_REGISTER, (byte)BV(TX_DS)); // clear TX_DS
+			if (listening) {
+				setRegisterBits(CONFIG_REGISTER, (byte)BV(PRIM_RX));
+				ceHigh();
+			}
+		}
+	} // End of flushStream
+
+	/**
+	 * Wait for a packet received in IRQ mode.
+	 * @return payload
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws PigpioException if IRQ mode was never enabled
+	 */
+	public byte[] take() throws InterruptedException, PigpioException {
+		return packets("take").take();
+	}
+
+	/**
+	 * Wait for a packet received in IRQ mode at most the given time.
+	 * @param timeout how long to wait
+	 * @param unit unit of timeout
+	 * @return payload or null if no packet was received in time
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws PigpioException if IRQ mode was never enabled
+	 */
+	public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException, PigpioException {
+		return packets("poll").poll(timeout, unit);
+	}
+
+	/**
+	 * Returns queue of received packets, which exists once IRQ mode was enabled.
+	 * @param method name of the calling method for the exception
+	 */
+	private ArrayBlockingQueue<byte[]> packets(String method) throws PigpioException {
+		ArrayBlockingQueue<byte[]> queue = packets;
+		if (queue == null)
+			throw new PigpioException(method + " requires IRQ mode, see enableIrq()");
+		return queue;
+	}
+
+	/**
+	 * Returns number of packets received in IRQ mode waiting to be taken.
+	 * @return number of packets
+	 */
+	public int available() {
+		return packets == null ? 0 : packets.size();
+	}
+
+	/**
+	 * Returns number of packets dropped because nobody took them from the full queue.
+	 * @return number of packets
+	 */
+	public int droppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Handle IRQ: read RX FIFO and complete transmissions until no flag is set and RX FIFO is empty.
+	 */
+	private synchronized void irq() {
+		try {
+			byte status = nrfSpiWrite(NOP, null);
+			// a packet arriving while RX_DR is still set raises no new IRQ, and clearing RX_DR also clears its flag,
+			// so keep going until RX FIFO is seen empty
+			while ((status & IRQ_FLAGS) != 0 || (status & RX_P_NO_MASK) != RX_P_NO_MASK) {
+				// failed payload stays in TX FIFO and blocks the ones behind it, the radio would send it again
+				// as soon as MAX_RT is cleared
+				if ((status & BV(MAX_RT)) != 0)
+					nrfSpiWrite(FLUSH_TX, null);
+				// clear flags first, events happening meanwhile set them again
+				if ((status & IRQ_FLAGS) != 0)
+					writeByteRegister(STATUS_REGISTER, (byte)(status & IRQ_FLAGS));
+				readRxFifo(status);
+				if ((status & (BV(TX_DS) | BV(MAX_RT))) != 0)
+					transmitted(status);
+				status = nrfSpiWrite(NOP, null);
+			}
+		} catch (PigpioException e) {
+			failTx(e);
+		}
+	} // End of irq
+
+	private void readRxFifo(byte status) throws PigpioException {
+		while ((status & RX_P_NO_MASK) != RX_P_NO_MASK) {
+			byte data[] = readPayload();
+			while (data.length > 0 && !packets.offer(data))
+				if (packets.poll() != null)
+					droppedCount++;
+			status = nrfSpiWrite(NOP, null);
+		}
+	} // End of readRxFifo
+
+	private void transmitted(byte status) throws PigpioException {
+		int sent = 0;
+		int failed = 0;
+		if ((status & BV(TX_DS)) != 0) {
+			// TX_DS of several packets may be seen as one, all were sent if TX FIFO is empty
+			if ((status & BV(MAX_RT)) == 0 && (readByteRegister(FIFO_STATUS_REGISTER) & BV(TX_EMPTY)) != 0)
+				sent = txFutures.size();
+			else
+				sent = 1;
+		}
+		if ((status & BV(MAX_RT)) != 0)
+			failed = txFutures.size() - sent;
+
+		// back to RX before the application learns about the end of transmission
+		if (txFutures.size() == sent + failed && transmitMode) {
+			ceLow();
+			transmitMode = false;
+			if (listening) {
+				setRegisterBits(CONFIG_REGISTER, (byte)BV(PRIM_RX));
+				ceHigh();
+			}
+		}
+
+		completeTx(0, sent);
+		completeTx(1, failed);
+	} // End of transmitted
+
+	/**
+	 * Wait in IRQ mode until fewer than limit transmissions are pending. Caller holds the lock.
+	 * Transmissions not completed within 500ms are given up, see abortTx().
+	 * @param limit number of pending transmissions to wait below
+	 * @param message message of the exception thrown if they are not completed in time
+	 */
+	private void waitTx(int limit, String message) throws PigpioException {
+		long timeout = System.currentTimeMillis() + 500;
+		try {
+			while (txFutures.size() >= limit) {
+				long remaining = timeout - System.currentTimeMillis();
+				if (remaining <= 0) {
+					abortTx(txFutures.peek());
+					throw new PigpioException(message);
+				}
+				wait(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PigpioException(message, e);
+		}
+	} // End of waitTx
+
+	/**
+	 * Give up a transmission which did not end in time. Payloads leave TX FIFO in order, so the ones queued
+	 * with it are stuck as well: flush TX FIFO and fail all pending futures, keeping futures and payloads in step.
+	 * @param future future of the transmission given up
+	 */
+	private synchronized void abortTx(CompletableFuture<Integer> future) {
+		if (future.isDone())
+			return;
+		try {
+			nrfSpiWrite(FLUSH_TX, null);
+			if (transmitMode) {
+				ceLow();
+				transmitMode = false;
+				if (listening) {
+					setRegisterBits(CONFIG_REGISTER, (byte)BV(PRIM_RX));
+					ceHigh();
+				}
+			}
+			failTx(new PigpioException("TX timeout"));
+		} catch (PigpioException e) {
+			failTx(e);
+		}
+	} // End of abortTx
+
+	private synchronized void completeTx(int result, int count) {
+		for (int i = 0; i < count; i++) {
+			CompletableFuture<Integer> future = txFutures.poll();
+			if (future != null)
+				future.complete(result);
+		}
+		notifyAll();
+	}
+
+	private synchronized void failTx(PigpioException e) {
+		CompletableFuture<Integer> future;
+		while ((future = txFutures.poll()) != null)
+			future.completeExceptionally(e);
+		notifyAll();
+	}
+
 	/**
 	 * Read STATUS register
 	 * @return value stored in STATUS register
@@ -833,6 +1346,7 @@ public byte getFIFOStatus() throws PigpioException {
      */
 	private void flushTx() throws PigpioException {
 		nrfSpiWrite(FLUSH_TX, null);
+		failTx(new PigpioException("TX FIFO flushed"));
 	} // End of flushTx
 
 	private void transmitFinished() throws PigpioException {
@@ -852,7 +1366,8 @@ private void powerUpRx() throws PigpioException {
 		// end transmit mode and clear TX IRQ
 		transmitFinished();
 
-		setRegisterBits(CONFIG_REGISTER, (byte)(BV(PWR_UP) | BV(PRIM_RX) | BV(MASK_RX_DR)));
+		// RX_DR must not be masked from IRQ in IRQ mode
+		setRegisterBits(CONFIG_REGISTER, (byte)(BV(PWR_UP) | BV(PRIM_RX) | (irqListener == null ? BV(MASK_RX_DR) : 0)));
 
 		// clear RX_DR by writing 1
 		setRegisterBits(STATUS_REGISTER, (byte)(BV(RX_DR)));
@@ -880,6 +1395,7 @@ private void flushRx() throws PigpioException {
 	public void startListening() throws PigpioException {
 		byte confReg = readByteRegister(CONFIG_REGISTER);
 		transmitMode = false;
+		listening = true;
 		writeByteRegister(CONFIG_REGISTER, (byte)(confReg | BV(PWR_UP) | BV(PRIM_RX)) );
 		writeByteRegister(STATUS_REGISTER, (byte)(BV(RX_DR) | BV(TX_DS) | BV(MAX_RT)) );
 
@@ -902,6 +1418,7 @@ public void startListening() throws PigpioException {
 	 * @throws PigpioException
      */
 	public void stopListening() throws PigpioException {
+		listening = false;
 		ceLow();
 		flushTx();
 		flushRx();
@@ -924,22 +1441,45 @@ public void powerDown() throws PigpioException {
 		transmitMode = false;
 	}
 
-	private void nrfSpiWrite(int reg, byte data[]) throws PigpioException {
-
-		csnLow();
-		byte regData[] = { (byte)reg };
-		pigpio.spiXfer(handle, regData, regData);
-		if (data != null) {
-			pigpio.spiXfer(handle, data, data);
-		}
-		csnHigh();
-
-		// TODO: why is following delay here? a relic? 100ms is quite a long wait...
-		// pigpio.gpioDelay(100, JPigpio.PI_MILLISECONDS);
-		// TODO: tried to remove 100ms delay, but gpiod stopped responding after 100-200 calls - introduced 1ms delay and it seems to work again
-		pigpio.gpioDelay(1,JPigpio.PI_MILLISECONDS);
-
+	/**
+	 * Execute one SPI command as a single transfer of the command byte followed by data, with CSN driven
+	 * low around it in the same command batch unless the SPI peripheral drives it.
+	 * @param reg command
+	 * @param data data to send, replaced by received data, or null
+	 * @return STATUS register, which is shifted out while the command is sent
+	 */
+	private byte nrfSpiWrite(int reg, byte data[]) throws PigpioException {
+		return nrfSpiTransfer(reg, data, true);
 	} // End of nrfSpiWrite
+
+	/**
+	 * Execute one SPI command, see nrfSpiWrite(). Synchronized, so that transactions of the IRQ handler
+	 * and the application do not interleave.
+	 * @param read true to replace data by received data, false to leave it unchanged
+	 */
+	private synchronized byte nrfSpiTransfer(int reg, byte data[], boolean read) throws PigpioException {
+		int length = data == null ? 1 : data.length + 1;
+		byte frame[] = length < frames.length ? frames[length] : new byte[length];
+		if (frame == null)
+			frame = frames[length] = new byte[length];
+
+		frame[0] = (byte)reg;
+		if (data != null)
+			System.arraycopy(data, 0, frame, 1, data.length);
+
+		if (hardwareCsn)
+			pigpio.spiXfer(handle, frame, frame);
+		else
+			batch.clear()
+					.gpioWrite(csnPin, false)
+					.spiXfer(handle, frame, frame)
+					.gpioWrite(csnPin, true)
+					.execute();
+
+		if (read && data != null)
+			System.arraycopy(frame, 1, data, 0, data.length);
+		return frame[0];
+	} // End of nrfSpiTransfer
 	
 	/**
 	 * Move device from mode Standby-I to RX or TX mode - depending on PRIM_RX
@@ -971,7 +1511,8 @@ private void cePulse(long duration) throws PigpioException {
 	 * @throws PigpioException
 	 */
 	private void csnHigh() throws PigpioException {
-		pigpio.gpioWrite(csnPin, JPigpio.PI_HIGH);
+		if (!hardwareCsn)
+			pigpio.gpioWrite(csnPin, JPigpio.PI_HIGH);
 	} // End of csnHigh
 	
 	/**
@@ -979,7 +1520,8 @@ private void csnHigh() throws PigpioException {
 	 * @throws PigpioException
 	 */
 	private void csnLow() throws PigpioException {
-		pigpio.gpioWrite(csnPin, JPigpio.PI_LOW);
+		if (!hardwareCsn)
+			pigpio.gpioWrite(csnPin, JPigpio.PI_LOW);
 	} // End of csnLow
 
 	/**
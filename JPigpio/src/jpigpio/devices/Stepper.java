@@ -1,5 +1,6 @@
 package jpigpio.devices;
 
+import jpigpio.CommandBatch;
 import jpigpio.JPigpio;
 import jpigpio.PigpioException;
 import jpigpio.WrongModeException;
@@ -10,6 +11,7 @@
  */
 public class Stepper {
 	private JPigpio pigpio;
+	private CommandBatch batch;
 	
 	private int blueGpio; // IN1
 	private int pinkGpio; // IN2
@@ -38,6 +40,7 @@ public class Stepper {
 	 */
 	public Stepper(JPigpio pigpio, int blueGpio, int pinkGpio, int yellowGpio, int orangeGpio) throws PigpioException {
 		this.pigpio = pigpio;
+		this.batch = pigpio.batch();
 		this.blueGpio = blueGpio; // IN1
 		this.pinkGpio = pinkGpio; // IN2
 		this.yellowGpio = yellowGpio; // IN3
@@ -70,10 +73,12 @@ public Stepper(JPigpio pigpio, int blueGpio, int pinkGpio, int yellowGpio, int o
 	 * @throws PigpioException
 	 */
 	private void setData() throws PigpioException {
-		pigpio.gpioWrite(blueGpio, stepData[step][0] != 0);
-		pigpio.gpioWrite(pinkGpio, stepData[step][1] != 0);
-		pigpio.gpioWrite(yellowGpio, stepData[step][2] != 0);
-		pigpio.gpioWrite(orangeGpio, stepData[step][3] != 0);
+		batch.clear()
+			.gpioWrite(blueGpio, stepData[step][0] != 0)
+			.gpioWrite(pinkGpio, stepData[step][1] != 0)
+			.gpioWrite(yellowGpio, stepData[step][2] != 0)
+			.gpioWrite(orangeGpio, stepData[step][3] != 0)
+			.execute();
 	} // End of setData
 	
 	/**
@@ -1,8 +1,13 @@
 package jpigpio.impl;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import jpigpio.CommandBatch;
 import jpigpio.GPIO;
 import jpigpio.JPigpio;
 import jpigpio.PigpioException;
+import jpigpio.PulseMeter;
 
 public abstract class CommonPigpio implements JPigpio {
 
@@ -37,6 +42,7 @@ public void gpioShiftOut(GPIO gpioData, GPIO gpioClock, boolean bitOrder, byte v
 	@Override
 	public void gpioShiftOut(int gpioData, int gpioClock, boolean clockLevel, boolean bitOrder, byte value) throws PigpioException {
 
+		CommandBatch batch = batch();
 		boolean bit;
 		for (int i = 0; i < 8; i++) {
 			if (bitOrder == PI_LSBFIRST) {
@@ -46,10 +52,11 @@ public void gpioShiftOut(int gpioData, int gpioClock, boolean clockLevel, boolea
 				bit = ((value & 0x80) != 0);
 				value = (byte) (value << 1);
 			}
-			gpioWrite(gpioData, bit);
+			batch.gpioWrite(gpioData, bit);
 			// Trigger this clock in high for 10 usecs
-			gpioTrigger(gpioClock, 10, clockLevel);
+			batch.gpioTrigger(gpioClock, 10, clockLevel);
 		} // End of each bit
+		batch.execute();
 	} // End of gpioShiftOut
 	
 	@Override
@@ -70,6 +77,65 @@ public void gpioShiftOut(GPIO gpioData, GPIO gpioClock, boolean clockLevel, bool
 		} // End of each bit
 	} // End of gpioShiftOut
 
+	@Override
+	public CommandBatch batch() {
+		return new CommandBatch(this);
+	} // End of batch
+
+	/**
+	 * Measured by a PulseMeter created for this call. Use a PulseMeter directly for repeated measurements.
+	 */
+	@Override
+	public long gpioxPulseAndWait(int outGpio, int inGpio, long waitDuration, long pulseHoldDuration, boolean pulseLow) throws PigpioException {
+		PulseMeter meter = new PulseMeter(this, outGpio, inGpio);
+		try {
+			return meter.measure(pulseHoldDuration, pulseLow, waitDuration);
+		} finally {
+			meter.close();
+		}
+	} // End of gpioxPulseAndWait
+
+	/**
+	 * Transfer through temporary arrays, for buffers which cannot be handed over directly.
+	 */
+	@Override
+	public int spiXfer(int handle, ByteBuffer txData, ByteBuffer rxData) throws PigpioException {
+		if (rxData.remaining() < txData.remaining())
+			throw new BufferOverflowException();
+		byte[] tx = new byte[txData.remaining()];
+		byte[] rx = new byte[tx.length];
+		txData.duplicate().get(tx);
+		int rc = spiXfer(handle, tx, rx);
+		txData.position(txData.position() + rc);
+		rxData.put(rx, 0, rc);
+		return rc;
+	} // End of spiXfer
+
+	@Override
+	public int spiWrite(int handle, ByteBuffer data) throws PigpioException {
+		byte[] tx = new byte[data.remaining()];
+		data.duplicate().get(tx);
+		int rc = spiWrite(handle, tx);
+		data.position(data.position() + rc);
+		return rc;
+	} // End of spiWrite
+
+	@Override
+	public int i2cReadDevice(int handle, ByteBuffer data) throws PigpioException {
+		byte[] rx = new byte[data.remaining()];
+		int rc = i2cReadDevice(handle, rx);
+		data.put(rx, 0, rc);
+		return rc;
+	} // End of i2cReadDevice
+
+	@Override
+	public void i2cWriteDevice(int handle, ByteBuffer data) throws PigpioException {
+		byte[] tx = new byte[data.remaining()];
+		data.duplicate().get(tx);
+		i2cWriteDevice(handle, tx);
+		data.position(data.limit());
+	} // End of i2cWriteDevice
+
 	@Override
 	public void gpioDelay(long delay, int type) throws PigpioException {
 		switch (type) {
@@ -0,0 +1,26 @@
+package jpigpio.packet;
+
+import jpigpio.Utils;
+
+/**
+ * Datagram of Rf433tx decoded according to Protocol.
+ */
+public class Datagram extends Frame {
+
+    /**
+     * @param data received data
+     * @param tick tick of the edge completing the datagram
+     * @param repeatCount number of repeats received before the datagram was reported,
+     *                    0 unless Protocol.DGRM_REPEAT_RX is lower than the number of repeats sent
+     * @param error true if a symbol could not be decoded, which is only reported with
+     *              Protocol.DGRM_KEEP_ON_ENCODING_ERROR. Data of such symbols are from the previous datagram.
+     */
+    public Datagram(byte[] data, long tick, int repeatCount, boolean error) {
+        super(data, tick, repeatCount, error);
+    }
+
+    @Override
+    public String toString() {
+        return "Datagram " + Utils.bytesToHex(getData());
+    }
+}
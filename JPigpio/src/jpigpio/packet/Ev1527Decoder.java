@@ -0,0 +1,18 @@
+package jpigpio.packet;
+
+/**
+ * Decoder of remotes with EV1527 (or compatible, e.g. HS1527, RT1527) encoder chip, reporting Ev1527Frames.
+ * EV1527 uses the same signalling as PT2262, so codes of PT2262 remotes are reported as well when both
+ * decoders listen to one receiver.
+ */
+public class Ev1527Decoder extends PwmDecoder {
+
+    public Ev1527Decoder() {
+        super(Ev1527Frame.BITS);
+    }
+
+    @Override
+    protected Frame createFrame(int code, long tick) {
+        return new Ev1527Frame(code, tick);
+    }
+}
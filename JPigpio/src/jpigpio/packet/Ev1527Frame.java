@@ -0,0 +1,53 @@
+package jpigpio.packet;
+
+/**
+ * Code of an EV1527 remote: 20 bit id programmed into the chip and 4 data bits, one per key.
+ * Data are the 24 bits of the code, most significant byte first.
+ */
+public class Ev1527Frame extends Frame {
+
+    /**
+     * Number of bits of a code.
+     */
+    public static final int BITS = 24;
+
+    private final int code;
+
+    /**
+     * @param code 24 bits of the code, first received is most significant
+     * @param tick tick of the end of the code
+     */
+    public Ev1527Frame(int code, long tick) {
+        super(bytes(code, 3), tick, 0, false);
+        this.code = code;
+    }
+
+    /**
+     * Returns 24 bits of the code, first received is most significant.
+     * @return code
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Returns 20 bit id of the remote.
+     * @return id
+     */
+    public int getId() {
+        return code >>> 4;
+    }
+
+    /**
+     * Returns 4 data bits, usually one per key pressed.
+     * @return keys
+     */
+    public int getKeys() {
+        return code & 0x0F;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EV1527 id %05X keys %X", getId(), getKeys());
+    }
+}
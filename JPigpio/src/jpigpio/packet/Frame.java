@@ -0,0 +1,67 @@
+package jpigpio.packet;
+
+/**
+ * Frame received by Rf433rx. Subclasses add fields specific to the protocol the frame was decoded with.
+ */
+public abstract class Frame {
+
+    private final byte[] data;
+    private final long tick;
+    private final int repeatCount;
+    private final boolean error;
+
+    /**
+     * @param data received data
+     * @param tick tick of the edge completing the frame
+     * @param repeatCount number of repeats received before the frame was reported
+     * @param error true if part of the frame could not be decoded
+     */
+    protected Frame(byte[] data, long tick, int repeatCount, boolean error) {
+        this.data = data;
+        this.tick = tick;
+        this.repeatCount = repeatCount;
+        this.error = error;
+    }
+
+    /**
+     * Returns received data.
+     * @return data bytes
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns tick (microseconds, unsigned 32 bit) of the edge completing the frame.
+     * @return receive tick
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns number of repeats of the frame received before it was reported.
+     * @return repeat count
+     */
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    /**
+     * Returns true if part of the frame could not be decoded.
+     * @return true on decoding error
+     */
+    public boolean hasError() {
+        return error;
+    }
+
+    /**
+     * Returns the low count bytes of value, most significant first.
+     */
+    static byte[] bytes(long value, int count) {
+        byte[] bytes = new byte[count];
+        for (int i = count - 1; i >= 0; i--, value >>>= 8)
+            bytes[i] = (byte) value;
+        return bytes;
+    }
+}
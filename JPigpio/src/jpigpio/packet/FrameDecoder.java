@@ -0,0 +1,79 @@
+package jpigpio.packet;
+
+/**
+ * Decoder of one RF protocol, fed with pulses by a PulseClassifier. Several decoders can share one classifier,
+ * each running its own state machine over the same pulses and reporting frames of its own type to its listener.
+ * <br><br>
+ * Decoders are not thread safe, all pulses have to come from one thread (e.g. the thread delivering alerts).
+ */
+public abstract class FrameDecoder {
+
+    static final long TICK_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Default time (microseconds) within which an equal frame is taken as a repeat.
+     */
+    public static final int DEFAULT_REPEAT_TIMEOUT = 200000;
+
+    private volatile FrameListener listener;
+    private int repeatTimeout = DEFAULT_REPEAT_TIMEOUT;
+
+    private long lastKey;
+    private long lastTick;
+    private boolean lastValid = false;
+
+    /**
+     * Decode a pulse.
+     * @param level level of the pulse (0 or 1)
+     * @param micros length of the pulse
+     * @param tick tick of the edge ending the pulse
+     */
+    public abstract void pulse(int level, int micros, long tick);
+
+    /**
+     * Forget the frame being decoded, e.g. after pulses were lost.
+     */
+    public abstract void reset();
+
+    /**
+     * Set listener receiving decoded frames.
+     * @param listener listener, null to drop frames
+     */
+    public void setListener(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set time within which a frame equal to the previous one is taken as its repeat and not reported.
+     * A repeat restarts the time, so a remote sending while its button is held is reported once.
+     * @param micros timeout in microseconds, 0 to report every frame
+     */
+    public void setRepeatTimeout(int micros) {
+        repeatTimeout = micros;
+    }
+
+    /**
+     * Pass frame to the listener.
+     * @param frame decoded frame
+     */
+    protected void report(Frame frame) {
+        FrameListener l = listener;
+        if (l != null)
+            l.frame(frame);
+    }
+
+    /**
+     * Check if frame identified by key is a repeat of the previous frame and remember it as the previous one.
+     * @param key value identifying frame contents
+     * @param tick tick of the frame
+     * @return true if it is a repeat
+     */
+    protected boolean isRepeat(long key, long tick) {
+        boolean repeat = lastValid && key == lastKey && ((tick - lastTick) & TICK_MASK) <= repeatTimeout;
+        lastKey = key;
+        lastTick = tick;
+        lastValid = true;
+        return repeat;
+    }
+} // End of class
+// End of file
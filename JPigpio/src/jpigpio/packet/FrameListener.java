@@ -0,0 +1,13 @@
+package jpigpio.packet;
+
+/**
+ * Receives frames decoded by a FrameDecoder.
+ */
+public interface FrameListener {
+
+    /**
+     * Called from the thread decoding pulses for every frame which is not a repeat of the previous one.
+     * @param frame decoded frame
+     */
+    void frame(Frame frame);
+}
@@ -0,0 +1,140 @@
+package jpigpio.packet;
+
+import java.util.Arrays;
+
+/**
+ * Decoder of Oregon Scientific sensors using protocol version 2.1 (e.g. THN132N, THGR122NX, THGN123N),
+ * reporting OregonFrames.
+ * <br><br>
+ * The sensors send Manchester encoded bits at 1024 bits/s, every bit twice (inverted and not inverted): a preamble
+ * of ones, sync nibble 0xA and the message nibbles, least significant bit first. Pulses of half a bit are short,
+ * pulses of a whole bit (two halves of equal level) are long; a long pulse flips the bit, two short pulses repeat it.
+ * The message ends with a gap. Decoding is based on the OregonDecoderV2 of JeeLabs.
+ */
+public class OregonDecoder extends FrameDecoder {
+
+    /**
+     * Messages shorter than this (nibbles after sync) are not reported.
+     */
+    public static final int MIN_NIBBLES = 12;
+
+    /**
+     * Messages longer than this (nibbles after sync) are not reported.
+     */
+    public static final int MAX_NIBBLES = 32;
+
+    // pulse lengths (microseconds)
+    private static final int MIN_PULSE = 200;
+    private static final int LONG_PULSE = 700;
+    private static final int MAX_PULSE = 1200;
+    private static final int GAP = 2500;
+
+    // long pulses of preamble needed before sync
+    private static final int PREAMBLE = 24;
+    private static final int SYNC = 0xA;
+
+    // states
+    private static final int UNKNOWN = 0;  // in preamble or noise
+    private static final int OK = 1;       // bit complete
+    private static final int T0 = 2;       // first short pulse of a repeated bit
+
+    private int state = UNKNOWN;
+    private int flip = 0;
+    private int bits = 0;       // Manchester bits, two per message bit
+    private int first;          // first (inverted) copy of the message bit
+    private int nibbleBits = 0;
+    private int nibble = 0;
+    private boolean synced = false;
+    private int count = 0;
+    private final byte[] nibbles = new byte[MAX_NIBBLES];
+
+    @Override
+    public void pulse(int level, int micros, long tick) {
+        if (micros >= MIN_PULSE && micros < MAX_PULSE) {
+            boolean isLong = micros >= LONG_PULSE;
+            switch (state) {
+                case UNKNOWN:
+                    if (isLong)
+                        flip++;
+                    else if (flip >= PREAMBLE) { // start bit
+                        flip = 0;
+                        state = T0;
+                    } else
+                        reset();
+                    break;
+                case OK:
+                    if (isLong)
+                        manchester(1);
+                    else
+                        state = T0;
+                    break;
+                case T0:
+                    if (isLong)
+                        reset();
+                    else
+                        manchester(0);
+                    break;
+                default:
+                    break;
+            }
+        } else if (micros >= GAP && state != UNKNOWN) {
+            messageDone((tick - micros) & TICK_MASK);
+            reset();
+        } else
+            reset();
+    } // End of pulse
+
+    private void manchester(int value) {
+        flip ^= value;
+        int bit = flip & 1;
+        state = OK;
+        if ((bits++ & 1) != 0) {
+            // second copy of the bit is inverted
+            if (bit == first)
+                reset();
+            return;
+        }
+        first = bit;
+        nibble |= bit << nibbleBits;
+        if (++nibbleBits < 4)
+            return;
+
+        if (!synced) {
+            if (nibble != SYNC) {
+                reset();
+                return;
+            }
+            synced = true;
+        } else {
+            if (count == MAX_NIBBLES) {
+                reset();
+                return;
+            }
+            nibbles[count++] = (byte) nibble;
+        }
+        nibble = 0;
+        nibbleBits = 0;
+    } // End of manchester
+
+    private void messageDone(long tick) {
+        if (!synced || count < MIN_NIBBLES)
+            return;
+        long key = count;
+        for (int i = 0; i < count; i++)
+            key = key * 31 + nibbles[i];
+        if (!isRepeat(key, tick))
+            report(new OregonFrame(Arrays.copyOf(nibbles, count), tick));
+    }
+
+    @Override
+    public void reset() {
+        state = UNKNOWN;
+        flip = 0;
+        bits = 0;
+        nibbleBits = 0;
+        nibble = 0;
+        synced = false;
+        count = 0;
+    }
+} // End of class
+// End of file
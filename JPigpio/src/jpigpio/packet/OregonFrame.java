@@ -0,0 +1,88 @@
+package jpigpio.packet;
+
+/**
+ * Message of an Oregon Scientific sensor (protocol version 2.1). Data are the nibbles of the message following
+ * the sync nibble, one per byte in the order sent. Messages start with sensor id, channel, rolling code and flags;
+ * what follows depends on the sensor and ends with a checksum.
+ */
+public class OregonFrame extends Frame {
+
+    /**
+     * @param nibbles nibbles following the sync nibble
+     * @param tick tick of the end of the message
+     */
+    public OregonFrame(byte[] nibbles, long tick) {
+        super(nibbles, tick, 0, false);
+    }
+
+    /**
+     * Returns nibble of the message.
+     * @param index index of the nibble, 0 is the first one after sync
+     * @return nibble
+     */
+    public int getNibble(int index) {
+        return getData()[index];
+    }
+
+    /**
+     * Returns sensor id as commonly written, e.g. 0xEC40 for THN132N or 0x1D20 for THGR122NX.
+     * @return 16 bit sensor id
+     */
+    public int getSensorId() {
+        return getNibble(0) << 12 | getNibble(1) << 8 | getNibble(2) << 4 | getNibble(3);
+    }
+
+    /**
+     * Returns channel set by the switch of the sensor (1, 2 or 4 for channels 1, 2 and 3 on most sensors).
+     * @return channel
+     */
+    public int getChannel() {
+        return getNibble(4);
+    }
+
+    /**
+     * Returns rolling code, chosen by the sensor when its batteries are replaced.
+     * @return 8 bit rolling code
+     */
+    public int getRollingCode() {
+        return getNibble(5) << 4 | getNibble(6);
+    }
+
+    /**
+     * Returns true if the sensor reports low battery.
+     * @return true on low battery
+     */
+    public boolean isBatteryLow() {
+        return (getNibble(7) & 0x4) != 0;
+    }
+
+    /**
+     * Returns temperature of temperature sensors (THN132N, THGR122NX and similar) in degrees Celsius,
+     * sent as BCD in nibbles 8 to 10 (tenths first) and sign in nibble 11.
+     * @return temperature
+     */
+    public double getTemperature() {
+        double t = getNibble(10) * 10 + getNibble(9) + getNibble(8) / 10.0;
+        return getNibble(11) != 0 ? -t : t;
+    }
+
+    /**
+     * Check checksum following the data of the message: the sum of the data nibbles, low nibble first.
+     * @param length number of data nibbles, depending on the sensor (12 for THN132N, 15 for THGR122NX)
+     * @return true if the checksum matches
+     */
+    public boolean hasValidChecksum(int length) {
+        byte[] nibbles = getData();
+        if (length + 2 > nibbles.length)
+            return false;
+        int sum = 0;
+        for (int i = 0; i < length; i++)
+            sum += nibbles[i];
+        return (sum & 0xFF) == (nibbles[length] | nibbles[length + 1] << 4);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Oregon %04X channel %d rolling code %02X", getSensorId(), getChannel(), getRollingCode());
+    }
+}
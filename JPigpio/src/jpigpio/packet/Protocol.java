@@ -1,5 +1,7 @@
 package jpigpio.packet;
 
+import java.util.Arrays;
+
 /**
  * Class defining properties of RF communication signaling.
  */
@@ -76,15 +78,31 @@ public class Protocol {
     public int[] SYMBOL = new int[]         // encoding of 4 bit nibbles into 8 bits (= byte) => error detection
             {0xF6,0xEE,0xED,0xEB,0xDE,0xDD,0xDB,0xBE,0xBD,0xBB,0xB7,0x7E,0x7D,0x7B,0x77,0x6F};
 
+    // symbol -> nibble (-1 if not a symbol) built from SYMBOL
+    private byte[] symbolTable;
+    private int[] symbolTableOf;
+
+    /**
+     * Returns table translating all 256 possible 8 bit symbols to nibbles, -1 for values which are not symbols.
+     * The table is built again if SYMBOL was replaced.
+     * @return 256 entry table
+     */
+    public byte[] symbolTable(){
+        if (symbolTableOf != SYMBOL) {
+            byte[] table = new byte[256];
+            Arrays.fill(table, (byte) -1);
+            for (int i = SYMBOL.length - 1; i >= 0; i--)
+                table[SYMBOL[i] & 0xFF] = (byte) i;
+            symbolTable = table;
+            symbolTableOf = SYMBOL;
+        }
+        return symbolTable;
+    }
+
     public int sym2nibble(int symbol){
-        int s = -1;
-        int i = 0;
-        while (i < 16 && s < 0)
-            if (SYMBOL[i] == symbol)
-                s = i;
-            else
-                i++;
-        return s;
+        if ((symbol & ~0xFF) != 0)
+            return -1;
+        return symbolTable()[symbol];
     }
 
     public int nibble2sym(int nibble){
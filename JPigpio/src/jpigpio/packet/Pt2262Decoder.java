@@ -0,0 +1,21 @@
+package jpigpio.packet;
+
+/**
+ * Decoder of remotes with PT2262 (or compatible, e.g. SC2262, HX2262) encoder chip, reporting Pt2262Frames.
+ * A PT2262 code consists of 12 trits sent as two bits each (0 = 00, 1 = 11, F = 01); codes containing the bits 10
+ * are not PT2262 codes and are not reported.
+ */
+public class Pt2262Decoder extends PwmDecoder {
+
+    public Pt2262Decoder() {
+        super(Pt2262Frame.TRITS * 2);
+    }
+
+    @Override
+    protected Frame createFrame(int code, long tick) {
+        for (int i = 0; i < Pt2262Frame.TRITS; i++)
+            if ((code >> i * 2 & 3) == 2)
+                return null;
+        return new Pt2262Frame(code, tick);
+    }
+}
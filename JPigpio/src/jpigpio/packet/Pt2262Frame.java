@@ -0,0 +1,50 @@
+package jpigpio.packet;
+
+/**
+ * Code of a PT2262 remote. Data are the 24 bits of the code, most significant byte first.
+ */
+public class Pt2262Frame extends Frame {
+
+    /**
+     * Number of trits of a code.
+     */
+    public static final int TRITS = 12;
+
+    private final int code;
+
+    /**
+     * @param code 24 bits of the code, two per trit, first received is most significant
+     * @param tick tick of the end of the code
+     */
+    public Pt2262Frame(int code, long tick) {
+        super(bytes(code, 3), tick, 0, false);
+        this.code = code;
+    }
+
+    /**
+     * Returns 24 bits of the code, first received is most significant.
+     * @return code
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Returns trits of the code as set by the address and data pins of the encoder, first sent first:
+     * '0' (pin low), '1' (pin high) or 'F' (pin floating). Usually the first 8 trits are address and the rest data.
+     * @return 12 trits
+     */
+    public String getTrits() {
+        StringBuilder trits = new StringBuilder(TRITS);
+        for (int i = TRITS - 1; i >= 0; i--) {
+            int t = code >> i * 2 & 3;
+            trits.append(t == 0 ? '0' : t == 3 ? '1' : 'F');
+        }
+        return trits.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "PT2262 " + getTrits();
+    }
+}
@@ -0,0 +1,113 @@
+package jpigpio.packet;
+
+/**
+ * Turns edges of a receiver output into pulses once for all decoders listening to it.
+ * <br><br>
+ * For every edge the length and level of the pulse it ends is measured, taking care of the 32 bit tick wrapping
+ * around, and passed to every FrameDecoder. With a glitch filter set, pulses shorter than the filter (spikes caused
+ * by noise) and pulses of the same level as the one before (edges lost) are merged into the pulse before; every
+ * pulse is then passed on one edge later, when it is known that it does not continue.
+ * <br><br>
+ * Edges have to come from one thread; decoders may be added while edges are decoded.
+ */
+public class PulseClassifier {
+
+    private static final long TICK_MASK = 0xFFFFFFFFL;
+
+    private volatile FrameDecoder[] decoders;
+    private int glitch = 0;
+
+    private long lastTick;
+    private boolean lastTickValid = false;
+
+    // pulse held back by the glitch filter
+    private boolean pending = false;
+    private int pendingLevel;
+    private int pendingMicros;
+    private long pendingTick;
+
+    /**
+     * @param decoders decoders receiving pulses
+     */
+    public PulseClassifier(FrameDecoder... decoders) {
+        this.decoders = decoders.clone();
+    }
+
+    /**
+     * Add decoder receiving pulses.
+     * @param decoder decoder to add
+     */
+    public synchronized void add(FrameDecoder decoder) {
+        FrameDecoder[] d = new FrameDecoder[decoders.length + 1];
+        System.arraycopy(decoders, 0, d, 0, decoders.length);
+        d[decoders.length] = decoder;
+        decoder.reset();
+        decoders = d;
+    }
+
+    /**
+     * Returns decoders receiving pulses.
+     * @return decoders
+     */
+    public FrameDecoder[] getDecoders() {
+        return decoders.clone();
+    }
+
+    /**
+     * Set glitch filter, which merges pulses shorter than micros into the pulse before.
+     * @param micros shortest pulse passed to decoders, 0 to pass every pulse as soon as it ends
+     */
+    public void setGlitchFilter(int micros) {
+        glitch = micros;
+    }
+
+    /**
+     * Classify an edge.
+     * @param level level after the edge (0 or 1)
+     * @param tick tick of the edge
+     */
+    public void edge(int level, long tick) {
+        tick &= TICK_MASK;
+        long length = (tick - lastTick) & TICK_MASK;
+        boolean first = !lastTickValid;
+        lastTick = tick;
+        lastTickValid = true;
+        if (first)
+            return;
+
+        int micros = (int) Math.min(length, Integer.MAX_VALUE);
+        int pulseLevel = level ^ 1;
+        if (glitch == 0) {
+            dispatch(pulseLevel, micros, tick);
+            return;
+        }
+
+        if (pending && (micros < glitch || pulseLevel == pendingLevel)) {
+            pendingMicros = (int) Math.min((long) pendingMicros + micros, Integer.MAX_VALUE);
+            pendingTick = tick;
+            return;
+        }
+        if (pending)
+            dispatch(pendingLevel, pendingMicros, pendingTick);
+        pending = true;
+        pendingLevel = pulseLevel;
+        pendingMicros = micros;
+        pendingTick = tick;
+    } // End of edge
+
+    private void dispatch(int level, int micros, long tick) {
+        for (FrameDecoder decoder : decoders)
+            decoder.pulse(level, micros, tick);
+    }
+
+    /**
+     * Forget the edge before and reset all decoders, e.g. after edges were lost.
+     */
+    public void reset() {
+        lastTickValid = false;
+        pending = false;
+        for (FrameDecoder decoder : decoders)
+            decoder.reset();
+    }
+} // End of class
+// End of file
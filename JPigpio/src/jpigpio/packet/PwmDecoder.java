@@ -0,0 +1,106 @@
+package jpigpio.packet;
+
+/**
+ * Decoder of fixed code remotes which send every bit as a high and a low pulse of one and three units of time
+ * (0 = short high + long low, 1 = long high + short low) and end every code with a sync: a high pulse of one unit
+ * followed by a low pulse of 31 units. Codes are sent repeatedly, the first one is decoded from the sync sent after
+ * it. The unit (usually 300 to 500 microseconds, depending on the oscillator of the encoder chip) is measured
+ * from the sync, so encoders running at different speeds are decoded alike.
+ */
+public abstract class PwmDecoder extends FrameDecoder {
+
+    // unit measured from sync is accepted within this range (microseconds)
+    private static final int MIN_UNIT = 100;
+    private static final int MAX_UNIT = 1500;
+    // low pulse of sync is accepted within this range of its high pulse
+    private static final int MIN_SYNC_RATIO = 20;
+    private static final int MAX_SYNC_RATIO = 40;
+
+    private static final int SHORT = 0;
+    private static final int LONG = 1;
+    private static final int BAD = 2;
+
+    private final int bits;
+
+    private int unit;
+    private int high = -1;   // length of high pulse waiting for its low pulse, -1 if none
+    private int count = -1;  // bits received since sync, -1 if no sync yet
+    private int code;
+
+    /**
+     * @param bits bits per code, at most 32
+     */
+    protected PwmDecoder(int bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Create frame of a decoded code, which is not a repeat of the previous one.
+     * @param code bits of the code, first received is most significant
+     * @param tick tick of the end of the code
+     * @return frame to report or null if the code is not valid for the protocol
+     */
+    protected abstract Frame createFrame(int code, long tick);
+
+    @Override
+    public void pulse(int level, int micros, long tick) {
+        if (level == 1) {
+            high = micros;
+            return;
+        }
+        if (high < 0) // low pulse after low pulse
+            return;
+        int h = high;
+        high = -1;
+
+        if (h >= MIN_UNIT && h <= MAX_UNIT && micros >= h * MIN_SYNC_RATIO && micros <= h * MAX_SYNC_RATIO) {
+            if (count == bits) {
+                long end = (tick - micros) & TICK_MASK;
+                if (!isRepeat(code, end)) {
+                    Frame frame = createFrame(code, end);
+                    if (frame != null)
+                        report(frame);
+                }
+            }
+            unit = (h + micros) / 32;
+            count = 0;
+            code = 0;
+            return;
+        }
+        if (count < 0)
+            return;
+
+        int hw = width(h);
+        int lw = width(micros);
+        if (count < bits && hw == SHORT && lw == LONG)
+            code <<= 1;
+        else if (count < bits && hw == LONG && lw == SHORT)
+            code = code << 1 | 1;
+        else {
+            // not a bit or too many bits, wait for next sync
+            count = -1;
+            return;
+        }
+        count++;
+    } // End of pulse
+
+    /**
+     * Classify pulse as one or three units long.
+     */
+    private int width(int micros) {
+        if (micros < unit / 2)
+            return BAD;
+        if (micros < unit * 2)
+            return SHORT;
+        if (micros < unit * 5)
+            return LONG;
+        return BAD;
+    }
+
+    @Override
+    public void reset() {
+        high = -1;
+        count = -1;
+    }
+} // End of class
+// End of file
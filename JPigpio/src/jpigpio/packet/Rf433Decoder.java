@@ -0,0 +1,270 @@
+package jpigpio.packet;
+
+import jpigpio.Utils;
+
+/**
+ * Decodes datagrams of Rf433tx from edges of the receiver output.
+ * <br><br>
+ * Pulses are classified by their length and the level they end with, the decoder then moves between its states
+ * using a transition table and symbols are turned into nibbles using the 256 entry table of Protocol.
+ * Decoding an edge allocates nothing when datagrams are passed to a Listener in a buffer reused for the next one;
+ * without a Listener every datagram is reported as Datagram to the FrameListener.
+ * Ticks are unsigned 32 bit microsecond counters of pigpio and may wrap around.
+ * <br><br>
+ * The decoder is not thread safe, all edges have to come from one thread (e.g. the thread delivering alerts).
+ */
+public class Rf433Decoder extends FrameDecoder {
+
+    /**
+     * Receives decoded datagrams.
+     */
+    public interface Listener {
+        /**
+         * Called for every datagram which is not a repeat of the previous one.
+         * @param nibbles datagram nibbles (4bit stored in 8bit), only valid during the call
+         * @param tick tick of the edge completing the datagram
+         * @param repeatCount number of times the datagram was received as a repeat before it was reported
+         * @param error true if a symbol could not be decoded (reported only with DGRM_KEEP_ON_ENCODING_ERROR)
+         */
+        void datagram(byte[] nibbles, long tick, int repeatCount, boolean error);
+    }
+
+    // states
+    static final int IDLE = 0;
+    static final int MSG_START_FOUND = 1;
+    static final int BYTE_START_FOUND = 2;
+    static final int GET_BYTE = 3;
+
+    // pulse classes: kind of pulse * 2 + level after the pulse
+    static final int SHORT_LOW = 0;
+    static final int SHORT_HIGH = 1;
+    static final int LONG_LOW = 2;
+    static final int LONG_HIGH = 3;
+    static final int GAP_LOW = 4;
+    static final int GAP_HIGH = 5;
+    static final int BAD = 6;
+    private static final int CLASSES = 7;
+
+    // actions done on a transition
+    private static final int NONE = 0;
+    private static final int MESSAGE_START = 1;  // 1 after datagram gap
+    private static final int BYTE_START = 2;     // start of first byte
+    private static final int FIRST_ONE = 3;      // first bit of a symbol, 1
+    private static final int FIRST_ZERO = 4;     // first bit of a symbol, 0
+    private static final int ONE = 5;            // 1 160->500
+    private static final int ZERO = 6;           // 0 500->1500
+
+    // next state and action indexed by state * CLASSES + pulse class, all other pulses go to IDLE
+    private static final byte[] NEXT_STATE = new byte[4 * CLASSES];
+    private static final byte[] ACTION = new byte[4 * CLASSES];
+
+    static {
+        transition(IDLE, GAP_HIGH, MSG_START_FOUND, MESSAGE_START);
+        transition(MSG_START_FOUND, SHORT_LOW, MSG_START_FOUND, NONE);
+        transition(MSG_START_FOUND, SHORT_HIGH, BYTE_START_FOUND, BYTE_START);
+        transition(BYTE_START_FOUND, SHORT_LOW, BYTE_START_FOUND, NONE);
+        transition(BYTE_START_FOUND, SHORT_HIGH, GET_BYTE, FIRST_ONE);
+        transition(BYTE_START_FOUND, LONG_HIGH, GET_BYTE, FIRST_ZERO);
+        transition(GET_BYTE, SHORT_LOW, GET_BYTE, NONE);
+        transition(GET_BYTE, SHORT_HIGH, GET_BYTE, ONE);
+        transition(GET_BYTE, LONG_HIGH, GET_BYTE, ZERO);
+    }
+
+    private static void transition(int state, int pulseClass, int next, int action) {
+        NEXT_STATE[state * CLASSES + pulseClass] = (byte) next;
+        ACTION[state * CLASSES + pulseClass] = (byte) action;
+    }
+
+    final Protocol protocol;
+    private final byte[] symbolTable;
+    private final Listener listener;
+
+    private int state = IDLE;
+    private long lastTick;
+    private boolean lastTickValid = false;
+    private long messageTick;
+    private boolean messageTickValid = false;
+
+    private boolean datagramError = false;
+    private int repeatCount = 0;
+    private boolean duplicate = false;
+
+    private int dataBit = 0;
+    private int dataByte = 0;
+    private int data = 0;
+    private final byte[] datagram;
+
+    private int byteErrorCount = 0;
+    private int datagramErrorCount = 0;
+
+    /**
+     * Decoder reporting Datagrams to its FrameListener.
+     * @param protocol protocol of the datagrams
+     */
+    public Rf433Decoder(Protocol protocol) {
+        this(protocol, null);
+    }
+
+    /**
+     * @param protocol protocol of the datagrams
+     * @param listener receives decoded datagrams in a reused buffer, null to report Datagrams to the FrameListener
+     */
+    public Rf433Decoder(Protocol protocol, Listener listener) {
+        this.protocol = protocol;
+        this.symbolTable = protocol.symbolTable();
+        this.listener = listener;
+        this.datagram = new byte[protocol.DGRM_LENGTH];
+    }
+
+    /**
+     * Decode an edge, for use without a PulseClassifier.
+     * @param level level after the edge (0 or 1)
+     * @param tick tick of the edge
+     */
+    public void edge(int level, long tick) {
+        tick &= TICK_MASK;
+        long pulse = (tick - lastTick) & TICK_MASK;
+        boolean first = !lastTickValid;
+        lastTick = tick;
+        lastTickValid = true;
+
+        if (!first)
+            pulse(level ^ 1, (int) Math.min(pulse, Integer.MAX_VALUE), tick);
+    } // End of edge
+
+    @Override
+    public void pulse(int level, int micros, long tick) {
+        if (micros < protocol.RX_PULSE_TOOSHORT) // very short pulse - ignore it
+            return;
+        if (state == IDLE && micros <= protocol.RX_PULSE_MSGGAP) // quick check to see worth proceeding
+            return;
+
+        int after = level ^ 1;
+        int pulseClass;
+        if (micros < protocol.RX_PULSE_ONE)           // normal short pulse
+            pulseClass = SHORT_LOW + after;
+        else if (micros < protocol.RX_PULSE_ZERO)     // normal long pulse
+            pulseClass = LONG_LOW + after;
+        else if (micros > protocol.RX_PULSE_MSGGAP)   // gap between datagrams
+            pulseClass = GAP_LOW + after;
+        else
+            pulseClass = BAD;
+
+        int t = state * CLASSES + pulseClass;
+        state = NEXT_STATE[t];
+        switch (ACTION[t]) {
+            case MESSAGE_START:
+                duplicate = true;
+                break;
+            case BYTE_START:
+                dataByte = 0;
+                break;
+            case FIRST_ONE:
+                data = 0;
+                dataBit = 0;
+                break;
+            case FIRST_ZERO:
+                data = 0;
+                dataBit = 1;
+                break;
+            case ONE:
+                data = data << 1 | 1;
+                dataBit += 1;
+                symbolDone(tick);
+                break;
+            case ZERO:
+                data = data << 2 | 2;
+                dataBit += 2;
+                symbolDone(tick);
+                break;
+            default:
+                break;
+        }
+    } // End of pulse
+
+    /**
+     * Check if symbol is complete, decode it and report the datagram when it is complete.
+     */
+    private void symbolDone(long tick) {
+        if (dataBit < 8)
+            return;
+
+        // symbols longer than 8 bits are not valid either
+        int nibble = (data & ~0xFF) == 0 ? symbolTable[data] : -1;
+
+        if (nibble < 0) {
+            datagramError = true;
+            byteErrorCount++;
+        } else {
+            // first received byte different from the same byte from previous datagram
+            // means this datagram is not a duplicate of the previous one
+            if (nibble != datagram[dataByte]) {
+                duplicate = false;
+                repeatCount = 0;
+            }
+            datagram[dataByte] = (byte) nibble;
+        }
+
+        dataByte++;
+        dataBit = 0;
+
+        if (dataByte < protocol.DGRM_LENGTH) {
+            state = BYTE_START_FOUND;
+            return;
+        }
+
+        // datagram complete
+        if (!messageTickValid || ((tick - messageTick) & TICK_MASK) > protocol.DGRM_RX_TIMEOUT) {
+            repeatCount = 0;
+            duplicate = false;
+        } else if (duplicate)
+            repeatCount++;
+
+        if (repeatCount >= protocol.DGRM_REPEAT_RX) {
+            repeatCount = 0;
+            duplicate = false;
+        }
+
+        // if no datagram error (or ignoring datagram errors) and not duplicate
+        if ((protocol.DGRM_KEEP_ON_ENCODING_ERROR || !datagramError) && !duplicate) {
+            if (listener != null)
+                listener.datagram(datagram, tick, repeatCount, datagramError);
+            else
+                report(new Datagram(Utils.nibbles2bytes(datagram), tick, repeatCount, datagramError));
+        }
+
+        state = IDLE;
+        messageTick = tick;
+        messageTickValid = true;
+
+        if (datagramError)
+            datagramErrorCount++;
+        datagramError = false;
+    } // End of symbolDone
+
+    /**
+     * Forget the edge before, e.g. after edges were lost.
+     */
+    @Override
+    public void reset() {
+        state = IDLE;
+        lastTickValid = false;
+    }
+
+    /**
+     * Returns number of symbols which could not be decoded.
+     * @return byte error count
+     */
+    public int byteErrorCount() {
+        return byteErrorCount;
+    }
+
+    /**
+     * Returns number of datagrams with a symbol which could not be decoded.
+     * @return datagram error count
+     */
+    public int datagramErrorCount() {
+        return datagramErrorCount;
+    }
+} // End of class
+// End of file
@@ -2,16 +2,20 @@
 
 import jpigpio.JPigpio;
 import jpigpio.PigpioException;
-import jpigpio.Utils;
 
-import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class implementing RF 433 MHz communication receiver (e.g. XD-RF-5V).
  * It implements NotificationReceiver which is decoding pulses based on preset Protocol
  * (you can tweak signalling by creating your own Protocol). NotificationListener is plugged
  * to PigpioSocket NotificationRouter, receiving every notification received from pigpiod daemon.
- * Received datagrams can be accessed via method get()
+ * Received datagrams can be accessed via method get() or waited for using take() and poll(timeout).
+ * Datagrams are queued up to a capacity; when nobody takes them, the oldest ones are dropped.
+ * <br><br>
+ * Other protocols (e.g. PT2262 or EV1527 remotes and Oregon Scientific sensors) can be received at the same time
+ * by adding their FrameDecoders; all decoders share one PulseClassifier and frames of all types are queued together.
  * <br><br>
  * Work is based on Robert Tidey LightwaveRF code https://github.com/roberttidey/LightwaveRF
  */
@@ -26,58 +30,43 @@ public class Rf433rx {
     Protocol protocol;
 
     /**
-     * ArrayList of datagrams received from transmitter.
+     * Default number of frames kept until taken.
      */
-    ArrayList<byte[]> datagrams = new ArrayList<>();
+    public static final int DEFAULT_CAPACITY = 64;
 
     /**
-     * Class handling all notifications coming from pigpiod.
-     * Technically this means this class analyzes signals received by pigpiod
-     * and creates datagrams out of them.
+     * Frames received from transmitters.
      */
-    class RxNotificationListener extends NotificationListener {
-
-        final int RX_STATE_IDLE = 0;
-        final int RX_STATE_MSGSTARTFOUND = 1;
-        final int RX_STATE_BYTESTARTFOUND = 2;
-        final int RX_STATE_GETBYTE = 3;
-
-        boolean datagramError = false;
-
-        int messageTick = 0;
-        long lastTick = 0;
-        long pulse = 0;
-        int state = RX_STATE_IDLE;
-        //int data1 = 0;
+    ArrayBlockingQueue<Frame> frames;
 
-        int repeatCount = 0;
-        boolean duplicate = false;
+    // turns edges into pulses for all decoders
+    PulseClassifier classifier = new PulseClassifier();
 
-        int dataBit = 0;
-        int dataByte = 0;
+    // decoder of datagrams according to protocol, null if receiving other protocols only
+    Rf433Decoder decoder;
 
-        byte[] datagram = new byte[protocol.DGRM_LENGTH];
+    // queues frames of all decoders
+    RxNotificationListener rxListener;
 
-        int data = 0;
+    // frames dropped as the queue was full (written by the thread delivering alerts only)
+    volatile int droppedCount = 0;
 
-        String pulses = "";
+    /**
+     * Class handling all notifications coming from pigpiod.
+     * Technically this means this class analyzes signals received by pigpiod
+     * and creates datagrams out of them.
+     */
+    class RxNotificationListener extends NotificationListener implements FrameListener {
 
         RxNotificationListener(int userGpio, int edge){
             super(userGpio, edge);
-            try {
-                lastTick = pi.getCurrentTick();
-            } catch (PigpioException e) {
-                // TODO: handle somehow
-            }
         }
 
         @Override
         public void alert(int gpio, int level, long tick){
-            int trans = 0;
-
             count++;  // increase called count for statistical purposes
 
-            if (level == pi.PI_TIMEOUT) { // TIMEOUT notification received from PIGPIO?
+            if (level == JPigpio.PI_TIMEOUT) { // TIMEOUT notification received from PIGPIO?
                 try {
                     pi.setWatchdog(rxGpio, 0); // Switch watchdog off.
                 } catch (PigpioException e) {
@@ -86,145 +75,87 @@ public void alert(int gpio, int level, long tick){
                 return;
             }
 
-            pulse = Utils.tickDiff(lastTick, tick);
-            lastTick = (int)tick;
+            classifier.edge(level, tick);
+        }
 
-            if (pulse < protocol.RX_PULSE_TOOSHORT) // very short pulse - ignore it
-                return;
-            else if (state == RX_STATE_IDLE && pulse <= protocol.RX_PULSE_MSGGAP) // quick check to see worth proceeding
-                return;
-            else if (pulse < protocol.RX_PULSE_ONE) {   // normal short pulse
-                trans = level + 2;
-                pulses += "1";
-            } else if (pulse < protocol.RX_PULSE_ZERO) {  // normal long pulse
-                trans = level + 4;
-                pulses += "0";
-            } else if (pulse > protocol.RX_PULSE_MSGGAP) { // gap between datagrams
-                trans = level + 6;
-                pulses += " ";
-            } else
-                trans = 8;
-
-            // state machine
-            switch (state) {
-                //-----------------------------
-                case RX_STATE_IDLE:
-                    if (trans == 7) { // 1 after datagram gap
-                        state = RX_STATE_MSGSTARTFOUND;
-                        duplicate = true;
-                    }
-                    break;
-                //-----------------------------
-                case RX_STATE_MSGSTARTFOUND:
-                    if (trans == 2)         // nothing to do, wait for next 1
-                        trans = trans;
-                    else if (trans == 3) {  // start of byte detected
-                        dataByte = 0;
-                        state = RX_STATE_BYTESTARTFOUND;
-                    } else
-                        state = RX_STATE_IDLE;
-                    break;
-                //-----------------------------
-                case RX_STATE_BYTESTARTFOUND:
-                    if (trans == 2)
-                        trans = trans;
-                    else if (trans == 3) {  // 1 160->500
-                        data = 0;
-                        dataBit = 0;
-                        state = RX_STATE_GETBYTE;
-                    } else if (trans == 5) {  // 0 500->1500
-                        data = 0;
-                        dataBit = 1;
-                        state = RX_STATE_GETBYTE;
-                    } else
-                        state = RX_STATE_IDLE;
-                    break;
-                //-----------------------------
-                case RX_STATE_GETBYTE:
-                    if (trans == 2)
-                        trans = trans;
-                    else if (trans == 3) {      // 1 160->500
-                        data = data << 1 | 1;
-                        dataBit += 1;
-                    } else if (trans == 5) {     // 0 500->1500
-                        data = data << 2 | 2;
-                        dataBit += 2;
-                    } else
-                        state = RX_STATE_IDLE;
-
-                    // check if byte complete
-                    if (dataBit >= 8) {
-
-                        data = protocol.sym2nibble(data);
-
-                        // negative means: not found in nibbles => byte error
-                        if (data < 0) {
-                            datagramError = true;
-                            byteErrorCount++;
-                        } else {
-                            // first received byte different from the same byte from previous datagram
-                            // means this datagram is not a duplicate of the previous one
-                            if (data != datagram[dataByte]) {
-                                duplicate = false;
-                                repeatCount = 0;
-                            }
-
-                            datagram[dataByte] = (byte) data;
-                        }
-
-                        dataByte++;
-                        dataBit = 0;
-                        pulses = "";
-
-                        if (dataByte >= protocol.DGRM_LENGTH) {  //datagram complete?
-                            //System.out.println("#1 datagram received: "+datagram.toString());
-
-                            if (Utils.tickDiff(messageTick, (int) lastTick) > protocol.DGRM_RX_TIMEOUT || messageTick == 0) {
-                                repeatCount = 0;
-                                duplicate = false;
-                            } else if (duplicate)
-                                repeatCount++;
-
-                            if (repeatCount >= protocol.DGRM_REPEAT_RX){
-                                repeatCount = 0;
-                                duplicate = false;
-                            }
-
-                            // if no datagram error (or ignoring datagram errors) and not duplicate
-                            // System.out.println("#2 conditions: "+ protocol.DGRM_KEEP_ON_ENCODING_ERROR + " : " + datagramError + " # " + duplicate);
-                            if ((protocol.DGRM_KEEP_ON_ENCODING_ERROR || !datagramError) && !duplicate) {
-                                // System.out.println("#3 datagram processed: "+datagram.toString());
-                                datagrams.add(Utils.nibbles2bytes(datagram));
-                            }
-
-                            state = RX_STATE_IDLE;
-                            //messageTick = messageTick;
-                            messageTick = (int)tick;
-
-                            if (datagramError)
-                                datagramErrorCount++;
-                            datagramError = false;
-
-                        } else
-                            state = RX_STATE_BYTESTARTFOUND;
-                    }
-                    break;
-            }
+        @Override
+        public void frame(Frame frame){
+            // never block the thread delivering alerts, drop the oldest frame instead
+            while (!frames.offer(frame))
+                if (frames.poll() != null)
+                    droppedCount++;
+        }
+
+        @Override
+        public int byteErrorCount(){
+            return decoder != null ? decoder.byteErrorCount() : 0;
+        }
 
+        @Override
+        public int datagramErrorCount(){
+            return decoder != null ? decoder.datagramErrorCount() : 0;
         }
 
     }
 
 
     public Rf433rx(JPigpio pi, int rxGpio, Protocol protocol) throws PigpioException{
+        this(pi, rxGpio, protocol, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param pi pigpio to receive with
+     * @param rxGpio GPIO the receiver is connected to
+     * @param protocol protocol of the datagrams
+     * @param capacity number of datagrams kept until taken
+     * @throws PigpioException  on pigpiod error
+     */
+    public Rf433rx(JPigpio pi, int rxGpio, Protocol protocol, int capacity) throws PigpioException{
+        this(pi, rxGpio, capacity, new Rf433Decoder(protocol));
+    }
+
+    /**
+     * Receiver of the protocols of decoders.
+     * @param pi pigpio to receive with
+     * @param rxGpio GPIO the receiver is connected to
+     * @param capacity number of frames kept until taken
+     * @param decoders decoders of the protocols to receive
+     * @throws PigpioException  on pigpiod error
+     */
+    public Rf433rx(JPigpio pi, int rxGpio, int capacity, FrameDecoder... decoders) throws PigpioException{
         this.pi = pi;
         this.rxGpio = rxGpio;
-        this.protocol = protocol;
+        this.frames = new ArrayBlockingQueue<>(capacity);
+
+        this.rxListener = new RxNotificationListener(rxGpio, JPigpio.PI_EITHER_EDGE);
+        for (FrameDecoder d : decoders)
+            addDecoder(d);
 
         pi.gpioSetMode(rxGpio, JPigpio.PI_INPUT);
 
-        setCallback(new RxNotificationListener(rxGpio, JPigpio.PI_EITHER_EDGE));
+        setCallback(rxListener);
+
+    }
+
+    /**
+     * Receive frames of one more protocol.
+     * @param decoder decoder of the protocol
+     */
+    public void addDecoder(FrameDecoder decoder){
+        if (decoder instanceof Rf433Decoder && this.decoder == null) {
+            this.decoder = (Rf433Decoder) decoder;
+            this.protocol = this.decoder.protocol;
+        }
+        decoder.setListener(rxListener);
+        classifier.add(decoder);
+    }
 
+    /**
+     * Ignore pulses shorter than micros, e.g. spikes caused by noise, see PulseClassifier.setGlitchFilter().
+     * @param micros shortest pulse to decode, 0 to decode every pulse
+     */
+    public void setGlitchFilter(int micros){
+        classifier.setGlitchFilter(micros);
     }
 
     public void setCallback(NotificationListener notificationListener) throws PigpioException{
@@ -240,7 +171,30 @@ public void setCallback(NotificationListener notificationListener) throws Pigpio
      * @throws IndexOutOfBoundsException if there is no datagram available
      */
     public byte[] get() throws IndexOutOfBoundsException {
-        return datagrams.remove(0);
+        Frame frame = frames.poll();
+        if (frame == null)
+            throw new IndexOutOfBoundsException("No datagram available");
+        return frame.getData();
+    }
+
+    /**
+     * Wait for a frame.
+     * @return frame with data and reception details, a Datagram or a frame of a decoder added
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Frame take() throws InterruptedException {
+        return frames.take();
+    }
+
+    /**
+     * Wait for a frame at most timeout.
+     * @param timeout how long to wait
+     * @param unit unit of timeout
+     * @return frame with data and reception details or null if none was received within timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Frame poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return frames.poll(timeout, unit);
     }
 
     /**
@@ -249,7 +203,7 @@ public byte[] get() throws IndexOutOfBoundsException {
      * Number of datagrams available.
      */
     public int available(){
-        return datagrams.size();
+        return frames.size();
     }
 
     /**
@@ -282,5 +236,13 @@ public int datagramErrorCount(){
         return cb.datagramErrorCount();
     }
 
+    /**
+     * Simple statistics returning number of frames dropped because the queue was full.
+     * @return number of dropped frames.
+     */
+    public int droppedCount(){
+        return droppedCount;
+    }
+
 
 }
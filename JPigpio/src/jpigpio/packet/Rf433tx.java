@@ -4,14 +4,26 @@
 import jpigpio.PigpioException;
 import jpigpio.Pulse;
 import jpigpio.Utils;
+import jpigpio.WaveBuilder;
+import jpigpio.WaveCache;
+import jpigpio.WaveScheduler;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class implementing 433 MHz transmitter (e.g. FS1000A) using pigpiod daemon.
  * Specific protocol (high/low signal duration, datagram/message length etc. can be cofigured
  * by passing different Protocol object to the constructor of this class.
  * <br><br>
+ * Data sent repeatedly (e.g. by beacons) can be compiled once by compile() and sent by send(), which transmits
+ * the preamble and all repeats as one wave chain.
+ * <br><br>
+ * Waves are transmitted by a WaveScheduler, which expects to be the only one transmitting waves on its JPigpio.
+ * Transmitters on the same JPigpio, and anything else sending waves there, should therefore share one scheduler
+ * (and its WaveCache) passed to the constructor. Existing waves are left alone, the transmitter deletes only waves
+ * created by a scheduler of its own.
+ * <br><br>
  * Work is based on Robert Tidey LightwaveRF code https://github.com/roberttidey/LightwaveRF
  *
  * Example usage: see Test_Rf433Tx
@@ -22,122 +34,48 @@ public class Rf433tx {
     int txBit;
 
     Protocol protocol;
-    Transmitter transmitter;
+    // waves of datagrams sent before, a repeated datagram is not uploaded again
+    WaveCache waves;
+    // transmits queued datagrams one after another
+    WaveScheduler scheduler;
+    // scheduler created by this transmitter, closed by terminate()
+    boolean ownScheduler;
+    // TX high to get agc of RX trained before a datagram
+    WaveBuilder preamble;
 
     /**
-     * Inner class responsible for converting pulses to pigpiod waves and transmitting them in a separate thread.
+     * Transmitter with a WaveScheduler of its own, for a JPigpio nothing else sends waves on.
+     * @param pi pigpio to transmit with
+     * @param txGpio GPIO the transmitter is connected to
+     * @param protocol protocol of the datagrams
+     * @throws PigpioException  on pigpiod error
      */
-    class Transmitter implements Runnable {
-
-        Thread thread;
-        boolean stop = false;
-        boolean error = false;
-        boolean busy = false;
-        Exception lastEx;
-        JPigpio pi;
-
-        ArrayList<ArrayList<Pulse>> wavePulses = new ArrayList<>();
-
-        Transmitter(JPigpio jPigpio){
-            this.pi = jPigpio;
-        }
-
-        @Override
-        public void run(){
-            int waveId=-1;
-            while (!stop){
-                try {
-                    if (wavePulses.size() > 0 && !pi.waveTxBusy()) {
-
-                        busy = true;
-
-                        //pi.waveTxStop();
-                        pi.waveAddNew();
-
-                        // Set TX high and wait to get agc of RX trained
-                        pi.gpioWrite(txGpio,true);
-                        Thread.sleep(protocol.TX_PULSE_MSGGAP / 1000);
-
-                        // create wave & "upload" it to pigpiod for transmitting
-                        pi.waveAddGeneric(wavePulses.remove(0));
-                        waveId = pi.waveCreate();
-
-                        // repeat packet sending according to protocol parameters
-                        for (int r = 0; r < protocol.DGRM_REPEAT_TX && !stop; r++) {
-                            pi.waveSendOnce(waveId);
-                            Thread.sleep(50);
-                            while (pi.waveTxBusy()) {
-                                Thread.sleep(2);  // empiric value of 2ms
-                            }
-                        }
-
-                        // removeListener waveform after it has been transmitted
-                        pi.waveDelete(waveId);
-
-                        busy = false;
-
-                    } else // nothing to send or busy => sleep
-                        Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    //TODO: not expecting this to happen
-                } catch (PigpioException e) {
-                    error = true;
-                    lastEx = e;
-                    System.out.println("Error: while sending wave "+waveId);
-                }
-
-            }
-
-        }
-
-        /**
-         * Add pulse to transmitter queue
-         * @param pulse Pulse to be transmitted
-         */
-        void addWave( ArrayList<Pulse> pulse){
-            this.wavePulses.add(pulse);
-        }
-
-        /**
-         * Read status of transmitter.
-         * @return true if not transmitting and there are no pulses waiting to be transmitted
-         * @throws PigpioException
-         */
-        boolean ready() throws PigpioException {
-            return this.wavePulses.size() == 0 && !busy;
-        }
-
-        void start(){
-            if (thread == null)
-            {
-                thread = new Thread (this);
-                thread.setName("WaveTransmitter");
-                thread.start ();
-            }
-        }
-
-        /**
-         * Stop transmitter
-         * @throws PigpioException
-         */
-        void stop() throws PigpioException{
-            this.stop = true;
-            pi.waveTxStop();
-        }
-
+    public Rf433tx(JPigpio pi, int txGpio, Protocol protocol) throws PigpioException {
+        this(pi, txGpio, protocol, new WaveScheduler(pi));
+        this.ownScheduler = true;
     }
 
-    public Rf433tx(JPigpio pi, int txGpio, Protocol protocol) throws PigpioException {
+    /**
+     * Transmitter sharing a WaveScheduler (and its WaveCache) with other users of the JPigpio.
+     * terminate() leaves the scheduler running, it is closed by its owner.
+     * @param pi pigpio to transmit with
+     * @param txGpio GPIO the transmitter is connected to
+     * @param protocol protocol of the datagrams
+     * @param scheduler scheduler transmitting all waves of pi
+     * @throws PigpioException  on pigpiod error
+     */
+    public Rf433tx(JPigpio pi, int txGpio, Protocol protocol, WaveScheduler scheduler) throws PigpioException {
         this.pi = pi;
         this.txGpio = txGpio;
         this.txBit = (1<< txGpio);
 
         this.protocol = protocol;
-        this.transmitter = new Transmitter(pi);
-        this.transmitter.start();
 
-        pi.waveClear();
         pi.gpioSetMode(txGpio, JPigpio.PI_OUTPUT);
+
+        this.preamble = new WaveBuilder().high(txGpio, protocol.TX_PULSE_MSGGAP);
+        this.scheduler = scheduler;
+        this.waves = scheduler.getCache();
     }
 
     /**
@@ -146,38 +84,74 @@ public Rf433tx(JPigpio pi, int txGpio, Protocol protocol) throws PigpioException
      * @return ArrayList of Pulses
      */
     public ArrayList<Pulse> constructMessagePulses(byte[] data){
-        ArrayList<Pulse> wf;
+        return constructMessageWave(data).toPulses();
+    }
+
+    /**
+     * Construct waveform of datagram data
+     * @param data Data (4bit nibbles) to be transmitted
+     * @return waveform of the datagram
+     */
+    public WaveBuilder constructMessageWave(byte[] data){
+        WaveBuilder wf;
         int dataByte;
 
-        // Define a single datagram waveform
-        wf = new ArrayList<>();
+        // Define a single datagram waveform, two pulses per symbol bit at most
+        wf = new WaveBuilder(4 + data.length * 18);
         // Pre Message low gap
-        wf.add(new Pulse(0, txBit, protocol.TX_PULSE_MSGGAP));
+        wf.pulse(0, txBit, protocol.TX_PULSE_MSGGAP);
         // Message start pulse
-        wf.add(new Pulse(txBit, 0, protocol.TX_PULSE_HIGH));
-        wf.add(new Pulse(0, txBit, protocol.TX_PULSE_HIGH));
+        wf.pulse(txBit, 0, protocol.TX_PULSE_HIGH);
+        wf.pulse(0, txBit, protocol.TX_PULSE_HIGH);
 
         for(byte i: data){
-            wf.add(new Pulse(txBit,0,protocol.TX_PULSE_HIGH));
-            wf.add(new Pulse(0, txBit, protocol.TX_PULSE_HIGH));
+            wf.pulse(txBit, 0, protocol.TX_PULSE_HIGH);
+            wf.pulse(0, txBit, protocol.TX_PULSE_HIGH);
             dataByte = protocol.nibble2sym(i);
             for (byte j = 0; j<8; j++)
                 if ((dataByte & (0x80>>j)) != 0){
-                    wf.add(new Pulse(txBit,0,protocol.TX_PULSE_HIGH));
-                    wf.add(new Pulse(0, txBit, protocol.TX_PULSE_HIGH));
+                    wf.pulse(txBit, 0, protocol.TX_PULSE_HIGH);
+                    wf.pulse(0, txBit, protocol.TX_PULSE_HIGH);
                 } else
-                    wf.add(new Pulse(0, 0, protocol.TX_PULSE_LOW));
+                    wf.delay(protocol.TX_PULSE_LOW);
 
         }
 
         // Message end pulse
-        wf.add(new Pulse(txBit,0,protocol.TX_PULSE_HIGH));
-        wf.add(new Pulse(0, txBit, protocol.TX_PULSE_HIGH));
+        wf.pulse(txBit, 0, protocol.TX_PULSE_HIGH);
+        wf.pulse(0, txBit, protocol.TX_PULSE_HIGH);
 
         return wf;
     }
 
 
+    /**
+     * Compile data into a frame, which can be sent any number of times.
+     * Its wave is created right away, so sending it does not upload anything.
+     *
+     * @param data data to be transmitted
+     * @return compiled frame
+     * @throws PigpioException  if data are not DATA_SIZE bytes or on pigpiod error
+     */
+    public TransmitFrame compile(byte[] data) throws PigpioException{
+        if (data.length != protocol.DATA_SIZE)
+            throw new PigpioException("Rf433tx: data must be " + protocol.DATA_SIZE + " bytes");
+
+        TransmitFrame frame = new TransmitFrame(constructMessageWave(Utils.bytes2nibbles(data)), protocol.DGRM_REPEAT_TX);
+        frame.waveId = waves.getWaveId(frame.wave);
+        return frame;
+    }
+
+    /**
+     * Transmit a compiled frame: the preamble and all repeats of the datagram as one wave chain.
+     *
+     * @param frame frame compiled by this transmitter
+     * @return future completed when all repeats of the datagram have been transmitted
+     */
+    public synchronized CompletableFuture<Void> send(TransmitFrame frame){
+        return scheduler.submitChain(frame.repeats, preamble, frame.wave);
+    }
+
     /**
      * Converts provided data to waveforms using properties of Protocol
      * and transmits waveforms repeatedly (if required by Protocol).
@@ -192,7 +166,24 @@ public int put (byte[] data) throws PigpioException{
         if (data.length != protocol.DATA_SIZE)
             return -1;
 
-        return putNibbles(Utils.bytes2nibbles(data));
+        return putNibbles(Utils.bytes2nibbles(data)) == null ? -1 : 0;
+    }
+
+    /**
+     * Same as put, returning a future completed when the data has been transmitted.
+     *
+     * @param data data to be transmitted
+     * @return future completed when all repeats of the datagram have been transmitted
+     */
+    public CompletableFuture<Void> putAsync(byte[] data){
+        CompletableFuture<Void> sent = null;
+        if (data.length == protocol.DATA_SIZE)
+            sent = putNibbles(Utils.bytes2nibbles(data));
+        if (sent == null) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(new PigpioException("Rf433tx: data must be " + protocol.DATA_SIZE + " bytes"));
+        }
+        return sent;
     }
 
     /**
@@ -202,22 +193,13 @@ public int put (byte[] data) throws PigpioException{
      * @param nibbles
      * nibbles stored in bytes to transmit.
      * @return
-     * 0 - everything is OK
-     * -1 - data
-     * @throws PigpioException
+     * future completed when the datagram has been transmitted, null if there are not enough nibbles
      */
-    int putNibbles (byte[] nibbles) throws PigpioException{
-        int ret = 0;
-        ArrayList<Pulse> wf;
-
+    CompletableFuture<Void> putNibbles (byte[] nibbles){
         if (nibbles.length < protocol.DGRM_LENGTH)
-            return -1;
-
-        wf = constructMessagePulses(nibbles);
-        transmitter.addWave(wf);
-
-        return ret;
+            return null;
 
+        return send(new TransmitFrame(constructMessageWave(nibbles), protocol.DGRM_REPEAT_TX));
     }
 
 
@@ -228,17 +210,19 @@ int putNibbles (byte[] nibbles) throws PigpioException{
      * @throws PigpioException  on pigpiod error
      */
     public synchronized boolean ready() throws PigpioException {
-        return transmitter.ready();
+        return scheduler.isIdle();
     }
 
 
     /**
-     * Terminates transmission of all waveforms.
+     * Terminates transmission of all waveforms and deletes their waves, unless the scheduler is shared.
      * @throws PigpioException  on pigpiod error
      */
     public void terminate() throws PigpioException{
-        transmitter.stop();
-        pi.waveClear();
+        if (!ownScheduler)
+            return;
+        scheduler.close();
+        waves.clear();
     }
 
 
@@ -0,0 +1,56 @@
+package jpigpio.packet;
+
+import jpigpio.Pulse;
+import jpigpio.WaveBuilder;
+
+import java.util.ArrayList;
+
+/**
+ * Datagram compiled by Rf433tx.compile() into its waveform, ready to be sent any number of times by Rf433tx.send()
+ * without encoding it again. The waveform starts with the gap before the datagram, so its repeats can follow
+ * each other directly.
+ */
+public class TransmitFrame {
+
+    final WaveBuilder wave;
+    final int repeats;
+    int waveId = -1;
+
+    TransmitFrame(WaveBuilder wave, int repeats) {
+        this.wave = wave;
+        this.repeats = repeats;
+    }
+
+    /**
+     * Returns pulses of one repeat of the datagram.
+     * @return copy of the pulses
+     */
+    public ArrayList<Pulse> getPulses() {
+        return wave.toPulses();
+    }
+
+    /**
+     * Returns id of the wave created by compiling. The wave is kept in the WaveCache of the transmitter,
+     * which creates it again before sending if it had to be deleted meanwhile.
+     * @return wave id
+     */
+    public int getWaveId() {
+        return waveId;
+    }
+
+    /**
+     * Returns number of times the datagram is transmitted by each send.
+     * @return number of repeats
+     */
+    public int getRepeats() {
+        return repeats;
+    }
+
+    /**
+     * Returns length of all repeats of the datagram, without the preamble sent before them.
+     * @return microseconds
+     */
+    public long getMicros() {
+        return wave.getMicros() * repeats;
+    }
+}
@@ -2,12 +2,14 @@
 
 import jpigpio.JPigpio;
 import jpigpio.PigpioException;
+import jpigpio.PulseMeter;
 import jpigpio.WrongModeException;
 
 public class HC_SR04 {
 	private JPigpio pigpio;
 	private int triggerGpio;
 	private int echoGpio;
+	private PulseMeter pulseMeter;
 	/**
 	 * Construct the object for this class.
 	 * @param pigpio The reference to the Pigpio controller
@@ -22,15 +24,25 @@ public HC_SR04(JPigpio pigpio, int triggerGpio, int echoGpio) throws PigpioExcep
 		if (pigpio.gpioGetMode(echoGpio) != JPigpio.PI_INPUT) {
 			throw new WrongModeException(echoGpio);
 		}
+		pulseMeter = new PulseMeter(pigpio, triggerGpio, echoGpio);
 	} // End of constructor
+
+	/**
+	 * Stop watching the echo pin.
+	 * @throws PigpioException on pigpiod error
+	 */
+	public void close() throws PigpioException {
+		pulseMeter.close();
+	} // End of close
 	
 	/**
-	 * Get the delay in microseconds for a trigger/echo
-	 * @return The time in microseconds between a trigger and an echo response
+	 * Get the delay in microseconds for a trigger/echo. The echo is timed from edge ticks,
+	 * so this works over the network as well.
+	 * @return The length in microseconds of the echo pulse or -1 if there was no echo
 	 * @throws PigpioException on pigpiod error
 	 */
 	public long getDelay() throws PigpioException {
-		long delay = pigpio.gpioxPulseAndWait(triggerGpio, echoGpio, 50000, 10, false);
+		long delay = pulseMeter.measure(10, false, 50000);
 		return delay;
 	} // End of getDelay
 	
@@ -0,0 +1,39 @@
+package tests;
+
+/**
+ * Base of the self-checking tests run against FakePigpiod. Counts failed checks, prints a summary and
+ * exits with the number of failures as status, so a script running the tests can tell they failed.
+ */
+public abstract class CheckedTest {
+
+	protected int failures = 0;
+
+	/**
+	 * Print result of one check.
+	 * @param name what was checked
+	 * @param ok true if the check passed
+	 */
+	protected void check(String name, boolean ok) {
+		System.out.println((ok ? "OK   " : "FAIL ") + name);
+		if (!ok)
+			failures++;
+	}
+
+	/**
+	 * Count an unexpected exception as a failed check.
+	 * @param e exception thrown by the test
+	 */
+	protected void fail(Exception e) {
+		e.printStackTrace();
+		failures++;
+	}
+
+	/**
+	 * Print summary of all checks and exit with number of failed checks as status.
+	 */
+	protected void exit() {
+		System.out.println(failures == 0 ? "all checks passed" : failures + " check(s) failed");
+		System.exit(failures);
+	}
+} // End of class
+// End of file
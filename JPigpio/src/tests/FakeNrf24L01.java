@@ -0,0 +1,361 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulated nRF24L01+ attached to a FakePigpiod: registers, 3 deep RX and TX FIFOs, CE, CSN and the IRQ pin,
+ * whose changes are sent as notifications. Every SPI transaction runs from CSN low to CSN high, or is a single
+ * transfer when CSN is not driven. A payload in TX FIFO is "transmitted" after the airtime, once the radio is
+ * powered up in TX mode with CE high. Packets are received by receive(). Payloads of any length are kept as they
+ * were sent, as with dynamic payloads; acknowledgement payloads are supported both ways.
+ */
+public class FakeNrf24L01 implements FakePigpiod.Device {
+
+	private static final int CONFIG = 0x00;
+	private static final int RF_SETUP = 0x06;
+	private static final int STATUS = 0x07;
+	private static final int FIFO_STATUS = 0x17;
+	private static final int FEATURE = 0x1D;
+
+	private static final int PRIM_RX = 0x01;
+	private static final int PWR_UP = 0x02;
+	private static final int RX_DR = 0x40;
+	private static final int TX_DS = 0x20;
+	private static final int MAX_RT = 0x10;
+	private static final int EN_ACK_PAY = 0x02;
+	private static final int EN_DYN_ACK = 0x01;
+
+	private final FakePigpiod pigpiod;
+	private final int cePin;
+	private final int csnPin;
+	private final int irqPin;
+	private final long airtimeNanos;
+
+	// state, guarded by this
+	private final byte[][] registers = new byte[0x20][];
+	private final ArrayDeque<byte[]> rxFifo = new ArrayDeque<>();
+	private final ArrayDeque<byte[]> txFifo = new ArrayDeque<>();
+	private final ArrayDeque<Boolean> txNoAck = new ArrayDeque<>();
+	private final ArrayDeque<byte[]> ackFifo = new ArrayDeque<>();
+	private final ArrayList<byte[]> sent = new ArrayList<>();
+	private final ArrayList<byte[]> acks = new ArrayList<>();
+	private byte[] ackReply;
+	private int noAckCount = 0;
+	private boolean ce = false;
+	private boolean pulse = false; // CE went high while a payload was waiting, which sends it
+	private boolean selected = false;
+	private int irq = 1;
+	private int failures = 0;
+	private boolean hung = false;
+	private int transactions = 0;
+	private int transfers = 0;
+
+	// transaction in progress
+	private int command = -1;
+	private int position;
+	private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+	private volatile boolean go = true;
+
+	/**
+	 * @param pigpiod daemon to attach the radio to
+	 * @param cePin GPIO connected to CE
+	 * @param csnPin GPIO connected to CSN
+	 * @param irqPin GPIO connected to IRQ
+	 * @param airtimeMicros how long transmitting one packet takes
+	 * @throws IOException on network error
+	 */
+	public FakeNrf24L01(FakePigpiod pigpiod, int cePin, int csnPin, int irqPin, int airtimeMicros) throws IOException {
+		this.pigpiod = pigpiod;
+		this.cePin = cePin;
+		this.csnPin = csnPin;
+		this.irqPin = irqPin;
+		this.airtimeNanos = airtimeMicros * 1000L;
+		for (int i = 0; i < registers.length; i++)
+			registers[i] = new byte[i == 0x0A || i == 0x0B || i == 0x10 ? 5 : 1];
+		registers[CONFIG][0] = 0x08;
+		registers[0x01][0] = 0x3F;
+		registers[0x02][0] = 0x03;
+		registers[0x03][0] = 0x03;
+		registers[0x04][0] = 0x03;
+		registers[0x05][0] = 0x02;
+		registers[RF_SETUP][0] = 0x0E;
+		pigpiod.setLevel(irqPin, 1);
+		pigpiod.attach(this);
+		Thread radio = new Thread(this::transmit);
+		radio.setName("FakeNrf24L01");
+		radio.setDaemon(true);
+		radio.start();
+	}
+
+	public void stop() {
+		go = false;
+		pigpiod.attach(null);
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Receive a packet on pipe 1, if the radio is listening and RX FIFO is not full.
+	 * @param data payload
+	 * @return true if the packet was received
+	 */
+	public synchronized boolean receive(byte[] data) {
+		if ((registers[CONFIG][0] & (PWR_UP | PRIM_RX)) != (PWR_UP | PRIM_RX) || !ce || rxFifo.size() == 3)
+			return false;
+		rxFifo.add(data.clone());
+		registers[STATUS][0] |= RX_DR;
+		if ((registers[FEATURE][0] & EN_ACK_PAY) != 0 && !ackFifo.isEmpty())
+			acks.add(ackFifo.poll());
+		updateIrq();
+		return true;
+	}
+
+	/**
+	 * Let the receiver send the payload back with acknowledgement of the next packet transmitted.
+	 * @param data payload of acknowledgement
+	 */
+	public synchronized void setAckReply(byte[] data) {
+		ackReply = data.clone();
+	}
+
+	/**
+	 * Returns acknowledgement payloads sent back to transmitters so far.
+	 * @return copy of the list
+	 */
+	public synchronized ArrayList<byte[]> getAcks() {
+		return new ArrayList<>(acks);
+	}
+
+	/**
+	 * Returns number of packets transmitted without requesting acknowledgement.
+	 * @return number of packets
+	 */
+	public synchronized int getNoAckCount() {
+		return noAckCount;
+	}
+
+	/**
+	 * Let the next transmissions fail reaching maximum number of retransmits.
+	 * @param count number of packets
+	 */
+	public synchronized void failNext(int count) {
+		failures = count;
+	}
+
+	/**
+	 * Let the radio hang, keeping payloads in TX FIFO without raising IRQ, or recover.
+	 * @param hung true to stop transmitting
+	 */
+	public synchronized void hang(boolean hung) {
+		this.hung = hung;
+		notifyAll();
+	}
+
+	/**
+	 * Returns payloads transmitted so far.
+	 * @return copy of the list
+	 */
+	public synchronized ArrayList<byte[]> getSent() {
+		return new ArrayList<>(sent);
+	}
+
+	/**
+	 * Returns number of SPI transactions so far.
+	 * @return number of transactions
+	 */
+	public synchronized int getTransactions() {
+		return transactions;
+	}
+
+	/**
+	 * Returns number of CMD_SPIX commands so far.
+	 * @return number of transfers
+	 */
+	public synchronized int getTransfers() {
+		return transfers;
+	}
+
+	public synchronized boolean isCeHigh() {
+		return ce;
+	}
+
+	public synchronized byte getRegister(int reg) {
+		return registers[reg][0];
+	}
+
+	@Override
+	public synchronized void gpioWrite(int gpio, int level) {
+		if (gpio == cePin) {
+			if (level != 0 && !ce && !txFifo.isEmpty())
+				pulse = true;
+			ce = level != 0;
+			notifyAll();
+		} else if (gpio == csnPin) {
+			if (level == 0 && !selected)
+				begin();
+			else if (level != 0 && selected)
+				end();
+			selected = level == 0;
+		}
+	}
+
+	@Override
+	public synchronized byte[] spiXfer(byte[] data) {
+		transfers++;
+		if (!selected)
+			begin();
+		byte[] reply = new byte[data.length];
+		for (int i = 0; i < data.length; i++)
+			reply[i] = exchange(data[i] & 0xFF);
+		if (!selected)
+			end();
+		return reply;
+	}
+
+	private void begin() {
+		transactions++;
+		command = -1;
+		position = 0;
+		payload.reset();
+	}
+
+	/**
+	 * Shift one byte in and one out.
+	 */
+	private byte exchange(int in) {
+		if (command < 0) {
+			command = in;
+			return status();
+		}
+		int pos = position++;
+		if (command < 0x20) {
+			byte[] reg = registers[command];
+			return command == FIFO_STATUS ? fifoStatus() : command == STATUS ? status() : pos < reg.length ? reg[pos] : 0;
+		} else if (command < 0x40) {
+			byte[] reg = registers[command & 0x1F];
+			if ((command & 0x1F) == STATUS)
+				reg[0] &= ~(in & (RX_DR | TX_DS | MAX_RT));
+			else if (pos < reg.length)
+				reg[pos] = (byte) in;
+		} else if (command == 0x60) {
+			byte[] head = rxFifo.peek();
+			return (byte) (head != null ? head.length : 0);
+		} else if (command == 0x61) {
+			byte[] head = rxFifo.peek();
+			return head != null && pos < head.length ? head[pos] : 0;
+		} else if (command == 0xA0 || command == 0xB0 || (command & 0xF8) == 0xA8)
+			payload.write(in);
+		return 0;
+	}
+
+	private void end() {
+		switch (command) {
+		case 0x61:
+			rxFifo.poll();
+			break;
+		case 0xA0:
+		case 0xB0:
+			boolean noAck = command == 0xB0;
+			if (txFifo.size() < 3 && (!noAck || (registers[FEATURE][0] & EN_DYN_ACK) != 0)) {
+				txFifo.add(payload.toByteArray());
+				txNoAck.add(noAck);
+			}
+			break;
+		case 0xE1:
+			txFifo.clear();
+			txNoAck.clear();
+			ackFifo.clear();
+			break;
+		case 0xE2:
+			rxFifo.clear();
+			break;
+		}
+		if ((command & 0xF8) == 0xA8 && command < 0xAE && ackFifo.size() < 3)
+			ackFifo.add(payload.toByteArray());
+		command = -1;
+		updateIrq();
+		notifyAll();
+	}
+
+	private byte status() {
+		int pipe = rxFifo.isEmpty() ? 7 : 1;
+		return (byte) (registers[STATUS][0] & (RX_DR | TX_DS | MAX_RT) | pipe << 1 | (txFifo.size() == 3 ? 1 : 0));
+	}
+
+	private byte fifoStatus() {
+		return (byte) ((txFifo.size() == 3 ? 0x20 : 0) | (txFifo.isEmpty() ? 0x10 : 0) | (rxFifo.size() == 3 ? 0x02 : 0) | (rxFifo.isEmpty() ? 0x01 : 0));
+	}
+
+	/**
+	 * IRQ is low while a flag not masked in CONFIG is set.
+	 */
+	private void updateIrq() {
+		int flags = registers[STATUS][0] & ~registers[CONFIG][0] & (RX_DR | TX_DS | MAX_RT);
+		int level = flags != 0 ? 0 : 1;
+		if (level == irq)
+			return;
+		irq = level;
+		try {
+			pigpiod.setLevel(irqPin, level);
+		} catch (IOException e) {
+			// client went away
+		}
+	}
+
+	/**
+	 * Ready to start transmitting the payload at the top of TX FIFO.
+	 */
+	private boolean transmitting() {
+		return !hung && (ce || pulse) && (registers[CONFIG][0] & (PWR_UP | PRIM_RX)) == PWR_UP && !txFifo.isEmpty()
+				&& (registers[STATUS][0] & MAX_RT) == 0;
+	}
+
+	/**
+	 * Radio thread sending payloads from TX FIFO.
+	 */
+	private void transmit() {
+		while (go) {
+			synchronized (this) {
+				try {
+					while (go && !transmitting())
+						wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			LockSupport.parkNanos(airtimeNanos);
+			synchronized (this) {
+				// once started, a transmission completes even if CE goes low meanwhile
+				if (txFifo.isEmpty() || (registers[CONFIG][0] & PWR_UP) == 0)
+					continue;
+				boolean noAck = txNoAck.peek();
+				pulse = false;
+				if (failures > 0 && !noAck) {
+					// payload stays in TX FIFO until flushed
+					failures--;
+					registers[STATUS][0] |= MAX_RT;
+				} else {
+					sent.add(txFifo.poll());
+					txNoAck.poll();
+					registers[STATUS][0] |= TX_DS;
+					if (noAck)
+						noAckCount++;
+					else if (ackReply != null && (registers[FEATURE][0] & EN_ACK_PAY) != 0 && rxFifo.size() < 3) {
+						// acknowledgement carried a payload
+						rxFifo.add(ackReply);
+						ackReply = null;
+						registers[STATUS][0] |= RX_DR;
+					}
+				}
+				updateIrq();
+			}
+		}
+	}
+} // End of class
+// End of file
@@ -0,0 +1,539 @@
+package tests;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Minimal stand-in for pigpiod listening on a local port, used to exercise the socket interface
+ * without a Raspberry Pi. Every command is answered after a configurable delay with result 0,
+ * except for:
+ * <ul>
+ * <li>commands returning extended data (SPI/I2C/serial reads) - answered with count of bytes followed by the data</li>
+ * <li>CMD_TICK - answered with current time in microseconds, shifted by setTickOffset()</li>
+ * <li>CMD_TRIG - passed to the attached Device</li>
+ * <li>CMD_NOIB - answered with notification handle; the connection then receives reports sent by sendReport()</li>
+ * <li>CMD_MODES/MODEG, WRITE, READ, BR1 - modes and levels of GPIOs are stored, see setLevel(); GPIOs outside 0-31
+ * are answered with PI_BAD_GPIO</li>
+ * <li>CMD_SPIX - data are echoed, or passed to the attached Device</li>
+ * <li>CMD_WVNEW/WVCLR, WVAG, WVCRE, WVDEL - waveforms are collected and stored, see getWave()</li>
+ * <li>CMD_WVCHA - the chain is stored, see getLastChain(), and its transmission simulated as with CMD_WVTX</li>
+ * <li>CMD_WVTX, WVTXR, WVTXM, WVHLT, WVBSY, WVTAT - transmission of created waves is simulated using the delays of their pulses;
+ * like pigpio, a wave synced behind itself loops until halted</li>
+ * </ul>
+ */
+public class FakePigpiod implements Runnable {
+
+	private static final int CMD_MODES = 0;
+	private static final int CMD_MODEG = 1;
+	private static final int CMD_READ = 3;
+	private static final int CMD_WRITE = 4;
+	private static final int CMD_BR1 = 10;
+	private static final int CMD_TICK = 16;
+	private static final int CMD_WVCLR = 27;
+	private static final int CMD_TRIG = 37;
+	private static final int CMD_WVAG = 28;
+	private static final int CMD_WVBSY = 32;
+	private static final int CMD_WVHLT = 33;
+	private static final int CMD_I2CRD = 56;
+	private static final int CMD_WVCRE = 49;
+	private static final int CMD_WVDEL = 50;
+	private static final int CMD_WVTX = 51;
+	private static final int CMD_WVTXR = 52;
+	private static final int CMD_WVNEW = 53;
+	private static final int CMD_SPIR = 73;
+	private static final int CMD_SPIX = 75;
+	private static final int CMD_SERR = 80;
+	private static final int CMD_WVCHA = 93;
+	private static final int CMD_WVTXM = 100;
+	private static final int CMD_WVTAT = 101;
+	private static final int CMD_NOIB = 99;
+
+	private static final int PI_BAD_GPIO = -3;
+
+	private ServerSocket server;
+	private Thread thread;
+	private volatile boolean go = true;
+	private final long replyDelayNanos;
+	private int notifyHandle = 0;
+
+	// waveform being built and created waves, pulses as (gpioOn, gpioOff, delay) triples (guarded by waves)
+	private int[] wavePulses = new int[0];
+	private int waveId = 0;
+	private int maxWaves = Integer.MAX_VALUE;
+	private final HashMap<Integer, int[]> waves = new HashMap<>();
+	private int waveAddCommands = 0;
+	private byte[] lastChain;
+	// simulated transmission: wave being transmitted (-1 if none), when it ends and wave started by a sync mode after it
+	private int txWave = -1;
+	private long txEnd;
+	private int txNext = -1;
+
+	// modes and levels of GPIOs 0-31 (guarded by modes)
+	private final int[] modes = new int[32];
+	private int levels = 0;
+	private int reportSeq = 0;
+	private volatile Device device;
+	private volatile int tickOffset = 0;
+
+	private final CopyOnWriteArrayList<Socket> connections = new CopyOnWriteArrayList<>();
+	private final CopyOnWriteArrayList<DataOutputStream> notifyStreams = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param replyDelayMicros How long to "process" each command before replying (microseconds).
+	 * @throws IOException if unable to open listening socket
+	 */
+	public FakePigpiod(int replyDelayMicros) throws IOException {
+		this.replyDelayNanos = replyDelayMicros * 1000L;
+		server = new ServerSocket(0);
+	}
+
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	public void start() {
+		thread = new Thread(this);
+		thread.setName("FakePigpiod");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void stop() {
+		go = false;
+		try {
+			server.close();
+			for (Socket s : connections)
+				s.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+
+	/**
+	 * Send one 12 byte notification report to every connection which issued CMD_NOIB.
+	 * @param seq sequence number
+	 * @param flags report flags
+	 * @param tick tick of the report
+	 * @param level levels of GPIOs 0-31
+	 * @throws IOException on network error
+	 */
+	public void sendReport(int seq, int flags, int tick, int level) throws IOException {
+		byte[] report = new byte[12];
+		putShort(report, 0, seq);
+		putShort(report, 2, flags);
+		putInt(report, 4, tick);
+		putInt(report, 8, level);
+		sendReports(report);
+	}
+
+	/**
+	 * Send many prepared reports (12 bytes each) in a single write.
+	 * @param reports reports to send
+	 * @throws IOException on network error
+	 */
+	public void sendReports(byte[] reports) throws IOException {
+		for (DataOutputStream out : notifyStreams) {
+			try {
+				synchronized (out) {
+					out.write(reports);
+					out.flush();
+				}
+			} catch (IOException e) {
+				// client went away, stop sending it reports
+				notifyStreams.remove(out);
+			}
+		}
+	}
+
+	/**
+	 * Simulated hardware connected to the GPIOs and SPI.
+	 */
+	public interface Device {
+		/**
+		 * Called when a GPIO is written by CMD_WRITE.
+		 */
+		void gpioWrite(int gpio, int level);
+
+		/**
+		 * Called by CMD_SPIX, returns received data.
+		 */
+		byte[] spiXfer(byte[] data);
+
+		/**
+		 * Called by CMD_TRIG.
+		 */
+		default void gpioTrigger(int gpio, int pulseLen, int level) {
+		}
+	}
+
+	/**
+	 * Attach device receiving GPIO writes and SPI transfers.
+	 * @param device device, null to echo SPI data again
+	 */
+	public void attach(Device device) {
+		this.device = device;
+	}
+
+	/**
+	 * Set level of an input GPIO as if driven by external hardware and report the change to every
+	 * connection which issued CMD_NOIB.
+	 * @param gpio GPIO 0-31
+	 * @param level 0 or 1
+	 * @throws IOException on network error
+	 */
+	public void setLevel(int gpio, int level) throws IOException {
+		setLevel(gpio, level, getTick());
+	}
+
+	/**
+	 * Same as setLevel, reporting the change with the given tick, e.g. of an edge which happened earlier.
+	 * @param gpio GPIO 0-31
+	 * @param level 0 or 1
+	 * @param tick tick of the report
+	 * @throws IOException on network error
+	 */
+	public void setLevel(int gpio, int level, int tick) throws IOException {
+		int seq, report;
+		synchronized (modes) {
+			levels = level != 0 ? levels | 1 << gpio : levels & ~(1 << gpio);
+			seq = reportSeq++;
+			report = levels;
+		}
+		sendReport(seq, 0, tick, report);
+	}
+
+	/**
+	 * Returns current tick: microseconds, wrapping at 2^32 like ticks of pigpio.
+	 * @return tick
+	 */
+	public int getTick() {
+		return (int) (System.nanoTime() / 1000) + tickOffset;
+	}
+
+	/**
+	 * Shift ticks answered to CMD_TICK and reported by setLevel, e.g. to test wrapping of ticks.
+	 * @param offset microseconds added to ticks
+	 */
+	public void setTickOffset(int offset) {
+		tickOffset = offset;
+	}
+
+	private int gpio(int cmd, int p1, int p2) {
+		if (cmd != CMD_BR1 && (p1 < 0 || p1 > 31))
+			return PI_BAD_GPIO;
+		synchronized (modes) {
+			switch (cmd) {
+			case CMD_MODES:
+				modes[p1] = p2;
+				return 0;
+			case CMD_MODEG:
+				return modes[p1];
+			case CMD_READ:
+				return levels >>> p1 & 1;
+			case CMD_BR1:
+				return levels;
+			default: // CMD_WRITE
+				levels = p2 != 0 ? levels | 1 << p1 : levels & ~(1 << p1);
+				return 0;
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		while (go) {
+			try {
+				Socket s = server.accept();
+				s.setTcpNoDelay(true);
+				connections.add(s);
+				Thread t = new Thread(() -> serve(s));
+				t.setName("FakePigpiodConnection");
+				t.setDaemon(true);
+				t.start();
+			} catch (IOException e) {
+				// server socket closed
+			}
+		}
+	}
+
+	/**
+	 * Returns number of connections which are open.
+	 * @return number of connections
+	 */
+	public int getConnections() {
+		return connections.size();
+	}
+
+	/**
+	 * Returns pulses of a created wave.
+	 * @param id wave id
+	 * @return (gpioOn, gpioOff, delay) triples or null if there is no such wave
+	 */
+	public int[] getWave(int id) {
+		synchronized (waves) {
+			return waves.get(id);
+		}
+	}
+
+	/**
+	 * Limit the number of waves, further CMD_WVCRE fail with PI_NO_WAVEFORM_ID.
+	 * @param maxWaves number of waves
+	 */
+	public void setMaxWaves(int maxWaves) {
+		synchronized (waves) {
+			this.maxWaves = maxWaves;
+		}
+	}
+
+	/**
+	 * Returns number of CMD_WVAG commands received so far.
+	 * @return number of commands
+	 */
+	public int getWaveAddCommands() {
+		synchronized (waves) {
+			return waveAddCommands;
+		}
+	}
+
+	/**
+	 * Returns the chain sent by the last CMD_WVCHA.
+	 * @return chain or null if none was sent
+	 */
+	public byte[] getLastChain() {
+		synchronized (waves) {
+			return lastChain;
+		}
+	}
+
+	/**
+	 * Length of a chain, setting its last wave as the one transmitted for WVTAT.
+	 */
+	private long chainNanos(byte[] chain) {
+		long[] loops = new long[8];
+		int depth = 0;
+		for (int i = 0; i < chain.length; i++) {
+			int b = chain[i] & 0xFF;
+			if (b != 255) {
+				loops[depth] += waveNanos(b);
+				txWave = b;
+				continue;
+			}
+			int cmd = chain[++i];
+			if (cmd == 0) // loop start
+				loops[++depth] = 0;
+			else if (cmd == 1) { // loop repeat
+				int count = (chain[i + 1] & 0xFF) | (chain[i + 2] & 0xFF) << 8;
+				i += 2;
+				loops[depth - 1] += loops[depth] * count;
+				depth--;
+			} else if (cmd == 2) { // delay
+				loops[depth] += ((chain[i + 1] & 0xFF) | (chain[i + 2] & 0xFF) << 8) * 1000L;
+				i += 2;
+			} else // loop forever
+				return Long.MAX_VALUE / 2;
+		}
+		return loops[0];
+	}
+
+	private long waveNanos(int id) {
+		int[] pulses = waves.get(id);
+		long micros = 0;
+		for (int i = 2; pulses != null && i < pulses.length; i += 3)
+			micros += pulses[i] & 0xFFFFFFFFL;
+		return micros * 1000;
+	}
+
+	/**
+	 * Move the simulated transmission to now.
+	 */
+	private void advanceTx() {
+		long now = System.nanoTime();
+		while (txWave >= 0 && now - txEnd >= 0) {
+			txWave = txNext;
+			txEnd += waveNanos(txNext);
+			txNext = -1;
+		}
+	}
+
+	private int transmit(int id, int mode) {
+		if (!waves.containsKey(id))
+			return -66;
+		advanceTx();
+		if (mode >= 2 && txWave >= 0 && id == txWave) {
+			// as pigpio, which links the end of the wave to its own start: transmitted until halted
+			txEnd = Long.MAX_VALUE / 2;
+			txNext = -1;
+		} else if (mode >= 2 && txWave >= 0) {
+			txNext = id;
+		} else {
+			txWave = id;
+			txNext = -1;
+			// repeat modes transmit until halted
+			txEnd = System.nanoTime() + (mode % 2 == 1 ? Long.MAX_VALUE / 2 : waveNanos(id));
+		}
+		return waves.get(id).length / 3;
+	}
+
+	private int wave(int cmd, int p1, int p2, byte[] ext) {
+		synchronized (waves) {
+			switch (cmd) {
+			case CMD_WVTX:
+				return transmit(p1, 0);
+			case CMD_WVTXR:
+				return transmit(p1, 1);
+			case CMD_WVTXM:
+				return transmit(p1, p2);
+			case CMD_WVHLT:
+				txWave = -1;
+				txNext = -1;
+				return 0;
+			case CMD_WVBSY:
+				advanceTx();
+				return txWave >= 0 ? 1 : 0;
+			case CMD_WVTAT:
+				advanceTx();
+				return txWave >= 0 ? txWave : 9999;
+			case CMD_WVCLR:
+				waves.clear();
+				// fall through
+			case CMD_WVNEW:
+				wavePulses = new int[0];
+				return 0;
+			case CMD_WVAG:
+				int n = wavePulses.length;
+				wavePulses = Arrays.copyOf(wavePulses, n + ext.length / 4);
+				for (int i = 0; i < ext.length / 4; i++)
+					wavePulses[n + i] = getInt(ext, i * 4);
+				waveAddCommands++;
+				return wavePulses.length / 3;
+			case CMD_WVCHA:
+				lastChain = ext;
+				txWave = -1;
+				txNext = -1;
+				txEnd = System.nanoTime() + chainNanos(ext);
+				return 0;
+			case CMD_WVCRE:
+				if (waves.size() >= maxWaves)
+					return -70; // PI_NO_WAVEFORM_ID
+				waves.put(waveId, wavePulses);
+				wavePulses = new int[0];
+				return waveId++;
+			default: // CMD_WVDEL
+				return waves.remove(p1) != null ? 0 : -66;
+			}
+		}
+	}
+
+	private void serve(Socket s) {
+		byte[] cmdBytes = new byte[16];
+		byte[] reply = new byte[16];
+		try {
+			DataInputStream in = new DataInputStream(s.getInputStream());
+			DataOutputStream out = new DataOutputStream(s.getOutputStream());
+			while (go) {
+				in.readFully(cmdBytes);
+				int cmd = getInt(cmdBytes, 0);
+				int p1 = getInt(cmdBytes, 4);
+				int p2 = getInt(cmdBytes, 8);
+				int p3 = getInt(cmdBytes, 12);
+				byte[] ext = new byte[p3];
+				in.readFully(ext);
+
+				if (replyDelayNanos > 0)
+					LockSupport.parkNanos(replyDelayNanos);
+
+				int res = 0;
+				byte[] extReply = null;
+				switch (cmd) {
+				case CMD_TICK:
+					res = getTick();
+					break;
+				case CMD_TRIG:
+					if (device != null)
+						device.gpioTrigger(p1, p2, getInt(ext, 0));
+					break;
+				case CMD_I2CRD:
+				case CMD_SPIR:
+				case CMD_SERR:
+					res = p2;
+					extReply = new byte[p2];
+					break;
+				case CMD_SPIX:
+					res = p3;
+					extReply = device != null ? device.spiXfer(ext) : ext;
+					break;
+				case CMD_MODES:
+				case CMD_MODEG:
+				case CMD_READ:
+				case CMD_BR1:
+					res = gpio(cmd, p1, p2);
+					break;
+				case CMD_WRITE:
+					res = gpio(cmd, p1, p2);
+					if (res == 0 && device != null)
+						device.gpioWrite(p1, p2);
+					break;
+				case CMD_NOIB:
+					res = notifyHandle++;
+					break;
+				case CMD_WVCLR:
+				case CMD_WVAG:
+				case CMD_WVCRE:
+				case CMD_WVDEL:
+				case CMD_WVNEW:
+				case CMD_WVCHA:
+				case CMD_WVTX:
+				case CMD_WVTXR:
+				case CMD_WVTXM:
+				case CMD_WVHLT:
+				case CMD_WVBSY:
+				case CMD_WVTAT:
+					res = wave(cmd, p1, p2, ext);
+					break;
+				}
+
+				putInt(reply, 0, cmd);
+				putInt(reply, 4, p1);
+				putInt(reply, 8, p2);
+				putInt(reply, 12, res);
+				synchronized (out) {
+					out.write(reply);
+					if (extReply != null)
+						out.write(extReply);
+					out.flush();
+				}
+
+				if (cmd == CMD_NOIB)
+					notifyStreams.add(out);
+			}
+		} catch (IOException e) {
+			// connection closed
+		} finally {
+			connections.remove(s);
+		}
+	}
+
+	private static int getInt(byte[] b, int offset) {
+		return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16 | (b[offset + 3] & 0xFF) << 24;
+	}
+
+	static void putInt(byte[] b, int offset, int value) {
+		b[offset] = (byte) value;
+		b[offset + 1] = (byte) (value >> 8);
+		b[offset + 2] = (byte) (value >> 16);
+		b[offset + 3] = (byte) (value >> 24);
+	}
+
+	static void putShort(byte[] b, int offset, int value) {
+		b[offset] = (byte) value;
+		b[offset + 1] = (byte) (value >> 8);
+	}
+} // End of class
+// End of file
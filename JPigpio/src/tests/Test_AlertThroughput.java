@@ -0,0 +1,112 @@
+package tests;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpigpio.EdgeBuffer;
+import jpigpio.JPigpio;
+import jpigpio.Pigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.Utils;
+
+/**
+ * Microbenchmark of alert delivery. The test pin is toggled at decreasing intervals while an alert function
+ * counts the edges it receives. For every interval the number of edges delivered per second and number of
+ * edges which never made it to Java are printed. The same is then repeated with edges recorded into
+ * an EdgeBuffer and drained in bulk.
+ * <br><br>
+ * Runs on the Pi using JNI by default, pass host and port to use pigpiod instead.
+ * Nothing needs to be connected to the test pin.
+ */
+public class Test_AlertThroughput {
+
+	/**
+	 * The pin which is toggled and watched.
+	 */
+	private final int TESTPIN = 18;
+	private final int EDGES = 20000;
+	private final int[] INTERVALS = { 200, 100, 50, 20, 10 }; // microseconds between edges
+
+	private final AtomicInteger received = new AtomicInteger();
+
+	public static void main(String args[]) {
+		System.out.println("Test_AlertThroughput");
+		Test_AlertThroughput app = new Test_AlertThroughput();
+		app.run(args);
+	}
+
+	public void run(String args[]) {
+		try {
+			JPigpio pigpio = args.length >= 2 ? new PigpioSocket(args[0], Integer.parseInt(args[1])) : new Pigpio();
+			pigpio.gpioInitialize();
+			Utils.addShutdown(pigpio);
+
+			pigpio.gpioSetMode(TESTPIN, JPigpio.PI_OUTPUT);
+			pigpio.gpioWrite(TESTPIN, false);
+
+			pigpio.gpioSetAlertFunc(TESTPIN, (gpio, level, tick) -> received.incrementAndGet());
+
+			for (int interval : INTERVALS)
+				measure(pigpio, interval);
+
+			pigpio.gpioSetAlertFunc(TESTPIN, null);
+			for (int interval : INTERVALS)
+				measureEdgeBuffer(pigpio, interval);
+
+			pigpio.gpioTerminate();
+		} catch (PigpioException e) {
+			e.printStackTrace();
+		}
+	} // End of run
+
+	private void measure(JPigpio pigpio, int interval) throws PigpioException {
+		received.set(0);
+		boolean level = false;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < EDGES; i++) {
+			level = !level;
+			pigpio.gpioWrite(TESTPIN, level);
+			pigpio.gpioDelay(interval);
+		}
+		// give the last alerts time to arrive
+		pigpio.gpioDelay(100, JPigpio.PI_MILLISECONDS);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println(String.format("interval %4d us: %6d of %d edges, %7d alerts/s, %d lost",
+				interval, received.get(), EDGES, received.get() * 1000000000L / elapsed, EDGES - received.get()));
+	}
+
+	private void measureEdgeBuffer(JPigpio pigpio, int interval) throws PigpioException {
+		EdgeBuffer buffer = pigpio.openEdgeBuffer(1 << TESTPIN, 4096);
+		long[] ticks = new long[1024];
+		int[] levels = new int[1024];
+		int drained = 0;
+		int drains = 0;
+		boolean level = false;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < EDGES; i++) {
+			level = !level;
+			pigpio.gpioWrite(TESTPIN, level);
+			pigpio.gpioDelay(interval);
+			// drain now and then, like a decoder polling the buffer would
+			if (i % 256 == 255) {
+				drained += buffer.drainTo(ticks, levels);
+				drains++;
+			}
+		}
+		pigpio.gpioDelay(100, JPigpio.PI_MILLISECONDS);
+		int n;
+		while ((n = buffer.drainTo(ticks, levels)) > 0) {
+			drained += n;
+			drains++;
+		}
+		long elapsed = System.nanoTime() - start;
+		pigpio.closeEdgeBuffer(buffer);
+
+		System.out.println(String.format("edge buffer, interval %4d us: %6d of %d edges, %7d edges/s, %d lost, %d drain calls",
+				interval, drained, EDGES, drained * 1000000000L / elapsed, EDGES - drained, drains));
+	}
+} // End of class
+// End of file
@@ -0,0 +1,107 @@
+package tests;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import jpigpio.CommandBatch;
+import jpigpio.CommandBatchException;
+import jpigpio.JPigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+
+/**
+ * Check CommandBatch against a local FakePigpiod: result codes come back in the order commands were added,
+ * extended replies land in their own buffers, and a command failing at index k is reported by
+ * CommandBatchException with that index and its error code. The socket batch still executes the commands
+ * after the failing one, while the generic batch, executing commands one by one, stops there.
+ * No Raspberry Pi is needed.
+ */
+public class Test_CommandBatch extends CheckedTest {
+
+	private final int FAIL_AT = 5;
+	private final int BAD_GPIO = 40;
+
+	public static void main(String args[]) {
+		System.out.println("Test_CommandBatch");
+		Test_CommandBatch app = new Test_CommandBatch();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(20);
+			pigpiod.start();
+			for (boolean pipelined : new boolean[] { false, true }) {
+				PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort(), pipelined);
+				String name = pipelined ? "pipelined " : "";
+				test(pigpio, pigpio.batch(), name, true);
+				test(pigpio, new CommandBatch(pigpio), name + "generic ", false);
+				pigpio.gpioTerminate();
+			}
+
+			// connection lost: communication error is thrown as it is, not as failure of a command
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			CommandBatch batch = new CommandBatch(pigpio).gpioWrite(0, true);
+			pigpiod.stop();
+			try {
+				batch.execute();
+				check("generic batch communication error", false);
+			} catch (PigpioException e) {
+				check("generic batch communication error", !(e instanceof CommandBatchException) && e.getCause() != null);
+			}
+		} catch (IOException | PigpioException e) {
+			fail(e);
+		}
+	} // End of run
+
+	private void test(JPigpio pigpio, CommandBatch batch, String name, boolean sendsAll) throws PigpioException {
+		int handle = pigpio.spiOpen(JPigpio.PI_SPI_CHANNEL0, JPigpio.PI_SPI_BAUD_500KHZ, 0);
+
+		// SPI transfers of different lengths return different result codes
+		byte[][] tx = new byte[8][];
+		byte[][] rx = new byte[8][];
+		batch.clear();
+		for (int i = 0; i < tx.length; i++) {
+			tx[i] = new byte[i + 1];
+			Arrays.fill(tx[i], (byte) (i + 1));
+			rx[i] = new byte[i + 1];
+			batch.spiXfer(handle, tx[i], rx[i]).gpioWrite(i, i % 2 == 1);
+		}
+		int[] results = batch.execute();
+		boolean ok = results.length == tx.length * 2;
+		for (int i = 0; i < tx.length; i++)
+			ok &= results[i * 2] == i + 1 && results[i * 2 + 1] == 0 && Arrays.equals(tx[i], rx[i]);
+		check(name + "batch results in order", ok);
+		ok = true;
+		for (int i = 0; i < tx.length; i++)
+			ok &= pigpio.gpioRead(i) == (i % 2 == 1);
+		check(name + "batch commands executed", ok);
+
+		// command at FAIL_AT fails, later ones set GPIOs high
+		for (int i = 0; i < tx.length; i++)
+			pigpio.gpioWrite(i, i < FAIL_AT);
+		batch.clear();
+		for (int i = 0; i < FAIL_AT; i++)
+			batch.gpioWrite(i, false);
+		batch.gpioSetMode(BAD_GPIO, JPigpio.PI_OUTPUT);
+		for (int i = FAIL_AT + 1; i < tx.length; i++)
+			batch.gpioWrite(i, true);
+		batch.gpioSetMode(BAD_GPIO, JPigpio.PI_INPUT);
+		try {
+			batch.execute();
+			check(name + "failing command reported", false);
+		} catch (CommandBatchException e) {
+			check(name + "failing command reported", e.getIndex() == FAIL_AT && e.getErrorCode() == PigpioException.PI_BAD_GPIO);
+		}
+		ok = true;
+		for (int i = 0; i < FAIL_AT; i++)
+			ok &= !pigpio.gpioRead(i);
+		for (int i = FAIL_AT + 1; i < tx.length; i++)
+			ok &= pigpio.gpioRead(i) == sendsAll;
+		check(name + (sendsAll ? "commands after failure executed" : "commands after failure skipped"), ok);
+
+		pigpio.spiClose(handle);
+	}
+} // End of class
+// End of file
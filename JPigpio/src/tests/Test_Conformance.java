@@ -0,0 +1,351 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpigpio.GPIOListener;
+import jpigpio.JPigpio;
+import jpigpio.Pigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.Pulse;
+
+/**
+ * Conformance checks which every JPigpio implementation has to pass, so that code written against
+ * {@link JPigpio} behaves the same using JNI on the Pi and using pigpiod over the network.
+ * Every check prints PASS or FAIL, the exit code is the number of failed checks.
+ * <br><br>
+ * Usage: Test_Conformance [jni [tty]] or Test_Conformance host port [tty]<br>
+ * Runs using JNI by default. Serial checks run only when a tty (e.g. /dev/ttyAMA0) is given.
+ * Nothing needs to be connected to the test pin, it is driven as an output.
+ */
+public class Test_Conformance {
+
+	/**
+	 * The pin which is driven and watched.
+	 */
+	private final int TESTPIN = 18;
+	private final int BADPIN = 99;
+
+	private int passed = 0;
+	private int failed = 0;
+
+	private interface Check {
+		void run(JPigpio pigpio) throws Exception;
+	}
+
+	private interface Call {
+		void run() throws PigpioException;
+	}
+
+	public static void main(String args[]) {
+		System.out.println("Test_Conformance");
+		Test_Conformance app = new Test_Conformance();
+		System.exit(app.run(args));
+	}
+
+	public int run(String args[]) {
+		boolean socket = args.length >= 2 && !args[0].equals("jni");
+		String tty = args.length == (socket ? 3 : 2) ? args[args.length - 1] : null;
+
+		try {
+			JPigpio pigpio = socket ? new PigpioSocket(args[0], Integer.parseInt(args[1])) : new Pigpio();
+			System.out.println("Backend: " + pigpio.getClass().getSimpleName());
+			pigpio.gpioInitialize();
+
+			check(pigpio, "gpio mode", this::checkMode);
+			check(pigpio, "gpio write/read", this::checkWriteRead);
+			check(pigpio, "invalid gpio throws PigpioException", this::checkInvalidGpio);
+			check(pigpio, "callback on invalid gpio throws PI_BAD_USER_GPIO", this::checkInvalidCallbackGpio);
+			check(pigpio, "addCallback edges", this::checkCallbackEdges);
+			check(pigpio, "removeCallback", this::checkRemoveCallback);
+			check(pigpio, "alert function and callback on one pin", this::checkAlertAndCallback);
+			check(pigpio, "watchdog timeout", this::checkWatchdog);
+			check(pigpio, "servo pulse width", this::checkServo);
+			check(pigpio, "PWM", this::checkPWM);
+			check(pigpio, "notifications", this::checkNotify);
+			check(pigpio, "waveform", this::checkWave);
+			if (tty != null)
+				check(pigpio, "serial " + tty, p -> checkSerial(p, tty));
+
+			pigpio.gpioSetMode(TESTPIN, JPigpio.PI_INPUT);
+			pigpio.gpioTerminate();
+		} catch (PigpioException e) {
+			e.printStackTrace();
+			return 1;
+		}
+
+		System.out.println(String.format("%d passed, %d failed", passed, failed));
+		return failed;
+	} // End of run
+
+	private void check(JPigpio pigpio, String name, Check check) {
+		try {
+			check.run(pigpio);
+			passed++;
+			System.out.println("PASS " + name);
+		} catch (Exception | AssertionError e) {
+			failed++;
+			System.out.println("FAIL " + name + ": " + e);
+		}
+	}
+
+	private static void expect(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+	private static void expectEquals(long expected, long actual, String what) {
+		if (expected != actual)
+			throw new AssertionError(what + " expected " + expected + " but was " + actual);
+	}
+
+	private void checkMode(JPigpio pigpio) throws PigpioException {
+		pigpio.gpioSetMode(TESTPIN, JPigpio.PI_OUTPUT);
+		expectEquals(JPigpio.PI_OUTPUT, pigpio.gpioGetMode(TESTPIN), "mode");
+	}
+
+	private void checkWriteRead(JPigpio pigpio) throws PigpioException {
+		pigpio.gpioSetMode(TESTPIN, JPigpio.PI_OUTPUT);
+		pigpio.gpioWrite(TESTPIN, true);
+		expect(pigpio.gpioRead(TESTPIN), "level should be high");
+		pigpio.gpioWrite(TESTPIN, false);
+		expect(!pigpio.gpioRead(TESTPIN), "level should be low");
+	}
+
+	private void checkInvalidGpio(JPigpio pigpio) throws PigpioException {
+		try {
+			pigpio.gpioSetMode(BADPIN, JPigpio.PI_OUTPUT);
+		} catch (PigpioException e) {
+			expect(e.getErrorCode() < 0, "error code should be negative");
+			return;
+		}
+		throw new AssertionError("no exception thrown");
+	}
+
+	private void checkInvalidCallbackGpio(JPigpio pigpio) throws PigpioException {
+		GPIOListener listener = counter(32, JPigpio.PI_EITHER_EDGE, new AtomicInteger());
+		expectBadUserGpio(() -> pigpio.addCallback(listener), "addCallback");
+		expectBadUserGpio(() -> pigpio.removeCallback(listener), "removeCallback");
+		expectBadUserGpio(() -> pigpio.gpioSetAlertFunc(-1, (gpio, level, tick) -> {}), "gpioSetAlertFunc");
+	}
+
+	private void expectBadUserGpio(Call call, String what) {
+		try {
+			call.run();
+		} catch (PigpioException e) {
+			expectEquals(PigpioException.PI_BAD_USER_GPIO, e.getErrorCode(), what + " error code");
+			return;
+		}
+		throw new AssertionError(what + ": no exception thrown");
+	}
+
+	private void checkCallbackEdges(JPigpio pigpio) throws PigpioException {
+		AtomicInteger rising = new AtomicInteger();
+		AtomicInteger falling = new AtomicInteger();
+		AtomicInteger either = new AtomicInteger();
+		GPIOListener risingListener = counter(TESTPIN, JPigpio.PI_RISING_EDGE, rising);
+		GPIOListener fallingListener = counter(TESTPIN, JPigpio.PI_FALLING_EDGE, falling);
+		GPIOListener eitherListener = counter(TESTPIN, JPigpio.PI_EITHER_EDGE, either);
+
+		pigpio.gpioSetMode(TESTPIN, JPigpio.PI_OUTPUT);
+		pigpio.gpioWrite(TESTPIN, false);
+		pigpio.addCallback(risingListener);
+		pigpio.addCallback(fallingListener);
+		pigpio.addCallback(eitherListener);
+		try {
+			toggle(pigpio, 3);
+			waitFor(either, 6);
+			expectEquals(3, rising.get(), "rising edges");
+			expectEquals(3, falling.get(), "falling edges");
+			expectEquals(6, either.get(), "edges");
+		} finally {
+			pigpio.removeCallback(risingListener);
+			pigpio.removeCallback(fallingListener);
+			pigpio.removeCallback(eitherListener);
+		}
+	}
+
+	private void checkRemoveCallback(JPigpio pigpio) throws PigpioException {
+		AtomicInteger kept = new AtomicInteger();
+		AtomicInteger removed = new AtomicInteger();
+		GPIOListener keptListener = counter(TESTPIN, JPigpio.PI_EITHER_EDGE, kept);
+		GPIOListener removedListener = counter(TESTPIN, JPigpio.PI_EITHER_EDGE, removed);
+
+		pigpio.gpioSetMode(TESTPIN, JPigpio.PI_OUTPUT);
+		pigpio.gpioWrite(TESTPIN, false);
+		pigpio.addCallback(keptListener);
+		pigpio.addCallback(removedListener);
+		pigpio.removeCallback(removedListener);
+		try {
+			toggle(pigpio, 2);
+			waitFor(kept, 4);
+			expectEquals(4, kept.get(), "edges of remaining listener");
+			expectEquals(0, removed.get(), "edges of removed listener");
+		} finally {
+			pigpio.removeCallback(keptListener);
+		}
+	}
+
+	private void checkAlertAndCallback(JPigpio pigpio) throws PigpioException {
+		AtomicInteger alerts = new AtomicInteger();
+		AtomicInteger callbacks = new AtomicInteger();
+		GPIOListener listener = counter(TESTPIN, JPigpio.PI_EITHER_EDGE, callbacks);
+
+		pigpio.gpioSetMode(TESTPIN, JPigpio.PI_OUTPUT);
+		pigpio.gpioWrite(TESTPIN, false);
+		pigpio.gpioSetAlertFunc(TESTPIN, (gpio, level, tick) -> alerts.incrementAndGet());
+		pigpio.addCallback(listener);
+		try {
+			toggle(pigpio, 2);
+			waitFor(alerts, 4);
+			waitFor(callbacks, 4);
+			expectEquals(4, alerts.get(), "alerts");
+			expectEquals(4, callbacks.get(), "callbacks");
+		} finally {
+			pigpio.gpioSetAlertFunc(TESTPIN, null);
+			pigpio.removeCallback(listener);
+		}
+	}
+
+	private void checkWatchdog(JPigpio pigpio) throws PigpioException {
+		AtomicInteger timeouts = new AtomicInteger();
+		GPIOListener listener = new GPIOListener(TESTPIN, JPigpio.PI_RISING_EDGE) {
+			@Override
+			public void alert(int gpio, int level, long tick) {
+				if (level == JPigpio.PI_TIMEOUT)
+					timeouts.incrementAndGet();
+			}
+		};
+
+		pigpio.addCallback(listener);
+		pigpio.setWatchdog(TESTPIN, 20);
+		try {
+			waitFor(timeouts, 1);
+			expect(timeouts.get() > 0, "no watchdog timeout received");
+		} finally {
+			pigpio.setWatchdog(TESTPIN, 0);
+			pigpio.removeCallback(listener);
+		}
+	}
+
+	private void checkServo(JPigpio pigpio) throws PigpioException {
+		pigpio.gpioServo(TESTPIN, 1500);
+		try {
+			expectEquals(1500, pigpio.getServoPulseWidth(TESTPIN), "pulse width");
+		} finally {
+			pigpio.gpioServo(TESTPIN, 0);
+		}
+	}
+
+	private void checkPWM(JPigpio pigpio) throws PigpioException {
+		pigpio.setPWMRange(TESTPIN, 1000);
+		expectEquals(1000, pigpio.getPWMRange(TESTPIN), "range");
+		expect(pigpio.getPWMRealRange(TESTPIN) > 0, "real range should be positive");
+
+		int frequency = pigpio.setPWMFrequency(TESTPIN, 800);
+		expect(frequency > 0, "frequency should be positive");
+		expectEquals(frequency, pigpio.getPWMFrequency(TESTPIN), "frequency");
+
+		pigpio.setPWMDutycycle(TESTPIN, 250);
+		try {
+			expectEquals(250, pigpio.getPWMDutycycle(TESTPIN), "dutycycle");
+		} finally {
+			pigpio.setPWMDutycycle(TESTPIN, 0);
+		}
+
+		try {
+			pigpio.setPWMDutycycle(BADPIN, 10);
+		} catch (PigpioException e) {
+			return;
+		}
+		throw new AssertionError("no exception thrown for invalid gpio");
+	}
+
+	private void checkNotify(JPigpio pigpio) throws PigpioException {
+		int handle = pigpio.notifyOpen();
+		expect(handle >= 0, "handle should not be negative");
+		pigpio.notifyBegin(handle, 1 << TESTPIN);
+		pigpio.notifyPause(handle);
+		pigpio.notifyClose(handle);
+	}
+
+	private void checkWave(JPigpio pigpio) throws PigpioException {
+		pigpio.gpioSetMode(TESTPIN, JPigpio.PI_OUTPUT);
+		pigpio.waveClear();
+
+		ArrayList<Pulse> pulses = new ArrayList<>();
+		pulses.add(new Pulse(1 << TESTPIN, 0, 100));
+		pulses.add(new Pulse(0, 1 << TESTPIN, 100));
+		expectEquals(2, pigpio.waveAddGeneric(pulses), "pulses in waveform");
+		expectEquals(0, pigpio.waveAddGeneric(new ArrayList<>()), "pulses added by empty list");
+		expect(pigpio.waveAddSerial(TESTPIN, 9600, "JPigpio".getBytes(), 1000, 8, 2) > 2, "serial data should add pulses");
+
+		int waveId = pigpio.waveCreate();
+		expect(waveId >= 0, "wave id should not be negative");
+		expect(pigpio.waveSendOnce(waveId) > 0, "wave should have control blocks");
+		long deadline = System.currentTimeMillis() + 1000;
+		while (pigpio.waveTxBusy() && System.currentTimeMillis() < deadline)
+			pigpio.gpioDelay(1, JPigpio.PI_MILLISECONDS);
+		expect(!pigpio.waveTxBusy(), "wave should have finished");
+
+		pigpio.waveDelete(waveId);
+		// the wave is gone, so deleting it again must fail
+		try {
+			pigpio.waveDelete(waveId);
+		} catch (PigpioException e) {
+			pigpio.waveClear();
+			return;
+		}
+		throw new AssertionError("deleted wave could be deleted again");
+	}
+
+	private void checkSerial(JPigpio pigpio, String tty) throws PigpioException {
+		int handle = pigpio.serialOpen(tty, 9600, 0);
+		try {
+			pigpio.serialWrite(handle, "JPigpio".getBytes());
+			pigpio.serialWriteByte(handle, (byte) '\n');
+			expect(pigpio.serialDataAvailable(handle) >= 0, "available bytes should not be negative");
+			expect(pigpio.serialRead(handle, 16).length > 0, "read should return an array");
+		} finally {
+			pigpio.serialClose(handle);
+		}
+	}
+
+	private static GPIOListener counter(int pin, int edge, AtomicInteger count) {
+		return new GPIOListener(pin, edge) {
+			@Override
+			public void alert(int gpio, int level, long tick) {
+				if (level != JPigpio.PI_TIMEOUT)
+					count.incrementAndGet();
+			}
+		};
+	}
+
+	/**
+	 * Drive the test pin high and low again the given number of times.
+	 */
+	private void toggle(JPigpio pigpio, int pulses) throws PigpioException {
+		for (int i = 0; i < pulses; i++) {
+			pigpio.gpioWrite(TESTPIN, true);
+			pigpio.gpioDelay(1, JPigpio.PI_MILLISECONDS);
+			pigpio.gpioWrite(TESTPIN, false);
+			pigpio.gpioDelay(1, JPigpio.PI_MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Wait up to a second for the counter to reach the value, then give late extra alerts a chance to show up.
+	 */
+	private static void waitFor(AtomicInteger count, int value) {
+		long deadline = System.currentTimeMillis() + 1000;
+		while (count.get() < value && System.currentTimeMillis() < deadline)
+			Thread.yield();
+		try {
+			Thread.sleep(20);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+} // End of class
+// End of file
@@ -3,6 +3,7 @@
 import jpigpio.JPigpio;
 import jpigpio.Pigpio;
 import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
 import jpigpio.Utils;
 import jpigpio.sensors.HC_SR04;
 
@@ -14,24 +15,25 @@ public class Test_HC_SR04 {
 	public static void main(String args[]) {
 		System.out.println("Test HC-SR04");
 		Test_HC_SR04 app = new Test_HC_SR04();
-		app.run();
+		app.run(args);
 	}
 
-	public void run() {
+	/**
+	 * Runs using JNI by default, pass host and port to use pigpiod instead.
+	 */
+	public void run(String args[]) {
 		try {
-			// JPigpio pigpio = new PigpioSocket("raspi", 8888);
-			JPigpio pigpio = new Pigpio();
+			JPigpio pigpio = args.length >= 2 ? new PigpioSocket(args[0], Integer.parseInt(args[1])) : new Pigpio();
 			pigpio.setDebug(false);
 			pigpio.gpioInitialize();
 
-			
+			// Set the mode of the pins we will be using, the device checks them.
+			pigpio.gpioSetMode(triggerPin, JPigpio.PI_OUTPUT);
+			pigpio.gpioSetMode(echoPin, JPigpio.PI_INPUT);
+
 			// Create an instance of the HC_SR04 ultrasonic device
 			HC_SR04 hcSR04 = new HC_SR04(pigpio, triggerPin, echoPin);
 			Utils.addShutdown(pigpio);
-			
-			// Set the mode of the pins we will be using.
-			pigpio.gpioSetMode(triggerPin, JPigpio.PI_OUTPUT);
-			pigpio.gpioSetMode(echoPin, JPigpio.PI_INPUT);
 			while (true) {
 				System.out.println("Distance: " + hcSR04.getMetricDistance() * 100 + "cm");
 				try {
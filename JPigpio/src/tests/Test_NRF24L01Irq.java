@@ -0,0 +1,180 @@
+package tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.devices.NRF24L01;
+
+/**
+ * Check IRQ mode of NRF24L01: no SPI traffic while the radio is idle, received packets queued as the IRQ pin
+ * signals them, the oldest dropped when nobody takes them, and futures of sendAsync() completed by TX_DS or
+ * MAX_RT, or given up when the radio hangs. A FakeNrf24L01 attached to a local FakePigpiod stands in for the radio, so no Raspberry Pi is needed.
+ */
+public class Test_NRF24L01Irq extends CheckedTest {
+
+	private final int CE_PIN = 22;
+	private final int CSN_PIN = 8;
+	private final int IRQ_PIN = 25;
+	private final int PAYLOAD_SIZE = 8;
+	private final int CAPACITY = 4;
+	private final int OVERFLOW = 2;
+
+	private FakeNrf24L01 radio;
+	private Random random = new Random(24);
+
+	public static void main(String args[]) {
+		System.out.println("Test_NRF24L01Irq");
+		Test_NRF24L01Irq app = new Test_NRF24L01Irq();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+			radio = new FakeNrf24L01(pigpiod, CE_PIN, CSN_PIN, IRQ_PIN, 300);
+
+			NRF24L01 nrf = new NRF24L01(pigpio);
+			check("init", nrf.init(CE_PIN, CSN_PIN));
+			nrf.setPayloadSize(PAYLOAD_SIZE);
+			try {
+				nrf.poll(0, TimeUnit.MILLISECONDS);
+				check("poll requires IRQ mode", false);
+			} catch (PigpioException e) {
+				check("poll requires IRQ mode", e.getMessage().contains("requires IRQ mode"));
+			}
+			nrf.enableIrq(IRQ_PIN, CAPACITY);
+			nrf.startListening();
+
+			int transactions = radio.getTransactions();
+			Thread.sleep(200);
+			check("idle radio without SPI traffic", !nrf.dataReady() && !nrf.isSending() && nrf.poll(100, TimeUnit.MILLISECONDS) == null
+					&& radio.getTransactions() == transactions);
+
+			byte[] data = receive();
+			check("packet taken", Arrays.equals(data, nrf.poll(1, TimeUnit.SECONDS)));
+
+			// nobody takes packets, the oldest are dropped
+			ArrayList<byte[]> received = new ArrayList<>();
+			for (int i = 0; i < CAPACITY + OVERFLOW; i++)
+				received.add(receive());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (nrf.droppedCount() < OVERFLOW && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			check("full queue drops oldest", nrf.available() == CAPACITY && nrf.droppedCount() == OVERFLOW);
+			boolean newest = true;
+			for (int i = OVERFLOW; i < received.size() - 1; i++)
+				newest &= Arrays.equals(received.get(i), nrf.take());
+			check("newest packets kept in order", newest);
+			byte[] last = new byte[PAYLOAD_SIZE];
+			check("dataReady and getData use the queue", nrf.dataReady() && !nrf.getData(last)
+					&& Arrays.equals(received.get(received.size() - 1), last) && !nrf.dataReady());
+
+			// more packets than TX FIFO holds
+			ArrayList<byte[]> sent = new ArrayList<>();
+			ArrayList<CompletableFuture<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				sent.add(packet());
+				futures.add(nrf.sendAsync(sent.get(i)));
+			}
+			boolean ok = true;
+			for (CompletableFuture<Integer> future : futures)
+				ok &= future.get(5, TimeUnit.SECONDS) == 0;
+			check("futures completed by TX_DS", ok);
+			check("packets transmitted in order", equals(sent, radio.getSent()));
+			check("listening again", !nrf.isSending() && radio.isCeHigh() && (radio.getRegister(NRF24L01.CONFIG_REGISTER) & 1) == 1);
+
+			radio.failNext(1);
+			CompletableFuture<Integer> failed = nrf.sendAsync(packet());
+			check("future completed by MAX_RT", failed.get(5, TimeUnit.SECONDS) == 1);
+			check("failed packet flushed", nrf.write(packet()) == 0 && radio.getSent().size() == sent.size() + 1);
+
+			checkTimeouts(nrf);
+
+			data = receive();
+			check("packet received after transmitting", Arrays.equals(data, nrf.poll(1, TimeUnit.SECONDS)));
+
+			// the interrupt handler checks STATUS once more after queueing the packet
+			Thread.sleep(50);
+			transactions = radio.getTransactions();
+			Thread.sleep(200);
+			check("idle again", radio.getTransactions() == transactions);
+
+			nrf.terminate();
+			radio.stop();
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException | InterruptedException | ExecutionException | TimeoutException e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * The radio hangs: write() gives up, sendAsync() does not wait for ever on the full TX FIFO, and the stuck
+	 * futures are failed so that transmitting works again once the radio recovers.
+	 */
+	private void checkTimeouts(NRF24L01 nrf) throws PigpioException {
+		radio.hang(true);
+		check("write times out", nrf.write(packet()) == 2 && !nrf.isSending());
+
+		ArrayList<CompletableFuture<Integer>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			futures.add(nrf.sendAsync(packet()));
+		long start = System.currentTimeMillis();
+		boolean thrown = false;
+		try {
+			nrf.sendAsync(packet());
+		} catch (PigpioException e) {
+			thrown = true;
+		}
+		check("wait for full TX FIFO limited", thrown && System.currentTimeMillis() - start < 2000);
+		boolean failed = true;
+		for (CompletableFuture<Integer> future : futures)
+			failed &= future.isCompletedExceptionally();
+		check("stuck futures failed", failed && !nrf.isSending());
+
+		radio.hang(false);
+		int sent = radio.getSent().size();
+		byte[] data = packet();
+		check("write works after radio recovered", nrf.write(data) == 0 && radio.getSent().size() == sent + 1
+				&& Arrays.equals(data, radio.getSent().get(sent)));
+	}
+
+	/**
+	 * Let the radio receive a random packet, waiting while its RX FIFO is full.
+	 */
+	private byte[] receive() throws InterruptedException {
+		byte[] data = packet();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!radio.receive(data) && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		return data;
+	}
+
+	private byte[] packet() {
+		byte[] data = new byte[PAYLOAD_SIZE];
+		random.nextBytes(data);
+		return data;
+	}
+
+	private boolean equals(ArrayList<byte[]> a, ArrayList<byte[]> b) {
+		if (a.size() != b.size())
+			return false;
+		for (int i = 0; i < a.size(); i++)
+			if (!Arrays.equals(a.get(i), b.get(i)))
+				return false;
+		return true;
+	}
+} // End of class
+// End of file
@@ -0,0 +1,106 @@
+package tests;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import jpigpio.JPigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.devices.NRF24L01;
+
+/**
+ * Check that every register access of NRF24L01 is a single spiXfer, both with CSN on CE0 driven by the SPI
+ * peripheral and with CSN on another GPIO driven in the same command batch. Compares time per register read
+ * with the previous sequence of gpioWrite, two spiXfer and gpioWrite. A FakeNrf24L01 attached to a local
+ * FakePigpiod stands in for the radio, so no Raspberry Pi is needed.
+ */
+public class Test_NRF24L01Spi extends CheckedTest {
+
+	private final int CE_PIN = 22;
+	private final int GPIO_CSN_PIN = 17;
+	private final int IRQ_PIN = 25;
+	private final int READS = 5000;
+
+	public static void main(String args[]) {
+		System.out.println("Test_NRF24L01Spi");
+		Test_NRF24L01Spi app = new Test_NRF24L01Spi();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+
+			report("previous", separate(pigpiod, pigpio));
+			test(pigpiod, pigpio, NRF24L01.SPI_CE0_GPIO, "CE0");
+			test(pigpiod, pigpio, GPIO_CSN_PIN, "GPIO");
+
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			fail(e);
+		}
+	} // End of run
+
+	private void test(FakePigpiod pigpiod, JPigpio pigpio, int csnPin, String name) throws IOException, PigpioException {
+		FakeNrf24L01 radio = new FakeNrf24L01(pigpiod, CE_PIN, csnPin, IRQ_PIN, 300);
+		NRF24L01 nrf = new NRF24L01(pigpio);
+		check(name + " init", nrf.init(CE_PIN, csnPin));
+
+		nrf.setChannel(76);
+		byte addr[] = { 'S', 'N', 'D', '0', '1' };
+		nrf.setTADDR(addr, false);
+		check(name + " registers written and read", nrf.getChannel() == 76 && Arrays.equals(addr, nrf.getTXAddress()));
+
+		int transactions = radio.getTransactions();
+		int transfers = radio.getTransfers();
+		long start = 0;
+		// second half measured, after warm up
+		for (int i = 0; i < READS * 2; i++) {
+			if (i == READS)
+				start = System.nanoTime();
+			nrf.getStatus();
+		}
+		long nanos = (System.nanoTime() - start) / READS;
+		check(name + " one spiXfer per transaction", radio.getTransactions() - transactions == READS * 2
+				&& radio.getTransfers() - transfers == READS * 2);
+		report(name, nanos);
+
+		nrf.terminate();
+		radio.stop();
+	}
+
+	/**
+	 * Register read as done before: CSN low, command byte, data byte, CSN high.
+	 */
+	private long separate(FakePigpiod pigpiod, JPigpio pigpio) throws IOException, PigpioException {
+		FakeNrf24L01 radio = new FakeNrf24L01(pigpiod, CE_PIN, GPIO_CSN_PIN, IRQ_PIN, 300);
+		int handle = pigpio.spiOpen(JPigpio.PI_SPI_CHANNEL0, JPigpio.PI_SPI_BAUD_500KHZ, 0);
+		byte command[] = new byte[1];
+		byte data[] = new byte[1];
+		long start = 0;
+		for (int i = 0; i < READS * 2; i++) {
+			if (i == READS)
+				start = System.nanoTime();
+			pigpio.gpioWrite(GPIO_CSN_PIN, false);
+			command[0] = NRF24L01.STATUS_REGISTER;
+			pigpio.spiXfer(handle, command, command);
+			data[0] = (byte) 0xFF;
+			pigpio.spiXfer(handle, data, data);
+			pigpio.gpioWrite(GPIO_CSN_PIN, true);
+		}
+		long nanos = (System.nanoTime() - start) / READS;
+		pigpio.spiClose(handle);
+		radio.stop();
+		return nanos;
+	}
+
+	private void report(String name, long nanos) {
+		System.out.println(String.format("%-8s %d us per register read", name, nanos / 1000));
+	}
+} // End of class
+// End of file
@@ -0,0 +1,135 @@
+package tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.devices.NRF24L01;
+
+/**
+ * Check dynamic payload length, payloads in acknowledgements in both directions, and streaming transmit mode
+ * of NRF24L01, by polling and in IRQ mode. Compares packets per second sent by stream() with write(), which
+ * waits for each packet to be acknowledged. A FakeNrf24L01 attached to a local FakePigpiod stands in for the
+ * radio, transmitting a 32 byte packet in 160us as at 2 Mbps, so no Raspberry Pi is needed.
+ */
+public class Test_NRF24L01Stream extends CheckedTest {
+
+	private final int CE_PIN = 22;
+	private final int CSN_PIN = 8;
+	private final int IRQ_PIN = 25;
+	private final int AIRTIME = 160;
+	private final int STREAM = 300;
+	private final int WRITES = 30;
+
+	private FakeNrf24L01 radio;
+	private Random random = new Random(25);
+
+	public static void main(String args[]) {
+		System.out.println("Test_NRF24L01Stream");
+		Test_NRF24L01Stream app = new Test_NRF24L01Stream();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+			radio = new FakeNrf24L01(pigpiod, CE_PIN, CSN_PIN, IRQ_PIN, AIRTIME);
+
+			NRF24L01 nrf = new NRF24L01(pigpio);
+			check("init", nrf.init(CE_PIN, CSN_PIN));
+			nrf.setDataRate(NRF24L01.RF24_2MBPS);
+
+			// dynamic payloads keep their length
+			nrf.enableDynamicPayload();
+			nrf.startListening();
+			boolean ok = true;
+			for (int length : new int[] {1, 5, 17, 32}) {
+				byte[] data = packet(length);
+				ok &= radio.receive(data) && nrf.dataReady() && Arrays.equals(data, nrf.getPayload());
+			}
+			check("dynamic payload length", ok && nrf.getPayload() == null);
+
+			// acknowledgement payload sent back by the receiver
+			nrf.enableACKPayload();
+			byte[] ack = packet(4);
+			nrf.writeAckPayload(1, ack);
+			radio.receive(packet(10));
+			check("payload sent with acknowledgement", radio.getAcks().size() == 1 && Arrays.equals(ack, radio.getAcks().get(0))
+					&& nrf.getPayload().length == 10);
+			nrf.stopListening();
+
+			// acknowledgement payload received by the transmitter
+			byte[] reply = packet(6);
+			radio.setAckReply(reply);
+			check("write acknowledged", nrf.write(packet(32)) == 0);
+			check("payload received with acknowledgement", nrf.dataReady() && Arrays.equals(reply, nrf.getPayload()));
+
+			// stream compared to write
+			int sent = radio.getSent().size();
+			long start = System.nanoTime();
+			for (int i = 0; i < WRITES; i++)
+				nrf.write(packet(32));
+			long writeRate = WRITES * 1000000000L / (System.nanoTime() - start);
+
+			ArrayList<byte[]> packets = new ArrayList<>();
+			for (int i = 0; i < STREAM; i++)
+				packets.add(packet(32));
+			sent = radio.getSent().size();
+			start = System.nanoTime();
+			for (byte[] p : packets)
+				nrf.stream(p);
+			nrf.flushStream();
+			long streamRate = STREAM * 1000000000L / (System.nanoTime() - start);
+			System.out.println(String.format("write  %d packets/s", writeRate));
+			System.out.println(String.format("stream %d packets/s, line rate %d packets/s", streamRate, 1000000 / AIRTIME));
+			check("streamed packets transmitted in order", equals(packets, radio.getSent(), sent));
+			check("streamed without acknowledgement", radio.getNoAckCount() == STREAM);
+			check("stream faster than write", streamRate > writeRate * 5);
+			check("standby after stream", !radio.isCeHigh());
+
+			// streaming in IRQ mode
+			nrf.enableIrq(IRQ_PIN, NRF24L01.DEFAULT_CAPACITY);
+			packets.clear();
+			for (int i = 0; i < STREAM / 10; i++)
+				packets.add(packet(1 + random.nextInt(32)));
+			sent = radio.getSent().size();
+			for (byte[] p : packets)
+				nrf.stream(p);
+			nrf.flushStream();
+			check("streamed in IRQ mode", equals(packets, radio.getSent(), sent) && !nrf.isSending());
+
+			nrf.terminate();
+			radio.stop();
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			fail(e);
+		}
+	} // End of run
+
+	private byte[] packet(int length) {
+		byte[] data = new byte[length];
+		random.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Compare packets with the ones transmitted after the first skipped.
+	 */
+	private boolean equals(ArrayList<byte[]> packets, ArrayList<byte[]> sent, int skip) {
+		if (sent.size() - skip != packets.size())
+			return false;
+		for (int i = 0; i < packets.size(); i++)
+			if (!Arrays.equals(packets.get(i), sent.get(skip + i)))
+				return false;
+		return true;
+	}
+} // End of class
+// End of file
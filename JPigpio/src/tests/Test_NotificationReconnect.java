@@ -0,0 +1,114 @@
+package tests;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpigpio.GPIOListener;
+import jpigpio.JPigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+
+/**
+ * Check that reconnecting while notifications stream in neither confuses the reply opening the new notification
+ * handle with reports nor loses the listeners. A local FakePigpiod keeps toggling one GPIO while another stays
+ * high; an alert of the steady GPIO could only come from a misread report. Also checks listeners of GPIOs
+ * notifications do not report are rejected. No Raspberry Pi is needed.
+ */
+public class Test_NotificationReconnect extends CheckedTest {
+
+	private final int TOGGLED_GPIO = 4;
+	private final int STEADY_GPIO = 20;
+	private final int RECONNECTS = 50;
+	private final int BAD_GPIO = 32;
+
+	private volatile boolean toggling = true;
+
+	public static void main(String args[]) {
+		System.out.println("Test_NotificationReconnect");
+		Test_NotificationReconnect app = new Test_NotificationReconnect();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			pigpiod.setLevel(STEADY_GPIO, 1);
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+
+			AtomicInteger toggled = new AtomicInteger();
+			AtomicInteger steady = new AtomicInteger();
+			pigpio.addCallback(new GPIOListener(TOGGLED_GPIO, JPigpio.PI_EITHER_EDGE) {
+				@Override
+				public void alert(int gpio, int level, long tick) {
+					toggled.incrementAndGet();
+				}
+			});
+			pigpio.addCallback(new GPIOListener(STEADY_GPIO, JPigpio.PI_EITHER_EDGE) {
+				@Override
+				public void alert(int gpio, int level, long tick) {
+					steady.incrementAndGet();
+				}
+			});
+
+			GPIOListener bad = new GPIOListener(BAD_GPIO, JPigpio.PI_EITHER_EDGE) {
+				@Override
+				public void alert(int gpio, int level, long tick) {
+				}
+			};
+			check("listener of GPIO outside 0-31 rejected", badGpio(() -> pigpio.addCallback(bad))
+					&& badGpio(() -> pigpio.removeCallback(bad)) && badGpio(() -> pigpio.gpioSetAlertFunc(BAD_GPIO, null)));
+
+			Thread toggler = new Thread(() -> toggle(pigpiod));
+			toggler.start();
+			for (int i = 0; i < RECONNECTS; i++) {
+				Thread.sleep(2);
+				pigpio.reconnect();
+			}
+			toggling = false;
+			toggler.join();
+
+			int before = toggled.get();
+			pigpiod.setLevel(TOGGLED_GPIO, 1);
+			pigpiod.setLevel(TOGGLED_GPIO, 0);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (toggled.get() < before + 2 && System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+			check("alerts delivered after reconnects", toggled.get() >= before + 2);
+			check("no alerts from misread reports", steady.get() == 0);
+
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException | InterruptedException e) {
+			fail(e);
+		}
+	} // End of run
+
+	private interface Call {
+		void call() throws PigpioException;
+	}
+
+	private boolean badGpio(Call call) {
+		try {
+			call.call();
+			return false;
+		} catch (PigpioException e) {
+			return e.getErrorCode() == PigpioException.PI_BAD_USER_GPIO;
+		}
+	}
+
+	private void toggle(FakePigpiod pigpiod) {
+		int level = 0;
+		try {
+			while (toggling) {
+				level ^= 1;
+				pigpiod.setLevel(TOGGLED_GPIO, level);
+			}
+			pigpiod.setLevel(TOGGLED_GPIO, 0);
+		} catch (IOException e) {
+			toggling = false;
+		}
+	}
+} // End of class
+// End of file
@@ -0,0 +1,174 @@
+package tests;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpigpio.EdgeBuffer;
+import jpigpio.GPIOListener;
+import jpigpio.JPigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+
+/**
+ * Measure how fast notifications flow from pigpiod to a GPIOListener. A local FakePigpiod sends reports
+ * toggling GPIO 4, each carrying the time it was sent as its tick.
+ * <ul>
+ * <li>throughput - reports are sent in large bursts, measuring sustained events/s</li>
+ * <li>latency - reports are sent one at a time, measuring time from send to listener call</li>
+ * <li>edge buffer - reports are sent in large bursts and drained from an EdgeBuffer in bulk</li>
+ * </ul>
+ * Listeners are registered on all other GPIOs as well, so the cost of finding listeners of the changed GPIO
+ * is part of the measurement. No Raspberry Pi is needed.
+ */
+public class Test_NotificationThroughput {
+
+	private final int GPIO = 4;
+	private final int BURST_EVENTS = 500000;
+	private final int BURST_SIZE = 1000;   // reports per write
+	private final int LATENCY_EVENTS = 2000;
+
+	private final AtomicInteger received = new AtomicInteger();
+	private long[] latencies;
+
+	public static void main(String args[]) {
+		System.out.println("Test_NotificationThroughput");
+		Test_NotificationThroughput app = new Test_NotificationThroughput();
+		app.run();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+
+			JPigpio pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+
+			pigpio.addCallback(new GPIOListener(GPIO, JPigpio.PI_EITHER_EDGE) {
+				@Override
+				public void alert(int gpio, int level, long tick) {
+					int n = received.getAndIncrement();
+					if (latencies != null && n < latencies.length)
+						latencies[n] = micros() - tick;
+				}
+			});
+
+			// listeners of GPIOs which never change
+			for (int gpio = 0; gpio < 32; gpio++)
+				if (gpio != GPIO)
+					pigpio.addCallback(new GPIOListener(gpio, JPigpio.PI_EITHER_EDGE) {
+						@Override
+						public void alert(int gpio, int level, long tick) {
+							System.out.println("Unexpected alert of GPIO " + gpio);
+						}
+					});
+
+			measureThroughput(pigpiod);
+			measureLatency(pigpiod);
+			measureEdgeBuffer(pigpio, pigpiod);
+
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			e.printStackTrace();
+		}
+	} // End of run
+
+	private void measureThroughput(FakePigpiod pigpiod) throws IOException {
+		byte[] burst = new byte[BURST_SIZE * 12];
+		int level = 0;
+		for (int i = 0; i < BURST_SIZE; i++) {
+			level ^= 1 << GPIO;
+			putReport(burst, i, i, 0, 0, level);
+		}
+
+		received.set(0);
+		long start = System.nanoTime();
+		for (int sent = 0; sent < BURST_EVENTS; sent += BURST_SIZE)
+			pigpiod.sendReports(burst);
+		waitFor(BURST_EVENTS);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println(String.format("throughput: %d of %d events in %d ms, %d events/s",
+				received.get(), BURST_EVENTS, elapsed / 1000000, received.get() * 1000000000L / elapsed));
+	}
+
+	private void measureLatency(FakePigpiod pigpiod) throws IOException {
+		latencies = new long[LATENCY_EVENTS];
+		received.set(0);
+		int level = 0;
+		for (int i = 0; i < LATENCY_EVENTS; i++) {
+			level ^= 1 << GPIO;
+			pigpiod.sendReport(i, 0, (int) micros(), level);
+			waitFor(i + 1);
+		}
+
+		Arrays.sort(latencies);
+		System.out.println(String.format("dispatch latency: p50: %d us, p90: %d us, p99: %d us, max: %d us",
+				latencies[LATENCY_EVENTS / 2], latencies[LATENCY_EVENTS * 9 / 10],
+				latencies[LATENCY_EVENTS * 99 / 100], latencies[LATENCY_EVENTS - 1]));
+	}
+
+	private void measureEdgeBuffer(JPigpio pigpio, FakePigpiod pigpiod) throws IOException, PigpioException {
+		EdgeBuffer buffer = pigpio.openEdgeBuffer(1 << GPIO, 65536);
+		long[] ticks = new long[4096];
+		int[] levels = new int[4096];
+
+		byte[] burst = new byte[BURST_SIZE * 12];
+		int level = 0;
+		for (int i = 0; i < BURST_SIZE; i++) {
+			level ^= 1 << GPIO;
+			putReport(burst, i, i, 0, i, level);
+		}
+
+		Thread sender = new Thread(() -> {
+			try {
+				for (int sent = 0; sent < BURST_EVENTS; sent += BURST_SIZE)
+					pigpiod.sendReports(burst);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+
+		long start = System.nanoTime();
+		sender.start();
+		int drained = 0;
+		int drains = 0;
+		long deadline = System.currentTimeMillis() + 10000;
+		while (drained + buffer.getOverflowCount() < BURST_EVENTS && System.currentTimeMillis() < deadline) {
+			int n = buffer.drainTo(ticks, levels);
+			if (n == 0) {
+				Thread.yield();
+				continue;
+			}
+			drained += n;
+			drains++;
+		}
+		long elapsed = System.nanoTime() - start;
+		pigpio.closeEdgeBuffer(buffer);
+
+		System.out.println(String.format("edge buffer: %d of %d events in %d ms, %d events/s, %d events per drain, %d dropped",
+				drained, BURST_EVENTS, elapsed / 1000000, drained * 1000000000L / elapsed,
+				drains == 0 ? 0 : drained / drains, buffer.getOverflowCount()));
+	}
+
+	private void waitFor(int count) {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (received.get() < count && System.currentTimeMillis() < deadline)
+			Thread.yield();
+	}
+
+	private static long micros() {
+		// same clock as the tick of reports, truncated to 32 bits like pigpio ticks
+		return (System.nanoTime() / 1000) & 0xFFFFFFFFL;
+	}
+
+	private static void putReport(byte[] reports, int index, int seq, int flags, int tick, int level) {
+		FakePigpiod.putShort(reports, index * 12, seq);
+		FakePigpiod.putShort(reports, index * 12 + 2, flags);
+		FakePigpiod.putInt(reports, index * 12 + 4, tick);
+		FakePigpiod.putInt(reports, index * 12 + 8, level);
+	}
+} // End of class
+// End of file
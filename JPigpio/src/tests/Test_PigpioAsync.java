@@ -0,0 +1,131 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpigpio.JPigpio;
+import jpigpio.JPigpioAsync;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+
+/**
+ * Check futures of JPigpioAsync: several threads fire commands without waiting, every future gets the result
+ * of its own command, futures of one thread complete in the order the commands were sent, and error codes
+ * returned by pigpiod complete the future exceptionally with PigpioException. Runs against a local FakePigpiod,
+ * so no Raspberry Pi is needed.
+ */
+public class Test_PigpioAsync extends CheckedTest {
+
+	private final int THREADS = 8;
+	private final int COMMANDS = 1000;
+	private final int MISSING_WAVE = 999;
+
+	private final AtomicInteger sequence = new AtomicInteger();
+	private final AtomicInteger wrong = new AtomicInteger();
+	private final AtomicInteger outOfOrder = new AtomicInteger();
+	private final AtomicInteger errors = new AtomicInteger();
+
+	public static void main(String args[]) {
+		System.out.println("Test_PigpioAsync");
+		Test_PigpioAsync app = new Test_PigpioAsync();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(20);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort(), true);
+			JPigpioAsync async = pigpio.async();
+			int handle = pigpio.spiOpen(JPigpio.PI_SPI_CHANNEL0, JPigpio.PI_SPI_BAUD_500KHZ, 0);
+
+			ArrayList<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				int gpio = t;
+				Thread thread = new Thread(() -> fire(async, handle, gpio));
+				thread.start();
+				threads.add(thread);
+			}
+			for (Thread thread : threads)
+				thread.join();
+
+			check("each future gets its own result", wrong.get() == 0);
+			check("futures of one thread complete in order", outOfOrder.get() == 0);
+			check("error codes complete futures with PigpioException", errors.get() == THREADS * COMMANDS / 100);
+
+			// blocking and asynchronous calls share the connection
+			CompletableFuture<Integer> mode = async.gpioGetModeAsync(0);
+			check("blocking call between futures", pigpio.gpioGetMode(0) == mode.join());
+
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (Exception e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * Send commands of one thread without waiting, then check their futures.
+	 */
+	private void fire(JPigpioAsync async, int handle, int gpio) {
+		ArrayList<CompletableFuture<?>> futures = new ArrayList<>();
+		ArrayList<Object> expected = new ArrayList<>();
+		ArrayList<byte[]> received = new ArrayList<>();
+		int[] completed = new int[COMMANDS * 3 + COMMANDS / 100];
+
+		for (int i = 0; i < COMMANDS; i++) {
+			int mode = i % 8;
+			byte[] tx = new byte[1 + (i + gpio) % 20];
+			Arrays.fill(tx, (byte) i);
+			tx[0] = (byte) gpio;
+			byte[] rx = new byte[tx.length];
+
+			add(futures, completed, async.gpioSetModeAsync(gpio, mode));
+			expected.add(0);
+			// mode read back only matches if the commands were answered in order
+			add(futures, completed, async.gpioGetModeAsync(gpio));
+			expected.add(mode);
+			add(futures, completed, async.spiXferAsync(handle, tx, rx));
+			expected.add(tx);
+			received.add(rx);
+			if (i % 100 == 0) {
+				add(futures, completed, async.waveSendOnceAsync(MISSING_WAVE));
+				expected.add(PigpioException.PI_BAD_WAVE_ID);
+			}
+		}
+
+		int xfer = 0;
+		for (int k = 0; k < futures.size(); k++) {
+			Object want = expected.get(k);
+			try {
+				Object result = futures.get(k).join();
+				if (want instanceof byte[]) {
+					byte[] tx = (byte[]) want;
+					if (!result.equals(tx.length) || !Arrays.equals(tx, received.get(xfer++)))
+						wrong.incrementAndGet();
+				} else if (!result.equals(want))
+					wrong.incrementAndGet();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof PigpioException && want.equals(((PigpioException) e.getCause()).getErrorCode()))
+					errors.incrementAndGet();
+				else
+					wrong.incrementAndGet();
+			}
+			if (k > 0 && completed[k] < completed[k - 1])
+				outOfOrder.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Keep the future, noting when it completes.
+	 */
+	private void add(ArrayList<CompletableFuture<?>> futures, int[] completed, CompletableFuture<?> future) {
+		int k = futures.size();
+		futures.add(future.whenComplete((result, e) -> completed[k] = sequence.incrementAndGet()));
+	}
+} // End of class
+// End of file
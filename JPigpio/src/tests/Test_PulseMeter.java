@@ -0,0 +1,136 @@
+package tests;
+
+import java.io.IOException;
+
+import jpigpio.JPigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.PulseMeter;
+
+/**
+ * Check PulseMeter against a local FakePigpiod: the echo is timed from the ticks of its edges, edges delivered
+ * late are waited for within the delivery timeout, ticks wrapping at 2^32 are handled, edges of an earlier echo
+ * are ignored, and -1 is returned when the echo does not end within the timeout. A simulated sensor answers
+ * every trigger pulse with an echo of a set length, so no Raspberry Pi is needed.
+ */
+public class Test_PulseMeter extends CheckedTest {
+
+	private final int TRIGGER_GPIO = 17;
+	private final int ECHO_GPIO = 18;
+	private final int PULSE_LEN = 10;
+	private final int TIMEOUT = 30000;
+
+	private FakePigpiod pigpiod;
+	private final Echo echo = new Echo();
+
+	/**
+	 * Simulated sensor: answers a trigger pulse with an echo, whose edges are reported with the ticks they
+	 * happened at, optionally some time later.
+	 */
+	private class Echo implements FakePigpiod.Device {
+		volatile boolean enabled = true;
+		volatile int delay = 100; // microseconds from end of trigger pulse to rising edge
+		volatile int width = 580; // microseconds
+		volatile int deliveryDelay = 0; // milliseconds until the edges are reported
+		volatile boolean earlier = false; // report an echo which ended before the trigger first
+
+		@Override
+		public void gpioWrite(int gpio, int level) {
+		}
+
+		@Override
+		public byte[] spiXfer(byte[] data) {
+			return data;
+		}
+
+		@Override
+		public void gpioTrigger(int gpio, int pulseLen, int level) {
+			if (gpio != TRIGGER_GPIO || !enabled)
+				return;
+			int tick = pigpiod.getTick();
+			int rise = tick + pulseLen + delay;
+			int fall = rise + width;
+			int late = deliveryDelay;
+			boolean old = earlier;
+			Thread thread = new Thread(() -> {
+				try {
+					Thread.sleep(late);
+					if (old) {
+						pigpiod.setLevel(ECHO_GPIO, 1, tick - 2000);
+						pigpiod.setLevel(ECHO_GPIO, 0, tick - 1000);
+					}
+					pigpiod.setLevel(ECHO_GPIO, 1, rise);
+					pigpiod.setLevel(ECHO_GPIO, 0, fall);
+				} catch (IOException | InterruptedException e) {
+					// test ends
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	public static void main(String args[]) {
+		System.out.println("Test_PulseMeter");
+		Test_PulseMeter app = new Test_PulseMeter();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			pigpiod.attach(echo);
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+			pigpio.gpioSetMode(TRIGGER_GPIO, JPigpio.PI_OUTPUT);
+			pigpio.gpioSetMode(ECHO_GPIO, JPigpio.PI_INPUT);
+			PulseMeter meter = new PulseMeter(pigpio, TRIGGER_GPIO, ECHO_GPIO);
+
+			boolean ok = true;
+			for (int width : new int[] { 150, 580, 2900, 23000 }) {
+				echo.width = width;
+				ok &= meter.measure(PULSE_LEN, false, TIMEOUT) == width;
+			}
+			check("echo timed from ticks of its edges", ok);
+
+			echo.width = 580;
+			echo.earlier = true;
+			check("edges of earlier echo ignored", meter.measure(PULSE_LEN, false, TIMEOUT) == 580);
+			echo.earlier = false;
+
+			// edges reported 50 ms after they happened
+			echo.deliveryDelay = 50;
+			check("late edges within delivery timeout", meter.measure(PULSE_LEN, false, 2000) == 580);
+			meter.setDeliveryTimeout(10);
+			check("late edges after delivery timeout", meter.measure(PULSE_LEN, false, 2000) == -1);
+			// let the late edges arrive, they must not end the next measurement
+			Thread.sleep(100);
+			meter.setDeliveryTimeout(100);
+			echo.deliveryDelay = 0;
+			check("measurement after late edges", meter.measure(PULSE_LEN, false, TIMEOUT) == 580);
+
+			// tick wraps about 10 ms from now, during the echo
+			echo.width = 30000;
+			pigpiod.setTickOffset(-10000 - (int) (System.nanoTime() / 1000));
+			check("echo across tick wrap", meter.measure(PULSE_LEN, false, 100000) == 30000);
+			pigpiod.setTickOffset(0);
+
+			echo.width = 5000;
+			check("echo ending after timeout", meter.measure(PULSE_LEN, false, 2000) == -1);
+			echo.enabled = false;
+			long start = System.currentTimeMillis();
+			check("no echo", meter.measure(PULSE_LEN, false, 2000) == -1);
+			long elapsed = System.currentTimeMillis() - start;
+			check("no echo waits timeout and delivery timeout", elapsed >= 100 && elapsed < 1000);
+
+			meter.close();
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException | InterruptedException e) {
+			fail(e);
+		}
+	} // End of run
+} // End of class
+// End of file
@@ -0,0 +1,99 @@
+package tests;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import jpigpio.GPIOListener;
+import jpigpio.JPigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.QueuedGPIOListener.OverflowPolicy;
+
+/**
+ * Show that a slow callback does not hold back other callbacks once callbacks run from an executor.
+ * A local FakePigpiod toggles GPIO 4 and GPIO 17 together every 200 us; the callback of GPIO 17 takes 1 ms per alert
+ * while the callback of GPIO 4 returns immediately. For every overflow policy the test prints how long
+ * the fast callback took to receive all alerts and what happened to alerts of the slow one.
+ * No Raspberry Pi is needed.
+ */
+public class Test_QueuedCallbacks {
+
+	private final int FAST_GPIO = 4;
+	private final int SLOW_GPIO = 17;
+	private final int EVENTS = 1000;
+	private final int QUEUE_SIZE = 100;
+	private final int INTERVAL = 200; // microseconds between edges
+
+	public static void main(String args[]) {
+		System.out.println("Test_QueuedCallbacks");
+		Test_QueuedCallbacks app = new Test_QueuedCallbacks();
+		app.run();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			ExecutorService executor = Executors.newCachedThreadPool();
+
+			for (OverflowPolicy policy : OverflowPolicy.values())
+				measure(pigpiod, executor, policy);
+
+			executor.shutdown();
+			pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			e.printStackTrace();
+		}
+	} // End of run
+
+	private void measure(FakePigpiod pigpiod, ExecutorService executor, OverflowPolicy policy) throws IOException, PigpioException {
+		AtomicInteger fast = new AtomicInteger();
+		AtomicInteger slow = new AtomicInteger();
+
+		PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+		pigpio.gpioInitialize();
+		pigpio.setCallbackExecutor(executor, QUEUE_SIZE, policy);
+
+		GPIOListener fastListener = new GPIOListener(FAST_GPIO, JPigpio.PI_EITHER_EDGE) {
+			@Override
+			public void alert(int gpio, int level, long tick) {
+				fast.incrementAndGet();
+			}
+		};
+		GPIOListener slowListener = new GPIOListener(SLOW_GPIO, JPigpio.PI_EITHER_EDGE) {
+			@Override
+			public void alert(int gpio, int level, long tick) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					return;
+				}
+				slow.incrementAndGet();
+			}
+		};
+		pigpio.addCallback(fastListener);
+		pigpio.addCallback(slowListener);
+
+		long start = System.nanoTime();
+		int level = 0;
+		for (int i = 0; i < EVENTS; i++) {
+			level ^= (1 << FAST_GPIO) | (1 << SLOW_GPIO);
+			pigpiod.sendReport(i, 0, i * INTERVAL, level);
+			LockSupport.parkNanos(INTERVAL * 1000L);
+		}
+		long deadline = System.currentTimeMillis() + 10000;
+		while (fast.get() < EVENTS && System.currentTimeMillis() < deadline)
+			Thread.yield();
+		long elapsed = (System.nanoTime() - start) / 1000000;
+
+		pigpio.gpioDelay(2, JPigpio.PI_SECONDS); // let the slow callback finish its queue
+		System.out.println(String.format("%-12s fast callback: %d alerts in %d ms, slow callback: %d alerts, %d overflows",
+				policy, fast.get(), elapsed, slow.get(), pigpio.getCallbackOverflowCount(slowListener)));
+
+		pigpio.gpioTerminate();
+	}
+} // End of class
+// End of file
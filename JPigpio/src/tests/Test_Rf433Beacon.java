@@ -0,0 +1,138 @@
+package tests;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.WaveBuilder;
+import jpigpio.WaveScheduler;
+import jpigpio.packet.Protocol;
+import jpigpio.packet.Rf433tx;
+import jpigpio.packet.TransmitFrame;
+
+/**
+ * Send a beacon compiled once by Rf433tx.compile() repeatedly and check that nothing is encoded or uploaded again
+ * and every send is a single wave chain of preamble and repeated datagram. Compares time the caller spends in
+ * send() with put(), which encodes the datagram every time. Also checks transmitters sharing a WaveScheduler
+ * and that waves created by others are left alone. A local FakePigpiod simulates transmission,
+ * so no Raspberry Pi is needed.
+ */
+public class Test_Rf433Beacon extends CheckedTest {
+
+	private final int GPIO_TX = 18;
+	private final int GPIO_OTHER = 19;
+	private final int SENDS = 5;
+	private final int CALLS = 20000;
+
+	public static void main(String args[]) {
+		System.out.println("Test_Rf433Beacon");
+		Test_Rf433Beacon app = new Test_Rf433Beacon();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+			Protocol protocol = new Protocol();
+			// wave of someone else, must survive the transmitters
+			int foreign = new WaveBuilder().high(GPIO_OTHER, 100).low(GPIO_OTHER, 100).create(pigpio);
+			Rf433tx tx = new Rf433tx(pigpio, GPIO_TX, protocol);
+
+			byte[] data = new byte[] {0x12, 0x34, 0x56, 0x78, (byte) 0x9A};
+			TransmitFrame frame = tx.compile(data);
+			check("compiled wave created", frame.getWaveId() >= 0 && pigpiod.getWave(frame.getWaveId()) != null);
+			check("repeats of protocol", frame.getRepeats() == protocol.DGRM_REPEAT_TX);
+
+			tx.send(frame).get(5, TimeUnit.SECONDS);
+			byte[] chain = pigpiod.getLastChain();
+			// preamble, then loop of the datagram
+			check("one chain per send", chain != null && chain.length == 8 && chain[1] == (byte) 255 && chain[2] == 0
+					&& chain[3] == frame.getWaveId() && chain[4] == (byte) 255 && chain[5] == 1
+					&& chain[6] == protocol.DGRM_REPEAT_TX && chain[7] == 0);
+
+			int uploads = pigpiod.getWaveAddCommands();
+			long start = System.nanoTime();
+			CompletableFuture<Void> sent = null;
+			for (int i = 1; i < SENDS; i++)
+				sent = tx.send(frame);
+			sent.get(5, TimeUnit.SECONDS);
+			long micros = (System.nanoTime() - start) / 1000;
+			long expected = (SENDS - 1) * (frame.getMicros() + protocol.TX_PULSE_MSGGAP);
+			System.out.println(String.format("%d sends in %d ms, %d ms of waveforms", SENDS - 1, micros / 1000, expected / 1000));
+			check("nothing uploaded again", pigpiod.getWaveAddCommands() == uploads);
+			check("same chain", Arrays.equals(chain, pigpiod.getLastChain()));
+			check("put of same data sends same chain", tx.putAsync(data).get(5, TimeUnit.SECONDS) == null
+					&& Arrays.equals(chain, pigpiod.getLastChain()) && pigpiod.getWaveAddCommands() == uploads);
+
+			boolean thrown = false;
+			try {
+				tx.compile(new byte[3]);
+			} catch (PigpioException e) {
+				thrown = true;
+			}
+			check("compile checks size", thrown);
+
+			tx.terminate();
+			// time spent by the caller only, transmitting is cancelled by terminate
+			tx = new Rf433tx(pigpio, GPIO_TX, protocol);
+			frame = tx.compile(data);
+			report("put", measure(tx, null, data));
+			report("send", measure(tx, frame, data));
+
+			tx.terminate();
+			checkShared(pigpio, pigpiod, protocol, data);
+			check("existing wave kept", pigpiod.getWave(foreign) != null);
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException | InterruptedException | ExecutionException | TimeoutException e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * Two transmitters sharing one scheduler use the same waves, and terminating one leaves the other sending.
+	 */
+	private void checkShared(PigpioSocket pigpio, FakePigpiod pigpiod, Protocol protocol, byte[] data)
+			throws PigpioException, InterruptedException, ExecutionException, TimeoutException {
+		WaveScheduler scheduler = new WaveScheduler(pigpio);
+		Rf433tx tx1 = new Rf433tx(pigpio, GPIO_TX, protocol, scheduler);
+		Rf433tx tx2 = new Rf433tx(pigpio, GPIO_TX, protocol, scheduler);
+		TransmitFrame frame = tx1.compile(data);
+		check("shared cache", tx2.compile(data).getWaveId() == frame.getWaveId() && scheduler.getCache().size() == 1);
+		tx1.terminate();
+		check("shared scheduler left running", tx2.send(frame).get(5, TimeUnit.SECONDS) == null);
+		tx2.terminate();
+		scheduler.close();
+		scheduler.getCache().clear();
+	}
+
+	/**
+	 * Nanoseconds per call of put, or of send if frame is set, including warm up.
+	 */
+	private long measure(Rf433tx tx, TransmitFrame frame, byte[] data) throws PigpioException {
+		long start = 0;
+		for (int i = 0; i < CALLS * 2; i++) {
+			if (i == CALLS)
+				start = System.nanoTime();
+			if (frame != null)
+				tx.send(frame);
+			else
+				tx.put(data);
+		}
+		return (System.nanoTime() - start) / CALLS;
+	}
+
+	private void report(String name, long nanos) {
+		System.out.println(String.format("%-4s %d ns per call", name, nanos));
+	}
+} // End of class
+// End of file
@@ -0,0 +1,234 @@
+package tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.Pulse;
+import jpigpio.Utils;
+import jpigpio.packet.Datagram;
+import jpigpio.packet.Ev1527Decoder;
+import jpigpio.packet.Ev1527Frame;
+import jpigpio.packet.Frame;
+import jpigpio.packet.OregonDecoder;
+import jpigpio.packet.OregonFrame;
+import jpigpio.packet.Protocol;
+import jpigpio.packet.Pt2262Decoder;
+import jpigpio.packet.Pt2262Frame;
+import jpigpio.packet.Rf433rx;
+import jpigpio.packet.Rf433tx;
+
+/**
+ * Receive several protocols with one Rf433rx: datagrams of Rf433tx, a PT2262 remote, an EV1527 remote and an
+ * Oregon Scientific THN132N sensor transmitting in turns, with noise spikes removed by the glitch filter.
+ * A local FakePigpiod sends notifications of the encoded transmissions, so no Raspberry Pi is needed.
+ */
+public class Test_Rf433Protocols extends CheckedTest {
+
+	private final int GPIO_RX = 17;
+	private final int JITTER = 40;     // +- microseconds
+	private final int SPIKE = 30;      // microseconds of noise spikes
+	private final int GLITCH = 100;    // glitch filter
+	private final int PAUSE = 300000;  // between transmissions
+
+	private final String PT2262_TRITS = "0F1F0F11000F";
+	private final int EV1527_ID = 0x5A3C7;
+	private final int EV1527_KEYS = 0x9;
+	private final int OREGON_ID = 0xEC40;
+
+	private FakePigpiod pigpiod;
+	private Protocol protocol = new Protocol();
+	private Rf433tx tx;
+	private Random random = new Random(433);
+	private int seq = 0;
+	private long tick = 0xFFFFFFFFL - 1000000; // wraps around during the test
+	private int level = 0;
+
+	public static void main(String args[]) {
+		System.out.println("Test_Rf433Protocols");
+		Test_Rf433Protocols app = new Test_Rf433Protocols();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+			tx = new Rf433tx(pigpio, 18, protocol);
+			Rf433rx rx = new Rf433rx(pigpio, GPIO_RX, protocol, Rf433rx.DEFAULT_CAPACITY);
+			rx.addDecoder(new Pt2262Decoder());
+			rx.addDecoder(new Ev1527Decoder());
+			rx.addDecoder(new OregonDecoder());
+			rx.setGlitchFilter(GLITCH);
+
+			byte[] data = sendDatagram();
+			int pt2262 = trits(PT2262_TRITS);
+			sendPwm(pt2262, 350);
+			int ev1527 = EV1527_ID << 4 | EV1527_KEYS;
+			sendPwm(ev1527, 420);
+			byte[] oregon = oregonMessage(-12.3);
+			sendOregon(oregon);
+			edge(1); // ends the last transmission
+			edge(0);
+
+			ArrayList<Frame> frames = new ArrayList<>();
+			Frame frame;
+			while ((frame = rx.poll(500, TimeUnit.MILLISECONDS)) != null) {
+				System.out.println("received " + frame);
+				frames.add(frame);
+			}
+
+			check("datagram", frames.size() > 0 && frames.get(0) instanceof Datagram && Arrays.equals(data, frames.get(0).getData()));
+			ArrayList<Pt2262Frame> pt = typed(frames, Pt2262Frame.class);
+			check("PT2262 reported once", pt.size() == 1 && pt.get(0).getTrits().equals(PT2262_TRITS));
+			ArrayList<Ev1527Frame> ev = typed(frames, Ev1527Frame.class);
+			// PT2262 codes are EV1527 codes as well
+			check("EV1527 reported once, PT2262 code as well", ev.size() == 2 && ev.get(0).getCode() == pt2262
+					&& ev.get(1).getId() == EV1527_ID && ev.get(1).getKeys() == EV1527_KEYS);
+			ArrayList<OregonFrame> or = typed(frames, OregonFrame.class);
+			check("Oregon reported once", or.size() == 1 && Arrays.equals(oregon, or.get(0).getData()));
+			check("Oregon fields", or.size() == 1 && or.get(0).getSensorId() == OREGON_ID && or.get(0).getChannel() == 2
+					&& or.get(0).getRollingCode() == 0x5A && !or.get(0).isBatteryLow()
+					&& Math.abs(or.get(0).getTemperature() + 12.3) < 0.01 && or.get(0).hasValidChecksum(12));
+			check("nothing else", frames.size() == 5);
+			check("frames in order of transmission", frames.size() == 5 && frames.get(1) instanceof Pt2262Frame
+					&& frames.get(4) instanceof OregonFrame);
+
+			rx.terminate();
+			tx.terminate();
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException | InterruptedException e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * Datagram of random data, repeated and with the preamble as Rf433tx transmits it.
+	 */
+	private byte[] sendDatagram() throws IOException {
+		byte[] data = new byte[protocol.DATA_SIZE];
+		random.nextBytes(data);
+		pulse(1, protocol.TX_PULSE_MSGGAP);
+		ArrayList<Pulse> pulses = tx.constructMessagePulses(Utils.bytes2nibbles(data));
+		for (int r = 0; r < protocol.DGRM_REPEAT_TX; r++)
+			for (Pulse p : pulses)
+				pulse(p.getGpioOn() != 0 ? 1 : p.getGpioOff() != 0 ? 0 : level, p.getDelay());
+		pulse(0, PAUSE);
+		return data;
+	}
+
+	/**
+	 * Code of PT2262 or EV1527, sent five times after a sync as the encoders do.
+	 */
+	private void sendPwm(int code, int unit) throws IOException {
+		pulse(1, unit);
+		pulse(0, unit * 31);
+		for (int r = 0; r < 5; r++) {
+			for (int i = 23; i >= 0; i--) {
+				boolean one = (code >> i & 1) != 0;
+				pulse(1, unit * (one ? 3 : 1));
+				pulse(0, unit * (one ? 1 : 3));
+			}
+			pulse(1, unit);
+			pulse(0, unit * 31);
+		}
+		pulse(0, PAUSE);
+	}
+
+	/**
+	 * Oregon protocol 2.1 message sent twice: preamble, sync and nibbles, every bit as inverted and normal
+	 * Manchester bit of 488 us, high halves shorter than low ones as sent by the sensors.
+	 */
+	private void sendOregon(byte[] nibbles) throws IOException {
+		for (int t = 0; t < 2; t++) {
+			ArrayList<Integer> bits = new ArrayList<>();
+			for (int i = 0; i < 16; i++)
+				bits.add(1);
+			for (int i = 0; i < 4; i++)
+				bits.add(0xA >> i & 1);
+			for (byte n : nibbles)
+				for (int i = 0; i < 4; i++)
+					bits.add(n >> i & 1);
+			// raw Manchester bits, each bit followed by its inverse
+			for (int bit : bits) {
+				half(bit);
+				half(bit ^ 1);
+				half(bit ^ 1);
+				half(bit);
+			}
+			pulse(0, 10000);
+		}
+		pulse(0, PAUSE);
+	}
+
+	private void half(int l) throws IOException {
+		pulse(l, l == 1 ? 488 - 60 : 488 + 60);
+	}
+
+	private byte[] oregonMessage(double temperature) {
+		int t = (int) Math.round(Math.abs(temperature) * 10);
+		byte[] nibbles = new byte[] {0xE, 0xC, 0x4, 0x0, 2, 5, 0xA, 0, (byte) (t % 10), (byte) (t / 10 % 10), (byte) (t / 100), (byte) (temperature < 0 ? 8 : 0), 0, 0};
+		int sum = 0;
+		for (int i = 0; i < 12; i++)
+			sum += nibbles[i];
+		nibbles[12] = (byte) (sum & 0xF);
+		nibbles[13] = (byte) (sum >> 4 & 0xF);
+		return nibbles;
+	}
+
+	private int trits(String trits) {
+		int code = 0;
+		for (char c : trits.toCharArray())
+			code = code << 2 | (c == '0' ? 0 : c == '1' ? 3 : 1);
+		return code;
+	}
+
+	/**
+	 * Add pulse of level, merged with the pulse before of the same level, with jitter and an occasional spike.
+	 */
+	private void pulse(int l, int micros) throws IOException {
+		edge(l);
+		if (micros >= 4 * GLITCH && random.nextInt(4) == 0) {
+			// noise spike in the middle of the pulse
+			tick += micros / 2;
+			int jitter = jitter();
+			edge(l ^ 1, jitter);
+			tick += SPIKE;
+			edge(l, jitter);
+			tick += micros - micros / 2 - SPIKE;
+		} else
+			tick += micros;
+	}
+
+	private void edge(int next) throws IOException {
+		edge(next, jitter());
+	}
+
+	private void edge(int next, int jitter) throws IOException {
+		if (next == level)
+			return;
+		level = next;
+		pigpiod.sendReport(seq++, 0, (int) (tick + jitter), level << GPIO_RX);
+	}
+
+	private int jitter() {
+		return random.nextInt(2 * JITTER + 1) - JITTER;
+	}
+
+	private <T extends Frame> ArrayList<T> typed(ArrayList<Frame> frames, Class<T> type) {
+		ArrayList<T> typed = new ArrayList<>();
+		for (Frame f : frames)
+			if (type.isInstance(f))
+				typed.add(type.cast(f));
+		return typed;
+	}
+} // End of class
+// End of file
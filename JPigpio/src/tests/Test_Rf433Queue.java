@@ -0,0 +1,138 @@
+package tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.Pulse;
+import jpigpio.Utils;
+import jpigpio.packet.Frame;
+import jpigpio.packet.Protocol;
+import jpigpio.packet.Rf433rx;
+import jpigpio.packet.Rf433tx;
+
+/**
+ * Check the datagram queue of Rf433rx: take() waiting for a datagram, poll(timeout) giving up, datagrams
+ * carrying their receive tick, and the oldest datagrams dropped when nobody takes them from a full queue.
+ * A local FakePigpiod sends notifications of datagrams encoded by Rf433tx, so no Raspberry Pi is needed.
+ */
+public class Test_Rf433Queue extends CheckedTest {
+
+	private final int GPIO_RX = 17;
+	private final int CAPACITY = 4;
+	private final int OVERFLOW = 3;
+
+	private FakePigpiod pigpiod;
+	private Protocol protocol = new Protocol();
+	private Rf433tx tx;
+	private Random random = new Random(433);
+	private int seq = 0;
+	private long tick = 1000;
+	private int level = 0;
+
+	public static void main(String args[]) {
+		System.out.println("Test_Rf433Queue");
+		Test_Rf433Queue app = new Test_Rf433Queue();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			pigpiod = new FakePigpiod(0);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			pigpio.gpioInitialize();
+			tx = new Rf433tx(pigpio, 18, protocol);
+			Rf433rx rx = new Rf433rx(pigpio, GPIO_RX, protocol, CAPACITY);
+
+			check("poll times out", rx.poll(100, TimeUnit.MILLISECONDS) == null);
+
+			// a consumer waiting in take() gets the datagram as soon as it is decoded
+			Frame[] taken = new Frame[1];
+			Thread consumer = new Thread(() -> {
+				try {
+					taken[0] = rx.take();
+				} catch (InterruptedException e) {
+					// left null
+				}
+			});
+			consumer.start();
+			Thread.sleep(50);
+			long before = tick;
+			byte[] data = send();
+			consumer.join(5000);
+			check("take receives datagram", taken[0] != null && Arrays.equals(data, taken[0].getData()));
+			check("receive tick within datagram", taken[0] != null && taken[0].getTick() > before && taken[0].getTick() <= tick);
+			check("no repeats reported", taken[0] != null && taken[0].getRepeatCount() == 0 && !taken[0].hasError());
+
+			// nobody takes datagrams, the oldest are dropped
+			ArrayList<byte[]> sent = new ArrayList<>();
+			for (int i = 0; i < CAPACITY + OVERFLOW; i++)
+				sent.add(send());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (rx.droppedCount() < OVERFLOW && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			check("full queue drops oldest", rx.available() == CAPACITY && rx.droppedCount() == OVERFLOW);
+			boolean newest = true;
+			long lastTick = 0;
+			for (int i = OVERFLOW; i < sent.size(); i++) {
+				Frame datagram = rx.poll(1, TimeUnit.SECONDS);
+				newest &= datagram != null && Arrays.equals(sent.get(i), datagram.getData()) && datagram.getTick() > lastTick;
+				lastTick = datagram != null ? datagram.getTick() : lastTick;
+			}
+			check("newest datagrams kept in order", newest);
+			check("queue empty", rx.available() == 0 && rx.poll(0, TimeUnit.MILLISECONDS) == null);
+
+			sent.add(send());
+			Thread.sleep(100);
+			check("get still works", Arrays.equals(sent.get(sent.size() - 1), rx.get()));
+			boolean thrown = false;
+			try {
+				rx.get();
+			} catch (IndexOutOfBoundsException e) {
+				thrown = true;
+			}
+			check("get on empty queue throws", thrown);
+
+			rx.terminate();
+			tx.terminate();
+			pigpio.gpioTerminate();
+			pigpiod.stop();
+		} catch (IOException | PigpioException | InterruptedException e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * Send random data as notifications of the receiver output, repeated and with the preamble as Rf433tx transmits it.
+	 */
+	private byte[] send() throws IOException {
+		byte[] data = new byte[protocol.DATA_SIZE];
+		random.nextBytes(data);
+		edge(1);
+		tick += protocol.TX_PULSE_MSGGAP;
+		ArrayList<Pulse> pulses = tx.constructMessagePulses(Utils.bytes2nibbles(data));
+		for (int r = 0; r < protocol.DGRM_REPEAT_TX; r++) {
+			for (Pulse pulse : pulses) {
+				edge(pulse.getGpioOn() != 0 ? 1 : pulse.getGpioOff() != 0 ? 0 : level);
+				tick += pulse.getDelay();
+			}
+		}
+		// pause between datagrams, longer than the receiver takes repeats as duplicates
+		tick += protocol.DGRM_RX_TIMEOUT + 100000;
+		return data;
+	} // End of send
+
+	private void edge(int next) throws IOException {
+		if (next == level)
+			return;
+		level = next;
+		pigpiod.sendReport(seq++, 0, (int) tick, level << GPIO_RX);
+	}
+} // End of class
+// End of file
@@ -0,0 +1,166 @@
+package tests;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.Pulse;
+import jpigpio.Utils;
+import jpigpio.packet.Protocol;
+import jpigpio.packet.Rf433Decoder;
+import jpigpio.packet.Rf433tx;
+
+/**
+ * Replays edge captures through the Rf433 decoder and reports decoded frames per second and bytes allocated
+ * while decoding. Without arguments the capture is made of datagrams encoded by Rf433tx (built against a local
+ * FakePigpiod) with jitter added to every edge, starting shortly before the 32 bit tick wraps around, and
+ * decoded datagrams are checked. A recorded capture can be passed as file with one "tick level" pair per line.
+ */
+public class Test_Rf433Replay extends CheckedTest {
+
+	private final int DATAGRAMS = 16;
+	private final int JITTER = 60; // +- microseconds
+	private final int REPLAYS = 200;
+
+	// capture
+	private long[] ticks = new long[1024];
+	private int[] levels = new int[1024];
+	private int edges = 0;
+
+	public static void main(String args[]) {
+		System.out.println("Test_Rf433Replay");
+		Test_Rf433Replay app = new Test_Rf433Replay();
+		app.run(args);
+		app.exit();
+	}
+
+	public void run(String args[]) {
+		try {
+			Protocol protocol = new Protocol();
+			byte[][] sent = null;
+			if (args.length > 0)
+				load(args[0]);
+			else
+				sent = synthesize(protocol);
+			System.out.println(String.format("capture of %d edges, %d ms", edges, ((ticks[edges - 1] - ticks[0]) & 0xFFFFFFFFL) / 1000));
+
+			// every repeat reported once, as a duplicate is counted as frame too
+			ArrayList<byte[]> received = new ArrayList<>();
+			Rf433Decoder decoder = new Rf433Decoder(protocol, (nibbles, tick, repeatCount, error) -> received.add(Utils.nibbles2bytes(nibbles)));
+			replay(decoder);
+			if (sent != null) {
+				check("all datagrams decoded across tick wrap", received.size() == DATAGRAMS && same(sent, received));
+				check("no errors", decoder.byteErrorCount() == 0 && decoder.datagramErrorCount() == 0);
+			} else
+				System.out.println(received.size() + " datagrams received, " + decoder.datagramErrorCount() + " datagrams with errors");
+
+			// count every frame
+			protocol.setRxRepeatCount(1);
+			int[] frames = new int[1];
+			Rf433Decoder counter = new Rf433Decoder(protocol, (nibbles, tick, repeatCount, error) -> frames[0]++);
+			for (int i = 0; i < REPLAYS / 10; i++) // warm up
+				replay(counter);
+			frames[0] = 0;
+
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long id = Thread.currentThread().getId();
+			long allocated = threads.getThreadAllocatedBytes(id);
+			long start = System.nanoTime();
+			for (int i = 0; i < REPLAYS; i++)
+				replay(counter);
+			long elapsed = System.nanoTime() - start;
+			allocated = threads.getThreadAllocatedBytes(id) - allocated;
+
+			System.out.println(String.format("%d frames from %d edges in %d ms: %d frames/s, %d edges/s, %d bytes allocated",
+					frames[0], (long) edges * REPLAYS, elapsed / 1000000, frames[0] * 1000000000L / elapsed,
+					(long) edges * REPLAYS * 1000000000L / elapsed, allocated));
+			if (sent != null)
+				check("every repeat decoded", frames[0] == DATAGRAMS * protocol.DGRM_REPEAT_TX * REPLAYS);
+			// a few bytes may be taken by the measurement itself
+			check("no allocation per edge", allocated < 1024);
+		} catch (IOException | PigpioException | RuntimeException e) {
+			fail(e);
+		}
+	} // End of run
+
+	private void replay(Rf433Decoder decoder) {
+		decoder.reset();
+		for (int i = 0; i < edges; i++)
+			decoder.edge(levels[i], ticks[i]);
+	}
+
+	/**
+	 * Encode datagrams by Rf433tx, repeated and with the preamble as it transmits them, into edges.
+	 */
+	private byte[][] synthesize(Protocol protocol) throws IOException, PigpioException {
+		FakePigpiod pigpiod = new FakePigpiod(0);
+		pigpiod.start();
+		PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+		pigpio.gpioInitialize();
+		Rf433tx tx = new Rf433tx(pigpio, 0, protocol);
+
+		Random random = new Random(433);
+		byte[][] sent = new byte[DATAGRAMS][protocol.DATA_SIZE];
+		long tick = 0xFFFFFFFFL - 2000000; // wraps 2 s into the capture
+		int level = 0;
+		for (byte[] data : sent) {
+			random.nextBytes(data);
+			// preamble
+			addEdge(1, tick);
+			level = 1;
+			tick += protocol.TX_PULSE_MSGGAP;
+			ArrayList<Pulse> pulses = tx.constructMessagePulses(Utils.bytes2nibbles(data));
+			for (int r = 0; r < protocol.DGRM_REPEAT_TX; r++) {
+				for (Pulse pulse : pulses) {
+					int next = pulse.getGpioOn() != 0 ? 1 : pulse.getGpioOff() != 0 ? 0 : level;
+					if (next != level)
+						addEdge(next, tick + random.nextInt(2 * JITTER + 1) - JITTER);
+					level = next;
+					tick += pulse.getDelay();
+				}
+			}
+			// pause between datagrams, longer than the receiver takes repeats as duplicates
+			tick += protocol.DGRM_RX_TIMEOUT + 100000;
+		}
+
+		tx.terminate();
+		pigpio.gpioTerminate();
+		pigpiod.stop();
+		return sent;
+	} // End of synthesize
+
+	private void load(String file) throws IOException {
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] f = line.trim().split("\\s+");
+				if (f.length == 2)
+					addEdge(Integer.parseInt(f[1]), Long.parseLong(f[0]));
+			}
+		}
+	}
+
+	private void addEdge(int level, long tick) {
+		if (edges == ticks.length) {
+			ticks = Arrays.copyOf(ticks, edges * 2);
+			levels = Arrays.copyOf(levels, edges * 2);
+		}
+		ticks[edges] = tick & 0xFFFFFFFFL;
+		levels[edges] = level;
+		edges++;
+	}
+
+	private boolean same(byte[][] sent, ArrayList<byte[]> received) {
+		for (int i = 0; i < sent.length; i++)
+			if (!Arrays.equals(sent[i], received.get(i)))
+				return false;
+		return true;
+	}
+} // End of class
+// End of file
@@ -1,5 +1,7 @@
 package tests;
 
+import java.util.concurrent.TimeUnit;
+
 import jpigpio.JPigpio;
 import jpigpio.PigpioException;
 import jpigpio.PigpioSocket;
@@ -40,9 +42,11 @@ public static void main(String[] args) throws PigpioException, InterruptedExcept
 
         int w = waitForData;
         while (w > 0){
-            while (rf433rx.available() > 0)
-                System.out.println("Received "+ Utils.bytesToHex(rf433rx.get()));
-            Thread.sleep(waitStep);
+            Frame datagram = rf433rx.poll(waitStep, TimeUnit.MILLISECONDS);
+            if (datagram != null) {
+                System.out.println("Received "+ Utils.bytesToHex(datagram.getData()) + " at tick " + datagram.getTick());
+                continue;
+            }
             w -= waitStep;
             System.out.println("Waiting "+ w + " ms more.");
         }
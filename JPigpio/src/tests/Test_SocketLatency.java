@@ -0,0 +1,114 @@
+package tests;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+
+import jpigpio.SocketLock;
+
+/**
+ * Measure command round-trip latency of SocketLock against a local FakePigpiod answering in ~200 microseconds.
+ * The same commands are also sent using sleep-polling for the reply (the way SocketLock used to wait), so the
+ * two latency histograms can be compared. No Raspberry Pi is needed.
+ */
+public class Test_SocketLatency {
+
+	private final int COUNT = 2000;
+	private final int REPLY_DELAY = 200; // microseconds
+	private final int CMD_READ = 3;
+
+	private final long[] BUCKETS = { 100, 200, 300, 500, 1000, 2000, 5000, 10000, 20000 }; // microseconds
+
+	public static void main(String args[]) {
+		System.out.println("Test_SocketLatency");
+		Test_SocketLatency app = new Test_SocketLatency();
+		app.run();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(REPLY_DELAY);
+			pigpiod.start();
+
+			long[] polling = measurePolling(pigpiod.getPort());
+			report("sleep-polling reply wait", polling);
+
+			long[] blocking = measureBlocking(pigpiod.getPort());
+			report("blocking reply wait (SocketLock)", blocking);
+
+			System.out.println(String.format("p50 dropped from %d us to %d us", percentile(polling, 50), percentile(blocking, 50)));
+
+			pigpiod.stop();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	} // End of run
+
+	private long[] measureBlocking(int port) throws IOException {
+		SocketLock sl = new SocketLock("localhost", port);
+		long[] latencies = new long[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			long start = System.nanoTime();
+			sl.sendCmd(CMD_READ, 4, 0);
+			latencies[i] = (System.nanoTime() - start) / 1000;
+		}
+		sl.terminate();
+		return latencies;
+	}
+
+	private long[] measurePolling(int port) throws IOException {
+		Socket socket = new Socket("localhost", port);
+		DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+		byte[] cmd = new byte[16];
+		byte[] reply = new byte[16];
+		FakePigpiod.putInt(cmd, 0, CMD_READ);
+		FakePigpiod.putInt(cmd, 4, 4);
+
+		long[] latencies = new long[COUNT / 10]; // each command takes ~10 ms, keep the run short
+		for (int i = 0; i < latencies.length; i++) {
+			long start = System.nanoTime();
+			out.write(cmd);
+			out.flush();
+			while (in.available() < 16) {
+				try { Thread.sleep(10); } catch (InterruptedException e) {}
+			}
+			in.readFully(reply);
+			latencies[i] = (System.nanoTime() - start) / 1000;
+		}
+		socket.close();
+		return latencies;
+	}
+
+	private void report(String title, long[] latencies) {
+		System.out.println(String.format("%s: %d commands", title, latencies.length));
+		long lower = 0;
+		for (int b = 0; b <= BUCKETS.length; b++) {
+			long upper = b < BUCKETS.length ? BUCKETS[b] : Long.MAX_VALUE;
+			int count = 0;
+			for (long l : latencies)
+				if (l >= lower && l < upper)
+					count++;
+			String label = b < BUCKETS.length ? String.format("%6d - %6d us", lower, upper) : String.format("%6d us and more", lower);
+			System.out.println(String.format("  %-20s %6d %s", label, count, bar(count, latencies.length)));
+			lower = upper;
+		}
+		System.out.println(String.format("  p50: %d us, p90: %d us, p99: %d us",
+				percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99)));
+	}
+
+	private String bar(int count, int total) {
+		char[] bar = new char[count * 50 / total];
+		Arrays.fill(bar, '#');
+		return new String(bar);
+	}
+
+	private long percentile(long[] latencies, int p) {
+		long[] sorted = latencies.clone();
+		Arrays.sort(sorted);
+		return sorted[Math.min(sorted.length - 1, sorted.length * p / 100)];
+	}
+} // End of class
+// End of file
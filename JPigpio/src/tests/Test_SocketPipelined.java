@@ -0,0 +1,124 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpigpio.JPigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.SocketLock;
+
+/**
+ * Check that in pipelined mode every thread gets the reply of its own command, also while the connection is
+ * being reset under it. Threads send SPI transfers of distinct data and lengths to a local FakePigpiod, which
+ * echoes them, so a reply handed to the wrong caller is detected. Also check that reconnecting closes the
+ * previous connection in both modes. No Raspberry Pi is needed.
+ */
+public class Test_SocketPipelined extends CheckedTest {
+
+	private final int THREADS = 8;
+	private final int TRANSFERS = 2000;
+	private final int RECONNECTS = 20;
+	private final int TIMEOUT = 30000; // milliseconds, lost replies leave callers waiting
+
+	private final AtomicInteger matched = new AtomicInteger();
+	private final AtomicInteger mismatched = new AtomicInteger();
+	private final AtomicInteger reset = new AtomicInteger();
+
+	public static void main(String args[]) {
+		System.out.println("Test_SocketPipelined");
+		Test_SocketPipelined app = new Test_SocketPipelined();
+		app.run();
+		app.exit();
+	}
+
+	public void run() {
+		try {
+			FakePigpiod pigpiod = new FakePigpiod(20);
+			pigpiod.start();
+			PigpioSocket pigpio = new PigpioSocket("localhost", pigpiod.getPort(), true);
+			pigpio.gpioInitialize();
+			int handle = pigpio.spiOpen(JPigpio.PI_SPI_CHANNEL0, JPigpio.PI_SPI_BAUD_500KHZ, 0);
+
+			boolean finished = transfer(pigpio, handle, false);
+			check("each thread gets its own reply", finished && matched.get() == THREADS * TRANSFERS && mismatched.get() == 0);
+
+			matched.set(0);
+			finished = transfer(pigpio, handle, true);
+			System.out.println(String.format("%d replies matched, %d commands failed by reconnect", matched.get(), reset.get()));
+			check("own replies while reconnecting", finished && matched.get() + reset.get() == THREADS * TRANSFERS
+					&& mismatched.get() == 0);
+			check("commands answered after reconnect", pigpio.spiXfer(handle, new byte[] { 1, 2 }, new byte[2]) == 2);
+
+			pigpio.gpioTerminate();
+			check("previous connections closed, pipelined", waitForConnections(pigpiod, 0));
+
+			SocketLock socket = new SocketLock("localhost", pigpiod.getPort());
+			for (int i = 0; i < RECONNECTS; i++)
+				socket.reconnect();
+			check("previous connections closed, not pipelined", waitForConnections(pigpiod, 1));
+			socket.terminate();
+			socket.terminate();
+			check("terminated twice", waitForConnections(pigpiod, 0));
+			pigpiod.stop();
+		} catch (Exception e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * Run all threads transferring, optionally resetting the connection meanwhile.
+	 * @return false if some thread did not finish in time
+	 */
+	private boolean transfer(PigpioSocket pigpio, int handle, boolean reconnect) throws Exception {
+		ArrayList<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int id = t;
+			Thread thread = new Thread(() -> transfer(pigpio, handle, id));
+			thread.setDaemon(true);
+			thread.start();
+			threads.add(thread);
+		}
+		for (int i = 0; reconnect && i < RECONNECTS; i++) {
+			Thread.sleep(5);
+			pigpio.reconnect();
+		}
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		for (Thread thread : threads) {
+			thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+			if (thread.isAlive())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Wait for FakePigpiod to notice closed connections.
+	 * @return false if the number of connections did not drop to expected in time
+	 */
+	private boolean waitForConnections(FakePigpiod pigpiod, int expected) throws InterruptedException {
+		for (int i = 0; i < 100 && pigpiod.getConnections() > expected; i++)
+			Thread.sleep(10);
+		return pigpiod.getConnections() == expected;
+	}
+
+	private void transfer(PigpioSocket pigpio, int handle, int id) {
+		for (int i = 0; i < TRANSFERS; i++) {
+			byte[] tx = new byte[2 + (i + id) % 30];
+			Arrays.fill(tx, (byte) i);
+			tx[0] = (byte) id;
+			byte[] rx = new byte[tx.length];
+			try {
+				if (pigpio.spiXfer(handle, tx, rx) == tx.length && Arrays.equals(tx, rx))
+					matched.incrementAndGet();
+				else
+					mismatched.incrementAndGet();
+			} catch (PigpioException e) {
+				// command was in flight when the connection was reset
+				reset.incrementAndGet();
+			}
+		}
+	}
+} // End of class
+// End of file
@@ -0,0 +1,97 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import jpigpio.JPigpio;
+import jpigpio.Pigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+
+/**
+ * Compare bulk spiXfer using byte arrays, heap ByteBuffers and direct ByteBuffers, checking that data received
+ * by the last transfer equals sent data. By default runs over the socket against a local FakePigpiod echoing
+ * SPI data, so no Raspberry Pi is needed. Pass "jni" to run on the Pi using SPI channel 0, with MOSI connected to MISO.
+ */
+public class Test_SpiBuffers {
+
+	private final int TRANSFER_SIZE = 4096; // e.g. one frame of a small display
+	private final int TRANSFERS = 2000;
+
+	public static void main(String args[]) {
+		System.out.println("Test_SpiBuffers");
+		Test_SpiBuffers app = new Test_SpiBuffers();
+		app.run(args);
+	}
+
+	public void run(String args[]) {
+		try {
+			FakePigpiod pigpiod = null;
+			JPigpio pigpio;
+			if (args.length > 0 && args[0].equals("jni"))
+				pigpio = new Pigpio();
+			else {
+				pigpiod = new FakePigpiod(0);
+				pigpiod.start();
+				pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			}
+			pigpio.gpioInitialize();
+			int handle = pigpio.spiOpen(JPigpio.PI_SPI_CHANNEL0, JPigpio.PI_SPI_BAUD_2MHZ, 0);
+
+			byte[] pattern = new byte[TRANSFER_SIZE];
+			for (int i = 0; i < pattern.length; i++)
+				pattern[i] = (byte) i;
+
+			measureArrays(pigpio, handle, pattern);
+			measureBuffers(pigpio, handle, pattern, ByteBuffer.allocate(TRANSFER_SIZE), ByteBuffer.allocate(TRANSFER_SIZE), "heap ByteBuffer");
+			measureBuffers(pigpio, handle, pattern, ByteBuffer.allocateDirect(TRANSFER_SIZE), ByteBuffer.allocateDirect(TRANSFER_SIZE), "direct ByteBuffer");
+
+			pigpio.spiClose(handle);
+			pigpio.gpioTerminate();
+			if (pigpiod != null)
+				pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			e.printStackTrace();
+		}
+	} // End of run
+
+	private void measureArrays(JPigpio pigpio, int handle, byte[] pattern) throws PigpioException {
+		byte[] rx = new byte[TRANSFER_SIZE];
+		int errors = 0;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < TRANSFERS; i++)
+			pigpio.spiXfer(handle, pattern, rx);
+		long elapsed = System.nanoTime() - start;
+		if (!Arrays.equals(pattern, rx))
+			errors++;
+		report("byte[]", elapsed, errors);
+	}
+
+	private void measureBuffers(JPigpio pigpio, int handle, byte[] pattern, ByteBuffer tx, ByteBuffer rx, String name) throws PigpioException {
+		int errors = 0;
+		tx.put(pattern);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < TRANSFERS; i++) {
+			tx.clear();
+			rx.clear();
+			pigpio.spiXfer(handle, tx, rx);
+		}
+		long elapsed = System.nanoTime() - start;
+		// received data is checked after timing, comparing direct buffers is slow
+		tx.flip();
+		rx.flip();
+		if (!rx.equals(tx) || rx.remaining() != TRANSFER_SIZE)
+			errors++;
+		report(name, elapsed, errors);
+	}
+
+	private void report(String name, long elapsed, int errors) {
+		System.out.println(String.format("%-18s %d transfers of %d bytes in %d ms, %d KB/s, %s",
+				name, TRANSFERS, TRANSFER_SIZE, elapsed / 1000000,
+				(long) TRANSFERS * TRANSFER_SIZE * 1000000000L / elapsed / 1024, errors == 0 ? "data ok" : "DATA MISMATCH"));
+	}
+} // End of class
+// End of file
@@ -0,0 +1,144 @@
+package tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import jpigpio.JPigpio;
+import jpigpio.Pigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.Pulse;
+import jpigpio.WaveBuilder;
+
+/**
+ * Compare uploading a long waveform as ArrayList of Pulses (waveAddGeneric) and using WaveBuilder, and check
+ * that merging of pulses keeps the length of the waveform. By default runs over the socket against a local FakePigpiod,
+ * which also lets the test check the uploaded pulses, so no Raspberry Pi is needed. Pass "jni" to run on the Pi.
+ */
+public class Test_WaveBuilder extends CheckedTest {
+
+	private final int GPIO = 18;
+	private final int BITS = 4000; // two pulses per bit, more than fits into one pigpiod command
+	private final int UPLOADS = 20;
+
+	public static void main(String args[]) {
+		System.out.println("Test_WaveBuilder");
+		Test_WaveBuilder app = new Test_WaveBuilder();
+		app.run(args);
+		app.exit();
+	}
+
+	public void run(String args[]) {
+		try {
+			FakePigpiod pigpiod = null;
+			JPigpio pigpio;
+			if (args.length > 0 && args[0].equals("jni"))
+				pigpio = new Pigpio();
+			else {
+				pigpiod = new FakePigpiod(0);
+				pigpiod.start();
+				pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			}
+			pigpio.gpioInitialize();
+			pigpio.gpioSetMode(GPIO, JPigpio.PI_OUTPUT);
+
+			checkMerging();
+
+			ArrayList<Pulse> list = new ArrayList<>();
+			WaveBuilder wave = new WaveBuilder();
+			for (int i = 0; i < BITS; i++) {
+				int len = (i & 1) == 0 ? 280 : 980;
+				list.add(new Pulse(1 << GPIO, 0, len));
+				list.add(new Pulse(0, 1 << GPIO, 1260 - len));
+				wave.high(GPIO, len).low(GPIO, 1260 - len);
+			}
+			check("builder keeps all pulses", wave.size() == list.size());
+
+			long start = System.nanoTime();
+			for (int i = 0; i < UPLOADS; i++) {
+				pigpio.waveAddNew();
+				pigpio.waveAddGeneric(list);
+			}
+			report("waveAddGeneric", System.nanoTime() - start, list.size());
+
+			int commands = pigpiod != null ? pigpiod.getWaveAddCommands() : 0;
+			start = System.nanoTime();
+			for (int i = 0; i < UPLOADS; i++) {
+				pigpio.waveAddNew();
+				wave.upload(pigpio);
+			}
+			report("WaveBuilder", System.nanoTime() - start, wave.size());
+
+			int waveId = wave.create(pigpio);
+			check("wave created", waveId >= 0);
+			if (pigpiod != null) {
+				int expected = (wave.size() + WaveBuilder.MAX_PULSES_PER_COMMAND - 1) / WaveBuilder.MAX_PULSES_PER_COMMAND;
+				check("upload split into " + expected + " commands",
+						pigpiod.getWaveAddCommands() - commands == (UPLOADS + 1) * expected);
+				check("uploaded pulses match", same(pigpiod.getWave(waveId), list));
+			}
+			pigpio.waveDelete(waveId);
+
+			checkBounds(pigpio);
+
+			pigpio.gpioTerminate();
+			if (pigpiod != null)
+				pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			fail(e);
+		}
+	} // End of run
+
+	private void checkMerging() {
+		WaveBuilder wave = new WaveBuilder(1);
+		wave.high(GPIO, 100).delay(50).delay(50).low(GPIO, 0).high(GPIO + 1, 300);
+		ArrayList<Pulse> pulses = wave.toPulses();
+		check("delay extends previous pulse", pulses.size() == 2 && pulses.get(0).getDelay() == 200);
+		check("pulses starting together are combined",
+				pulses.get(1).getGpioOn() == 1 << (GPIO + 1) && pulses.get(1).getGpioOff() == 1 << GPIO && pulses.get(1).getDelay() == 300);
+		check("length kept", wave.getMicros() == 500);
+
+		wave.clear().high(GPIO, 0).low(GPIO, 10);
+		pulses = wave.toPulses();
+		check("later pulse wins", pulses.size() == 1 && pulses.get(0).getGpioOn() == 0 && pulses.get(0).getGpioOff() == 1 << GPIO);
+	}
+
+	private void checkBounds(JPigpio pigpio) throws PigpioException {
+		int[] pulses = new int[10 * 3];
+		int[] many = new int[(WaveBuilder.MAX_PULSES_PER_COMMAND + 1) * 3];
+		pigpio.waveAddNew();
+		check("pulses before array rejected", rejected(pigpio, pulses, -1, 2, PigpioException.PI_BAD_PARAM));
+		check("pulses past array rejected", rejected(pigpio, pulses, 5, 6, PigpioException.PI_BAD_PARAM)
+				&& rejected(pigpio, pulses, Integer.MAX_VALUE, 1, PigpioException.PI_BAD_PARAM)
+				&& rejected(pigpio, pulses, 0, Integer.MAX_VALUE / 2, PigpioException.PI_BAD_PARAM));
+		check("too many pulses rejected", rejected(pigpio, many, 0, WaveBuilder.MAX_PULSES_PER_COMMAND + 1,
+				PigpioException.PI_TOO_MANY_PULSES));
+		check("pulses up to end of array added", pigpio.waveAddPulses(pulses, 5, 5) == 5);
+	}
+
+	private boolean rejected(JPigpio pigpio, int[] pulses, int offset, int count, int errorCode) {
+		try {
+			pigpio.waveAddPulses(pulses, offset, count);
+			return false;
+		} catch (PigpioException e) {
+			return e.getErrorCode() == errorCode;
+		}
+	}
+
+	private boolean same(int[] uploaded, ArrayList<Pulse> list) {
+		if (uploaded == null || uploaded.length != list.size() * 3)
+			return false;
+		for (int i = 0; i < list.size(); i++) {
+			Pulse p = list.get(i);
+			if (uploaded[i * 3] != p.getGpioOn() || uploaded[i * 3 + 1] != p.getGpioOff() || uploaded[i * 3 + 2] != p.getDelay())
+				return false;
+		}
+		return true;
+	}
+
+	private void report(String name, long elapsed, int pulses) {
+		System.out.println(String.format("%-15s %d uploads of %d pulses in %d ms, %d pulses/ms",
+				name, UPLOADS, pulses, elapsed / 1000000, (long) UPLOADS * pulses * 1000000L / elapsed));
+	}
+} // End of class
+// End of file
@@ -0,0 +1,144 @@
+package tests;
+
+import java.io.IOException;
+
+import jpigpio.JPigpio;
+import jpigpio.Pigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.WaveBuilder;
+import jpigpio.WaveCache;
+
+/**
+ * Compare sending the same few waveforms by creating and deleting a wave for every transmit (as Rf433tx used to)
+ * and by getting the wave from a WaveCache, then check LRU eviction. By default runs over the socket against
+ * a local FakePigpiod, so no Raspberry Pi is needed. Pass "jni" to run on the Pi (GPIO 18 is toggled).
+ */
+public class Test_WaveCache extends CheckedTest {
+
+	private final int GPIO = 18;
+	private final int COMMANDS = 4; // different waveforms, e.g. on/off commands of two sockets
+	private final int TRANSMITS = 500;
+
+	public static void main(String args[]) {
+		System.out.println("Test_WaveCache");
+		Test_WaveCache app = new Test_WaveCache();
+		app.run(args);
+		app.exit();
+	}
+
+	public void run(String args[]) {
+		try {
+			FakePigpiod pigpiod = null;
+			JPigpio pigpio;
+			if (args.length > 0 && args[0].equals("jni"))
+				pigpio = new Pigpio();
+			else {
+				pigpiod = new FakePigpiod(0);
+				pigpiod.start();
+				pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			}
+			pigpio.gpioInitialize();
+			pigpio.gpioSetMode(GPIO, JPigpio.PI_OUTPUT);
+			pigpio.waveClear();
+
+			WaveBuilder[] commands = new WaveBuilder[COMMANDS];
+			for (int c = 0; c < COMMANDS; c++)
+				commands[c] = command(c);
+
+			long start = System.nanoTime();
+			for (int i = 0; i < TRANSMITS; i++) {
+				int waveId = commands[i % COMMANDS].create(pigpio);
+				pigpio.waveSendOnce(waveId);
+				pigpio.waveDelete(waveId);
+			}
+			report("create/delete", System.nanoTime() - start);
+
+			WaveCache cache = new WaveCache(pigpio);
+			start = System.nanoTime();
+			for (int i = 0; i < TRANSMITS; i++)
+				pigpio.waveSendOnce(cache.getWaveId(command(i % COMMANDS)));
+			report("WaveCache", System.nanoTime() - start);
+			check("one wave per command", cache.getMisses() == COMMANDS && cache.size() == COMMANDS);
+			check("all other transmits hit", cache.getHits() == TRANSMITS - COMMANDS);
+			cache.clear();
+
+			// room for two waves only: the least recently used one goes
+			cache = new WaveCache(pigpio, 2, WaveCache.DEFAULT_MAX_CBS);
+			int id0 = cache.getWaveId(commands[0]);
+			int id1 = cache.getWaveId(commands[1]);
+			cache.getWaveId(commands[0]);
+			int id2 = cache.getWaveId(commands[2]);
+			check("least recently used wave evicted", cache.getEvictions() == 1 && cache.getWaveId(commands[0]) == id0
+					&& cache.getMisses() == 3);
+			if (pigpiod != null)
+				check("evicted wave deleted", pigpiod.getWave(id1) == null && pigpiod.getWave(id0) != null && pigpiod.getWave(id2) != null);
+
+			// control blocks of one command only
+			int cbs = cache.getCbs() / 2;
+			cache.clear();
+			cache = new WaveCache(pigpio, WaveCache.DEFAULT_MAX_WAVES, cbs + cbs / 2);
+			cache.getWaveId(commands[0]);
+			cache.getWaveId(commands[1]);
+			check("evicted when out of control blocks", cache.size() == 1 && cache.getEvictions() == 1);
+			cache.clear();
+			check("clear deletes all waves", cache.size() == 0 && cache.getCbs() == 0);
+
+			if (pigpiod != null) {
+				// pigpio runs out of wave ids before the cache limits are reached
+				pigpiod.setMaxWaves(2);
+				cache = new WaveCache(pigpio);
+				int first = cache.getWaveId(commands[0]);
+				cache.getWaveId(commands[1]);
+				cache.getWaveId(commands[2]);
+				check("evicted when out of wave ids", cache.size() == 2 && pigpiod.getWave(first) == null);
+				cache.clear();
+
+				// waves not created by the cache are kept
+				int foreign = commands[3].create(pigpio);
+				cache.getWaveId(commands[0]);
+				cache.getWaveId(commands[1]);
+				check("foreign wave kept when out of wave ids", cache.size() == 1 && pigpiod.getWave(foreign) != null);
+				cache.clear();
+
+				// the only wave left is not the cache's: the error is thrown
+				pigpiod.setMaxWaves(1);
+				int rc = 0;
+				try {
+					cache.getWaveId(commands[0]);
+				} catch (PigpioException e) {
+					rc = e.getErrorCode();
+				}
+				check("out of wave ids thrown when nothing to evict", rc == PigpioException.PI_NO_WAVEFORM_ID
+						&& cache.size() == 0 && pigpiod.getWave(foreign) != null);
+				pigpio.waveDelete(foreign);
+				pigpiod.setMaxWaves(Integer.MAX_VALUE);
+			}
+
+			pigpio.gpioTerminate();
+			if (pigpiod != null)
+				pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * A datagram like Rf433tx sends it: bits as short or long gaps between short high pulses.
+	 */
+	private WaveBuilder command(int c) {
+		WaveBuilder wave = new WaveBuilder();
+		wave.low(GPIO, 10800);
+		for (int bit = 0; bit < 80; bit++) {
+			wave.high(GPIO, 280);
+			wave.low(GPIO, ((c * 0x9E3779B1 >>> (bit % 32)) & 1) != 0 ? 280 : 980);
+		}
+		return wave;
+	}
+
+	private void report(String name, long elapsed) {
+		System.out.println(String.format("%-14s %d transmits in %d ms, %d us per transmit",
+				name, TRANSMITS, elapsed / 1000000, elapsed / 1000 / TRANSMITS));
+	}
+} // End of class
+// End of file
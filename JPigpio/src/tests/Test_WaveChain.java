@@ -0,0 +1,137 @@
+package tests;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import jpigpio.JPigpio;
+import jpigpio.Pigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.WaveBuilder;
+import jpigpio.WaveChain;
+
+/**
+ * Check encoding of wave chains and limits checked by WaveChain, then transmit a chain and waves using sync modes.
+ * By default runs over the socket against a local FakePigpiod, which lets the test check the chain received,
+ * so no Raspberry Pi is needed. Pass "jni" to run on the Pi (GPIO 18 is toggled, watch it with a scope).
+ */
+public class Test_WaveChain extends CheckedTest {
+
+	private final int GPIO = 18;
+
+	public static void main(String args[]) {
+		System.out.println("Test_WaveChain");
+		Test_WaveChain app = new Test_WaveChain();
+		app.run(args);
+		app.exit();
+	}
+
+	public void run(String args[]) {
+		try {
+			checkEncoding();
+			checkLimits();
+
+			FakePigpiod pigpiod = null;
+			JPigpio pigpio;
+			if (args.length > 0 && args[0].equals("jni"))
+				pigpio = new Pigpio();
+			else {
+				pigpiod = new FakePigpiod(0);
+				pigpiod.start();
+				pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			}
+			pigpio.gpioInitialize();
+			pigpio.gpioSetMode(GPIO, JPigpio.PI_OUTPUT);
+			pigpio.waveClear();
+
+			// 1 ms square wave and a 100 us burst
+			int slow = new WaveBuilder().high(GPIO, 500).low(GPIO, 500).create(pigpio);
+			int fast = new WaveBuilder().high(GPIO, 50).low(GPIO, 50).create(pigpio);
+
+			WaveChain chain = new WaveChain()
+					.wave(slow)
+					.loopStart().repeat(fast, 10).delay(2000).loopRepeat(3)
+					.wave(slow);
+			chain.send(pigpio);
+			if (pigpiod != null)
+				check("chain received", Arrays.equals(pigpiod.getLastChain(), chain.toBytes()));
+			while (pigpio.waveTxBusy())
+				pigpio.gpioDelay(1, JPigpio.PI_MILLISECONDS);
+			check("null chain rejected", badParam(() -> pigpio.waveChain(null)));
+
+			// fast starts only when slow reaches its end
+			check("send repeat", pigpio.waveSendUsingMode(slow, JPigpio.PI_WAVE_MODE_REPEAT) >= 0);
+			check("send sync", pigpio.waveSendUsingMode(fast, JPigpio.PI_WAVE_MODE_ONE_SHOT_SYNC) >= 0);
+			pigpio.gpioDelay(10, JPigpio.PI_MILLISECONDS);
+			pigpio.waveTxStop();
+
+			pigpio.waveDelete(slow);
+			pigpio.waveDelete(fast);
+			pigpio.gpioTerminate();
+			if (pigpiod != null)
+				pigpiod.stop();
+		} catch (IOException | PigpioException e) {
+			fail(e);
+		}
+	} // End of run
+
+	private void checkEncoding() throws PigpioException {
+		byte[] chain = new WaveChain().wave(1).loopStart().wave(2).delay(70000).loopRepeat(300).wave(3).toBytes();
+		check("encoding", Arrays.equals(chain, bytes(1, 255, 0, 2, 255, 2, 0xFF, 0xFF, 255, 2, 0x71, 0x11, 255, 1, 0x2C, 0x01, 3)));
+
+		chain = new WaveChain().repeat(4, 2).loopStart().wave(5).loopForever().toBytes();
+		check("loop forever", Arrays.equals(chain, bytes(255, 0, 4, 255, 1, 2, 0, 255, 0, 5, 255, 3)));
+	}
+
+	private void checkLimits() throws PigpioException {
+		check("empty loop rejected", fails(() -> new WaveChain().loopStart().loopRepeat(2)));
+		check("unclosed loop rejected", fails(() -> new WaveChain().loopStart().wave(0).toBytes()));
+		check("loop end without start rejected", fails(() -> new WaveChain().wave(0).loopRepeat(2)));
+		check("count out of range rejected", fails(() -> new WaveChain().loopStart().wave(0).loopRepeat(70000)));
+		check("nothing after loop forever", fails(() -> new WaveChain().loopStart().wave(0).loopForever().wave(1)));
+		check("nesting limited", fails(() -> {
+			WaveChain c = new WaveChain();
+			for (int i = 0; i <= WaveChain.MAX_NESTING; i++)
+				c.loopStart();
+		}));
+		check("length limited", fails(() -> {
+			WaveChain c = new WaveChain();
+			for (int i = 0; i <= WaveChain.MAX_LENGTH; i++)
+				c.wave(0);
+		}));
+		WaveChain c = new WaveChain();
+		for (int i = 0; i < WaveChain.MAX_LENGTH; i++)
+			c.wave(0);
+		check("600 bytes accepted", c.toBytes().length == WaveChain.MAX_LENGTH);
+	}
+
+	private interface ChainCode {
+		void run() throws PigpioException;
+	}
+
+	private boolean fails(ChainCode code) {
+		try {
+			code.run();
+			return false;
+		} catch (PigpioException e) {
+			return true;
+		}
+	}
+
+	private boolean badParam(ChainCode code) {
+		try {
+			code.run();
+			return false;
+		} catch (PigpioException e) {
+			return e.getErrorCode() == PigpioException.PI_BAD_PARAM;
+		}
+	}
+
+	private byte[] bytes(int... values) {
+		byte[] b = new byte[values.length];
+		for (int i = 0; i < values.length; i++)
+			b[i] = (byte) values[i];
+		return b;
+	}
+} // End of class
+// End of file
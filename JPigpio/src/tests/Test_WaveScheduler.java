@@ -0,0 +1,202 @@
+package tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jpigpio.JPigpio;
+import jpigpio.Pigpio;
+import jpigpio.PigpioException;
+import jpigpio.PigpioSocket;
+import jpigpio.WaveBuilder;
+import jpigpio.WaveCache;
+import jpigpio.WaveChain;
+import jpigpio.WaveScheduler;
+
+/**
+ * Compare transmitting a sequence of waves by polling waveTxBusy (as Rf433tx used to) with the WaveScheduler,
+ * counting the commands spent waiting for the waves and the time the whole sequence took. Then check that
+ * futures complete in order and closing cancels waves not transmitted yet. Then transmit the repeats as wave chains,
+ * which pigpio repeats on its own, and check chains which can not be encoded fail alone and submitting while
+ * closing leaves no future incomplete, and that a waveform submitted again right after itself is not looped
+ * for ever (FakePigpiod loops a wave synced behind itself as pigpio does). By default runs over the socket
+ * against a local FakePigpiod simulating transmission, so no Raspberry Pi is needed. Pass "jni" to run on the Pi
+ * (GPIO 18 is toggled).
+ */
+public class Test_WaveScheduler extends CheckedTest {
+
+	private final int GPIO = 18;
+	private final int WAVES = 50;
+	private final int REPEATS = 3;
+	private final int CLOSE_RACES = 20;
+
+	public static void main(String args[]) {
+		System.out.println("Test_WaveScheduler");
+		Test_WaveScheduler app = new Test_WaveScheduler();
+		app.run(args);
+		app.exit();
+	}
+
+	public void run(String args[]) {
+		try {
+			FakePigpiod pigpiod = null;
+			JPigpio pigpio;
+			if (args.length > 0 && args[0].equals("jni"))
+				pigpio = new Pigpio();
+			else {
+				pigpiod = new FakePigpiod(0);
+				pigpiod.start();
+				pigpio = new PigpioSocket("localhost", pigpiod.getPort());
+			}
+			pigpio.gpioInitialize();
+			pigpio.gpioSetMode(GPIO, JPigpio.PI_OUTPUT);
+			pigpio.waveClear();
+
+			WaveBuilder[] waves = new WaveBuilder[WAVES];
+			long micros = 0;
+			for (int i = 0; i < WAVES; i++) {
+				waves[i] = wave(i);
+				micros += waves[i].getMicros() * REPEATS;
+			}
+			System.out.println(String.format("%d waves, %d repeats each, %d ms of waveforms", WAVES, REPEATS, micros / 1000));
+
+			// polling, with a cache so both sides create the same number of waves
+			WaveCache cache = new WaveCache(pigpio);
+			int polls = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < WAVES; i++) {
+				int waveId = cache.getWaveId(waves[i]);
+				for (int r = 0; r < REPEATS; r++) {
+					pigpio.waveSendOnce(waveId);
+					do {
+						Thread.sleep(2); // as Rf433tx did
+						polls++;
+					} while (pigpio.waveTxBusy());
+				}
+			}
+			report("waveTxBusy polling", System.nanoTime() - start, polls);
+
+			WaveScheduler scheduler = new WaveScheduler(pigpio, cache);
+			start = System.nanoTime();
+			CompletableFuture<?>[] sent = new CompletableFuture<?>[WAVES];
+			for (int i = 0; i < WAVES; i++)
+				sent[i] = scheduler.submit(waves[i], REPEATS);
+			sent[WAVES - 1].get(micros / 1000 + 5000, TimeUnit.MILLISECONDS);
+			report("WaveScheduler", System.nanoTime() - start, scheduler.getChecks());
+			boolean inOrder = true;
+			for (int i = 0; i < WAVES; i++)
+				inOrder &= sent[i].isDone() && !sent[i].isCompletedExceptionally();
+			check("all futures completed", inOrder);
+			check("one check per wave at most, plus late ones", scheduler.getChecks() <= WAVES * REPEATS + WAVES);
+			check("idle", scheduler.isIdle());
+
+			int checks = scheduler.getChecks();
+			start = System.nanoTime();
+			for (int i = 0; i < WAVES; i++)
+				sent[i] = scheduler.submitChain(REPEATS, waves[i]);
+			sent[WAVES - 1].get(micros / 1000 + 5000, TimeUnit.MILLISECONDS);
+			report("chained repeats", System.nanoTime() - start, scheduler.getChecks() - checks);
+			boolean chained = true;
+			for (int i = 0; i < WAVES; i++)
+				chained &= sent[i].isDone() && !sent[i].isCompletedExceptionally();
+			check("all chain futures completed", chained);
+			check("one check per chain at most, plus late ones", scheduler.getChecks() - checks <= WAVES * 2);
+			check("idle after chains", scheduler.isIdle());
+
+			// equal waveforms share one wave, which must not be queued behind itself
+			CompletableFuture<Void> once = scheduler.submit(waves[0]);
+			CompletableFuture<Void> again = scheduler.submit(wave(0));
+			CompletableFuture<Void> twice = scheduler.submit(waves[0], 2);
+			twice.get(5000, TimeUnit.MILLISECONDS);
+			check("same waveform submitted again ends", once.isDone() && again.isDone() && !pigpio.waveTxBusy());
+
+			// a chain which can not be encoded fails on its own
+			CompletableFuture<Void> before = scheduler.submit(waves[0]);
+			CompletableFuture<Void> tooMany = scheduler.submitChain(0x10000, waves[1]);
+			CompletableFuture<Void> after = scheduler.submit(waves[2]);
+			after.get(5000, TimeUnit.MILLISECONDS);
+			check("chain repeated too often fails alone", failedWith(tooMany, PigpioException.PI_CHAIN_LOOP_CNT)
+					&& before.isDone() && !before.isCompletedExceptionally() && !after.isCompletedExceptionally());
+			check("chain too long fails", failedWith(scheduler.submitChain(1, new WaveBuilder[WaveChain.MAX_LENGTH + 1]),
+					PigpioException.PI_CHAIN_TOO_BIG));
+
+			CompletableFuture<Void> first = scheduler.submit(waves[0], 10);
+			CompletableFuture<Void> last = scheduler.submit(waves[1]);
+			Thread.sleep(5);
+			scheduler.close();
+			check("close cancels waves not transmitted", last.isCancelled() && first.isDone());
+			check("submit after close cancelled", scheduler.submit(waves[0]).isCancelled());
+			checkCloseRace(pigpio, cache, waves);
+
+			cache.clear();
+			pigpio.gpioTerminate();
+			if (pigpiod != null)
+				pigpiod.stop();
+		} catch (IOException | PigpioException | InterruptedException | ExecutionException | TimeoutException e) {
+			fail(e);
+		}
+	} // End of run
+
+	/**
+	 * Submit from several threads while the scheduler is closed: every future must still complete.
+	 */
+	private void checkCloseRace(JPigpio pigpio, WaveCache cache, WaveBuilder[] waves) throws InterruptedException {
+		ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int round = 0; round < CLOSE_RACES; round++) {
+			WaveScheduler scheduler = new WaveScheduler(pigpio, cache);
+			ArrayList<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				Thread thread = new Thread(() -> {
+					ArrayList<CompletableFuture<Void>> submitted = new ArrayList<>();
+					for (int i = 0; i < 20; i++)
+						submitted.add(i % 2 == 0 ? scheduler.submit(waves[i]) : scheduler.submitChain(2, waves[i]));
+					synchronized (futures) {
+						futures.addAll(submitted);
+					}
+				});
+				thread.start();
+				threads.add(thread);
+			}
+			try {
+				scheduler.close();
+			} catch (PigpioException e) {
+				fail(e);
+			}
+			for (Thread thread : threads)
+				thread.join();
+		}
+		boolean done = true;
+		for (CompletableFuture<Void> future : futures)
+			done &= future.isDone();
+		check("submit racing close completes its future", done);
+	}
+
+	private boolean failedWith(CompletableFuture<Void> future, int errorCode) {
+		try {
+			future.getNow(null);
+			return false;
+		} catch (CompletionException e) {
+			return e.getCause() instanceof PigpioException && ((PigpioException) e.getCause()).getErrorCode() == errorCode;
+		}
+	}
+
+	/**
+	 * Square wave of 2 to 6 ms.
+	 */
+	private WaveBuilder wave(int i) {
+		WaveBuilder wave = new WaveBuilder();
+		int half = 100 + (i % 5) * 50;
+		for (int p = 0; p < 10; p++)
+			wave.high(GPIO, half).low(GPIO, half);
+		return wave;
+	}
+
+	private void report(String name, long elapsed, int commands) {
+		System.out.println(String.format("%-19s %d ms, %d commands spent waiting", name, elapsed / 1000000, commands));
+	}
+} // End of class
+// End of file
@@ -0,0 +1,3 @@
+sudo rm -rf /var/run/pigpio.pid
+export LIBPATH="/mnt/share/opt/lib"
+java -Djava.library.path=$LIBPATH -cp ../bin tests/Test_AlertThroughput
\ No newline at end of file
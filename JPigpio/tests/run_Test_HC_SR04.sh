@@ -1,3 +1,3 @@
 sudo rm -rf /var/run/pigpio.pid
 export LIBPATH="/mnt/share/opt/lib"
-java -Djava.library.path=$LIBPATH -cp ../bin tests/Test_HC_SR04
\ No newline at end of file
+java -Djava.library.path=$LIBPATH -cp ../bin tests/Test_HC_SR04 "$@"
\ No newline at end of file
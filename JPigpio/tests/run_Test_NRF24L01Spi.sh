@@ -0,0 +1 @@
+java -cp ../bin tests/Test_NRF24L01Spi
@@ -0,0 +1 @@
+java -cp ../bin tests/Test_NotificationThroughput
\ No newline at end of file
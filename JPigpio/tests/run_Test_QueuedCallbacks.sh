@@ -0,0 +1 @@
+java -cp ../bin tests/Test_QueuedCallbacks
\ No newline at end of file
@@ -0,0 +1 @@
+java -cp ../bin tests/Test_SocketLatency
\ No newline at end of file
@@ -0,0 +1 @@
+java -cp ../bin tests/Test_SocketPipelined
@@ -0,0 +1 @@
+java -cp ../bin tests/Test_SpiBuffers
\ No newline at end of file
@@ -8,6 +8,8 @@
 #include <stdlib.h>
 #include <stdio.h>
 #include <string.h>
+#include <pthread.h>
+#include <sched.h>
 #include <pigpio.h>
 #include <jni.h>
 #include "jpigpio_Pigpio.h"
@@ -17,7 +19,6 @@
 
 jthrowable createPigpioException(JNIEnv *env, int rc);
 void alertCallback(int gpio, int level, unsigned int tick);
-unsigned invert(unsigned level);
 
 JavaVM *g_vm;
 int debug = 0;
@@ -31,6 +32,49 @@ char debugText[2000];
 // Define an array of callback functions
 jobject alertFunctions[MAXPINS];
 
+// Global references to the alert objects, kept while an alert is cancelled because the pigpio alert
+// thread may still be calling it. Only deleted when the gpio gets a different object.
+jobject alertRefs[MAXPINS];
+
+// Alert.alert(int, int, long), resolved when the first alert function is registered
+jmethodID alertMethodId = NULL;
+
+// JNIEnv of the pigpio alert thread. The thread is attached to the JVM on its first alert
+// and stays attached; the key destructor detaches it when pigpio ends the thread.
+pthread_key_t alertEnvKey;
+pthread_once_t alertEnvKeyOnce = PTHREAD_ONCE_INIT;
+
+// Pulses accepted by one waveAddPulses call, same limit as pigpiod (see WaveBuilder.MAX_PULSES_PER_COMMAND)
+#define MAX_PULSES_PER_COMMAND (65536 / 12)
+
+// Native ring buffers of edges (see Pigpio.openEdgeBuffer). The pigpio alert thread is the only
+// producer and never takes a lock, the Java thread draining the buffer the only consumer. Slots are
+// allocated, closed and freed holding edgeBuffersLock. A drain marks the slot draining under the lock
+// and copies the records with the lock released; a slot freed meanwhile is released by the drain.
+// Memory of a slot is released only once its mask is 0 and the producer is not recording.
+#define MAX_EDGE_BUFFERS 8
+#define MAX_EDGE_BUFFER_SIZE (1 << 24)
+
+typedef struct {
+	int used;           // slot is allocated
+	int draining;       // a drain copies records with edgeBuffersLock released
+	int freed;          // freed while draining, released when the drain ends
+	uint32_t mask;      // GPIOs recorded, 0 once the buffer is closed, read by the producer
+	uint32_t size;      // number of records, power of 2
+	uint32_t head;      // index of the next record to read, written by consumer only
+	uint32_t tail;      // index of the next record to write, written by producer only
+	uint32_t levels;    // levels of recorded GPIOs, producer only
+	jlong overflows;    // records dropped because the buffer was full, written by producer only
+	jlong *ticks;
+	jint *levelBits;
+	jint *flags;
+} edgeBuffer_t;
+
+edgeBuffer_t edgeBuffers[MAX_EDGE_BUFFERS];
+uint32_t edgeBuffersMask = 0;  // GPIOs recorded by any buffer
+pthread_mutex_t edgeBuffersLock = PTHREAD_MUTEX_INITIALIZER;
+int recordingEdges = 0;        // producers inside recordEdge
+
 /*
  * Class:     jpigpio_Pigpio
  * Method:    gpioInitialize
@@ -241,268 +285,1159 @@ jlong JNICALL Java_jpigpio_Pigpio_gpioTick(JNIEnv *env, jobject obj) {
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    gpioSetAlertFunc
- * Signature: (ILjpigpio/Alert;)V
+ * Method:    notifyOpen
+ * Signature: ()I
  */
-void JNICALL Java_jpigpio_Pigpio_gpioSetAlertFunc(JNIEnv *env, jobject obj, jint gpio, jobject alert) {
-	// Register the generic callback
-	int rc = gpioSetAlertFunc(gpio, alertCallback);
-	// Handle an error registering the alert function
+jint JNICALL Java_jpigpio_Pigpio_notifyOpen(JNIEnv *env, jobject obj) {
+	int rc = gpioNotifyOpen();
 	if (rc < 0) {
 		(*env)->Throw(env, createPigpioException(env, rc));
-		return;
-	}
-	if (alertFunctions[gpio] != NULL) {
-		(*env)->DeleteGlobalRef(env, alertFunctions[gpio]);
+		return rc;
 	}
-	alertFunctions[gpio] = (*env)->NewGlobalRef(env, alert);
-} // End of Java_jpigpio_Pigpio_gpioSetAlertFunc
+	return rc;
+} // End of Java_jpigpio_Pigpio_notifyOpen
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    spiOpen
- * Signature: (III)I
+ * Method:    notifyBegin
+ * Signature: (II)V
  */
-jint JNICALL Java_jpigpio_Pigpio_spiOpen(JNIEnv *env, jobject obj, jint channel, jint baudRate, jint flags) {
-
-	int rc = spiOpen(channel, baudRate, flags);
+void JNICALL Java_jpigpio_Pigpio_notifyBegin(JNIEnv *env, jobject obj, jint handle, jint bits) {
+	int rc = gpioNotifyBegin(handle, bits);
 	if (rc < 0) {
 		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
 	}
-#ifdef DEBUG
-	if (debug) {
-		sprintf(debugText, "spiOpen: channel=%d, baudRate=%d, flags=%x - handle=%d", channel, baudRate, flags, rc);
-		logDebug(debugText);
+} // End of Java_jpigpio_Pigpio_notifyBegin
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    notifyPause
+ * Signature: (I)V
+ */
+void JNICALL Java_jpigpio_Pigpio_notifyPause(JNIEnv *env, jobject obj, jint handle) {
+	int rc = gpioNotifyPause(handle);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
 	}
-#endif
-	return rc;
-} // End of Java_jpigpio_Pigpio_spiOpen
+} // End of Java_jpigpio_Pigpio_notifyPause
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    spiClose
+ * Method:    notifyClose
  * Signature: (I)V
  */
-void JNICALL Java_jpigpio_Pigpio_spiClose(JNIEnv *env, jobject obj, jint handle) {
-	int rc = spiClose(handle);
+void JNICALL Java_jpigpio_Pigpio_notifyClose(JNIEnv *env, jobject obj, jint handle) {
+	int rc = gpioNotifyClose(handle);
 	if (rc < 0) {
 		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
 	}
-} // End of Java_jpigpio_Pigpio_spiClose
+} // End of Java_jpigpio_Pigpio_notifyClose
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    spiRead
- * Signature: (I[B)I
+ * Method:    setWatchdog
+ * Signature: (II)V
  */
-jint JNICALL Java_jpigpio_Pigpio_spiRead(JNIEnv *env, jobject obj, jint handle, jbyteArray rxData) {
-	unsigned count = (*env)->GetArrayLength(env, rxData);
-	jbyte *buf = malloc(count);
+void JNICALL Java_jpigpio_Pigpio_setWatchdog(JNIEnv *env, jobject obj, jint gpio, jint timeout) {
+	int rc = gpioSetWatchdog(gpio, timeout);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_setWatchdog
 
-	int rc = spiRead(handle, (char *) buf, count);
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveClear
+ * Signature: ()V
+ */
+void JNICALL Java_jpigpio_Pigpio_waveClear(JNIEnv *env, jobject obj) {
+	int rc = gpioWaveClear();
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_waveClear
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveAddPulses
+ * Signature: ([III)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_waveAddPulses(JNIEnv *env, jobject obj, jintArray pulses, jint offset, jint count) {
+	if (count <= 0) {
+		return 0;
+	}
+	// pigpio reads the pulses in place, so they must lie within the array
+	if (offset < 0 || (jlong) offset + count > (*env)->GetArrayLength(env, pulses) / 3) {
+		(*env)->Throw(env, createPigpioException(env, PI_BAD_PARAM));
+		return PI_BAD_PARAM;
+	}
+	if (count > MAX_PULSES_PER_COMMAND) {
+		(*env)->Throw(env, createPigpioException(env, PI_TOO_MANY_PULSES));
+		return PI_TOO_MANY_PULSES;
+	}
+	jint *data = (*env)->GetPrimitiveArrayCritical(env, pulses, NULL);
+	if (data == NULL) {
+		return 0; // OutOfMemoryError pending
+	}
 
+	// Java keeps the pulses as (gpioOn, gpioOff, delay) triples, the layout of gpioPulse_t, so pigpio reads them in place
+	int rc = gpioWaveAddGeneric(count, (gpioPulse_t *) (data + offset * 3));
+	(*env)->ReleasePrimitiveArrayCritical(env, pulses, data, JNI_ABORT);
 	if (rc < 0) {
 		(*env)->Throw(env, createPigpioException(env, rc));
-		free(buf);
 		return rc;
 	}
-	(*env)->SetByteArrayRegion(env, rxData, 0, count, buf);
-	free(buf);
 	return rc;
-} // End of Java_jpigpio_Pigpio_spiRead
+} // End of Java_jpigpio_Pigpio_waveAddPulses
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    spiWrite
- * Signature: (I[B)I
+ * Method:    waveAddSerial
+ * Signature: (II[BIII)I
  */
-jint JNICALL Java_jpigpio_Pigpio_spiWrite(JNIEnv *env, jobject obj, jint handle, jbyteArray txData) {
-	unsigned count = (*env)->GetArrayLength(env, txData);
+jint JNICALL Java_jpigpio_Pigpio_waveAddSerial(JNIEnv *env, jobject obj, jint gpio, jint baud, jbyteArray data, jint offset, jint bbBits, jint bbStop) {
+	unsigned count = (*env)->GetArrayLength(env, data);
+	if (count == 0) {
+		return 0;
+	}
 	char *buf = malloc(count);
 
-	(*env)->GetByteArrayRegion(env, txData, 0, count, (jbyte *) buf);
-
-	int rc = spiWrite(handle, buf, count);
+	(*env)->GetByteArrayRegion(env, data, 0, count, (jbyte *) buf);
 
+	int rc = gpioWaveAddSerial(gpio, baud, bbBits, bbStop, offset, count, buf);
 	free(buf);
 	if (rc < 0) {
 		(*env)->Throw(env, createPigpioException(env, rc));
 		return rc;
 	}
 	return rc;
-} // End of Java_jpigpio_Pigpio_spiWrite
+} // End of Java_jpigpio_Pigpio_waveAddSerial
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    spiXfer
- * Signature: (I[B[B)I
+ * Method:    waveAddNew
+ * Signature: ()V
  */
-jint JNICALL Java_jpigpio_Pigpio_spiXfer(JNIEnv *env, jobject obj, jint handle, jbyteArray txData, jbyteArray rxData) {
-	unsigned count = (*env)->GetArrayLength(env, txData);
-	char *txBuf = malloc(count);
-	char *rxBuf = malloc(count);
-
-	(*env)->GetByteArrayRegion(env, txData, 0, count, (jbyte *) txBuf);
+void JNICALL Java_jpigpio_Pigpio_waveAddNew(JNIEnv *env, jobject obj) {
+	int rc = gpioWaveAddNew();
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_waveAddNew
 
-	int rc = spiXfer(handle, txBuf, rxBuf, count);
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveTxBusy
+ * Signature: ()Z
+ */
+jboolean JNICALL Java_jpigpio_Pigpio_waveTxBusy(JNIEnv *env, jobject obj) {
+	int rc = gpioWaveTxBusy();
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return 0;
+	}
+	return rc != 0;
+} // End of Java_jpigpio_Pigpio_waveTxBusy
 
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveTxStop
+ * Signature: ()I
+ */
+jint JNICALL Java_jpigpio_Pigpio_waveTxStop(JNIEnv *env, jobject obj) {
+	int rc = gpioWaveTxStop();
 	if (rc < 0) {
 		(*env)->Throw(env, createPigpioException(env, rc));
-		free(rxBuf);
 		return rc;
 	}
-#ifdef DEBUG
-	if (debug) {
-		char strTXData[1024];
-		char strRXData[1024];
-		strcpy(strTXData, "");
-		strcpy(strRXData, "");
-		char strByte[10];
-		unsigned int i;
-		for (i = 0; i < count; i++) {
-			sprintf(strByte, "0x%x ", txBuf[i]);
-			strcat(strTXData, strByte);
-			sprintf(strByte, "0x%x ", rxBuf[i]);
-			strcat(strRXData, strByte);
-		}
-		sprintf(debugText, "spiXfer: handle=%d, count=%d, TX Data: %s, RX Data: %s", handle, count, strTXData, strRXData);
-		logDebug(debugText);
-	}
-#endif
-	// Verified that parms are env, target array, start index, number of bytes, source buffer
-	(*env)->SetByteArrayRegion(env, rxData, 0, count, (jbyte *) rxBuf);
-	free(rxBuf);
-	free(txBuf);
 	return rc;
-} // End of Java_jpigpio_Pigpio_spiXfer
-
-void JNICALL Java_jpigpio_Pigpio_setDebug(JNIEnv *env, jobject obj, jboolean state) {
-	debug = state;
-}
+} // End of Java_jpigpio_Pigpio_waveTxStop
 
-/**
- * Pulse a named pin and then wait for a response on a different pin.  The output pin should already
- * have a PI_OUTPUT mode and the input pin should already have a PI_INPUT mode.  The wait duration is in
- * microseconds.  The pulse hold duration is how long (in microseconds) the pulse should be held for.  The
- * default is to pulse the output high and then return low however if the pulseLow flag is set the inverse
- * will happen (pulse the output low and then return high).
- *
- * The return is how long we waited for the pulse measured in microseconds.  If no response is received, we
- * return -1 to indicate a timeout.
- * @param outGpio The pin on which the output pulse will occur.
- * @param inGpio The pin on which the input pulse will be sought.
- * @param waitDuration The maximum time to wait in microseconds.
- * @param pulseHoldDuration The time to hold the output pulse in microseconds.
- * @param pulseLow True if the pulse should be a low pulse otherwise a high pulse will be sent.
- * @return The time in microseconds waiting for a pulse or -1 to signfify a timeout.
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveCreate
+ * Signature: ()I
  */
+jint JNICALL Java_jpigpio_Pigpio_waveCreate(JNIEnv *env, jobject obj) {
+	int rc = gpioWaveCreate();
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_waveCreate
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    gpioxPulseAndWait
- * Signature: (IIJJZ)J
+ * Method:    waveDelete
+ * Signature: (I)V
  */
-jlong JNICALL Java_jpigpio_Pigpio_gpioxPulseAndWait(JNIEnv *env, jobject obj, //
-		jint outGpio, jint inGpio, jlong waitDuration, jlong pulseHoldDuration, jboolean pulseLow) {
-	unsigned outLevel;
-	long start;
+void JNICALL Java_jpigpio_Pigpio_waveDelete(JNIEnv *env, jobject obj, jint waveId) {
+	int rc = gpioWaveDelete(waveId);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_waveDelete
 
-#ifdef DEBUG
-	char text[1024];
-	sprintf(text, "gpioxPulseAndWait(outGpio=%d, inGpio=%d, waitDuration=%ld, pulseHoldDuration=%ld, pulseLow=%d)", //
-			outGpio, inGpio, (long) waitDuration, (long) pulseHoldDuration, pulseLow);
-	logDebug(text);
-#endif
-	// Determine if the output pulse should be high or low.
-	if (pulseLow) {
-		outLevel = PI_LOW;
-	} else {
-		outLevel = PI_HIGH;
-	}
-
-	// Pulse the output pin for the correct duration
-	gpioWrite(outGpio, outLevel);
-	gpioDelay(pulseHoldDuration);
-	gpioWrite(outGpio, invert(outLevel));
-
-	// Loop until we have waited long enough or the input changes
-	int state = 1;
-	// 1 = Looking for high
-	// 2 = looking for low
-
-	// Loop until high
-	// Start a timer
-	// Loop until low
-	// return now - start timer
-	long waitStart = gpioTick();
-	//printf("%ld\n",gpioTick() - waitStart );
-	while ((gpioTick() - waitStart) < waitDuration) {
-		//printf("%ld\n",gpioTick() - waitStart );
-		if (state == 1) {
-			if (gpioRead(inGpio) == PI_HIGH) {
-				state = 2;
-				start = gpioTick();
-			}
-		} // End of state == 1
-		else if (state == 2) {
-			if (gpioRead(inGpio) == PI_LOW) {
-				return gpioTick() - start;
-			}
-		} // End of state == 2
-	} // End while loop because we timed out
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveSendOnce
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_waveSendOnce(JNIEnv *env, jobject obj, jint waveId) {
+	int rc = gpioWaveTxSend(waveId, PI_WAVE_MODE_ONE_SHOT);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_waveSendOnce
 
-	// We didn't get a response in time.
-	return -1;
-} // End of Java_jpigpio_Pigpio_gpioxPulseAndWait
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveSendRepeat
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_waveSendRepeat(JNIEnv *env, jobject obj, jint waveId) {
+	int rc = gpioWaveTxSend(waveId, PI_WAVE_MODE_REPEAT);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_waveSendRepeat
 
-/**
- * A callback function that is invoked when a gpioSetAlertFunc() happens.
- * We use the gpio pin value as a lookup into a saved set of Java Alert objects that have
- * been registered.  Once we have the correct Alert object, we setup the environment to
- * call back into Java to call the Alert.alert() method.
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveSendUsingMode
+ * Signature: (II)I
  */
-void alertCallback(int gpio, int level, unsigned int tick) {
-	JNIEnv *env;
+jint JNICALL Java_jpigpio_Pigpio_waveSendUsingMode(JNIEnv *env, jobject obj, jint waveId, jint mode) {
+	int rc = gpioWaveTxSend(waveId, mode);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_waveSendUsingMode
 
-	if (alertFunctions[gpio] == NULL) {
-		printf("JPigpio: alertCallback(gpio=%d, level=%d, tick=%d): Odd ... alert callback but no alert function registered\n", gpio, level, tick);
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveChain
+ * Signature: ([B)V
+ */
+void JNICALL Java_jpigpio_Pigpio_waveChain(JNIEnv *env, jobject obj, jbyteArray chain) {
+	if (chain == NULL) {
+		(*env)->Throw(env, createPigpioException(env, PI_BAD_PARAM));
 		return;
 	}
-	//printf("JPigpio: alertCallback(gpio=%d, level=%d, tick=%d)\n", gpio, level, tick);
+	jsize length = (*env)->GetArrayLength(env, chain);
+	jbyte *data = (*env)->GetByteArrayElements(env, chain, NULL);
+	if (data == NULL) {
+		return; // OutOfMemoryError pending
+	}
+	int rc = gpioWaveChain((char *)data, length);
+	(*env)->ReleaseByteArrayElements(env, chain, data, JNI_ABORT);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+	}
+} // End of Java_jpigpio_Pigpio_waveChain
 
-	int getEnvStat = (*g_vm)->GetEnv(g_vm, (void **) &env, JNI_VERSION_1_8);
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveTxAt
+ * Signature: ()I
+ */
+jint JNICALL Java_jpigpio_Pigpio_waveTxAt(JNIEnv *env, jobject obj) {
+	int rc = gpioWaveTxAt();
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_waveTxAt
 
-	if (getEnvStat == JNI_EDETACHED) {
-		(*g_vm)->AttachCurrentThread(g_vm, (void **) &env, NULL);
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getServoPulseWidth
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_getServoPulseWidth(JNIEnv *env, jobject obj, jint gpio) {
+	int rc = gpioGetServoPulsewidth(gpio);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
 	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_getServoPulseWidth
 
-	// We have now attached this C thread to the JVM environment.
-	// Lookup the class of the Alert, lookup the alert method methodId and
-	// then call the alert() method with the correct parameters.
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setPWMDutycycle
+ * Signature: (II)V
+ */
+void JNICALL Java_jpigpio_Pigpio_setPWMDutycycle(JNIEnv *env, jobject obj, jint gpio, jint dutycycle) {
+	int rc = gpioPWM(gpio, dutycycle);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_setPWMDutycycle
 
-	jclass classz = (*env)->GetObjectClass(env, alertFunctions[gpio]);
-	jmethodID methodId = (*env)->GetMethodID(env, classz, "alert", "(IIJ)V");
-	(*env)->CallVoidMethod(env, alertFunctions[gpio], methodId, gpio, level, (jlong) tick);
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMDutycycle
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_getPWMDutycycle(JNIEnv *env, jobject obj, jint gpio) {
+	int rc = gpioGetPWMdutycycle(gpio);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_getPWMDutycycle
 
-	// Cleanup the environment by detaching the thread.
-	(*g_vm)->DetachCurrentThread(g_vm);
-} // End of alertCallback
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setPWMRange
+ * Signature: (II)V
+ */
+void JNICALL Java_jpigpio_Pigpio_setPWMRange(JNIEnv *env, jobject obj, jint gpio, jint range) {
+	int rc = gpioSetPWMrange(gpio, range);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_setPWMRange
 
-#ifdef DEBUG
-void logDebug(char *text) {
-	if (debug) {
-		printf("%.6d: %s\n", gpioTick() - lastTime, text);
-		lastTime = gpioTick();
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMRange
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_getPWMRange(JNIEnv *env, jobject obj, jint gpio) {
+	int rc = gpioGetPWMrange(gpio);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
 	}
-}
-#endif
+	return rc;
+} // End of Java_jpigpio_Pigpio_getPWMRange
 
-unsigned invert(unsigned level) {
-	if (level == PI_HIGH) {
-		return PI_LOW;
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMRealRange
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_getPWMRealRange(JNIEnv *env, jobject obj, jint gpio) {
+	int rc = gpioGetPWMrealRange(gpio);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
 	}
-	return PI_HIGH;
-}
+	return rc;
+} // End of Java_jpigpio_Pigpio_getPWMRealRange
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setPWMFrequency
+ * Signature: (II)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_setPWMFrequency(JNIEnv *env, jobject obj, jint gpio, jint frequency) {
+	int rc = gpioSetPWMfrequency(gpio, frequency);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_setPWMFrequency
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMFrequency
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_getPWMFrequency(JNIEnv *env, jobject obj, jint gpio) {
+	int rc = gpioGetPWMfrequency(gpio);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_getPWMFrequency
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialOpen
+ * Signature: (Ljava/lang/String;II)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_serialOpen(JNIEnv *env, jobject obj, jstring tty, jint baudRate, jint flags) {
+	const char *device = (*env)->GetStringUTFChars(env, tty, NULL);
+	if (device == NULL) {
+		return 0; // OutOfMemoryError pending
+	}
+
+	int rc = serOpen((char *) device, baudRate, flags);
+	(*env)->ReleaseStringUTFChars(env, tty, device);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_serialOpen
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialClose
+ * Signature: (I)V
+ */
+void JNICALL Java_jpigpio_Pigpio_serialClose(JNIEnv *env, jobject obj, jint handle) {
+	int rc = serClose(handle);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_serialClose
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialReadByte
+ * Signature: (I)B
+ */
+jbyte JNICALL Java_jpigpio_Pigpio_serialReadByte(JNIEnv *env, jobject obj, jint handle) {
+	int rc = serReadByte(handle);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return 0;
+	}
+	return (jbyte) rc;
+} // End of Java_jpigpio_Pigpio_serialReadByte
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialWriteByte
+ * Signature: (IB)V
+ */
+void JNICALL Java_jpigpio_Pigpio_serialWriteByte(JNIEnv *env, jobject obj, jint handle, jbyte data) {
+	int rc = serWriteByte(handle, (unsigned char) data);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_serialWriteByte
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialReadInto
+ * Signature: (I[B)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_serialReadInto(JNIEnv *env, jobject obj, jint handle, jbyteArray data) {
+	unsigned count = (*env)->GetArrayLength(env, data);
+	char *buf = malloc(count);
+
+	int rc = serRead(handle, buf, count);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		free(buf);
+		return rc;
+	}
+	(*env)->SetByteArrayRegion(env, data, 0, rc, (jbyte *) buf);
+	free(buf);
+	return rc;
+} // End of Java_jpigpio_Pigpio_serialReadInto
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialWrite
+ * Signature: (I[B)V
+ */
+void JNICALL Java_jpigpio_Pigpio_serialWrite(JNIEnv *env, jobject obj, jint handle, jbyteArray data) {
+	unsigned count = (*env)->GetArrayLength(env, data);
+	char *buf = malloc(count);
+
+	(*env)->GetByteArrayRegion(env, data, 0, count, (jbyte *) buf);
+
+	int rc = serWrite(handle, buf, count);
+	free(buf);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_serialWrite
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialDataAvailable
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_serialDataAvailable(JNIEnv *env, jobject obj, jint handle) {
+	int rc = serDataAvailable(handle);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_serialDataAvailable
+
+/**
+ * Register alertCallback for the gpio if it has a Java alert function or is recorded by an edge buffer,
+ * cancel it otherwise.
+ */
+static int updateAlertFunc(int gpio) {
+	int needed = alertFunctions[gpio] != NULL || (edgeBuffersMask & (1u << gpio)) != 0;
+	return gpioSetAlertFunc(gpio, needed ? alertCallback : NULL);
+}
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setAlertFunc
+ * Signature: (ILjpigpio/Alert;)V
+ */
+void JNICALL Java_jpigpio_Pigpio_setAlertFunc(JNIEnv *env, jobject obj, jint gpio, jobject alert) {
+	// Resolve the alert method once, so the callback does not have to look it up for every edge
+	if (alert != NULL && alertMethodId == NULL) {
+		jclass alertClass = (*env)->FindClass(env, "jpigpio/Alert");
+		if (alertClass == NULL) {
+			return; // NoClassDefFoundError pending
+		}
+		alertMethodId = (*env)->GetMethodID(env, alertClass, "alert", "(IIJ)V");
+		(*env)->DeleteLocalRef(env, alertClass);
+		if (alertMethodId == NULL) {
+			return; // NoSuchMethodError pending
+		}
+	}
+	jobject ref = alertRefs[gpio];
+	if (alert != NULL && ref != NULL && !(*env)->IsSameObject(env, ref, alert)) {
+		// Cancel the callback calling the old object before deleting its reference
+		alertFunctions[gpio] = NULL;
+		updateAlertFunc(gpio);
+		(*env)->DeleteGlobalRef(env, ref);
+		ref = NULL;
+	}
+	if (alert != NULL && ref == NULL) {
+		ref = (*env)->NewGlobalRef(env, alert);
+	}
+	alertRefs[gpio] = ref;
+	alertFunctions[gpio] = alert == NULL ? NULL : ref;
+	// Register the generic callback, or cancel it if nothing is interested in the gpio
+	int rc = updateAlertFunc(gpio);
+	// Handle an error registering the alert function
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_setAlertFunc
+
+/**
+ * Record the edge into every edge buffer watching the gpio.  Called on the pigpio alert thread.
+ */
+static void recordEdge(int gpio, int level, unsigned int tick) {
+	int i;
+	uint32_t bit = 1u << gpio;
+	uint32_t head, tail, index;
+	edgeBuffer_t *b;
+
+	// a slot whose mask is seen set is not released until the producer leaves
+	__atomic_add_fetch(&recordingEdges, 1, __ATOMIC_SEQ_CST);
+	for (i = 0; i < MAX_EDGE_BUFFERS; i++) {
+		b = &edgeBuffers[i];
+		if ((__atomic_load_n(&b->mask, __ATOMIC_SEQ_CST) & bit) == 0) {
+			continue;
+		}
+		if (level != PI_TIMEOUT) {
+			b->levels = level ? (b->levels | bit) : (b->levels & ~bit);
+		}
+		tail = b->tail;
+		head = __atomic_load_n(&b->head, __ATOMIC_ACQUIRE);
+		if (tail - head >= b->size) {
+			__atomic_store_n(&b->overflows, b->overflows + 1, __ATOMIC_RELAXED);
+			continue;
+		}
+		index = tail & (b->size - 1);
+		b->ticks[index] = (jlong) tick;
+		b->levelBits[index] = (jint) b->levels;
+		b->flags[index] = level == PI_TIMEOUT ? (PI_NTFY_FLAGS_WDOG | gpio) : 0;
+		// publish the record to the consumer
+		__atomic_store_n(&b->tail, tail + 1, __ATOMIC_RELEASE);
+	}
+	__atomic_sub_fetch(&recordingEdges, 1, __ATOMIC_SEQ_CST);
+} // End of recordEdge
+
+/**
+ * Release memory of a slot whose mask is 0, once the producer is not recording into it any more.
+ * Caller must hold edgeBuffersLock.
+ */
+static void releaseEdgeBuffer(edgeBuffer_t *b) {
+	while (__atomic_load_n(&recordingEdges, __ATOMIC_SEQ_CST) != 0) {
+		sched_yield();
+	}
+	free(b->ticks);
+	free(b->levelBits);
+	free(b->flags);
+	memset(b, 0, sizeof(edgeBuffer_t));
+} // End of releaseEdgeBuffer
+
+/**
+ * Recompute the set of recorded GPIOs and (un)register alertCallback of GPIOs which changed.
+ * Caller must hold edgeBuffersLock.
+ */
+static int updateEdgeBuffersMask() {
+	int i, gpio, rc;
+	uint32_t mask = 0;
+	uint32_t changed;
+
+	for (i = 0; i < MAX_EDGE_BUFFERS; i++) {
+		mask |= edgeBuffers[i].mask;
+	}
+	changed = mask ^ edgeBuffersMask;
+	edgeBuffersMask = mask;
+	for (gpio = 0; gpio < MAXPINS; gpio++) {
+		if (changed & (1u << gpio)) {
+			rc = updateAlertFunc(gpio);
+			if (rc < 0) {
+				return rc;
+			}
+		}
+	}
+	return 0;
+} // End of updateEdgeBuffersMask
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferOpen
+ * Signature: (II)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_edgeBufferOpen(JNIEnv *env, jclass cls, jint gpioMask, jint capacity) {
+	int handle, rc;
+	uint32_t size = 1;
+	edgeBuffer_t *b;
+
+	if (capacity < 1 || capacity > MAX_EDGE_BUFFER_SIZE) {
+		(*env)->Throw(env, createPigpioException(env, PI_BAD_PARAM));
+		return -1;
+	}
+	while (size < (uint32_t) capacity) {
+		size <<= 1;
+	}
+
+	pthread_mutex_lock(&edgeBuffersLock);
+	for (handle = 0; handle < MAX_EDGE_BUFFERS && edgeBuffers[handle].used; handle++);
+	if (handle == MAX_EDGE_BUFFERS) {
+		pthread_mutex_unlock(&edgeBuffersLock);
+		(*env)->Throw(env, createPigpioException(env, PI_NO_HANDLE));
+		return -1;
+	}
+
+	b = &edgeBuffers[handle];
+	memset(b, 0, sizeof(edgeBuffer_t));
+	b->ticks = malloc(size * sizeof(jlong));
+	b->levelBits = malloc(size * sizeof(jint));
+	b->flags = malloc(size * sizeof(jint));
+	if (b->ticks == NULL || b->levelBits == NULL || b->flags == NULL) {
+		free(b->ticks);
+		free(b->levelBits);
+		free(b->flags);
+		pthread_mutex_unlock(&edgeBuffersLock);
+		(*env)->Throw(env, createPigpioException(env, PI_NO_MEMORY));
+		return -1;
+	}
+	b->used = 1;
+	b->size = size;
+	b->levels = gpioRead_Bits_0_31();
+	// publish the slot to the producer
+	__atomic_store_n(&b->mask, (uint32_t) gpioMask, __ATOMIC_SEQ_CST);
+
+	rc = updateEdgeBuffersMask();
+	if (rc < 0) {
+		// Give the slot back and stop recording into it
+		__atomic_store_n(&b->mask, 0, __ATOMIC_SEQ_CST);
+		updateEdgeBuffersMask();
+		releaseEdgeBuffer(b);
+		pthread_mutex_unlock(&edgeBuffersLock);
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return -1;
+	}
+	pthread_mutex_unlock(&edgeBuffersLock);
+	return handle;
+} // End of Java_jpigpio_Pigpio_edgeBufferOpen
+
+/**
+ * Returns the buffer of the handle, NULL if the handle is not open.  Caller must hold edgeBuffersLock.
+ */
+static edgeBuffer_t *getEdgeBuffer(jint handle) {
+	if (handle < 0 || handle >= MAX_EDGE_BUFFERS || !edgeBuffers[handle].used || edgeBuffers[handle].freed) {
+		return NULL;
+	}
+	return &edgeBuffers[handle];
+} // End of getEdgeBuffer
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferClose
+ * Signature: (I)V
+ */
+void JNICALL Java_jpigpio_Pigpio_edgeBufferClose(JNIEnv *env, jclass cls, jint handle) {
+	int rc;
+	edgeBuffer_t *b;
+
+	pthread_mutex_lock(&edgeBuffersLock);
+	b = getEdgeBuffer(handle);
+	if (b == NULL) {
+		pthread_mutex_unlock(&edgeBuffersLock);
+		(*env)->Throw(env, createPigpioException(env, PI_BAD_HANDLE));
+		return;
+	}
+	// Stop recording; records already in the buffer can still be drained
+	__atomic_store_n(&b->mask, 0, __ATOMIC_SEQ_CST);
+	rc = updateEdgeBuffersMask();
+	pthread_mutex_unlock(&edgeBuffersLock);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+	}
+} // End of Java_jpigpio_Pigpio_edgeBufferClose
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferFree
+ * Signature: (I)V
+ */
+void JNICALL Java_jpigpio_Pigpio_edgeBufferFree(JNIEnv *env, jclass cls, jint handle) {
+	edgeBuffer_t *b;
+
+	pthread_mutex_lock(&edgeBuffersLock);
+	b = getEdgeBuffer(handle);
+	if (b != NULL && b->mask == 0) {
+		if (b->draining) {
+			// the drain releases it
+			b->freed = 1;
+		} else {
+			releaseEdgeBuffer(b);
+		}
+	}
+	pthread_mutex_unlock(&edgeBuffersLock);
+} // End of Java_jpigpio_Pigpio_edgeBufferFree
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferDrain
+ * Signature: (I[J[I[I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_edgeBufferDrain(JNIEnv *env, jclass cls, jint handle, jlongArray ticks, jintArray levels, jintArray flags) {
+	edgeBuffer_t *b;
+	uint32_t head, n, index, first;
+	uint32_t space = (*env)->GetArrayLength(env, ticks);
+
+	// Limit by the space in the target arrays
+	if (space > (uint32_t) (*env)->GetArrayLength(env, levels)) {
+		space = (*env)->GetArrayLength(env, levels);
+	}
+	if (flags != NULL && space > (uint32_t) (*env)->GetArrayLength(env, flags)) {
+		space = (*env)->GetArrayLength(env, flags);
+	}
+
+	// Keep the slot alive while copying, without blocking the producer or other buffers
+	pthread_mutex_lock(&edgeBuffersLock);
+	b = getEdgeBuffer(handle);
+	if (b == NULL || b->draining) {
+		pthread_mutex_unlock(&edgeBuffersLock);
+		return 0;
+	}
+	b->draining = 1;
+	pthread_mutex_unlock(&edgeBuffersLock);
+
+	head = b->head;
+	n = __atomic_load_n(&b->tail, __ATOMIC_ACQUIRE) - head;
+	if (n > space) {
+		n = space;
+	}
+
+	// Copy in at most two parts, the second one when the records wrap around the end of the buffer
+	index = head & (b->size - 1);
+	first = b->size - index < n ? b->size - index : n;
+	if (first > 0) {
+		(*env)->SetLongArrayRegion(env, ticks, 0, first, b->ticks + index);
+		(*env)->SetIntArrayRegion(env, levels, 0, first, b->levelBits + index);
+		if (flags != NULL) {
+			(*env)->SetIntArrayRegion(env, flags, 0, first, b->flags + index);
+		}
+	}
+	if (first < n) {
+		(*env)->SetLongArrayRegion(env, ticks, first, n - first, b->ticks);
+		(*env)->SetIntArrayRegion(env, levels, first, n - first, b->levelBits);
+		if (flags != NULL) {
+			(*env)->SetIntArrayRegion(env, flags, first, n - first, b->flags);
+		}
+	}
+
+	// release the records to the producer
+	__atomic_store_n(&b->head, head + n, __ATOMIC_RELEASE);
+
+	pthread_mutex_lock(&edgeBuffersLock);
+	b->draining = 0;
+	if (b->freed) {
+		releaseEdgeBuffer(b);
+	}
+	pthread_mutex_unlock(&edgeBuffersLock);
+	return n;
+} // End of Java_jpigpio_Pigpio_edgeBufferDrain
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferSize
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_edgeBufferSize(JNIEnv *env, jclass cls, jint handle) {
+	edgeBuffer_t *b;
+	jint size = 0;
+
+	pthread_mutex_lock(&edgeBuffersLock);
+	b = getEdgeBuffer(handle);
+	if (b != NULL) {
+		size = __atomic_load_n(&b->tail, __ATOMIC_ACQUIRE) - __atomic_load_n(&b->head, __ATOMIC_ACQUIRE);
+	}
+	pthread_mutex_unlock(&edgeBuffersLock);
+	return size;
+} // End of Java_jpigpio_Pigpio_edgeBufferSize
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferCapacity
+ * Signature: (I)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_edgeBufferCapacity(JNIEnv *env, jclass cls, jint handle) {
+	edgeBuffer_t *b;
+	jint size = 0;
+
+	pthread_mutex_lock(&edgeBuffersLock);
+	b = getEdgeBuffer(handle);
+	if (b != NULL) {
+		size = b->size;
+	}
+	pthread_mutex_unlock(&edgeBuffersLock);
+	return size;
+} // End of Java_jpigpio_Pigpio_edgeBufferCapacity
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferOverflowCount
+ * Signature: (I)J
+ */
+jlong JNICALL Java_jpigpio_Pigpio_edgeBufferOverflowCount(JNIEnv *env, jclass cls, jint handle) {
+	edgeBuffer_t *b;
+	jlong overflows = 0;
+
+	pthread_mutex_lock(&edgeBuffersLock);
+	b = getEdgeBuffer(handle);
+	if (b != NULL) {
+		overflows = __atomic_load_n(&b->overflows, __ATOMIC_RELAXED);
+	}
+	pthread_mutex_unlock(&edgeBuffersLock);
+	return overflows;
+} // End of Java_jpigpio_Pigpio_edgeBufferOverflowCount
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiOpen
+ * Signature: (III)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_spiOpen(JNIEnv *env, jobject obj, jint channel, jint baudRate, jint flags) {
+
+	int rc = spiOpen(channel, baudRate, flags);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+	}
+#ifdef DEBUG
+	if (debug) {
+		sprintf(debugText, "spiOpen: channel=%d, baudRate=%d, flags=%x - handle=%d", channel, baudRate, flags, rc);
+		logDebug(debugText);
+	}
+#endif
+	return rc;
+} // End of Java_jpigpio_Pigpio_spiOpen
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiClose
+ * Signature: (I)V
+ */
+void JNICALL Java_jpigpio_Pigpio_spiClose(JNIEnv *env, jobject obj, jint handle) {
+	int rc = spiClose(handle);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+	}
+} // End of Java_jpigpio_Pigpio_spiClose
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiRead
+ * Signature: (I[B)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_spiRead(JNIEnv *env, jobject obj, jint handle, jbyteArray rxData) {
+	unsigned count = (*env)->GetArrayLength(env, rxData);
+	jbyte *buf = malloc(count);
+
+	int rc = spiRead(handle, (char *) buf, count);
+
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		free(buf);
+		return rc;
+	}
+	(*env)->SetByteArrayRegion(env, rxData, 0, count, buf);
+	free(buf);
+	return rc;
+} // End of Java_jpigpio_Pigpio_spiRead
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiWrite
+ * Signature: (I[B)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_spiWrite(JNIEnv *env, jobject obj, jint handle, jbyteArray txData) {
+	unsigned count = (*env)->GetArrayLength(env, txData);
+	char *buf = malloc(count);
+
+	(*env)->GetByteArrayRegion(env, txData, 0, count, (jbyte *) buf);
+
+	int rc = spiWrite(handle, buf, count);
+
+	free(buf);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_spiWrite
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiXfer
+ * Signature: (I[B[B)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_spiXfer(JNIEnv *env, jobject obj, jint handle, jbyteArray txData, jbyteArray rxData) {
+	unsigned count = (*env)->GetArrayLength(env, txData);
+	char *txBuf = malloc(count);
+	char *rxBuf = malloc(count);
+
+	(*env)->GetByteArrayRegion(env, txData, 0, count, (jbyte *) txBuf);
+
+	int rc = spiXfer(handle, txBuf, rxBuf, count);
+
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		free(rxBuf);
+		free(txBuf);
+		return rc;
+	}
+#ifdef DEBUG
+	if (debug) {
+		char strTXData[1024];
+		char strRXData[1024];
+		strcpy(strTXData, "");
+		strcpy(strRXData, "");
+		char strByte[10];
+		unsigned int i;
+		for (i = 0; i < count; i++) {
+			sprintf(strByte, "0x%x ", txBuf[i]);
+			strcat(strTXData, strByte);
+			sprintf(strByte, "0x%x ", rxBuf[i]);
+			strcat(strRXData, strByte);
+		}
+		sprintf(debugText, "spiXfer: handle=%d, count=%d, TX Data: %s, RX Data: %s", handle, count, strTXData, strRXData);
+		logDebug(debugText);
+	}
+#endif
+	// Verified that parms are env, target array, start index, number of bytes, source buffer
+	(*env)->SetByteArrayRegion(env, rxData, 0, count, (jbyte *) rxBuf);
+	free(rxBuf);
+	free(txBuf);
+	return rc;
+} // End of Java_jpigpio_Pigpio_spiXfer
+
+/**
+ * Return address of the byte at offset in a direct ByteBuffer, or throw if the buffer is not direct.
+ */
+static char *directAddress(JNIEnv *env, jobject buffer, jint offset) {
+	char *address = (*env)->GetDirectBufferAddress(env, buffer);
+	if (address == NULL) {
+		jclass cls = (*env)->FindClass(env, "java/lang/IllegalArgumentException");
+		(*env)->ThrowNew(env, cls, "ByteBuffer is not direct");
+		return NULL;
+	}
+	return address + offset;
+} // End of directAddress
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiXferDirect
+ * Signature: (ILjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;II)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_spiXferDirect(JNIEnv *env, jclass cls, jint handle, jobject txData, jint txOffset, jobject rxData, jint rxOffset, jint count) {
+	char *txBuf = directAddress(env, txData, txOffset);
+	char *rxBuf = directAddress(env, rxData, rxOffset);
+	if (txBuf == NULL || rxBuf == NULL) {
+		return 0;
+	}
+
+	// pigpio reads and writes the buffers in place, no copies are made
+	int rc = spiXfer(handle, txBuf, rxBuf, count);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_spiXferDirect
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiWriteDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_spiWriteDirect(JNIEnv *env, jclass cls, jint handle, jobject data, jint offset, jint count) {
+	char *buf = directAddress(env, data, offset);
+	if (buf == NULL) {
+		return 0;
+	}
+
+	int rc = spiWrite(handle, buf, count);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_spiWriteDirect
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    i2cReadDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)I
+ */
+jint JNICALL Java_jpigpio_Pigpio_i2cReadDirect(JNIEnv *env, jclass cls, jint handle, jobject data, jint offset, jint count) {
+	char *buf = directAddress(env, data, offset);
+	if (buf == NULL) {
+		return 0;
+	}
+
+	int rc = i2cReadDevice(handle, buf, count);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return rc;
+	}
+	return rc;
+} // End of Java_jpigpio_Pigpio_i2cReadDirect
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    i2cWriteDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)V
+ */
+void JNICALL Java_jpigpio_Pigpio_i2cWriteDirect(JNIEnv *env, jclass cls, jint handle, jobject data, jint offset, jint count) {
+	char *buf = directAddress(env, data, offset);
+	if (buf == NULL) {
+		return;
+	}
+
+	int rc = i2cWriteDevice(handle, buf, count);
+	if (rc < 0) {
+		(*env)->Throw(env, createPigpioException(env, rc));
+		return;
+	}
+} // End of Java_jpigpio_Pigpio_i2cWriteDirect
+
+void JNICALL Java_jpigpio_Pigpio_setDebug(JNIEnv *env, jobject obj, jboolean state) {
+	debug = state;
+}
+
+/**
+ * Detach pigpio alert thread from the JVM when the thread ends.
+ */
+static void detachAlertThread(void *env) {
+	(*g_vm)->DetachCurrentThread(g_vm);
+}
+
+static void createAlertEnvKey(void) {
+	pthread_key_create(&alertEnvKey, detachAlertThread);
+}
+
+/**
+ * Return JNIEnv of the current thread, attaching the thread to the JVM on first use.
+ * The thread stays attached until it ends.
+ */
+static JNIEnv *getAlertEnv(void) {
+	JNIEnv *env;
+
+	pthread_once(&alertEnvKeyOnce, createAlertEnvKey);
+	env = pthread_getspecific(alertEnvKey);
+	if (env != NULL) {
+		return env;
+	}
+
+	if ((*g_vm)->GetEnv(g_vm, (void **) &env, JNI_VERSION_1_8) == JNI_EDETACHED) {
+		// Daemon, so that an attached alert thread never keeps the JVM from exiting
+		if ((*g_vm)->AttachCurrentThreadAsDaemon(g_vm, (void **) &env, NULL) != JNI_OK) {
+			return NULL;
+		}
+		// Only threads attached here are detached by the key destructor
+		pthread_setspecific(alertEnvKey, env);
+	}
+	return env;
+}
+
+/**
+ * A callback function that is invoked when a gpioSetAlertFunc() happens.
+ * We use the gpio pin value as a lookup into a saved set of Java Alert objects that have
+ * been registered.  Once we have the correct Alert object, we call back into Java to call
+ * the Alert.alert() method.  The pigpio thread calling us is attached to the JVM only once
+ * and the method to call is resolved at registration, so each edge costs a single upcall.
+ * Edges of GPIOs watched by edge buffers are recorded natively first.
+ */
+void alertCallback(int gpio, int level, unsigned int tick) {
+	JNIEnv *env;
+	jobject alert = alertFunctions[gpio];
+
+	// Edge buffers are filled without calling into Java
+	if (edgeBuffersMask & (1u << gpio)) {
+		recordEdge(gpio, level, tick);
+		if (alert == NULL) {
+			return;
+		}
+	}
+
+	if (alert == NULL) {
+		printf("JPigpio: alertCallback(gpio=%d, level=%d, tick=%d): Odd ... alert callback but no alert function registered\n", gpio, level, tick);
+		return;
+	}
+
+	env = getAlertEnv();
+	if (env == NULL) {
+		return;
+	}
+
+	(*env)->CallVoidMethod(env, alert, alertMethodId, gpio, level, (jlong) tick);
+
+	// An exception thrown by the alert must not stay pending on this long-lived thread
+	if ((*env)->ExceptionCheck(env)) {
+		(*env)->ExceptionDescribe(env);
+		(*env)->ExceptionClear(env);
+	}
+} // End of alertCallback
+
+#ifdef DEBUG
+void logDebug(char *text) {
+	if (debug) {
+		printf("%.6d: %s\n", gpioTick() - lastTime, text);
+		lastTime = gpioTick();
+	}
+}
+#endif
 
 /**
  * Create a new Java Exception
@@ -63,6 +63,150 @@ JNIEXPORT jboolean JNICALL Java_jpigpio_Pigpio_gpioRead
 JNIEXPORT void JNICALL Java_jpigpio_Pigpio_gpioWrite
   (JNIEnv *, jobject, jint, jboolean);
 
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    notifyOpen
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_notifyOpen
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    notifyBegin
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_notifyBegin
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    notifyPause
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_notifyPause
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    notifyClose
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_notifyClose
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setWatchdog
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_setWatchdog
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveClear
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_waveClear
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveAddPulses
+ * Signature: ([III)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveAddPulses
+  (JNIEnv *, jobject, jintArray, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveAddSerial
+ * Signature: (II[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveAddSerial
+  (JNIEnv *, jobject, jint, jint, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveAddNew
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_waveAddNew
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveTxBusy
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_jpigpio_Pigpio_waveTxBusy
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveTxStop
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveTxStop
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveCreate
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveCreate
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveDelete
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_waveDelete
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveSendOnce
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveSendOnce
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveSendRepeat
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveSendRepeat
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveSendUsingMode
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveSendUsingMode
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveChain
+ * Signature: ([B)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_waveChain
+  (JNIEnv *, jobject, jbyteArray);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    waveTxAt
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_waveTxAt
+  (JNIEnv *, jobject);
+
 /*
  * Class:     jpigpio_Pigpio
  * Method:    i2cOpen
@@ -95,6 +239,22 @@ JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_i2cReadDevice
 JNIEXPORT void JNICALL Java_jpigpio_Pigpio_i2cWriteDevice
   (JNIEnv *, jobject, jint, jbyteArray);
 
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    i2cReadDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_i2cReadDirect
+  (JNIEnv *, jclass, jint, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    i2cWriteDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_i2cWriteDirect
+  (JNIEnv *, jclass, jint, jobject, jint, jint);
+
 /*
  * Class:     jpigpio_Pigpio
  * Method:    gpioDelay
@@ -121,11 +281,123 @@ JNIEXPORT void JNICALL Java_jpigpio_Pigpio_gpioServo
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    gpioSetAlertFunc
- * Signature: (ILjpigpio/Alert;)V
+ * Method:    getServoPulseWidth
+ * Signature: (I)I
  */
-JNIEXPORT void JNICALL Java_jpigpio_Pigpio_gpioSetAlertFunc
-  (JNIEnv *, jobject, jint, jobject);
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_getServoPulseWidth
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setPWMDutycycle
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_setPWMDutycycle
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMDutycycle
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_getPWMDutycycle
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setPWMRange
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_setPWMRange
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMRange
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_getPWMRange
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMRealRange
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_getPWMRealRange
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    setPWMFrequency
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_setPWMFrequency
+  (JNIEnv *, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    getPWMFrequency
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_getPWMFrequency
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialOpen
+ * Signature: (Ljava/lang/String;II)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_serialOpen
+  (JNIEnv *, jobject, jstring, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialClose
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_serialClose
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialReadByte
+ * Signature: (I)B
+ */
+JNIEXPORT jbyte JNICALL Java_jpigpio_Pigpio_serialReadByte
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialWriteByte
+ * Signature: (IB)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_serialWriteByte
+  (JNIEnv *, jobject, jint, jbyte);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialReadInto
+ * Signature: (I[B)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_serialReadInto
+  (JNIEnv *, jobject, jint, jbyteArray);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialWrite
+ * Signature: (I[B)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_serialWrite
+  (JNIEnv *, jobject, jint, jbyteArray);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    serialDataAvailable
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_serialDataAvailable
+  (JNIEnv *, jobject, jint);
 
 /*
  * Class:     jpigpio_Pigpio
@@ -175,6 +447,22 @@ JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_spiWrite
 JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_spiXfer
   (JNIEnv *, jobject, jint, jbyteArray, jbyteArray);
 
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiWriteDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_spiWriteDirect
+  (JNIEnv *, jclass, jint, jobject, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    spiXferDirect
+ * Signature: (ILjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_spiXferDirect
+  (JNIEnv *, jclass, jint, jobject, jint, jobject, jint, jint);
+
 /*
  * Class:     jpigpio_Pigpio
  * Method:    setDebug
@@ -185,11 +473,67 @@ JNIEXPORT void JNICALL Java_jpigpio_Pigpio_setDebug
 
 /*
  * Class:     jpigpio_Pigpio
- * Method:    gpioxPulseAndWait
- * Signature: (IIJJZ)J
+ * Method:    setAlertFunc
+ * Signature: (ILjpigpio/Alert;)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_setAlertFunc
+  (JNIEnv *, jobject, jint, jobject);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferOpen
+ * Signature: (II)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_edgeBufferOpen
+  (JNIEnv *, jclass, jint, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferClose
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_edgeBufferClose
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferFree
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_jpigpio_Pigpio_edgeBufferFree
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferDrain
+ * Signature: (I[J[I[I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_edgeBufferDrain
+  (JNIEnv *, jclass, jint, jlongArray, jintArray, jintArray);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferSize
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_edgeBufferSize
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferCapacity
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_jpigpio_Pigpio_edgeBufferCapacity
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     jpigpio_Pigpio
+ * Method:    edgeBufferOverflowCount
+ * Signature: (I)J
  */
-JNIEXPORT jlong JNICALL Java_jpigpio_Pigpio_gpioxPulseAndWait
-  (JNIEnv *, jobject, jint, jint, jlong, jlong, jboolean);
+JNIEXPORT jlong JNICALL Java_jpigpio_Pigpio_edgeBufferOverflowCount
+  (JNIEnv *, jclass, jint);
 
 #ifdef __cplusplus
 }